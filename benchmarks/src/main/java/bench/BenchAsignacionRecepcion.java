@@ -0,0 +1,88 @@
+package bench;
+
+import comun.CodecTexto;
+import comun.LectorTramas;
+import comun.Mensaje;
+import comun.TipoMensaje;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bytes asignados por mensaje recibido, medidos con
+ * {@code com.sun.management.ThreadMXBean#getThreadAllocatedBytes}: camino original
+ * ({@code BufferedReader.readLine} + {@link Mensaje#fromHttpString}) frente a
+ * {@link LectorTramas} + {@link CodecTexto}.
+ *
+ * <p>El presupuesto de bytes por mensaje del camino nuevo lo comprueba
+ * {@code LectorTramasTest} en {@code mvn test}.
+ *
+ * <p>Uso: {@code java bench.BenchAsignacionRecepcion [mensajes]} (por defecto 200000).
+ */
+public class BenchAsignacionRecepcion {
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        byte[] flujo = flujo(n);
+
+        com.sun.management.ThreadMXBean mx =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long hilo = Thread.currentThread().threadId();
+
+        for (int i = 0; i < 3; i++) { original(flujo); nuevo(flujo); }   // calentamiento JIT
+
+        long a0 = mx.getThreadAllocatedBytes(hilo);
+        long t0 = System.nanoTime();
+        int leidosOriginal = original(flujo);
+        long t1 = System.nanoTime();
+        long a1 = mx.getThreadAllocatedBytes(hilo);
+        int leidosNuevo = nuevo(flujo);
+        long t2 = System.nanoTime();
+        long a2 = mx.getThreadAllocatedBytes(hilo);
+
+        double porMsgOriginal = (a1 - a0) / (double) leidosOriginal;
+        double porMsgNuevo    = (a2 - a1) / (double) leidosNuevo;
+        System.out.printf("readLine + fromHttpString : %7.0f B/msg  %9.0f msg/s%n",
+                porMsgOriginal, leidosOriginal / ((t1 - t0) / 1e9));
+        System.out.printf("LectorTramas + CodecTexto : %7.0f B/msg  %9.0f msg/s%n",
+                porMsgNuevo, leidosNuevo / ((t2 - t1) / 1e9));
+    }
+
+    private static int original(byte[] flujo) throws Exception {
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(flujo), StandardCharsets.UTF_8));
+        int n = 0;
+        String linea;
+        while ((linea = in.readLine()) != null) {
+            if (Mensaje.fromHttpString(linea) != null) n++;
+        }
+        return n;
+    }
+
+    private static int nuevo(byte[] flujo) throws Exception {
+        LectorTramas lector = new LectorTramas(new ByteArrayInputStream(flujo), CodecTexto.INSTANCIA);
+        int n = 0;
+        try {
+            while (true) {
+                if (lector.siguiente() != null) n++;
+            }
+        } catch (EOFException fin) {
+            return n;
+        }
+    }
+
+    /** Tráfico típico: 40 remitentes, contenido corto con espacios y acentos. */
+    private static byte[] flujo(int n) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(n * 80);
+        for (int i = 0; i < n; i++) {
+            Mensaje m = new Mensaje(TipoMensaje.MESSAGE, "Hola, ¿qué tal? mensaje " + (i % 100), "usuario" + (i % 40));
+            CodecTexto.INSTANCIA.escribir(m, out);
+        }
+        return out.toByteArray();
+    }
+}
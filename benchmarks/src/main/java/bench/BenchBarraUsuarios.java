@@ -0,0 +1,102 @@
+package bench;
+
+import cliente.ModeloUsuariosOrdenado;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Barra lateral con muchos usuarios: coste de cargar la lista, de calcular el tamaño
+ * preferido de la {@link JList} con y sin celda prototipo, de pintar la zona visible y
+ * de filtrar escribiendo un prefijo letra a letra.
+ *
+ * <p>Uso: {@code java -Djava.awt.headless=true bench.BenchBarraUsuarios [usuarios]}
+ * (por defecto 20000).
+ */
+public class BenchBarraUsuarios {
+
+    public static void main(String[] args) throws Exception {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        Random r = new Random(7);
+        List<String> nombres = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0, n = 5 + r.nextInt(8); j < n; j++) {
+                char c = (char) ('a' + r.nextInt(26));
+                sb.append(j == 0 && r.nextBoolean() ? Character.toUpperCase(c) : c);
+            }
+            nombres.add(sb.append(i).toString());
+        }
+
+        SwingUtilities.invokeAndWait(() -> {
+            for (int ronda = 0; ronda < 3; ronda++) {
+                boolean imprimir = ronda == 2;
+
+                ModeloUsuariosOrdenado modelo = new ModeloUsuariosOrdenado();
+                long t0 = System.nanoTime();
+                modelo.reemplazar(nombres);
+                long tCarga = System.nanoTime() - t0;
+
+                long tSinPrototipo = medirTamano(modelo, false);
+                long tConPrototipo = medirTamano(modelo, true);
+
+                JList<String> lista = crearLista(modelo, true);
+                lista.setSize(190, 38 * 20);
+                BufferedImage img = new BufferedImage(190, 38 * 20, BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = img.createGraphics();
+                t0 = System.nanoTime();
+                for (int i = 0; i < 100; i++) lista.paint(g);
+                long tPintado = (System.nanoTime() - t0) / 100;
+                g.dispose();
+
+                // Escribir "b", "br", "bra", ... y borrar, como haría un usuario
+                String texto = "bravo";
+                int pulsaciones = 0;
+                long peor = 0, suma = 0;
+                for (int rep = 0; rep < 200; rep++) {
+                    for (int k = 0; k <= texto.length() * 2; k++) {
+                        int n = k <= texto.length() ? k : texto.length() * 2 - k;
+                        long t = System.nanoTime();
+                        modelo.setFiltro(texto.substring(0, n));
+                        long dt = System.nanoTime() - t;
+                        suma += dt;
+                        peor = Math.max(peor, dt);
+                        pulsaciones++;
+                    }
+                }
+
+                if (imprimir) {
+                    System.out.printf("== %d usuarios ==%n", total);
+                    System.out.printf("  carga (reemplazar):            %8.2f ms%n", tCarga / 1e6);
+                    System.out.printf("  tamaño preferido sin prototipo: %8.2f ms%n", tSinPrototipo / 1e6);
+                    System.out.printf("  tamaño preferido con prototipo: %8.2f ms%n", tConPrototipo / 1e6);
+                    System.out.printf("  pintar zona visible (20 filas): %8.2f ms%n", tPintado / 1e6);
+                    System.out.printf("  filtro por pulsación:           %8.2f µs media, %.2f µs peor (%d pulsaciones)%n",
+                            suma / 1e3 / pulsaciones, peor / 1e3, pulsaciones);
+                }
+            }
+        });
+    }
+
+    private static JList<String> crearLista(ModeloUsuariosOrdenado modelo, boolean prototipo) {
+        JList<String> lista = new JList<>(modelo);
+        lista.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        lista.setCellRenderer(new DefaultListCellRenderer());
+        if (prototipo) {
+            lista.setPrototypeCellValue("usuario_con_nombre_largo");
+            lista.setFixedCellHeight(38);
+        }
+        return lista;
+    }
+
+    private static long medirTamano(ModeloUsuariosOrdenado modelo, boolean prototipo) {
+        JList<String> lista = crearLista(modelo, prototipo);
+        long t0 = System.nanoTime();
+        lista.getPreferredSize();
+        return System.nanoTime() - t0;
+    }
+}
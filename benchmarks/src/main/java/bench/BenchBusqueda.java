@@ -0,0 +1,92 @@
+package bench;
+
+import cliente.HistorialLocal;
+import cliente.IndiceBusqueda;
+import comun.Mensaje;
+import comun.TipoMensaje;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Índice de búsqueda sobre un historial grande: tiempo de indexar desde cero, de cargar
+ * el índice guardado y de responder consultas con términos frecuentes, raros y varios
+ * términos a la vez.
+ *
+ * <p>El vocabulario sigue una distribución aproximadamente Zipf, como el texto real: unas
+ * pocas palabras aparecen en casi todos los mensajes y la mayoría en muy pocos.
+ *
+ * <p>Uso: {@code java bench.BenchBusqueda [mensajes]} (por defecto 1000000).
+ */
+public class BenchBusqueda {
+
+    private static final int VOCABULARIO = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path dir = Files.createTempDirectory("bench-busqueda");
+        try {
+            Random r = new Random(11);
+            try (HistorialLocal h = new HistorialLocal(dir)) {
+                for (int i = 0; i < total; i++) {
+                    StringBuilder sb = new StringBuilder();
+                    for (int w = 0, n = 4 + r.nextInt(8); w < n; w++) sb.append(palabra(r)).append(' ');
+                    h.agregar(new Mensaje(TipoMensaje.MESSAGE, sb.toString().trim(), "usuario" + (i % 50)));
+                }
+            }
+
+            // Indexar desde cero (hilo indexador, fuera del hilo que llama)
+            long t0 = System.nanoTime();
+            try (HistorialLocal h = new HistorialLocal(dir)) {
+                IndiceBusqueda indice = h.activarIndice();
+                while (indice.getIndexados() < h.tamano()) Thread.sleep(5);
+                System.out.printf("== Índice sobre %,d mensajes ==%n", total);
+                System.out.printf("  indexar desde cero:  %8.0f ms%n", (System.nanoTime() - t0) / 1e6);
+            }
+            long bytes = Files.size(dir.resolve("indice.bin"));
+            System.out.printf("  indice.bin:          %8.1f MB%n", bytes / 1e6);
+
+            t0 = System.nanoTime();
+            try (HistorialLocal h = new HistorialLocal(dir)) {
+                IndiceBusqueda indice = h.activarIndice();
+                while (indice.getIndexados() < h.tamano()) Thread.sleep(1);
+                System.out.printf("  cargar guardado:     %8.0f ms%n", (System.nanoTime() - t0) / 1e6);
+
+                String[][] consultas = {
+                    { "frecuente",      "w0" },
+                    { "media",          "w500" },
+                    { "rara",           "w19000" },
+                    { "dos frecuentes", "w0 w1" },
+                    { "frecuente+rara", "w0 w15000" },
+                    { "remitente+term", "usuario7 w3" },
+                    { "sin resultados", "zzz" },
+                };
+                for (int ronda = 0; ronda < 3; ronda++) {
+                    for (String[] c : consultas) {
+                        int reps = 200;
+                        long[] res = null;
+                        long t = System.nanoTime();
+                        for (int i = 0; i < reps; i++) res = indice.buscar(c[1], 200);
+                        double ms = (System.nanoTime() - t) / 1e6 / reps;
+                        if (ronda == 2) System.out.printf("  %-15s %-16s %8.3f ms  (%d resultados)%n",
+                                c[0], "\"" + c[1] + "\"", ms, res.length);
+                    }
+                }
+            }
+        } finally {
+            try (Stream<Path> s = Files.walk(dir)) {
+                s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /** Palabra {@code wK} con K ~ Zipf sobre el vocabulario. */
+    private static String palabra(Random r) {
+        double u = r.nextDouble();
+        int k = (int) Math.floor(Math.pow(VOCABULARIO + 1, u)) - 1;
+        return "w" + Math.min(VOCABULARIO - 1, Math.max(0, k));
+    }
+}
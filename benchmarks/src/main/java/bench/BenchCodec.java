@@ -0,0 +1,74 @@
+package bench;
+
+import comun.CodecBinario;
+import comun.CodecMensaje;
+import comun.CodecTexto;
+import comun.Mensaje;
+import comun.TipoMensaje;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compara {@link CodecTexto} y {@link CodecBinario} con un conjunto de mensajes variados
+ * (ASCII, acentos, emoji, separadores {@code |}, vacíos): bytes por mensaje y mensajes/s
+ * al codificar y decodificar tramas. La ida y vuelta la comprueba {@code CodecMensajeTest}.
+ *
+ * <p>Uso: {@code java bench.BenchCodec [iteraciones]} (por defecto 200).
+ */
+public class BenchCodec {
+
+    public static void main(String[] args) throws Exception {
+        int iteraciones = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        List<Mensaje> muestra = muestra();
+
+        for (CodecMensaje codec : List.of(CodecTexto.INSTANCIA, CodecBinario.INSTANCIA)) {
+            byte[] flujo = codificar(codec, muestra);
+            for (int i = 0; i < iteraciones / 4; i++) decodificar(codec, codificar(codec, muestra), muestra.size());
+            long t0 = System.nanoTime();
+            for (int i = 0; i < iteraciones; i++) codificar(codec, muestra);
+            long t1 = System.nanoTime();
+            for (int i = 0; i < iteraciones; i++) decodificar(codec, flujo, muestra.size());
+            long t2 = System.nanoTime();
+
+            long n = (long) iteraciones * muestra.size();
+            System.out.printf("%-8s  %6.1f B/msg   codificar %9.0f msg/s   decodificar %9.0f msg/s%n",
+                    codec.nombre(), flujo.length / (double) muestra.size(),
+                    n / ((t1 - t0) / 1e9), n / ((t2 - t1) / 1e9));
+        }
+    }
+
+    private static List<Mensaje> muestra() {
+        String[] textos = {
+            "hola", "¿Qué tal estáis? Mañana hay reunión a las 10:00", "año, niño, pingüino, acción",
+            "emoji 😀🎉 y más", "separadores | dentro | del texto", "", "a".repeat(500),
+            "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor"
+        };
+        List<Mensaje> lista = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            String t = textos[i % textos.length];
+            lista.add(switch (i % 5) {
+                case 0  -> new Mensaje(TipoMensaje.PRIVATE, t, "usuario" + (i % 37), "destino" + (i % 11));
+                case 1  -> new Mensaje(TipoMensaje.USER_LIST, "ana,bea,carlos,dani,eva,íñigo", "Sistema");
+                default -> new Mensaje(TipoMensaje.MESSAGE, t, "usuário" + (i % 37));
+            });
+        }
+        return lista;
+    }
+
+    private static byte[] codificar(CodecMensaje codec, List<Mensaje> mensajes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Mensaje m : mensajes) codec.escribir(m, out);
+        return out.toByteArray();
+    }
+
+    private static List<Mensaje> decodificar(CodecMensaje codec, byte[] flujo, int n) throws Exception {
+        InputStream in = new ByteArrayInputStream(flujo);
+        List<Mensaje> lista = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) lista.add(codec.leer(in));
+        return lista;
+    }
+}
@@ -0,0 +1,193 @@
+package bench;
+
+import cliente.CanalPush;
+import cliente.ClienteChat;
+import cliente.OyenteChat;
+import cliente.SesionesTls;
+import cliente.TransporteHttp;
+import cliente.TransporteHttpPersistente;
+import comun.CodecBinario;
+import comun.CodecMensaje;
+import comun.CodecTexto;
+import comun.Mensaje;
+import comun.TipoMensaje;
+import prueba.ServidorPrueba;
+
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresión DEFLATE del canal push ({@code -Dchat.compresion=deflate}) frente al flujo
+ * sin comprimir, con el tráfico de una sala concurrida: pocos remitentes, frases
+ * cortas, timestamps y números de secuencia.
+ *
+ * <ol>
+ *   <li>En memoria: bytes por mensaje de cada codec sin comprimir y comprimido con
+ *       vaciado por mensaje ({@code SYNC_FLUSH}) a nivel 1 y al nivel por defecto (-1,
+ *       que es 6 y el que usa {@link ServidorPrueba}), y coste de comprimir y descomprimir.</li>
+ *   <li>Extremo a extremo contra {@link ServidorPrueba}: varios lectores reciben los
+ *       mismos mensajes; se cuentan los bytes que el servidor escribe en los canales push
+ *       y el tiempo de CPU del proceso (cliente y servidor juntos).</li>
+ * </ol>
+ *
+ * <p>Uso: {@code java bench.BenchCompresion [mensajes] [lectores]} (por defecto 20000 y 8).
+ */
+public class BenchCompresion {
+
+    public static void main(String[] args) throws Exception {
+        int mensajes = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int lectores = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        List<Mensaje> sala = sala(mensajes, new Random(42));
+
+        System.out.println("== En memoria, " + mensajes + " mensajes ==");
+        for (CodecMensaje codec : List.of(CodecTexto.INSTANCIA, CodecBinario.INSTANCIA)) {
+            for (int nivel : new int[] { Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION }) {
+                for (int ronda = 0; ronda < 3; ronda++) enMemoria(codec, nivel, sala, ronda == 2);
+            }
+        }
+
+        System.out.println("== Extremo a extremo, " + lectores + " lectores ==");
+        try (ServidorPrueba srv = ServidorPrueba.iniciar()) {
+            for (int ronda = 0; ronda < 2; ronda++) {
+                for (String compresion : new String[] { "no", "deflate" }) {
+                    extremoAExtremo(srv, compresion, lectores, sala, ronda == 1);
+                }
+            }
+        }
+    }
+
+    /** Frases cortas de 20 usuarios, como en una sala con mucho tráfico. */
+    private static List<Mensaje> sala(int n, Random r) {
+        String[] palabras = { "hola", "vale", "mañana", "reunión", "a", "las", "diez", "el", "la", "que",
+                "no", "sí", "gracias", "perfecto", "luego", "hablamos", "código", "servidor", "prueba",
+                "¿alguien", "sabe", "cómo", "va", "esto?", "jaja", "ok", "ya", "está", "subido", "revisad" };
+        List<Mensaje> lista = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            StringBuilder sb = new StringBuilder();
+            int largo = 2 + r.nextInt(10);
+            for (int j = 0; j < largo; j++) sb.append(j > 0 ? " " : "").append(palabras[r.nextInt(palabras.length)]);
+            lista.add(new Mensaje(TipoMensaje.MESSAGE, sb.toString(), "usuario" + r.nextInt(20)).conSecuencia(i + 1));
+        }
+        return lista;
+    }
+
+    private static void enMemoria(CodecMensaje codec, int nivel, List<Mensaje> sala, boolean imprimir) throws Exception {
+        List<byte[]> tramas = new ArrayList<>(sala.size());
+        long crudos = 0;
+        for (Mensaje m : sala) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            codec.escribir(m, out);
+            tramas.add(out.toByteArray());
+            crudos += out.size();
+        }
+
+        Deflater deflater = new Deflater(nivel);
+        byte[] buf = new byte[64 * 1024];
+        List<byte[]> comprimidas = new ArrayList<>(tramas.size());
+        long t0 = System.nanoTime();
+        for (byte[] t : tramas) {
+            deflater.setInput(t);
+            int n = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+            comprimidas.add(Arrays.copyOf(buf, n));
+        }
+        long t1 = System.nanoTime();
+        deflater.end();
+
+        Inflater inflater = new Inflater();
+        long comprimidos = 0;
+        long t2 = System.nanoTime();
+        for (int i = 0; i < comprimidas.size(); i++) {
+            byte[] c = comprimidas.get(i);
+            comprimidos += c.length;
+            inflater.setInput(c);
+            int n = inflar(inflater, buf);
+            if (n != tramas.get(i).length) throw new IllegalStateException("ida y vuelta incorrecta");
+        }
+        long t3 = System.nanoTime();
+        inflater.end();
+
+        if (!imprimir) return;
+        int n = sala.size();
+        System.out.printf("%-8s nivel %-2d %6.1f B/msg → %5.1f B/msg (%4.1f %%)   comprimir %5.2f µs/msg   descomprimir %5.2f µs/msg%n",
+                codec.nombre(), nivel, crudos / (double) n, comprimidos / (double) n, 100.0 * comprimidos / crudos,
+                (t1 - t0) / 1e3 / n, (t3 - t2) / 1e3 / n);
+    }
+
+    private static int inflar(Inflater inflater, byte[] buf) throws DataFormatException {
+        int total = 0, n;
+        while ((n = inflater.inflate(buf, total, buf.length - total)) > 0) total += n;
+        return total;
+    }
+
+    private static void extremoAExtremo(ServidorPrueba srv, String compresion, int lectores,
+                                        List<Mensaje> sala, boolean imprimir) throws Exception {
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        System.setProperty("chat.compresion", compresion);
+        SSLContext ssl = ClienteChat.crearSSLContext(srv.getRutaTruststore());
+        SesionesTls tls = new SesionesTls(ssl);
+        TransporteHttp http = new TransporteHttpPersistente(srv.getBaseUrl(), ssl);
+
+        AtomicLong recibidos = new AtomicLong();
+        List<CanalPush> canales = new ArrayList<>();
+        for (int i = 0; i < lectores; i++) {
+            canales.add(CanalPush.abrir(tls, "localhost", srv.getPuertoTcp(), "lector" + i,
+                    new Contador(recibidos), null, -1, null));
+        }
+        while (srv.getSesionesActivas() < lectores) Thread.sleep(5);
+        Thread.sleep(100);   // avisos de presencia
+
+        long bytes0 = srv.getBytesPush();
+        long cpu0   = os.getProcessCpuTime();
+        long esperado = (long) lectores * sala.size();
+        recibidos.set(0);
+        // Lotes de 100 desde un lector (el servidor solo acepta usuarios con canal)
+        for (int i = 0; i < sala.size(); i += 100) {
+            StringBuilder cuerpo = new StringBuilder("usuario=lector0");
+            for (Mensaje m : sala.subList(i, Math.min(i + 100, sala.size()))) {
+                cuerpo.append("&contenido=").append(URLEncoder.encode(m.getContenido(), StandardCharsets.UTF_8));
+            }
+            http.post("/mensajes", cuerpo.toString());
+        }
+        long fin = System.nanoTime() + 30_000_000_000L;
+        while (recibidos.get() < esperado && System.nanoTime() < fin) Thread.sleep(2);
+        long cpu   = os.getProcessCpuTime() - cpu0;
+        long bytes = srv.getBytesPush() - bytes0;
+        canales.forEach(CanalPush::cerrar);
+        while (srv.getSesionesActivas() > 0) Thread.sleep(5);
+
+        if (!imprimir) return;
+        System.out.printf("%-8s  %6.1f B/msg en el canal   CPU %5.2f µs/msg entregado   recibidos %d de %d%n",
+                compresion, bytes / (double) esperado, cpu / 1e3 / esperado, recibidos.get(), esperado);
+    }
+
+    /** Cuenta los mensajes de chat recibidos. */
+    private static final class Contador implements OyenteChat {
+        private final AtomicLong recibidos;
+
+        Contador(AtomicLong recibidos) { this.recibidos = recibidos; }
+
+        @Override public void mensaje(Mensaje m) { if (!"Sistema".equals(m.getRemitente())) recibidos.incrementAndGet(); }
+        @Override public void privado(Mensaje m) { }
+        @Override public void union(String usuario, Mensaje m) { }
+        @Override public void salida(String usuario, Mensaje m) { }
+        @Override public void listaUsuarios(List<String> usuarios) { }
+        @Override public void usuarioConectado(String usuario) { }
+        @Override public void usuarioDesconectado(String usuario) { }
+        @Override public void error(String detalle) { }
+        @Override public void conexionPerdida(String motivo) { }
+        @Override public void reconectando(int intento, long esperaMs, String motivo) { }
+        @Override public void reconectado(long ms) { }
+    }
+}
@@ -0,0 +1,164 @@
+package bench;
+
+import cliente.ClienteChat;
+import cliente.Histograma;
+import cliente.OyenteSesion;
+import cliente.SesionesTls;
+import comun.Mensaje;
+import comun.TipoMensaje;
+import prueba.ServidorPrueba;
+
+import javax.net.ssl.SSLContext;
+import java.nio.file.Files;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Un {@link ClienteChat} sin interfaz frente a los fallos que inyecta
+ * {@link ServidorPrueba}: latencia, lectura lenta, cortes periódicos del canal push y una
+ * inundación de mensajes ajenos. En cada escenario el cliente envía mensajes a ritmo fijo
+ * y cuenta los que le vuelven del servidor: latencia de ida y vuelta, perdidos y
+ * duplicados. En los escenarios de reinicio el cliente se cierra a mitad de envío y otro
+ * nuevo vuelve a entrar con el mismo usuario: lo que quedó en la bandeja de salida debe
+ * llegar, una sola vez. Ahí los perdidos se cuentan en el servidor: el eco de lo que estaba
+ * en vuelo al cerrar va al canal que se cierra.
+ *
+ * <p>Uso: {@code java bench.BenchFallos [mensajes] [porSegundo]} (por defecto 300 y 100).
+ */
+public class BenchFallos {
+
+    private record Escenario(String nombre, String envio, Consumer<ServidorPrueba> fallo, boolean reinicio) {
+        Escenario(String nombre, String envio, Consumer<ServidorPrueba> fallo) { this(nombre, envio, fallo, false); }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int mensajes   = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int porSegundo = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        System.setProperty("chat.historial", "false");
+        System.setProperty("chat.reanudar", "true");
+        System.setProperty("chat.salida.dir", Files.createTempDirectory("bench-salida").toString());
+
+        List<Escenario> escenarios = List.of(
+                new Escenario("normal (https)",        "https", srv -> { }),
+                new Escenario("normal (tcp)",          "tcp",   srv -> { }),
+                new Escenario("latencia 50 ms (https)", "https", srv -> srv.setLatencia(50)),
+                new Escenario("latencia 50 ms (tcp)",  "tcp",   srv -> srv.setLatencia(50)),
+                new Escenario("lectura lenta 20 ms",   "tcp",   srv -> srv.setLecturaLenta(20)),
+                new Escenario("corte cada 500 ms",     "https", srv -> srv.cortarCada(500)),
+                new Escenario("corte cada 500 ms (tcp)", "tcp", srv -> srv.cortarCada(500)),
+                new Escenario("reinicio (https)",      "https", srv -> { }, true),
+                new Escenario("reinicio (tcp)",        "tcp",   srv -> { }, true),
+                new Escenario("inundación 50k",        "https", srv -> Thread.ofVirtual().start(() -> {
+                    try { srv.inundar(50_000, 200, 0); } catch (InterruptedException ignored) { }
+                })));
+
+        for (int ronda = 0; ronda < 2; ronda++) {
+            for (Escenario e : escenarios) {
+                try (ServidorPrueba srv = ServidorPrueba.iniciar()) {
+                    Resultado r = ejecutar(srv, e, mensajes, porSegundo);
+                    if (ronda == 0) continue;   // calentamiento
+                    System.out.printf("%-24s %5.1f s  recibidos %4d/%d  perdidos %3d  duplicados %3d  "
+                                    + "ida y vuelta p50 %7.2f ms  p99 %7.2f ms  (ajenos %d, descartados %d)%n",
+                            e.nombre(), r.segundos, r.recibidos, mensajes, r.perdidos,
+                            r.duplicados, r.latencia.getP50Ms(), r.latencia.getP99Ms(), r.ajenos.get(),
+                            srv.getDuplicados());
+                }
+            }
+        }
+    }
+
+    private static Resultado ejecutar(ServidorPrueba srv, Escenario e, int mensajes, int porSegundo) throws Exception {
+        System.setProperty("chat.envio", e.envio());
+        Resultado r = new Resultado(mensajes);
+        ClienteChat cliente = entrar(srv, r);
+        e.fallo().accept(srv);
+
+        long t0 = System.nanoTime();
+        long periodo = 1_000_000_000L / porSegundo;
+        for (int i = 0; i < mensajes; i++) {
+            long previsto = t0 + i * periodo;
+            long espera = previsto - System.nanoTime();
+            if (espera > 0) TimeUnit.NANOSECONDS.sleep(espera);
+            cliente.enviarMensaje(new Mensaje(TipoMensaje.MESSAGE, i + ":" + previsto, "eco"));
+            if (e.reinicio() && i == mensajes / 2) {
+                // Sin esperar a que salga lo encolado: lo que no se confirmó sigue en la bandeja
+                cliente.cerrar();
+                cliente = entrar(srv, r);
+            }
+        }
+        if (e.reinicio()) {
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+            while (srv.getMensajesRecibidos() < mensajes && System.nanoTime() < limite) Thread.sleep(10);
+            r.perdidos = (int) (mensajes - srv.getMensajesRecibidos());
+        } else {
+            r.todos.await(15, TimeUnit.SECONDS);
+            r.perdidos = mensajes - r.recibidos;
+        }
+        r.segundos = (System.nanoTime() - t0) / 1e9;
+        srv.cortarCada(0);
+        cliente.cerrar();
+        return r;
+    }
+
+    /** Un cliente nuevo que entra como {@code eco}; vuelve cuando el login ha terminado. */
+    private static ClienteChat entrar(ServidorPrueba srv, Resultado r) throws Exception {
+        SSLContext ssl = ClienteChat.crearSSLContext(srv.getRutaTruststore());
+        SesionesTls tls = new SesionesTls(ssl);
+        ClienteChat cliente = new ClienteChat("localhost", srv.getPuertoHttps(), tls,
+                ClienteChat.crearTransporte(srv.getBaseUrl(), tls), r);
+        r.dentro = new CountDownLatch(1);
+        cliente.enviarMensaje(new Mensaje(TipoMensaje.LOGIN, "x", "eco"));
+        if (!r.dentro.await(10, TimeUnit.SECONDS)) throw new IllegalStateException("login sin respuesta");
+        return cliente;
+    }
+
+    /** Oyente del cliente: anota cada mensaje propio que vuelve del servidor. */
+    private static final class Resultado implements OyenteSesion {
+        final Histograma     latencia = new Histograma("ida y vuelta");
+        volatile CountDownLatch dentro;
+        final CountDownLatch todos;
+        final BitSet         vistos;
+        final AtomicInteger  ajenos   = new AtomicInteger();
+        int    recibidos;
+        int    duplicados;
+        int    perdidos;
+        double segundos;
+
+        Resultado(int mensajes) {
+            todos  = new CountDownLatch(mensajes);
+            vistos = new BitSet(mensajes);
+        }
+
+        @Override
+        public void mensaje(Mensaje m) {
+            if (!"eco".equals(m.getRemitente())) { ajenos.incrementAndGet(); return; }
+            String c = m.getContenido();
+            int sep = c.indexOf(':');
+            int i = Integer.parseInt(c, 0, sep, 10);
+            long ahora = System.nanoTime();
+            synchronized (this) {
+                if (vistos.get(i)) { duplicados++; return; }
+                vistos.set(i);
+                recibidos++;
+            }
+            latencia.registrar(ahora - Long.parseLong(c, sep + 1, c.length(), 10));
+            todos.countDown();
+        }
+
+        @Override public void loginExitoso(String mensaje)                     { dentro.countDown(); }
+        @Override public void error(String detalle)                            { System.err.println("  error: " + detalle); }
+        @Override public void conexionPerdida(String motivo)                   { System.err.println("  conexión perdida: " + motivo); }
+        @Override public void privado(Mensaje m)                               { }
+        @Override public void union(String usuario, Mensaje m)                 { }
+        @Override public void salida(String usuario, Mensaje m)                { }
+        @Override public void listaUsuarios(List<String> usuarios)             { }
+        @Override public void usuarioConectado(String usuario)                 { }
+        @Override public void usuarioDesconectado(String usuario)              { }
+        @Override public void reconectando(int intento, long esperaMs, String motivo) { }
+        @Override public void reconectado(long ms)                             { }
+    }
+}
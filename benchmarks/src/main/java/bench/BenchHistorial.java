@@ -0,0 +1,69 @@
+package bench;
+
+import cliente.HistorialLocal;
+import comun.Mensaje;
+import comun.TipoMensaje;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Historial local con muchos mensajes: velocidad de escritura, tiempo de apertura, de
+ * la primera página (lo que ve el usuario al entrar) y de páginas hacia atrás al azar.
+ * La apertura no debe depender del número de mensajes guardados.
+ *
+ * <p>Uso: {@code java bench.BenchHistorial [mensajes]} (por defecto 1000000). Trabaja en
+ * un directorio temporal que se borra al terminar.
+ */
+public class BenchHistorial {
+
+    public static void main(String[] args) throws Exception {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path dir = Files.createTempDirectory("bench-historial");
+        try {
+            long t0 = System.nanoTime();
+            try (HistorialLocal h = new HistorialLocal(dir)) {
+                for (int i = 0; i < total; i++) {
+                    h.agregar(new Mensaje(TipoMensaje.MESSAGE,
+                            "Mensaje de prueba número " + i + " con algo de texto", "usuario" + (i % 50)));
+                }
+            }
+            long tEscritura = System.nanoTime() - t0;
+            long bytes;
+            try (Stream<Path> s = Files.list(dir)) {
+                bytes = s.mapToLong(p -> p.toFile().length()).sum();
+            }
+
+            System.out.printf("== Historial local con %,d mensajes (%.1f MB en disco) ==%n", total, bytes / 1e6);
+            System.out.printf("  escritura:                %8.2f µs/msg%n", tEscritura / 1e3 / total);
+
+            for (int ronda = 0; ronda < 3; ronda++) {
+                t0 = System.nanoTime();
+                HistorialLocal h = new HistorialLocal(dir);
+                long tApertura = System.nanoTime() - t0;
+
+                t0 = System.nanoTime();
+                List<Mensaje> ultima = h.leerAnteriores(h.tamano(), 100);
+                long tUltima = System.nanoTime() - t0;
+
+                Random r = new Random(ronda);
+                int paginas = 1_000;
+                t0 = System.nanoTime();
+                for (int i = 0; i < paginas; i++) h.leerAnteriores(1 + r.nextInt(total), 100);
+                long tPaginas = (System.nanoTime() - t0) / paginas;
+                h.close();
+
+                System.out.printf("  ronda %d: apertura %7.2f ms  última página (%d) %7.2f ms  página al azar %7.2f ms%n",
+                        ronda + 1, tApertura / 1e6, ultima.size(), tUltima / 1e6, tPaginas / 1e6);
+            }
+        } finally {
+            try (Stream<Path> s = Files.walk(dir)) {
+                s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package bench;
+
+import cliente.ClienteChat;
+import cliente.TransporteHttp;
+import cliente.TransporteHttpClasico;
+import cliente.TransporteHttpPersistente;
+
+import javax.net.ssl.SSLContext;
+import java.util.Arrays;
+
+/**
+ * Compara la latencia de {@link TransporteHttpClasico} (conexión nueva por petición)
+ * con {@link TransporteHttpPersistente} (conexiones keep-alive reutilizadas).
+ *
+ * <p>Uso: {@code java -Dssl.truststore.path=certs/truststore.jks bench.BenchHttp host puerto [peticiones] [ruta] [cuerpo]}.
+ * Por defecto hace 500 POST a {@code /login} con credenciales inexistentes, que el
+ * servidor rechaza sin efectos secundarios.
+ */
+public class BenchHttp {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Uso: BenchHttp host puerto [peticiones] [ruta] [cuerpo]");
+            System.exit(2);
+        }
+        String baseUrl    = "https://" + args[0] + ":" + args[1];
+        int    peticiones = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        String ruta       = args.length > 3 ? args[3] : "/login";
+        String cuerpo     = args.length > 4 ? args[4] : "usuario=bench-inexistente&password=x";
+
+        SSLContext ssl = ClienteChat.crearSSLContext(System.getProperty("ssl.truststore.path", "certs/truststore.jks"));
+        medir("clasico    ", new TransporteHttpClasico(baseUrl, ssl), peticiones, ruta, cuerpo);
+        medir("persistente", new TransporteHttpPersistente(baseUrl, ssl), peticiones, ruta, cuerpo);
+    }
+
+    static void medir(String nombre, TransporteHttp t, int n, String ruta, String cuerpo) throws Exception {
+        for (int i = 0; i < Math.min(50, n); i++) t.post(ruta, cuerpo);   // calentamiento JIT
+        long[] lat = new long[n];
+        long inicio = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            long t0 = System.nanoTime();
+            t.post(ruta, cuerpo);
+            lat[i] = System.nanoTime() - t0;
+        }
+        double seg = (System.nanoTime() - inicio) / 1e9;
+        Arrays.sort(lat);
+        System.out.printf("%s  %6.0f pet/s  p50 %7.2f ms  p90 %7.2f ms  p99 %7.2f ms%n",
+                nombre, n / seg, lat[n / 2] / 1e6, lat[n * 9 / 10] / 1e6, lat[n * 99 / 100] / 1e6);
+    }
+}
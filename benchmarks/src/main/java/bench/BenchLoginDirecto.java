@@ -0,0 +1,123 @@
+package bench;
+
+import cliente.CanalPush;
+import cliente.ClienteChat;
+import cliente.OyenteChat;
+import cliente.SesionesTls;
+import cliente.TransporteHttp;
+import cliente.TransporteHttpPersistente;
+import comun.Mensaje;
+import comun.TipoMensaje;
+import prueba.ServidorPrueba;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencia desde el login hasta el primer mensaje push contra {@link ServidorPrueba},
+ * con un {@link SSLContext} nuevo en cada login (como al arrancar el cliente):
+ *
+ * <ul>
+ *   <li><b>dos pasos</b>: {@code POST /login} y después el canal push.</li>
+ *   <li><b>directo</b>: login en el propio canal push ({@code -Dchat.login=push}).</li>
+ *   <li><b>token</b>: reconexión en el canal con el token de la sesión directa.</li>
+ * </ul>
+ *
+ * <p>No hay caso «directo fallido → dos pasos»: el cliente no envía la contraseña por el
+ * canal a un servidor que no haya aceptado antes {@code login=directo}, así que contra uno
+ * sin soporte el primer login ya es el de dos pasos.
+ *
+ * <p>Uso: {@code java bench.BenchLoginDirecto [logins]} (por defecto 50).
+ */
+public class BenchLoginDirecto {
+
+    private enum Modo { DOS_PASOS, DIRECTO, TOKEN }
+
+    public static void main(String[] args) throws Exception {
+        int logins = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+
+        try (ServidorPrueba srv = ServidorPrueba.iniciar()) {
+            for (int ronda = 0; ronda < 3; ronda++) {
+                for (Modo modo : Modo.values()) {
+                    long[] latencias = new long[logins];
+                    for (int i = 0; i < logins; i++) {
+                        latencias[i] = login(srv, modo, "bench" + i);
+                    }
+                    if (ronda < 2) continue;   // las dos primeras calientan el JIT
+
+                    Arrays.sort(latencias);
+                    System.out.printf("%-20s login→primer push: mediana %6.2f ms  p90 %6.2f ms%n",
+                            nombre(modo), latencias[logins / 2] / 1e6, latencias[logins * 9 / 10] / 1e6);
+                }
+            }
+        }
+    }
+
+    /** Un login completo en el modo indicado; devuelve los nanos hasta el primer push. */
+    private static long login(ServidorPrueba srv, Modo modo, String usuario) throws Exception {
+        SSLContext ssl = ClienteChat.crearSSLContext(srv.getRutaTruststore());
+        SesionesTls tls = new SesionesTls(ssl);
+        TransporteHttp http = new TransporteHttpPersistente(srv.getBaseUrl(), ssl);
+        Primero primero = new Primero();
+        CanalPush canal;
+
+        long t0 = System.nanoTime();
+        switch (modo) {
+            case DOS_PASOS -> canal = dosPasos(tls, http, usuario, primero);
+            case DIRECTO   -> canal = directo(tls, srv.getPuertoTcp(), usuario, TipoMensaje.LOGIN, "x", -1, primero);
+            default -> {
+                CanalPush previo = directo(tls, srv.getPuertoTcp(), usuario, TipoMensaje.LOGIN, "x", -1, new Primero());
+                String token = previo.token();
+                long desde = previo.ultimaSecuencia();
+                previo.cerrar();
+                t0 = System.nanoTime();
+                canal = directo(tls, srv.getPuertoTcp(), usuario, TipoMensaje.TOKEN, token, desde, primero);
+            }
+        }
+        if (!primero.llegada.await(10, TimeUnit.SECONDS)) throw new IllegalStateException("sin push");
+        long nanos = System.nanoTime() - t0;
+        canal.cerrar();
+        return nanos;
+    }
+
+    private static CanalPush dosPasos(SesionesTls tls, TransporteHttp http, String usuario, OyenteChat oyente)
+            throws IOException {
+        String[] partes = http.post("/login", "usuario=" + usuario + "&password=x").split("\\|", 3);
+        return CanalPush.abrir(tls, "localhost", Integer.parseInt(partes[1].trim()), usuario, oyente, null, -1, null);
+    }
+
+    private static CanalPush directo(SesionesTls tls, int puerto, String usuario, TipoMensaje tipo, String secreto,
+                                     long desde, OyenteChat oyente) throws IOException {
+        return CanalPush.abrirDirecto(tls.conectar("localhost", puerto, "push"), usuario, tipo, secreto,
+                oyente, null, desde, null);
+    }
+
+    private static String nombre(Modo modo) {
+        return switch (modo) {
+            case DOS_PASOS -> "dos pasos";
+            case DIRECTO   -> "directo";
+            case TOKEN     -> "reconexión con token";
+        };
+    }
+
+    /** Oyente que solo espera al primer evento del canal. */
+    private static final class Primero implements OyenteChat {
+        final CountDownLatch llegada = new CountDownLatch(1);
+
+        @Override public void mensaje(Mensaje m) { llegada.countDown(); }
+        @Override public void privado(Mensaje m) { llegada.countDown(); }
+        @Override public void union(String usuario, Mensaje m) { llegada.countDown(); }
+        @Override public void salida(String usuario, Mensaje m) { }
+        @Override public void listaUsuarios(List<String> usuarios) { llegada.countDown(); }
+        @Override public void usuarioConectado(String usuario) { llegada.countDown(); }
+        @Override public void usuarioDesconectado(String usuario) { }
+        @Override public void error(String detalle) { }
+        @Override public void conexionPerdida(String motivo) { }
+        @Override public void reconectando(int intento, long esperaMs, String motivo) { }
+        @Override public void reconectado(long ms) { }
+    }
+}
@@ -0,0 +1,88 @@
+package bench;
+
+import cliente.AgrupadorMensajes;
+import cliente.ClienteChat;
+import cliente.TransporteHttp;
+import cliente.TransporteHttpPersistente;
+import comun.Mensaje;
+import comun.TipoMensaje;
+import prueba.ServidorPrueba;
+
+import javax.net.ssl.SSLContext;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Throughput de envío contra {@link ServidorPrueba}: un {@code POST /mensaje} por
+ * mensaje frente a lotes {@code POST /mensajes} formados por {@link AgrupadorMensajes}.
+ *
+ * <p>Uso: {@code java bench.BenchLotes [mensajes] [tamañoLote]} (por defecto 5000 y 32).
+ */
+public class BenchLotes {
+
+    public static void main(String[] args) throws Exception {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int lote  = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+
+        try (ServidorPrueba srv = ServidorPrueba.iniciar()) {
+            SSLContext ssl = ClienteChat.crearSSLContext(srv.getRutaTruststore());
+            TransporteHttp http = new TransporteHttpPersistente(srv.getBaseUrl(), ssl);
+
+            // El servidor solo acepta mensajes de usuarios con canal push abierto
+            Socket push = ssl.getSocketFactory().createSocket("localhost", srv.getPuertoTcp());
+            push.getOutputStream().write("bench\n".getBytes(StandardCharsets.UTF_8));
+            push.getOutputStream().flush();
+            Thread.ofVirtual().start(() -> drenar(push));
+            while (srv.getSesionesActivas() == 0) Thread.sleep(5);
+
+            unoPorPeticion(http, srv, 200);     // calentamiento
+            porLotes(http, srv, 200, lote);
+
+            double individual = unoPorPeticion(http, srv, total);
+            double agrupado   = porLotes(http, srv, total, lote);
+            System.out.printf("un POST por mensaje : %8.0f msg/s%n", individual);
+            System.out.printf("lotes de %-3d        : %8.0f msg/s  (x%.1f)%n", lote, agrupado, agrupado / individual);
+            push.close();
+        }
+    }
+
+    private static double unoPorPeticion(TransporteHttp http, ServidorPrueba srv, int n) throws Exception {
+        long base = srv.getMensajesRecibidos();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < n; i++) http.post("/mensaje", "usuario=bench&contenido=mensaje+" + i);
+        esperar(srv, base + n);
+        return n / ((System.nanoTime() - t0) / 1e9);
+    }
+
+    private static double porLotes(TransporteHttp http, ServidorPrueba srv, int n, int tam) throws Exception {
+        long base = srv.getMensajesRecibidos();
+        long t0 = System.nanoTime();
+        List<Mensaje> actual = new ArrayList<>(tam);
+        for (int i = 0; i < n; i++) {
+            actual.add(new Mensaje(TipoMensaje.MESSAGE, "mensaje " + i, "bench"));
+            if (actual.size() == tam || i == n - 1) {
+                String r = http.post("/mensajes", AgrupadorMensajes.cuerpoLote("bench", actual));
+                for (String error : AgrupadorMensajes.confirmaciones(r, actual.size())) {
+                    if (error != null) throw new IllegalStateException("Lote rechazado: " + error);
+                }
+                actual.clear();
+            }
+        }
+        esperar(srv, base + n);
+        return n / ((System.nanoTime() - t0) / 1e9);
+    }
+
+    private static void esperar(ServidorPrueba srv, long objetivo) throws InterruptedException {
+        while (srv.getMensajesRecibidos() < objetivo) Thread.sleep(1);
+    }
+
+    private static void drenar(Socket s) {
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = s.getInputStream()) {
+            while (in.read(buf) != -1) { /* descartar difusión */ }
+        } catch (Exception ignored) {}
+    }
+}
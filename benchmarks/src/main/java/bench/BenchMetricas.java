@@ -0,0 +1,51 @@
+package bench;
+
+import cliente.Histograma;
+import cliente.Metricas;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Coste de registrar en {@link Metricas} desde el camino caliente: un mensaje recibido
+ * (contador) más una latencia ({@link Histograma}) por operación, con 1 a N hilos
+ * escribiendo a la vez en los mismos contadores.
+ *
+ * <p>Uso: {@code java bench.BenchMetricas [operacionesPorHilo]} (por defecto 5000000).
+ */
+public class BenchMetricas {
+
+    public static void main(String[] args) throws Exception {
+        int ops = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int maxHilos = Runtime.getRuntime().availableProcessors();
+        Histograma h = Metricas.INSTANCIA.histograma("bench");
+
+        for (int ronda = 0; ronda < 2; ronda++) {
+            for (int hilos = 1; hilos <= maxHilos; hilos *= 2) {
+                h.reiniciar();
+                CountDownLatch salida = new CountDownLatch(1);
+                List<Thread> lista = new ArrayList<>();
+                for (int t = 0; t < hilos; t++) {
+                    long semilla = t;
+                    lista.add(Thread.ofPlatform().start(() -> {
+                        try { salida.await(); } catch (InterruptedException e) { return; }
+                        long v = semilla;
+                        for (int i = 0; i < ops; i++) {
+                            Metricas.INSTANCIA.recibido();
+                            h.registrar(v & 0xFFFFF);
+                            v = v * 6364136223846793005L + 1442695040888963407L;
+                        }
+                    }));
+                }
+                long t0 = System.nanoTime();
+                salida.countDown();
+                for (Thread t : lista) t.join();
+                long dt = System.nanoTime() - t0;
+                if (ronda == 0) continue;   // calentamiento
+                System.out.printf("%2d hilos: %6.1f ns/op por hilo   (%d registros, p50 %.3f ms)%n",
+                        hilos, dt / (double) ops, h.getCuenta(), h.getP50Ms());
+            }
+        }
+    }
+}
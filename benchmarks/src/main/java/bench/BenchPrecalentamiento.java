@@ -0,0 +1,105 @@
+package bench;
+
+import cliente.CanalPush;
+import cliente.ClienteChat;
+import cliente.OyenteChat;
+import cliente.Precalentamiento;
+import cliente.SesionesTls;
+import cliente.TransporteHttp;
+import cliente.TransporteHttpPersistente;
+import comun.Mensaje;
+import prueba.ServidorPrueba;
+
+import javax.net.ssl.SSLContext;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencia desde el clic en «Iniciar sesión» hasta el primer mensaje push, sin y con
+ * {@link Precalentamiento}. Cada login empieza con un {@link SSLContext} nuevo (como al
+ * arrancar el cliente) y deja {@value #ESCRITURA_MS} ms de «usuario escribiendo» entre
+ * el contexto listo y el clic, que es cuando trabaja el precalentamiento.
+ *
+ * <p>También mide cuánto tarda {@link Precalentamiento#contexto} en dejar listo el
+ * contexto TLS con JSSE inicializado: es el tiempo que ahora se solapa con la
+ * construcción de la ventana en lugar de precederla.
+ *
+ * <p>Uso: {@code java bench.BenchPrecalentamiento [logins]} (por defecto 30).
+ */
+public class BenchPrecalentamiento {
+
+    private static final long ESCRITURA_MS = 300;
+
+    public static void main(String[] args) throws Exception {
+        int logins = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+
+        try (ServidorPrueba srv = ServidorPrueba.iniciar()) {
+            for (int ronda = 0; ronda < 3; ronda++) {
+                for (boolean precalentar : new boolean[] { false, true }) {
+                    long[] latencias = new long[logins];
+                    long[] contextos = new long[logins];
+                    long completos = 0, reanudados = 0;
+                    for (int i = 0; i < logins; i++) {
+                        long c0 = System.nanoTime();
+                        SSLContext ssl = Precalentamiento.esperar(Precalentamiento.contexto(
+                                () -> ClienteChat.crearSSLContext(srv.getRutaTruststore())));
+                        contextos[i] = System.nanoTime() - c0;
+                        SesionesTls tls = new SesionesTls(ssl);
+                        TransporteHttp http = new TransporteHttpPersistente(srv.getBaseUrl(), ssl);
+                        Precalentamiento pre = null;
+                        if (precalentar) {
+                            pre = new Precalentamiento(tls, http, "localhost", srv.getPuertoTcp());
+                            pre.iniciar();
+                        }
+                        Thread.sleep(ESCRITURA_MS);
+                        Primero primero = new Primero();
+                        String usuario = "bench" + i;
+
+                        long t0 = System.nanoTime();
+                        String[] partes = http.post("/login", "usuario=" + usuario + "&password=x").split("\\|", 3);
+                        int puerto = Integer.parseInt(partes[1].trim());
+                        Socket preabierto = pre != null ? pre.tomarPush(puerto) : null;
+                        CanalPush canal = preabierto != null
+                                ? CanalPush.abrir(preabierto, usuario, primero, null, -1, null)
+                                : CanalPush.abrir(tls, "localhost", puerto, usuario, primero, null, -1, null);
+                        if (!primero.llegada.await(10, TimeUnit.SECONDS)) throw new IllegalStateException("sin push");
+                        latencias[i] = System.nanoTime() - t0;
+
+                        canal.cerrar();
+                        completos  += tls.getCompletos();
+                        reanudados += tls.getReanudados();
+                    }
+                    if (ronda < 2) continue;   // las dos primeras calientan el JIT
+
+                    Arrays.sort(latencias);
+                    Arrays.sort(contextos);
+                    System.out.printf("%-18s clic→primer push: mediana %6.2f ms  p90 %6.2f ms | "
+                                    + "contexto TLS + JSSE %6.2f ms | handshakes %d completos, %d reanudados%n",
+                            precalentar ? "con precalentamiento" : "sin precalentamiento",
+                            latencias[logins / 2] / 1e6, latencias[logins * 9 / 10] / 1e6,
+                            contextos[logins / 2] / 1e6, completos, reanudados);
+                }
+            }
+        }
+    }
+
+    /** Oyente que solo espera al primer evento del canal. */
+    private static final class Primero implements OyenteChat {
+        final CountDownLatch llegada = new CountDownLatch(1);
+
+        @Override public void mensaje(Mensaje m) { llegada.countDown(); }
+        @Override public void privado(Mensaje m) { llegada.countDown(); }
+        @Override public void union(String usuario, Mensaje m) { llegada.countDown(); }
+        @Override public void salida(String usuario, Mensaje m) { }
+        @Override public void listaUsuarios(List<String> usuarios) { llegada.countDown(); }
+        @Override public void usuarioConectado(String usuario) { llegada.countDown(); }
+        @Override public void usuarioDesconectado(String usuario) { }
+        @Override public void error(String detalle) { }
+        @Override public void conexionPerdida(String motivo) { }
+        @Override public void reconectando(int intento, long esperaMs, String motivo) { }
+        @Override public void reconectado(long ms) { }
+    }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import cliente.ModeloUsuariosOrdenado;
+
+import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Compara el coste en la barra lateral de una alta/baja de presencia con N usuarios:
+ * lista completa aplicada con {@code clear()} + {@code addElement()} (comportamiento
+ * anterior) frente a delta sobre {@link ModeloUsuariosOrdenado}. Cuenta también las filas
+ * notificadas a los oyentes y los bytes de la lista que viajarían por la red.
+ *
+ * <p>Uso: {@code java bench.BenchPresencia [usuarios] [cambios]} (por defecto 5000 y 2000).
+ */
+public class BenchPresencia {
+
+    public static void main(String[] args) throws Exception {
+        int usuarios = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int cambios  = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        List<String> nombres = new ArrayList<>();
+        for (int i = 0; i < usuarios; i++) nombres.add("usuario" + i);
+
+        SwingUtilities.invokeAndWait(() -> {
+            for (int ronda = 0; ronda < 3; ronda++) {
+                boolean imprimir = ronda == 2;   // las dos primeras calientan el JIT
+
+                // ── Lista completa en cada cambio ────────────────────────────
+                DefaultListModel<String> completo = new DefaultListModel<>();
+                Contador cc = new Contador();
+                completo.addListDataListener(cc);
+                TreeSet<String> conectados = new TreeSet<>(nombres);
+                long bytes = 0;
+                long t0 = System.nanoTime();
+                for (int i = 0; i < cambios; i++) {
+                    String u = "nuevo" + i;
+                    if (!conectados.add(u)) conectados.remove(u);
+                    String csv = String.join(",", conectados);
+                    bytes += csv.length();
+                    completo.clear();
+                    for (String n : csv.split(",")) completo.addElement(n.trim());
+                }
+                long tCompleto = System.nanoTime() - t0;
+
+                // ── Deltas ───────────────────────────────────────────────────
+                ModeloUsuariosOrdenado delta = new ModeloUsuariosOrdenado();
+                delta.reemplazar(nombres);
+                Contador cd = new Contador();
+                delta.addListDataListener(cd);
+                long bytesDelta = 0;
+                t0 = System.nanoTime();
+                for (int i = 0; i < cambios; i++) {
+                    String u = "nuevo" + i;
+                    bytesDelta += u.length();
+                    if (!delta.agregar(u)) delta.quitar(u);
+                }
+                long tDelta = System.nanoTime() - t0;
+
+                if (imprimir) {
+                    System.out.printf("== %d usuarios, %d cambios de presencia ==%n", usuarios, cambios);
+                    System.out.printf("  lista completa: %8.2f µs/cambio  %9d filas notificadas  %8d B/cambio%n",
+                            tCompleto / 1e3 / cambios, cc.filas, bytes / cambios);
+                    System.out.printf("  delta:          %8.2f µs/cambio  %9d filas notificadas  %8d B/cambio%n",
+                            tDelta / 1e3 / cambios, cd.filas, bytesDelta / cambios);
+                }
+            }
+        });
+    }
+
+    private static final class Contador implements ListDataListener {
+        long filas;
+        @Override public void intervalAdded(ListDataEvent e)   { filas += e.getIndex1() - e.getIndex0() + 1; }
+        @Override public void intervalRemoved(ListDataEvent e) { filas += e.getIndex1() - e.getIndex0() + 1; }
+        @Override public void contentsChanged(ListDataEvent e) { filas += e.getIndex1() - e.getIndex0() + 1; }
+    }
+}
@@ -0,0 +1,175 @@
+package bench;
+
+import cliente.CanalPush;
+import cliente.ClienteChat;
+import cliente.OyenteChat;
+import cliente.PoliticaReintento;
+import cliente.SesionesTls;
+import cliente.TransporteHttp;
+import cliente.TransporteHttpPersistente;
+import comun.Mensaje;
+import prueba.ServidorPrueba;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tiempo de recuperación tras cortar el canal push desde {@link ServidorPrueba}, con
+ * otro usuario enviando mensajes sin parar durante los cortes.
+ *
+ * <p>El lector reconecta igual que {@code ClienteChat}: repite {@code /login}, abre un
+ * {@link CanalPush} nuevo con el último número de secuencia recibido y espera según
+ * {@link PoliticaReintento}. Se mide desde el corte hasta tener el canal nuevo abierto y,
+ * al final, se comprueba que el lector recibió todos los mensajes una sola vez y en orden.
+ *
+ * <p>Uso: {@code java bench.BenchReconexion [cortes]} (por defecto 20).
+ */
+public class BenchReconexion {
+
+    public static void main(String[] args) throws Exception {
+        int cortes = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        System.setProperty("chat.reanudar", "true");
+
+        try (ServidorPrueba srv = ServidorPrueba.iniciar()) {
+            SSLContext ssl = ClienteChat.crearSSLContext(srv.getRutaTruststore());
+            TransporteHttp http = new TransporteHttpPersistente(srv.getBaseUrl(), ssl);
+
+            // El emisor necesita canal abierto para que el servidor acepte sus mensajes
+            Socket push = ssl.getSocketFactory().createSocket("localhost", srv.getPuertoTcp());
+            push.getOutputStream().write("emisor\n".getBytes(StandardCharsets.UTF_8));
+            push.getOutputStream().flush();
+            Thread.ofVirtual().start(() -> drenar(push));
+            while (srv.getSesionesActivas() == 0) Thread.sleep(5);
+
+            Lector lector = new Lector(ssl, http);
+            lector.conectar();
+
+            AtomicBoolean enviando = new AtomicBoolean(true);
+            long[] enviados = new long[1];
+            Thread emisor = Thread.ofVirtual().start(() -> {
+                try {
+                    while (enviando.get()) {
+                        http.post("/mensaje", "usuario=emisor&contenido=" + enviados[0]);
+                        enviados[0]++;
+                        Thread.sleep(1);
+                    }
+                } catch (Exception e) {
+                    System.err.println("[emisor] " + e);
+                }
+            });
+
+            long[] recuperacion = new long[cortes];
+            for (int i = 0; i < cortes; i++) {
+                Thread.sleep(200);
+                CountDownLatch reconectado = lector.esperarReconexion();
+                long t0 = System.nanoTime();
+                srv.cortarConexion("lector");
+                if (!reconectado.await(30, TimeUnit.SECONDS)) throw new IllegalStateException("no reconectó");
+                recuperacion[i] = System.nanoTime() - t0;
+            }
+
+            enviando.set(false);
+            emisor.join();
+            long fin = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (lector.recibidos() < enviados[0] && System.nanoTime() < fin) Thread.sleep(10);
+
+            Arrays.sort(recuperacion);
+            System.out.printf("== %d cortes del canal push, %d mensajes enviados durante la prueba ==%n",
+                    cortes, enviados[0]);
+            System.out.printf("  recuperación: mediana %6.2f ms  p90 %6.2f ms  máx %6.2f ms%n",
+                    recuperacion[cortes / 2] / 1e6, recuperacion[cortes * 9 / 10] / 1e6, recuperacion[cortes - 1] / 1e6);
+            System.out.printf("  recibidos: %d  perdidos: %d  duplicados o desordenados: %d%n",
+                    lector.recibidos(), lector.perdidos(enviados[0]), lector.desordenados());
+            lector.cerrar();
+            push.close();
+        }
+    }
+
+    /** Cliente que solo lee, con la misma secuencia de reconexión que {@code ClienteChat}. */
+    private static final class Lector implements OyenteChat {
+        private final SesionesTls    tls;
+        private final TransporteHttp http;
+        private final PoliticaReintento politica = new PoliticaReintento(50, 2_000, 20);
+        private final List<Long>     contenidos = new ArrayList<>();
+        private volatile CanalPush   canal;
+        private volatile CountDownLatch reconexion = new CountDownLatch(0);
+
+        Lector(SSLContext ssl, TransporteHttp http) {
+            this.tls  = new SesionesTls(ssl);
+            this.http = http;
+        }
+
+        void conectar() throws IOException { canal = abrir(-1); }
+
+        CountDownLatch esperarReconexion() { return reconexion = new CountDownLatch(1); }
+
+        private CanalPush abrir(long desde) throws IOException {
+            String[] partes = http.post("/login", "usuario=lector&password=x").split("\\|", 3);
+            int puerto = Integer.parseInt(partes[1].trim());
+            return CanalPush.abrir(tls, "localhost", puerto, "lector", this, null, desde, this::caido);
+        }
+
+        private void caido(String motivo) {
+            long desde = canal.ultimaSecuencia();
+            canal.cerrar();
+            Thread.ofVirtual().start(() -> {
+                try {
+                    if (politica.ejecutar(() -> canal = abrir(desde), () -> false, (n, espera, causa) -> { })) {
+                        reconexion.countDown();
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            });
+        }
+
+        synchronized int recibidos() { return contenidos.size(); }
+
+        synchronized long perdidos(long enviados) {
+            return enviados - contenidos.stream().distinct().count();
+        }
+
+        /** Mensajes que no llegaron justo después del anterior. */
+        synchronized long desordenados() {
+            long malos = 0;
+            for (int i = 1; i < contenidos.size(); i++) {
+                if (contenidos.get(i) != contenidos.get(i - 1) + 1) malos++;
+            }
+            return malos;
+        }
+
+        void cerrar() { canal.cerrar(); }
+
+        @Override
+        public synchronized void mensaje(Mensaje m) {
+            if ("emisor".equals(m.getRemitente())) contenidos.add(Long.parseLong(m.getContenido()));
+        }
+
+        @Override public void privado(Mensaje m) { }
+        @Override public void union(String usuario, Mensaje m) { }
+        @Override public void salida(String usuario, Mensaje m) { }
+        @Override public void listaUsuarios(List<String> usuarios) { }
+        @Override public void usuarioConectado(String usuario) { }
+        @Override public void usuarioDesconectado(String usuario) { }
+        @Override public void error(String detalle) { System.err.println("[lector] " + detalle); }
+        @Override public void conexionPerdida(String motivo) { System.err.println("[lector] perdida: " + motivo); }
+        @Override public void reconectando(int intento, long esperaMs, String motivo) { }
+        @Override public void reconectado(long ms) { }
+    }
+
+    private static void drenar(Socket s) {
+        try (InputStream in = s.getInputStream()) {
+            byte[] b = new byte[8192];
+            while (in.read(b) != -1) { /* descartar */ }
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package bench;
+
+import cliente.DocumentoChatHtml;
+import cliente.DocumentoChatHtml.ModoRenderizado;
+import cliente.HtmlBurbuja;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Mide la latencia por mensaje de {@link DocumentoChatHtml} a medida que crece la
+ * conversación, en los dos modos de renderizado.
+ *
+ * <p>Cada iteración inserta una burbuja y fuerza la maquetación del documento
+ * (equivalente a lo que hace el EDT antes de pintar). Se imprime la media por
+ * mensaje de cada bloque, de modo que una curva plana indica coste constante.
+ *
+ * <p>Uso: {@code java -Djava.awt.headless=true bench.BenchRenderizado [mensajes] [bloque] [maxCompleto]}
+ * (por defecto 50000, 5000 y 1000; el modo completo es O(n²) y se limita aparte).
+ */
+public class BenchRenderizado {
+
+    public static void main(String[] args) throws Exception {
+        int total       = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int bloque      = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        int maxCompleto = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+
+        medir(ModoRenderizado.INCREMENTAL, total, bloque);
+        medir(ModoRenderizado.COMPLETO, Math.min(total, maxCompleto), Math.min(bloque, 1_000));
+    }
+
+    private static void medir(ModoRenderizado modo, int total, int bloque) throws Exception {
+        System.out.println("== Modo " + modo + " (" + total + " mensajes) ==");
+        System.out.println("  desde..hasta      media µs/msg   máx µs/msg");
+        SwingUtilities.invokeAndWait(() -> {
+            JTextPane pane = new JTextPane();
+            pane.setContentType("text/html");
+            pane.setSize(new Dimension(640, 480));
+            DocumentoChatHtml doc = new DocumentoChatHtml(pane, modo);
+
+            long suma = 0, max = 0;
+            for (int i = 1; i <= total; i++) {
+                String html = burbuja(i);
+                long t0 = System.nanoTime();
+                doc.agregar(html);
+                pane.getPreferredSize();
+                long dt = System.nanoTime() - t0;
+                suma += dt;
+                max = Math.max(max, dt);
+                if (i % bloque == 0) {
+                    System.out.printf("  %6d..%-6d  %12.1f  %11.1f%n",
+                            i - bloque + 1, i, suma / 1_000.0 / bloque, max / 1_000.0);
+                    suma = 0;
+                    max  = 0;
+                }
+            }
+        });
+    }
+
+    /** Burbuja ajena representativa, con el HTML real de la interfaz. */
+    private static String burbuja(int i) {
+        return HtmlBurbuja.ajena("usuario" + (i % 50), "Mensaje de prueba número " + i, "12:34:56");
+    }
+}
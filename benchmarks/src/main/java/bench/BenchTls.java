@@ -0,0 +1,96 @@
+package bench;
+
+import cliente.CanalPush;
+import cliente.ClienteChat;
+import cliente.OyenteChat;
+import cliente.SesionesTls;
+import cliente.TransporteHttp;
+import cliente.TransporteHttpPersistente;
+import comun.Mensaje;
+import prueba.ServidorPrueba;
+
+import javax.net.ssl.SSLContext;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencia desde el {@code POST /login} hasta el primer mensaje push, con un
+ * {@link SSLContext} nuevo en cada cliente (como al arrancar), en el primer canal push
+ * (handshake completo) y al reconectar (login otra vez y canal nuevo, que reanuda la
+ * sesión push anterior desde la caché de {@link SesionesTls}).
+ * Cuenta los handshakes completos y reanudados y el tiempo de CPU del proceso (cliente y
+ * {@link ServidorPrueba} juntos) por login.
+ *
+ * <p>Uso: {@code java bench.BenchTls [logins]} (por defecto 50).
+ */
+public class BenchTls {
+
+    private static final String[] FASES = { "primer canal", "reconexión" };
+
+    public static void main(String[] args) throws Exception {
+        int logins = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+        try (ServidorPrueba srv = ServidorPrueba.iniciar()) {
+            for (int ronda = 0; ronda < 3; ronda++) {
+                long[][] latencias = new long[FASES.length][logins];
+                long[] completos = new long[FASES.length], reanudados = new long[FASES.length];
+                long[] nanosHandshake = new long[FASES.length], cpu = new long[FASES.length];
+                for (int i = 0; i < logins; i++) {
+                    SSLContext ssl = ClienteChat.crearSSLContext(srv.getRutaTruststore());
+                    SesionesTls tls = new SesionesTls(ssl);
+                    TransporteHttp http = new TransporteHttpPersistente(srv.getBaseUrl(), ssl);
+                    for (int fase = 0; fase < FASES.length; fase++) {
+                        long completos0 = tls.getCompletos(), reanudados0 = tls.getReanudados();
+                        long nanos0 = tls.getNanosHandshake(), cpu0 = os.getProcessCpuTime();
+                        Primero primero = new Primero();
+
+                        long t0 = System.nanoTime();
+                        String[] partes = http.post("/login", "usuario=bench" + i + "&password=x").split("\\|", 3);
+                        CanalPush canal = CanalPush.abrir(tls, "localhost", Integer.parseInt(partes[1].trim()),
+                                "bench" + i, primero, null, -1, null);
+                        if (!primero.llegada.await(10, TimeUnit.SECONDS)) throw new IllegalStateException("sin push");
+                        latencias[fase][i] = System.nanoTime() - t0;
+
+                        canal.cerrar();
+                        cpu[fase]            += os.getProcessCpuTime() - cpu0;
+                        completos[fase]      += tls.getCompletos() - completos0;
+                        reanudados[fase]     += tls.getReanudados() - reanudados0;
+                        nanosHandshake[fase] += tls.getNanosHandshake() - nanos0;
+                    }
+                }
+                if (ronda < 2) continue;   // las dos primeras calientan el JIT
+
+                for (int fase = 0; fase < FASES.length; fase++) {
+                    Arrays.sort(latencias[fase]);
+                    System.out.printf("%-13s login→primer push: mediana %6.2f ms  p90 %6.2f ms | "
+                                    + "handshake push %6.2f ms (%d completos, %d reanudados) | CPU %6.2f ms/login%n",
+                            FASES[fase], latencias[fase][logins / 2] / 1e6, latencias[fase][logins * 9 / 10] / 1e6,
+                            nanosHandshake[fase] / 1e6 / logins, completos[fase], reanudados[fase],
+                            cpu[fase] / 1e6 / logins);
+                }
+            }
+        }
+    }
+
+    /** Oyente que solo espera al primer evento del canal. */
+    private static final class Primero implements OyenteChat {
+        final CountDownLatch llegada = new CountDownLatch(1);
+
+        @Override public void mensaje(Mensaje m) { llegada.countDown(); }
+        @Override public void privado(Mensaje m) { llegada.countDown(); }
+        @Override public void union(String usuario, Mensaje m) { llegada.countDown(); }
+        @Override public void salida(String usuario, Mensaje m) { }
+        @Override public void listaUsuarios(List<String> usuarios) { llegada.countDown(); }
+        @Override public void usuarioConectado(String usuario) { llegada.countDown(); }
+        @Override public void usuarioDesconectado(String usuario) { }
+        @Override public void error(String detalle) { }
+        @Override public void conexionPerdida(String motivo) { }
+        @Override public void reconectando(int intento, long esperaMs, String motivo) { }
+        @Override public void reconectado(long ms) { }
+    }
+}
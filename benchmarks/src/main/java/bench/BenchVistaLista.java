@@ -0,0 +1,53 @@
+package bench;
+
+import cliente.Burbuja;
+import cliente.ModeloMensajesAcotado;
+import cliente.RenderizadorBurbuja;
+
+import javax.swing.*;
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Alimenta la vista de lista virtualizada con muchos mensajes y muestra, por bloque,
+ * la latencia media por mensaje y el heap ocupado tras un GC. Con retención acotada
+ * ambas cifras deben estabilizarse en cuanto el modelo alcanza su capacidad.
+ *
+ * <p>Uso: {@code java -Djava.awt.headless=true bench.BenchVistaLista [mensajes] [capacidad]}
+ * (por defecto 200000 y 2000).
+ */
+public class BenchVistaLista {
+
+    public static void main(String[] args) throws Exception {
+        int total     = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int capacidad = args.length > 1 ? Integer.parseInt(args[1]) : ModeloMensajesAcotado.CAPACIDAD_DEFAULT;
+        int bloque    = total / 10;
+        MemoryMXBean memoria = ManagementFactory.getMemoryMXBean();
+
+        System.out.println("== Lista virtualizada, capacidad " + capacidad + " ==");
+        System.out.println("  hasta       media µs/msg   heap tras GC (MB)");
+        SwingUtilities.invokeAndWait(() -> {
+            ModeloMensajesAcotado modelo = new ModeloMensajesAcotado(capacidad);
+            JList<Burbuja> lista = new JList<>(modelo);
+            RenderizadorBurbuja.instalar(lista);
+            lista.setSize(new Dimension(640, 480));
+
+            long suma = 0;
+            for (int i = 1; i <= total; i++) {
+                Burbuja b = new Burbuja(Burbuja.Tipo.AJENA, "usuario" + (i % 50),
+                        "Mensaje de prueba número " + i + " con algo de texto para partir en líneas", "12:34:56");
+                long t0 = System.nanoTime();
+                modelo.agregar(b);
+                lista.getPreferredSize();
+                suma += System.nanoTime() - t0;
+                if (i % bloque == 0) {
+                    System.gc();
+                    System.out.printf("  %-8d  %13.1f  %18.1f%n", i, suma / 1_000.0 / bloque,
+                            memoria.getHeapMemoryUsage().getUsed() / (1024.0 * 1024.0));
+                    suma = 0;
+                }
+            }
+        });
+    }
+}
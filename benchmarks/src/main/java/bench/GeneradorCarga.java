@@ -0,0 +1,243 @@
+package bench;
+
+import cliente.ClienteChat;
+import cliente.Histograma;
+import cliente.OyenteSesion;
+import cliente.SesionesTls;
+import cliente.TransporteHttp;
+import comun.Mensaje;
+import comun.TipoMensaje;
+import prueba.ServidorPrueba;
+
+import javax.net.ssl.SSLContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generador de carga: N usuarios simulados, cada uno un {@link ClienteChat} sin interfaz
+ * sobre hilos virtuales, que inician sesión y envían mensajes a un ritmo fijo. Mide el
+ * caudal y la latencia extremo a extremo (desde que el mensaje debía enviarse hasta que
+ * lo entrega el receptor de cada usuario) y la imprime como tabla de percentiles.
+ *
+ * <p>Por defecto arranca un {@link ServidorPrueba} en el mismo proceso; con los cuatro
+ * últimos argumentos se dirige a uno lanzado aparte ({@code java prueba.ServidorPrueba}).
+ * Los usuarios usan login directo, envío por el canal push, presencia por deltas y sin
+ * historial local ({@code -Dchat.login=push -Dchat.envio=tcp -Dchat.presencia=delta
+ * -Dchat.reanudar=true -Dchat.historial=false}, salvo que se indique otra cosa), así que cada usuario es un
+ * socket TLS y dos hilos virtuales, y comparten un único transporte HTTPS.
+ *
+ * <p>El servidor difunde cada mensaje a todos: las entregas por segundo son los usuarios
+ * por el caudal de envío. La marca de tiempo viaja en el contenido y es la hora
+ * <i>prevista</i> del envío, no la real, para que un emisor que se retrasa no esconda la
+ * espera (omisión coordinada). Emisor y receptores están en este proceso, así que
+ * {@link System#nanoTime()} sirve también contra un servidor externo. Cada proceso
+ * necesita un descriptor por usuario (dos con el servidor embebido): ver {@code ulimit -n}.
+ *
+ * <p>Uso: {@code java bench.GeneradorCarga [usuarios] [mensajesPorMinutoPorUsuario]
+ * [segundos] [host puertoHttps puertoPush truststore]} (por defecto 1000, 0.1 y 60).
+ *
+ * <p>Cada entrada se anuncia a todos los conectados (un {@code USER_JOIN} por sesión), así
+ * que la rampa cuesta O(N²) escrituras TLS en total: con el servidor embebido y una sola
+ * CPU, 1000 usuarios entran en unos 30 s; 10000 no terminan la rampa en un tiempo útil y
+ * conviene un servidor externo en otra máquina.
+ */
+public class GeneradorCarga {
+
+    /** Logins simultáneos durante la rampa: acota el coste de los handshakes en curso. */
+    private static final int  LOGINS_EN_CURSO = 64;
+    private static final long CALENTAMIENTO_S = 5;
+    private static final long INFORME_S       = 5;
+
+    private static final Histograma latencia = new Histograma("extremo a extremo");
+    private static final Histograma login    = new Histograma("login");
+    private static final LongAdder  enviados = new LongAdder();
+    private static final LongAdder  entregas = new LongAdder();
+    private static final LongAdder  errores  = new LongAdder();
+    private static final LongAdder  caidas   = new LongAdder();
+    private static final AtomicReference<String> primerError = new AtomicReference<>();
+    /** Solo cuentan los mensajes previstos a partir de aquí (fin del calentamiento). */
+    private static volatile long desde;
+
+    public static void main(String[] args) throws Exception {
+        int    usuarios  = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        double porMinuto = args.length > 1 ? Double.parseDouble(args[1]) : 0.1;
+        int    segundos  = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+        boolean externo  = args.length >= 7;
+
+        predeterminar("chat.login", "push");
+        predeterminar("chat.envio", "tcp");
+        predeterminar("chat.presencia", "delta");
+        predeterminar("chat.historial", "false");
+        predeterminar("chat.reanudar", "true");
+        // Miles de sesiones en un proceso: un fichero de bandeja por usuario no aporta nada aquí
+        predeterminar("chat.salida", "false");
+
+        try (ServidorPrueba srv = externo ? null : ServidorPrueba.iniciar()) {
+            String host        = externo ? args[3] : "localhost";
+            int    puertoHttps = externo ? Integer.parseInt(args[4]) : srv.getPuertoHttps();
+            int    puertoPush  = externo ? Integer.parseInt(args[5]) : srv.getPuertoTcp();
+            String truststore  = externo ? args[6] : srv.getRutaTruststore();
+            predeterminar("chat.push.puerto", String.valueOf(puertoPush));
+
+            SSLContext ssl = ClienteChat.crearSSLContext(truststore);
+            SesionesTls tls = new SesionesTls(ssl);
+            TransporteHttp http = ClienteChat.crearTransporte("https://" + host + ":" + puertoHttps, tls);
+
+            System.out.printf("%d usuarios, %.2f mensajes/min cada uno (%.1f mensajes/s, %.0f entregas/s previstas), %d s%n",
+                    usuarios, porMinuto, usuarios * porMinuto / 60, usuarios * usuarios * porMinuto / 60, segundos);
+
+            // ── Rampa de logins ──────────────────────────────────────────────
+            List<Usuario> lista = new ArrayList<>(usuarios);
+            for (int i = 0; i < usuarios; i++) {
+                lista.add(new Usuario("carga" + i, host, puertoHttps, tls, http));
+            }
+            Semaphore enCurso = new Semaphore(LOGINS_EN_CURSO);
+            CountDownLatch dentro = new CountDownLatch(usuarios);
+            long t0 = System.nanoTime();
+            for (Usuario u : lista) {
+                Thread.ofVirtual().start(() -> {
+                    try {
+                        enCurso.acquire();
+                        try { u.entrar(); } finally { enCurso.release(); }
+                    } catch (InterruptedException ignored) {
+                    } finally {
+                        dentro.countDown();
+                    }
+                });
+            }
+            while (!dentro.await(INFORME_S, TimeUnit.SECONDS)) {
+                System.out.printf("  %4.0f s: %d/%d dentro%n",
+                        (System.nanoTime() - t0) / 1e9, usuarios - dentro.getCount(), usuarios);
+            }
+            long conectados = lista.stream().filter(u -> u.conectado).count();
+            System.out.printf("Conectados %d/%d en %.1f s (login p50 %.1f ms, p99 %.1f ms)%n",
+                    conectados, usuarios, (System.nanoTime() - t0) / 1e9, login.getP50Ms(), login.getP99Ms());
+
+            // ── Envío ────────────────────────────────────────────────────────
+            long periodo  = (long) (60e9 / porMinuto);
+            long inicio   = System.nanoTime();
+            long fin      = inicio + TimeUnit.SECONDS.toNanos(CALENTAMIENTO_S + segundos);
+            long medicion = inicio + TimeUnit.SECONDS.toNanos(CALENTAMIENTO_S);
+            desde = medicion;
+            List<Thread> emisores = new ArrayList<>();
+            for (Usuario u : lista) {
+                if (u.conectado) emisores.add(Thread.ofVirtual().start(() -> u.emitir(inicio, periodo, fin)));
+            }
+
+            Thread.sleep(TimeUnit.SECONDS.toMillis(CALENTAMIENTO_S));
+            for (long s = INFORME_S; s <= segundos; s += INFORME_S) {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(INFORME_S));
+                double dt = (System.nanoTime() - medicion) / 1e9;
+                System.out.printf("  %4.0f s: %8.1f env/s %10.0f entregas/s  p50 %7.2f ms  p99 %7.2f ms%n",
+                        dt, enviados.sum() / dt, entregas.sum() / dt, latencia.getP50Ms(), latencia.getP99Ms());
+            }
+            for (Thread t : emisores) t.join();
+            double dt = (System.nanoTime() - medicion) / 1e9;
+            long totalEnviados = enviados.sum();
+            Thread.sleep(2000);   // lo que aún esté en vuelo
+
+            System.out.printf("%nEnviados %d (%.1f/s), entregas %d (%.0f/s, %.1f%% de las previstas), errores %d, caídas %d%n",
+                    totalEnviados, totalEnviados / dt, entregas.sum(), entregas.sum() / dt,
+                    100.0 * entregas.sum() / Math.max(1, totalEnviados * conectados), errores.sum(), caidas.sum());
+            if (primerError.get() != null) System.out.println("Primer error: " + primerError.get());
+            imprimirPercentiles(latencia);
+
+            CountDownLatch fuera = new CountDownLatch(lista.size());
+            for (Usuario u : lista) {
+                Thread.ofVirtual().start(() -> { try { u.cliente.cerrar(); } finally { fuera.countDown(); } });
+            }
+            fuera.await(30, TimeUnit.SECONDS);
+        }
+    }
+
+    /** Tabla de percentiles al estilo de {@code HdrHistogram.outputPercentileDistribution}. */
+    private static void imprimirPercentiles(Histograma h) {
+        System.out.printf("%nLatencia extremo a extremo (ms), %d entregas%n", h.getCuenta());
+        System.out.printf("%12s %12s %12s %16s%n", "Value", "Percentile", "TotalCount", "1/(1-Percentile)");
+        long cuenta = h.getCuenta();
+        for (double q : new double[] { 0.5, 0.75, 0.9, 0.99, 0.999, 0.9999, 1.0 }) {
+            System.out.printf("%12.3f %12.6f %12d %16s%n", h.percentil(q) / 1e6, q,
+                    (long) Math.ceil(q * cuenta), q < 1 ? String.format("%.2f", 1 / (1 - q)) : "");
+        }
+        System.out.printf("#[Mean    = %12.3f, Max = %12.3f]%n", h.getMediaMs(), h.getMaxMs());
+    }
+
+    private static void predeterminar(String propiedad, String valor) {
+        if (System.getProperty(propiedad) == null) System.setProperty(propiedad, valor);
+    }
+
+    /** Un usuario simulado: su cliente y el oyente que mide lo que le llega. */
+    private static final class Usuario implements OyenteSesion {
+        final String      nombre;
+        final ClienteChat cliente;
+        final CountDownLatch respuesta = new CountDownLatch(1);
+        volatile boolean  conectado;
+
+        Usuario(String nombre, String host, int puerto, SesionesTls tls, TransporteHttp http) {
+            this.nombre  = nombre;
+            this.cliente = new ClienteChat(host, puerto, tls, http, this);
+        }
+
+        void entrar() throws InterruptedException {
+            long t0 = System.nanoTime();
+            cliente.enviarMensaje(new Mensaje(TipoMensaje.LOGIN, "x", nombre));
+            if (respuesta.await(30, TimeUnit.SECONDS) && conectado) login.registrarDesde(t0);
+        }
+
+        /** Envía cada {@code periodo} desde un desfase aleatorio, hasta {@code fin}. */
+        void emitir(long inicio, long periodo, long fin) {
+            long previsto = inicio + ThreadLocalRandom.current().nextLong(periodo);
+            while (previsto < fin) {
+                long espera = previsto - System.nanoTime();
+                if (espera > 0) LockSupport.parkNanos(espera);
+                cliente.enviarMensaje(new Mensaje(TipoMensaje.MESSAGE, "t" + previsto, nombre));
+                if (previsto >= desde) enviados.increment();
+                previsto += periodo;
+            }
+        }
+
+        @Override
+        public void loginExitoso(String mensaje) {
+            conectado = true;
+            respuesta.countDown();
+        }
+
+        @Override
+        public void mensaje(Mensaje m) {
+            String c = m.getContenido();
+            if (c == null || c.length() < 2 || c.charAt(0) != 't') return;
+            try {
+                long previsto = Long.parseLong(c, 1, c.length(), 10);
+                if (previsto < desde) return;
+                latencia.registrar(System.nanoTime() - previsto);
+                entregas.increment();
+            } catch (NumberFormatException ignored) {
+                // Mensaje de otro cliente
+            }
+        }
+
+        @Override
+        public void error(String detalle) {
+            errores.increment();
+            primerError.compareAndSet(null, nombre + ": " + detalle);
+            respuesta.countDown();
+        }
+
+        @Override public void conexionPerdida(String motivo)                 { caidas.increment(); }
+        @Override public void privado(Mensaje m)                             { }
+        @Override public void union(String usuario, Mensaje m)               { }
+        @Override public void salida(String usuario, Mensaje m)              { }
+        @Override public void listaUsuarios(List<String> usuarios)           { }
+        @Override public void usuarioConectado(String usuario)               { }
+        @Override public void usuarioDesconectado(String usuario)            { }
+        @Override public void reconectando(int intento, long esperaMs, String motivo) { }
+        @Override public void reconectado(long ms)                           { }
+    }
+}
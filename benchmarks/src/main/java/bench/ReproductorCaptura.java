@@ -0,0 +1,342 @@
+package bench;
+
+import cliente.Burbuja;
+import cliente.ClienteChat;
+import cliente.ColaEntradaEdt;
+import cliente.DocumentoChatHtml;
+import cliente.DocumentoChatHtml.ModoRenderizado;
+import cliente.Histograma;
+import cliente.HtmlBurbuja;
+import cliente.ModeloMensajesAcotado;
+import cliente.OyenteSesion;
+import cliente.ReceptorMensajes;
+import cliente.RenderizadorBurbuja;
+import cliente.SesionesTls;
+import comun.CapturaTramas;
+import comun.Mensaje;
+import comun.TipoMensaje;
+import prueba.ServidorPrueba;
+
+import javax.net.ssl.SSLContext;
+import javax.swing.*;
+import java.awt.*;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reproduce una captura del canal push ({@code -Dchat.captura=fichero}, ver
+ * {@link CapturaTramas}) a través del mismo camino que el tráfico real, sin red: las
+ * tramas entran por un {@link ReceptorMensajes} (lector de tramas, codec, clasificación)
+ * y las burbujas por una {@link ColaEntradaEdt} hasta la vista, HTML o de lista, que se
+ * maqueta en el EDT como antes de pintar.
+ *
+ * <p>El ritmo puede ser el original, un múltiplo de él o tan rápido como se pueda. Al
+ * terminar imprime las burbujas pintadas por segundo, los percentiles del bloqueo del
+ * EDT (una sonda que cada milisegundo espera a que el EDT ejecute una tarea vacía), la
+ * duración de cada lote aplicado y el heap tras GC antes y después.
+ *
+ * <p>Uso: {@code java -Djava.awt.headless=true bench.ReproductorCaptura fichero
+ * [original|max|xN] [lista|html] [usuario]} (por defecto original y lista; el usuario
+ * decide qué burbujas son propias).
+ *
+ * <p>Para obtener una captura sin un servidor real:
+ * {@code java bench.ReproductorCaptura grabar fichero [mensajes] [porSegundo]} (por
+ * defecto 20000 y 2000) graba la mitad de los mensajes al ritmo indicado y la otra
+ * mitad de golpe, desde un {@link ServidorPrueba}.
+ */
+public class ReproductorCaptura {
+
+    private static final long SONDA_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "grabar".equals(args[0])) {
+            grabar(Path.of(args[1]),
+                    args.length > 2 ? Integer.parseInt(args[2]) : 20_000,
+                    args.length > 3 ? Integer.parseInt(args[3]) : 2_000);
+            return;
+        }
+        Path   fichero = Path.of(args[0]);
+        String ritmo   = args.length > 1 ? args[1] : "original";
+        String vista   = args.length > 2 ? args[2] : "lista";
+        String usuario = args.length > 3 ? args[3] : null;
+        double velocidad = switch (ritmo) {
+            case "original" -> 1;
+            case "max"      -> 0;
+            default         -> Double.parseDouble(ritmo.substring(1));
+        };
+
+        List<CapturaTramas.Registro> registros = leer(fichero);
+        if (registros.isEmpty()) throw new IllegalStateException(fichero + " no contiene tramas");
+        long duracion = registros.get(registros.size() - 1).nanos() - registros.get(0).nanos();
+        System.out.printf("Captura %s: %d tramas en %.1f s (%d bytes)%n", fichero.getFileName(),
+                registros.size(), duracion / 1e9, Files.size(fichero));
+
+        for (int ronda = 0; ronda < 2; ronda++) {
+            Resultado r = reproducir(registros, velocidad, vista, usuario);
+            if (ronda == 0) continue;   // calentamiento
+            imprimir(ritmo, vista, r);
+        }
+    }
+
+    // ── Reproducción ─────────────────────────────────────────────────────────
+
+    private static Resultado reproducir(List<CapturaTramas.Registro> registros, double velocidad,
+                                        String vista, String usuario) throws Exception {
+        Vista destino = new Vista(vista, usuario);
+        MemoryMXBean memoria = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapInicio = memoria.getHeapMemoryUsage().getUsed();
+
+        Sonda sonda = new Sonda();
+        Thread hiloSonda = Thread.ofPlatform().daemon().name("SondaEdt").start(sonda);
+
+        long t0 = System.nanoTime();
+        long origen = registros.get(0).nanos();
+        long secuencia = 0;
+        // Un receptor por tramo de tramas con el mismo codec, como tras una reconexión
+        for (int i = 0; i < registros.size(); ) {
+            int fin = i;
+            while (fin < registros.size() && registros.get(fin).codec() == registros.get(i).codec()) fin++;
+            FlujoCaptura flujo = new FlujoCaptura(registros.subList(i, fin), t0, origen, velocidad);
+            ReceptorMensajes receptor = new ReceptorMensajes(new Socket(), flujo, registros.get(i).codec(),
+                    destino, usuario, null, secuencia, motivo -> { });
+            receptor.run();   // hasta agotar el tramo
+            secuencia = receptor.getUltimaSecuencia();
+            i = fin;
+        }
+        destino.esperarPintadas();
+        long ns = System.nanoTime() - t0;
+        sonda.activa = false;
+        hiloSonda.join();
+
+        SwingUtilities.invokeAndWait(() -> { });
+        System.gc();
+        long heapFin = memoria.getHeapMemoryUsage().getUsed();
+        return new Resultado(ns, destino, sonda.bloqueo, heapInicio, heapFin);
+    }
+
+    private static void imprimir(String ritmo, String vista, Resultado r) {
+        Vista v = r.vista;
+        System.out.printf("Ritmo %s, vista %s: %d burbujas pintadas en %.2f s = %.0f burbujas/s"
+                        + " (%d lotes, máx %d por lote)%n",
+                ritmo, vista, v.pintadas.get(), r.nanos / 1e9, v.pintadas.get() / (r.nanos / 1e9),
+                v.cola.getLotes(), v.maxLote);
+        System.out.println("               n      p50 ms    p90 ms    p99 ms    máx ms");
+        for (Histograma h : List.of(r.bloqueo, v.lote)) {
+            System.out.printf("  %-9s %6d  %8.2f  %8.2f  %8.2f  %8.2f%n", h.getNombre(), h.getCuenta(),
+                    h.getP50Ms(), h.getP90Ms(), h.getP99Ms(), h.getMaxMs());
+        }
+        System.out.printf("Heap tras GC: %.1f MB al empezar, %.1f MB al terminar (%+.1f MB)%n",
+                r.heapInicio / 1e6, r.heapFin / 1e6, (r.heapFin - r.heapInicio) / 1e6);
+    }
+
+    private record Resultado(long nanos, Vista vista, Histograma bloqueo, long heapInicio, long heapFin) {}
+
+    private static List<CapturaTramas.Registro> leer(Path fichero) throws Exception {
+        List<CapturaTramas.Registro> registros = new ArrayList<>();
+        try (CapturaTramas.Lector lector = new CapturaTramas.Lector(fichero)) {
+            CapturaTramas.Registro r;
+            while ((r = lector.siguiente()) != null) registros.add(r);
+        }
+        return registros;
+    }
+
+    /**
+     * Las tramas de la captura como flujo de entrada del receptor: cada una se entrega
+     * cuando le toca según su instante original (dividido por la velocidad), o en
+     * seguida con velocidad 0.
+     */
+    private static final class FlujoCaptura extends InputStream {
+
+        private final List<CapturaTramas.Registro> registros;
+        private final long   t0;
+        private final long   origen;
+        private final double velocidad;
+        private int    indice;
+        private byte[] actual = new byte[0];
+        private int    posicion;
+
+        FlujoCaptura(List<CapturaTramas.Registro> registros, long t0, long origen, double velocidad) {
+            this.registros = registros;
+            this.t0        = t0;
+            this.origen    = origen;
+            this.velocidad = velocidad;
+        }
+
+        @Override
+        public int read() {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (posicion == actual.length) {
+                if (indice == registros.size()) return -1;
+                CapturaTramas.Registro r = registros.get(indice++);
+                if (velocidad > 0) {
+                    long espera = t0 + (long) ((r.nanos() - origen) / velocidad) - System.nanoTime();
+                    if (espera > 0) esperar(espera);
+                }
+                actual   = r.datos();
+                posicion = 0;
+            }
+            int n = Math.min(len, actual.length - posicion);
+            System.arraycopy(actual, posicion, b, off, n);
+            posicion += n;
+            return n;
+        }
+    }
+
+    private static void esperar(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Mide cuánto tarda el EDT en atender una tarea vacía, una vez por milisegundo. Un
+     * lote que bloquea el EDT 200 ms aparece como una muestra de ~200 ms.
+     */
+    private static final class Sonda implements Runnable {
+        final Histograma bloqueo = new Histograma("bloqueo");
+        volatile boolean activa = true;
+
+        @Override
+        public void run() {
+            try {
+                while (activa) {
+                    long t = System.nanoTime();
+                    SwingUtilities.invokeAndWait(() -> { });
+                    bloqueo.registrarDesde(t);
+                    TimeUnit.NANOSECONDS.sleep(SONDA_NANOS);
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Destino de los eventos del receptor: construye las burbujas como la interfaz y las
+     * aplica por lotes en el EDT sobre una vista HTML o de lista sin ventana.
+     */
+    private static class Vista implements OyenteSesion {
+        final ColaEntradaEdt<Burbuja> cola =
+                new ColaEntradaEdt<>(Integer.getInteger("chat.edt.periodoMs", 16), this::aplicar);
+        final Histograma lote     = new Histograma("lote");
+        final AtomicLong encoladas = new AtomicLong();
+        final AtomicLong pintadas  = new AtomicLong();
+        final String     usuario;
+        volatile int     maxLote;
+
+        private JTextPane             pane;
+        private DocumentoChatHtml     documento;
+        private ModeloMensajesAcotado modelo;
+        private JList<Burbuja>        lista;
+
+        Vista(String vista, String usuario) throws Exception {
+            this.usuario = usuario;
+            SwingUtilities.invokeAndWait(() -> {
+                if ("html".equals(vista)) {
+                    pane = new JTextPane();
+                    pane.setContentType("text/html");
+                    pane.setSize(new Dimension(640, 480));
+                    documento = new DocumentoChatHtml(pane, ModoRenderizado.INCREMENTAL);
+                } else {
+                    modelo = new ModeloMensajesAcotado();
+                    lista  = new JList<>(modelo);
+                    RenderizadorBurbuja.instalar(lista);
+                    lista.setSize(new Dimension(640, 480));
+                }
+            });
+        }
+
+        /** En el EDT, como {@code InterfazGrafica.agregarBurbujas} más la maquetación. */
+        private void aplicar(List<Burbuja> burbujas) {
+            long t0 = System.nanoTime();
+            if (modelo != null) {
+                modelo.agregarTodas(burbujas);
+                lista.getPreferredSize();
+            } else {
+                StringBuilder html = new StringBuilder();
+                for (Burbuja b : burbujas) html.append(HtmlBurbuja.de(b));
+                documento.agregar(html.toString());
+                pane.getPreferredSize();
+            }
+            lote.registrarDesde(t0);
+            if (burbujas.size() > maxLote) maxLote = burbujas.size();
+            pintadas.addAndGet(burbujas.size());
+        }
+
+        private void encolar(Burbuja b) {
+            encoladas.incrementAndGet();
+            cola.encolar(b);
+        }
+
+        void esperarPintadas() throws InterruptedException {
+            while (pintadas.get() < encoladas.get()) TimeUnit.MILLISECONDS.sleep(1);
+        }
+
+        private Burbuja burbujaDe(Mensaje m) {
+            Burbuja.Tipo tipo = m.getTipo() == TipoMensaje.PRIVATE ? Burbuja.Tipo.PRIVADO
+                    : usuario != null && usuario.equals(m.getRemitente()) ? Burbuja.Tipo.PROPIA
+                    : Burbuja.Tipo.AJENA;
+            return new Burbuja(tipo, m.getRemitente(), m.getContenido(), m.getTimestamp());
+        }
+
+        @Override public void mensaje(Mensaje m)                { encolar(burbujaDe(m)); }
+        @Override public void privado(Mensaje m)                { encolar(burbujaDe(m)); }
+        @Override public void union(String u, Mensaje m)        { encolar(Burbuja.sistema(Burbuja.Tipo.UNION, m.getContenido())); }
+        @Override public void salida(String u, Mensaje m)       { encolar(Burbuja.sistema(Burbuja.Tipo.SALIDA, m.getContenido())); }
+        @Override public void usuarioConectado(String u)        { encolar(Burbuja.sistema(Burbuja.Tipo.UNION, u + " se unió al chat")); }
+        @Override public void usuarioDesconectado(String u)     { encolar(Burbuja.sistema(Burbuja.Tipo.SALIDA, u + " ha salido del chat")); }
+        @Override public void error(String detalle)             { encolar(Burbuja.sistema(Burbuja.Tipo.SISTEMA, "Error: " + detalle)); }
+        @Override public void listaUsuarios(List<String> u)     { }
+        @Override public void conexionPerdida(String motivo)    { }
+        @Override public void reconectando(int intento, long esperaMs, String motivo) { }
+        @Override public void reconectado(long ms)              { }
+        @Override public void loginExitoso(String mensaje)      { }
+    }
+
+    // ── Grabación ────────────────────────────────────────────────────────────
+
+    /** Un cliente sin interfaz graba lo que le envía un {@link ServidorPrueba} inundado. */
+    private static void grabar(Path fichero, int mensajes, int porSegundo) throws Exception {
+        System.setProperty("chat.captura", fichero.toString());
+        System.setProperty("chat.historial", "false");
+        CountDownLatch dentro = new CountDownLatch(1);
+        AtomicLong recibidos = new AtomicLong();
+        OyenteSesion oyente = new Vista("lista", null) {
+            @Override public void loginExitoso(String mensaje) { dentro.countDown(); }
+            @Override public void mensaje(Mensaje m)           { recibidos.incrementAndGet(); }
+        };
+        try (ServidorPrueba srv = ServidorPrueba.iniciar()) {
+            SSLContext ssl = ClienteChat.crearSSLContext(srv.getRutaTruststore());
+            SesionesTls tls = new SesionesTls(ssl);
+            ClienteChat cliente = new ClienteChat("localhost", srv.getPuertoHttps(), tls,
+                    ClienteChat.crearTransporte(srv.getBaseUrl(), tls), oyente);
+            cliente.enviarMensaje(new Mensaje(TipoMensaje.LOGIN, "x", "grabador"));
+            if (!dentro.await(10, TimeUnit.SECONDS)) throw new IllegalStateException("login sin respuesta");
+
+            srv.inundar(mensajes / 2, 120, porSegundo);
+            srv.inundar(mensajes - mensajes / 2, 120, 0);
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (recibidos.get() < mensajes && System.nanoTime() < limite) TimeUnit.MILLISECONDS.sleep(10);
+            cliente.cerrar();
+        }
+        System.out.printf("Grabados %d mensajes en %s%n", recibidos.get(), fichero);
+        // El grabador se cierra (y vuelca) al terminar el proceso
+    }
+}
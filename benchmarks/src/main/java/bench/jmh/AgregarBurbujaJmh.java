@@ -0,0 +1,114 @@
+package bench.jmh;
+
+import cliente.Burbuja;
+import cliente.DocumentoChatHtml;
+import cliente.DocumentoChatHtml.ModoRenderizado;
+import cliente.HtmlBurbuja;
+import cliente.ModeloMensajesAcotado;
+import cliente.RenderizadorBurbuja;
+import org.openjdk.jmh.annotations.*;
+
+import javax.swing.*;
+import javax.swing.text.Element;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.html.HTML;
+import javax.swing.text.html.HTMLDocument;
+import java.awt.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lo que hace {@code InterfazGrafica.agregarBurbujas} por cada burbuja nueva con la
+ * conversación ya en {@code historial} burbujas, en las dos vistas:
+ *
+ * <ul>
+ *   <li><b>html</b>: {@link HtmlBurbuja#de} e inserción incremental en
+ *       {@link DocumentoChatHtml}, más la maquetación que haría el EDT antes de pintar.</li>
+ *   <li><b>lista</b>: {@link ModeloMensajesAcotado} lleno (cada burbuja desaloja la más
+ *       antigua) con su {@link JList} y {@link RenderizadorBurbuja}.</li>
+ * </ul>
+ *
+ * <p>La conversación se llena una vez por prueba y cada operación es un añadido en
+ * régimen estable: en la vista html se quita además la burbuja más antigua, como ya hace
+ * el modelo acotado en la lista, para que el tamaño se mantenga en {@code historial} y la
+ * puntuación no dependa de cuánto dure la iteración. Aun con el tamaño fijo, en la vista
+ * html tiempo y asignación oscilan en ciclos de miles de burbujas; la medición es larga
+ * para promediar varios ciclos. Requiere {@code -Djava.awt.headless=true} sin pantalla;
+ * se llama desde el hilo de JMH, que hace de único hilo de Swing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class AgregarBurbujaJmh {
+
+    @Param({ "100", "1000", "10000" })
+    public int historial;
+
+    @Param({ "html", "lista" })
+    public String vista;
+
+    private JTextPane             pane;
+    private DocumentoChatHtml     documento;
+    private Element               body;
+    private ModeloMensajesAcotado modelo;
+    private JList<Burbuja>        lista;
+    private int                   contador;
+
+    @Setup(Level.Trial)
+    public void llenar() {
+        if ("html".equals(vista)) {
+            pane = new JTextPane();
+            pane.setContentType("text/html");
+            pane.setSize(new Dimension(640, 480));
+            documento = new DocumentoChatHtml(pane, ModoRenderizado.INCREMENTAL);
+            HTMLDocument doc = (HTMLDocument) pane.getDocument();
+            body = doc.getElement(doc.getDefaultRootElement(), StyleConstants.NameAttribute, HTML.Tag.BODY);
+            for (contador = 0; contador < historial; contador++) documento.agregar(HtmlBurbuja.de(burbuja(contador)));
+            pane.getPreferredSize();
+        } else {
+            modelo = new ModeloMensajesAcotado(historial);
+            lista  = new JList<>(modelo);
+            RenderizadorBurbuja.instalar(lista);
+            lista.setSize(new Dimension(640, 480));
+            for (contador = 0; contador < historial; contador++) modelo.agregar(burbuja(contador));
+            lista.getPreferredSize();
+        }
+    }
+
+    @Benchmark
+    public Object agregarBurbuja() {
+        Burbuja b = burbuja(contador++);
+        if (documento != null) {
+            documento.agregar(HtmlBurbuja.de(b));
+            quitarLaMasAntigua();
+            return pane.getPreferredSize();
+        }
+        modelo.agregarTodas(List.of(b));
+        return lista.getPreferredSize();
+    }
+
+    /** Quita la primera burbuja ({@code <table>}) del primer bloque, o el bloque si era la última. */
+    private void quitarLaMasAntigua() {
+        HTMLDocument doc = (HTMLDocument) pane.getDocument();
+        while (body.getElementCount() > 0) {
+            Element bloque = body.getElement(0);
+            for (int i = 0; i < bloque.getElementCount(); i++) {
+                Element e = bloque.getElement(i);
+                if (e.getAttributes().getAttribute(StyleConstants.NameAttribute) == HTML.Tag.TABLE) {
+                    doc.removeElement(e);
+                    return;
+                }
+            }
+            doc.removeElement(bloque);
+        }
+    }
+
+    private static Burbuja burbuja(int i) {
+        return i % 3 == 0
+                ? new Burbuja(Burbuja.Tipo.PROPIA, "yo", "Mensaje propio número " + i, "12:34:56")
+                : new Burbuja(Burbuja.Tipo.AJENA, "usuario" + (i % 50), "Mensaje de prueba número " + i, "12:34:56");
+    }
+}
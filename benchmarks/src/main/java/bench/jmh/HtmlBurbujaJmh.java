@@ -0,0 +1,56 @@
+package bench.jmh;
+
+import cliente.HtmlBurbuja;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construcción del HTML de cada burbuja ({@link HtmlBurbuja}) y el escape de texto que
+ * hace en cada campo, con texto sin caracteres especiales y con ellos.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlBurbujaJmh {
+
+    @Param({ "plano", "especiales" })
+    public String texto;
+
+    private String contenido;
+
+    @Setup
+    public void preparar() {
+        contenido = "plano".equals(texto)
+                ? "Mensaje de prueba de longitud habitual en una conversación"
+                : "if (a < b && b > c) { return \"<b>negrita</b> & más\"; }";
+    }
+
+    @Benchmark
+    public String esc() {
+        return HtmlBurbuja.esc(contenido);
+    }
+
+    @Benchmark
+    public String propia() {
+        return HtmlBurbuja.propia(contenido, "12:34:56");
+    }
+
+    @Benchmark
+    public String ajena() {
+        return HtmlBurbuja.ajena("usuario42", contenido, "12:34:56");
+    }
+
+    @Benchmark
+    public String privado() {
+        return HtmlBurbuja.privado("usuario42", contenido, "12:34:56");
+    }
+
+    @Benchmark
+    public String sistema() {
+        return HtmlBurbuja.sistema(contenido);
+    }
+}
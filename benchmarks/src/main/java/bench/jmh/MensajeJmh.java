@@ -0,0 +1,79 @@
+package bench.jmh;
+
+import comun.CodecBinario;
+import comun.CodecMensaje;
+import comun.CodecTexto;
+import comun.Mensaje;
+import comun.TipoMensaje;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Camino caliente de cada mensaje: construcción de {@link Mensaje} (formatea la hora
+ * con {@code LocalDateTime.now()}), {@link Mensaje#toHttpString()} /
+ * {@link Mensaje#fromHttpString(String)} y la codificación y el análisis de una trama
+ * con cada {@link CodecMensaje} (lo que hace el receptor por cada línea push).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MensajeJmh {
+
+    @Param({ "corto", "largo" })
+    public String contenido;
+
+    private Mensaje mensaje;
+    private String  linea;
+    private byte[]  tramaTexto;
+    private byte[]  tramaBinaria;
+
+    @Setup
+    public void preparar() {
+        String texto = "corto".equals(contenido)
+                ? "hola, ¿qué tal?"
+                : "Mensaje algo más largo, con acentos (canción, añejo) & símbolos <b>, ".repeat(8);
+        mensaje      = new Mensaje(TipoMensaje.MESSAGE, texto, "usuario42").conSecuencia(123_456);
+        linea        = mensaje.toHttpString();
+        tramaTexto   = CodecTexto.INSTANCIA.codificar(mensaje);
+        tramaBinaria = CodecBinario.INSTANCIA.codificar(mensaje);
+    }
+
+    @Benchmark
+    public Mensaje construir() {
+        return new Mensaje(TipoMensaje.MESSAGE, "hola", "usuario42");
+    }
+
+    @Benchmark
+    public String toHttpString() {
+        return mensaje.toHttpString();
+    }
+
+    @Benchmark
+    public Mensaje fromHttpString() {
+        return Mensaje.fromHttpString(linea);
+    }
+
+    @Benchmark
+    public byte[] codificarTexto() {
+        return CodecTexto.INSTANCIA.codificar(mensaje);
+    }
+
+    @Benchmark
+    public Mensaje parsearTexto() {
+        return CodecTexto.INSTANCIA.decodificar(tramaTexto, 0, tramaTexto.length);
+    }
+
+    @Benchmark
+    public byte[] codificarBinario() {
+        return CodecBinario.INSTANCIA.codificar(mensaje);
+    }
+
+    @Benchmark
+    public Mensaje parsearBinario() {
+        return CodecBinario.INSTANCIA.decodificar(tramaBinaria, 0, tramaBinaria.length);
+    }
+}
@@ -0,0 +1,644 @@
+package prueba;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import comun.CodecMensaje;
+import comun.CodecTexto;
+import comun.Mensaje;
+import comun.TipoMensaje;
+
+import javax.net.ssl.*;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Servidor de chat de pruebas embebible, compatible con el protocolo del cliente:
+ *
+ * <ul>
+ *   <li>HTTPS {@code /login}, {@code /register}, {@code /mensaje}, {@code /mensajes}
+ *       y {@code /desconectar}, con las mismas respuestas {@code OK|...}/{@code ERROR|...}.</li>
+ *   <li>Canal push TCP/TLS: la primera línea es el nombre de usuario; después el
+ *       servidor difunde líneas {@link Mensaje#toHttpString()} y acepta líneas
+ *       {@code MESSAGE} entrantes (modo {@code chat.envio=tcp}). Acepta la negociación
+ *       {@code OPTIONS} del codec ({@code texto}/{@code binario}) y de la compresión
+ *       {@code deflate} del sentido servidor → cliente.</li>
+ *   <li>Login directo: si la primera línea es un {@code LOGIN} (contraseña) o un
+ *       {@code TOKEN}, responde {@code OK} con {@code token|bienvenida} antes que nada y
+ *       sigue como si hubiera recibido el nombre; con un token desconocido o un usuario
+ *       vacío responde {@code ERROR} y cierra.</li>
+ *   <li>Con {@code secuencia=1} numera los mensajes de chat y con {@code reanudar=N}
+ *       reenvía los posteriores a {@code N} que aún retiene (los últimos
+ *       {@value #RETENIDOS_MAX}), seguidos de la lista de usuarios.</li>
+ *   <li>Los mensajes con identificador (parámetro {@code id} o séptimo campo de la trama)
+ *       se difunden una sola vez: recuerda los últimos {@value #RETENIDOS_MAX}
+ *       identificadores y confirma los repetidos sin volver a difundirlos (lo anuncia
+ *       aceptando {@code repetidos=descartar}). Con
+ *       {@code confirmacion=1} responde a cada mensaje del canal push con un {@code ACK}.</li>
+ * </ul>
+ *
+ * <p>Fallos inyectables, para probar rendimiento y resiliencia sin red:
+ * <ul>
+ *   <li>{@link #cortarConexiones()}, {@link #cortarConexion(String)} y
+ *       {@link #cortarCada(long)} cierran canales push desde el servidor, como una caída
+ *       de red.</li>
+ *   <li>{@link #setLatencia(long)} retrasa cada respuesta HTTPS y cada mensaje que llega
+ *       por el canal push.</li>
+ *   <li>{@link #setLecturaLenta(long)} hace que el servidor lea despacio lo que le
+ *       escriben los clientes por el canal push, hasta llenar sus búferes de envío.</li>
+ *   <li>{@link #inundar(int, int, int)} difunde una ráfaga de mensajes a todos.</li>
+ * </ul>
+ *
+ * <p>Genera en cada arranque un keystore y un truststore desechables con {@code keytool},
+ * de modo que no hacen falta los certificados de {@code gen_certs.sh}. Cualquier usuario
+ * y contraseña son válidos.
+ *
+ * <pre>
+ *   try (ServidorPrueba srv = ServidorPrueba.iniciar()) {
+ *       System.setProperty("ssl.truststore.path", srv.getRutaTruststore());
+ *       ...
+ *   }
+ * </pre>
+ */
+public class ServidorPrueba implements AutoCloseable {
+
+    static final String PASSWORD = "changeit";
+    static final int    RETENIDOS_MAX = 10_000;
+    /** Lo que se espera un {@code OPTIONS} tras el nombre antes de tratar al cliente como antiguo. */
+    static final int    ESPERA_OPCIONES_MS = 200;
+
+    static {
+        // Sin esto HttpServer retrasa la respuesta por Nagle y las conexiones keep-alive
+        // pagan ~40 ms de ACK retardado por petición.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final Path             directorio;
+    private final HttpsServer      https;
+    private final SSLServerSocket  servidorTcp;
+    private final ExecutorService  hilos = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Sesion> sesiones = new ConcurrentHashMap<>();
+    private final AtomicLong       mensajesRecibidos = new AtomicLong();
+    private final AtomicLong       duplicados = new AtomicLong();
+    private final AtomicLong       bytesPush = new AtomicLong();
+    /** Tokens de login directo emitidos, con su usuario. */
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();
+    private final SecureRandom     aleatorio = new SecureRandom();
+    /** Últimos mensajes de chat difundidos, ya numerados; se accede con {@link #difusion}. */
+    private final ArrayDeque<Mensaje> retenidos = new ArrayDeque<>();
+    /** Últimos {@code usuario|id} recibidos, para descartar reenvíos; se accede con {@link #difusion}. */
+    private final Map<String, Boolean> vistos = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> e) { return size() > RETENIDOS_MAX; }
+    };
+    /**
+     * Ordena las difusiones frente a los reenvíos de {@code reanudar}. Es un cerrojo y no
+     * un monitor porque se escribe en los sockets con él tomado, desde hilos virtuales.
+     */
+    private final ReentrantLock    difusion = new ReentrantLock();
+    private long                   secuencia;
+    private volatile boolean       activo = true;
+    private volatile boolean       loginDirecto = true;
+    private volatile long          latenciaMs;
+    private volatile long          lecturaLentaMs;
+    /** Hilo de {@link #cortarCada(long)}; {@code null} si no hay cortes periódicos. */
+    private volatile Thread        cortador;
+
+    private ServidorPrueba(Path directorio, SSLContext ssl) throws IOException {
+        this.directorio = directorio;
+
+        servidorTcp = (SSLServerSocket) ssl.getServerSocketFactory().createServerSocket(0);
+        hilos.execute(this::aceptarPush);
+
+        https = HttpsServer.create(new InetSocketAddress("localhost", 0), 0);
+        https.setHttpsConfigurator(new HttpsConfigurator(ssl));
+        https.setExecutor(hilos);
+        https.createContext("/login",       ex -> responder(ex, login(formulario(ex))));
+        https.createContext("/register",    ex -> responder(ex, "OK|Registro completado."));
+        https.createContext("/mensaje",     ex -> responder(ex, mensaje(formulario(ex))));
+        https.createContext("/mensajes",    ex -> responder(ex, mensajes(formulario(ex))));
+        https.createContext("/desconectar", ex -> responder(ex, desconectar(formulario(ex))));
+        https.start();
+    }
+
+    /** Arranca el servidor en puertos libres de {@code localhost}. */
+    public static ServidorPrueba iniciar() throws Exception {
+        Path dir = Files.createTempDirectory("servidor-prueba");
+        generarCertificados(dir);
+        return new ServidorPrueba(dir, contextoServidor(dir.resolve("keystore.jks")));
+    }
+
+    public int    getPuertoHttps()     { return https.getAddress().getPort(); }
+    public int    getPuertoTcp()       { return servidorTcp.getLocalPort(); }
+    public String getBaseUrl()         { return "https://localhost:" + getPuertoHttps(); }
+    /** Truststore JKS (contraseña {@code changeit}) que el cliente debe usar para confiar en este servidor. */
+    public String getRutaTruststore()  { return directorio.resolve("truststore.jks").toString(); }
+    /** Mensajes de chat recibidos por cualquier vía desde el arranque, sin contar los repetidos. */
+    public long   getMensajesRecibidos() { return mensajesRecibidos.get(); }
+    /** Mensajes descartados por traer un identificador ya recibido (reenvíos del cliente). */
+    public long   getDuplicados()      { return duplicados.get(); }
+    public int    getSesionesActivas() { return sesiones.size(); }
+    /** Bytes escritos en los canales push desde el arranque, ya comprimidos y antes de TLS. */
+    public long   getBytesPush()       { return bytesPush.get(); }
+
+    /** Cierra desde el servidor todos los canales push abiertos, como un corte de red. */
+    public void cortarConexiones() {
+        sesiones.values().forEach(Sesion::cerrar);
+    }
+
+    /** Como {@link #cortarConexiones()}, solo para el canal de {@code usuario}. */
+    public void cortarConexion(String usuario) {
+        Sesion s = sesiones.get(usuario);
+        if (s != null) s.cerrar();
+    }
+
+    /** Con {@code false} se comporta como un servidor sin login directo (la línea es el nombre). */
+    public void setLoginDirecto(boolean admitir) { loginDirecto = admitir; }
+
+    // ── Fallos inyectados ────────────────────────────────────────────────────
+
+    /** Espera antes de atender cada petición HTTPS y cada mensaje entrante por push (0 = sin espera). */
+    public void setLatencia(long ms) { latenciaMs = ms; }
+
+    /** Espera antes de leer cada mensaje entrante por push, sin afectar a la difusión (0 = normal). */
+    public void setLecturaLenta(long ms) { lecturaLentaMs = ms; }
+
+    /**
+     * Cierra todos los canales push cada {@code ms} milisegundos en un hilo aparte, hasta
+     * que se llame con 0 o se cierre el servidor.
+     */
+    public synchronized void cortarCada(long ms) {
+        if (cortador != null) cortador.interrupt();
+        cortador = ms <= 0 ? null : Thread.ofVirtual().name("CortesPrueba").start(() -> {
+            try {
+                while (activo) {
+                    Thread.sleep(ms);
+                    cortarConexiones();
+                }
+            } catch (InterruptedException ignored) {
+                // cortarCada(0), otro periodo o close()
+            }
+        });
+    }
+
+    /**
+     * Difunde {@code mensajes} mensajes de chat de {@code tamano} caracteres desde el
+     * usuario {@code inundacion}, a {@code porSegundo} por segundo (0 = lo más rápido
+     * posible). Vuelve cuando se han difundido todos.
+     */
+    public void inundar(int mensajes, int tamano, int porSegundo) throws InterruptedException {
+        String relleno = "x".repeat(Math.max(0, tamano));
+        long periodo = porSegundo > 0 ? 1_000_000_000L / porSegundo : 0;
+        long siguiente = System.nanoTime();
+        for (int i = 0; i < mensajes; i++) {
+            if (periodo > 0) {
+                long espera = siguiente - System.nanoTime();
+                if (espera > 0) TimeUnit.NANOSECONDS.sleep(espera);
+                siguiente += periodo;
+            }
+            recibir("inundacion", relleno);
+        }
+    }
+
+    private void esperar(long ms) {
+        if (ms <= 0) return;
+        try { Thread.sleep(ms); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    @Override
+    public void close() {
+        activo = false;
+        cortarCada(0);
+        https.stop(0);
+        try { servidorTcp.close(); } catch (IOException ignored) {}
+        sesiones.values().forEach(Sesion::cerrar);
+        sesiones.clear();
+        hilos.shutdownNow();
+    }
+
+    // ── HTTPS ─────────────────────────────────────────────────────────────────
+
+    private String login(Map<String, List<String>> f) {
+        String usuario = primero(f, "usuario");
+        if (usuario.isEmpty()) return "ERROR|Usuario vacío";
+        return "OK|" + getPuertoTcp() + "|Bienvenido, " + usuario;
+    }
+
+    private String mensaje(Map<String, List<String>> f) {
+        String usuario = primero(f, "usuario");
+        if (!sesiones.containsKey(usuario)) return "ERROR|Usuario no conectado";
+        recibir(usuario, primero(f, "contenido"), primero(f, "id"));
+        return "OK";
+    }
+
+    private String mensajes(Map<String, List<String>> f) {
+        String usuario = primero(f, "usuario");
+        List<String> contenidos = f.getOrDefault("contenido", List.of());
+        List<String> ids = f.getOrDefault("id", List.of());
+        boolean conectado = sesiones.containsKey(usuario);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < contenidos.size(); i++) {
+            if (conectado) recibir(usuario, contenidos.get(i), i < ids.size() ? ids.get(i) : "");
+            sb.append(conectado ? "OK" : "ERROR|Usuario no conectado").append('\n');
+        }
+        return sb.toString();
+    }
+
+    private String desconectar(Map<String, List<String>> f) {
+        Sesion s = sesiones.remove(primero(f, "usuario"));
+        if (s != null) {
+            s.cerrar();
+            difundirPresencia(s.usuario, false);
+        }
+        return "OK";
+    }
+
+    private void recibir(String usuario, String contenido) {
+        recibir(usuario, contenido, null);
+    }
+
+    /**
+     * Difunde un mensaje de chat salvo que {@code id} (si lo trae) ya se haya recibido de
+     * ese usuario: un reenvío se confirma igual, pero no se difunde dos veces.
+     */
+    private void recibir(String usuario, String contenido, String id) {
+        difusion.lock();
+        try {
+            if (id != null && !id.isEmpty() && vistos.put(usuario + '|' + id, Boolean.TRUE) != null) {
+                duplicados.incrementAndGet();
+                return;
+            }
+            mensajesRecibidos.incrementAndGet();
+            Mensaje m = new Mensaje(TipoMensaje.MESSAGE, contenido, usuario).conSecuencia(++secuencia);
+            retenidos.addLast(m);
+            if (retenidos.size() > RETENIDOS_MAX) retenidos.removeFirst();
+            difundir(m);
+        } finally {
+            difusion.unlock();
+        }
+    }
+
+    // ── Canal push TCP/TLS ───────────────────────────────────────────────────
+
+    private void aceptarPush() {
+        while (activo) {
+            try {
+                Socket s = servidorTcp.accept();
+                s.setTcpNoDelay(true);
+                hilos.execute(() -> atender(s));
+            } catch (IOException e) {
+                if (activo) System.err.println("[ServidorPrueba] accept: " + e);
+            }
+        }
+    }
+
+    private void atender(Socket socket) {
+        Sesion sesion = null;
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            String usuario = leerLinea(in);
+            if (usuario == null || usuario.isBlank()) { socket.close(); return; }
+            String token = null;
+            if (loginDirecto && (usuario.startsWith("LOGIN|") || usuario.startsWith("TOKEN|"))) {
+                Mensaje credencial = Mensaje.fromHttpString(usuario);
+                usuario = credencial != null ? credencial.getRemitente() : "";
+                token   = credencial != null ? emitirToken(credencial) : null;
+                if (token == null) {
+                    socket.getOutputStream().write(trama(CodecTexto.INSTANCIA, new Mensaje(TipoMensaje.ERROR,
+                            usuario.isEmpty() ? "Usuario vacío" : "Token no válido", "Sistema")));
+                    socket.close();
+                    return;
+                }
+            }
+            sesion = new Sesion(usuario.trim(), socket);
+            if (token != null) {
+                sesion.enviar(trama(CodecTexto.INSTANCIA,
+                        new Mensaje(TipoMensaje.OK, token + "|Bienvenido, " + usuario, "Sistema")));
+            }
+
+            // El cliente manda OPTIONS justo detrás del nombre. Se lee antes de dar de alta
+            // la sesión para que nada en vivo (sin número) se adelante a lo que se reenvíe
+            Mensaje primero = null;
+            socket.setSoTimeout(ESPERA_OPCIONES_MS);
+            try {
+                primero = sesion.codec.leer(in);
+            } catch (SocketTimeoutException ignored) {
+                // Cliente que no negocia
+            }
+            socket.setSoTimeout(0);
+            difusion.lock();
+            try {
+                Sesion previa = sesiones.put(sesion.usuario, sesion);
+                if (previa != null) previa.cerrar();
+                if (primero != null && primero.getTipo() == TipoMensaje.OPTIONS) {
+                    sesion.negociar(primero.getContenido());
+                    primero = null;
+                }
+            } finally {
+                difusion.unlock();
+            }
+            difundirPresencia(sesion.usuario, true, sesion);
+            sesion.anunciada = true;
+
+            while (true) {
+                if (primero == null) esperar(lecturaLentaMs);
+                Mensaje m = primero != null ? primero : sesion.codec.leer(in);
+                primero = null;
+                if (m == null) continue;
+                if (m.getTipo() == TipoMensaje.MESSAGE) esperar(latenciaMs);
+                switch (m.getTipo()) {
+                    case MESSAGE -> {
+                        recibir(sesion.usuario, m.getContenido(), m.getId());
+                        if (sesion.confirmacion && m.getId() != null) {
+                            sesion.enviar(trama(sesion.codec, new Mensaje(TipoMensaje.ACK, m.getId(), "Sistema")));
+                        }
+                    }
+                    case OPTIONS -> sesion.negociar(m.getContenido());
+                    default      -> { }
+                }
+            }
+        } catch (IOException ignored) {
+            // Conexión cerrada por el cliente o por close()
+        } finally {
+            if (sesion != null && sesiones.remove(sesion.usuario, sesion)) {
+                sesion.cerrar();
+                difundirPresencia(sesion.usuario, false);
+            }
+        }
+    }
+
+    /**
+     * Valida un {@code LOGIN} (cualquier contraseña, como {@code /login}) o un
+     * {@code TOKEN} y devuelve el token de la sesión, o {@code null} si se rechaza.
+     */
+    private String emitirToken(Mensaje credencial) {
+        String usuario = credencial.getRemitente();
+        if (usuario == null || usuario.isBlank()) return null;
+        if (credencial.getTipo() == TipoMensaje.TOKEN) {
+            return usuario.equals(tokens.get(credencial.getContenido())) ? credencial.getContenido() : null;
+        }
+        byte[] bytes = new byte[16];
+        aleatorio.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        tokens.put(token, usuario);
+        return token;
+    }
+
+    /**
+     * Las sesiones que negociaron {@code presencia=delta} reciben solo
+     * {@code USER_JOIN}/{@code USER_LEAVE}; el resto, el aviso de texto y la lista completa.
+     * La sesión que entra ({@code nueva}), si es delta, recibe en su lugar una única foto
+     * de los conectados: así una entrada cuesta O(N) y no una lista de N nombres a cada uno.
+     */
+    private void difundirPresencia(String usuario, boolean entra, Sesion nueva) {
+        Mensaje delta = new Mensaje(entra ? TipoMensaje.USER_JOIN : TipoMensaje.USER_LEAVE, usuario, "Sistema");
+        Mensaje aviso = new Mensaje(TipoMensaje.MESSAGE,
+                usuario + (entra ? " se unió al chat" : " ha salido del chat"), "Sistema");
+        Mensaje lista = null;
+        Map<CodecMensaje, byte[]> tramasDelta = new HashMap<>(2);
+        Map<CodecMensaje, byte[]> tramasAviso = new HashMap<>(2);
+        Map<CodecMensaje, byte[]> tramasLista = new HashMap<>(2);
+        for (Sesion s : sesiones.values()) {
+            if (s.presenciaDelta && s == nueva) {
+                s.enviar(trama(s.codec, listaUsuarios()));
+            } else if (s.presenciaDelta) {
+                s.enviar(delta, tramasDelta);
+            } else {
+                if (lista == null) lista = listaUsuarios();
+                s.enviar(aviso, tramasAviso);
+                s.enviar(lista, tramasLista);
+            }
+        }
+    }
+
+    private void difundirPresencia(String usuario, boolean entra) {
+        difundirPresencia(usuario, entra, null);
+    }
+
+    private Mensaje listaUsuarios() {
+        return new Mensaje(TipoMensaje.USER_LIST, String.join(",", new TreeSet<>(sesiones.keySet())), "Sistema");
+    }
+
+    /** Difunde un mensaje de chat ya numerado; llamar con {@link #difusion} tomado. */
+    private void difundir(Mensaje m) {
+        // Se codifica una vez por codec (y con o sin secuencia), no una vez por sesión
+        Mensaje sinSecuencia = m.conSecuencia(0);
+        Map<CodecMensaje, byte[]> tramas    = new HashMap<>(2);
+        Map<CodecMensaje, byte[]> tramasSeq = new HashMap<>(2);
+        for (Sesion s : sesiones.values()) {
+            if (s.secuencia) s.enviar(m, tramasSeq);
+            else             s.enviar(sinSecuencia, tramas);
+        }
+    }
+
+    private static byte[] trama(CodecMensaje codec, Mensaje m) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try { codec.escribir(m, out); } catch (IOException e) { throw new UncheckedIOException(e); }
+        return out.toByteArray();
+    }
+
+    private static String leerLinea(InputStream in) throws IOException {
+        ByteArrayOutputStream linea = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) return null;
+            linea.write(b);
+        }
+        return linea.toString(StandardCharsets.UTF_8).trim();
+    }
+
+    /** Conexión push de un usuario; las escrituras se serializan por sesión. */
+    private final class Sesion {
+        final String usuario;
+        final Socket socket;
+        /** Flujo del socket; tras negociar {@code compresion=deflate}, el compresor sobre él. */
+        OutputStream out;
+        final ReentrantLock   escritura = new ReentrantLock();
+        volatile CodecMensaje codec = CodecTexto.INSTANCIA;
+        volatile boolean      presenciaDelta;
+        volatile boolean      secuencia;
+        volatile boolean      confirmacion;
+        /** Ya se difundió su entrada (y, si es delta, recibió la foto de conectados). */
+        volatile boolean      anunciada;
+
+        Sesion(String usuario, Socket socket) throws IOException {
+            this.usuario = usuario;
+            this.socket  = socket;
+            this.out     = new FilterOutputStream(socket.getOutputStream()) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    bytesPush.addAndGet(len);
+                }
+            };
+        }
+
+        /** Envía con el codec vigente de la sesión, reutilizando la trama si ya se codificó. */
+        void enviar(Mensaje m, Map<CodecMensaje, byte[]> tramas) {
+            escritura.lock();
+            try {
+                enviar(tramas.computeIfAbsent(codec, k -> trama(k, m)));
+            } finally {
+                escritura.unlock();
+            }
+        }
+
+        void enviar(byte[] datos) {
+            escritura.lock();
+            try {
+                out.write(datos);
+                out.flush();
+            } catch (IOException e) {
+                cerrar();
+            } finally {
+                escritura.unlock();
+            }
+        }
+
+        /**
+         * Responde a {@code OPTIONS} (en texto), cambia al codec acordado y, si se pide
+         * {@code reanudar}, reenvía lo retenido que el cliente no recibió.
+         */
+        void negociar(String propuestas) {
+            String codecPedido = "";
+            boolean delta = false, conSecuencia = false, deflate = false, confirmar = false, directo = false,
+                    repetidos = false;
+            long reanudar = -1;
+            for (String par : propuestas.split(",")) {
+                if (par.startsWith("codec=")) codecPedido = par.substring(6);
+                if (par.equals("presencia=delta")) delta = true;
+                if (par.equals("secuencia=1")) conSecuencia = true;
+                if (par.equals("compresion=deflate")) deflate = true;
+                if (par.equals("confirmacion=1")) confirmar = true;
+                if (par.equals("login=directo")) directo = loginDirecto;
+                if (par.equals("repetidos=descartar")) repetidos = true;
+                if (par.startsWith("reanudar=")) reanudar = Long.parseLong(par.substring(9));
+            }
+            CodecMensaje acordado = CodecMensaje.porNombre(codecPedido);
+            String respuesta = "codec=" + acordado.nombre() + (delta ? ",presencia=delta" : "")
+                             + (conSecuencia ? ",secuencia=1" : "") + (deflate ? ",compresion=deflate" : "")
+                             + (confirmar ? ",confirmacion=1" : "") + (directo ? ",login=directo" : "")
+                             + (repetidos ? ",repetidos=descartar" : "");
+            // Con la difusión bloqueada no se cuela nada entre el reenvío y lo que llegue en
+            // vivo después, así que el cliente los recibe en orden
+            difusion.lock();
+            escritura.lock();
+            try {
+                enviar(trama(CodecTexto.INSTANCIA, new Mensaje(TipoMensaje.OPTIONS, respuesta, "Sistema")));
+                if (deflate && !(out instanceof DeflaterOutputStream)) {
+                    // Un compresor por conexión; syncFlush: flush() vacía cada mensaje entero
+                    out = new DeflaterOutputStream(out, new Deflater(), 8 * 1024, true);
+                }
+                codec = acordado;
+                presenciaDelta = delta;
+                secuencia = conSecuencia;
+                confirmacion = confirmar;
+                if (conSecuencia && reanudar >= 0) {
+                    for (Mensaje m : retenidos) {
+                        if (m.getSecuencia() > reanudar) enviar(trama(codec, m));
+                    }
+                    // Las altas y bajas del corte no se retienen: se manda la foto actual, salvo
+                    // que la sesión aún no se haya anunciado (la recibe entonces al entrar)
+                    if (anunciada) enviar(trama(codec, listaUsuarios()));
+                }
+            } finally {
+                escritura.unlock();
+                difusion.unlock();
+            }
+        }
+
+        void cerrar() {
+            try { socket.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    // ── Utilidades ───────────────────────────────────────────────────────────
+
+    private static Map<String, List<String>> formulario(HttpExchange ex) throws IOException {
+        String cuerpo = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Map<String, List<String>> campos = new HashMap<>();
+        for (String par : cuerpo.split("&")) {
+            if (par.isEmpty()) continue;
+            int eq = par.indexOf('=');
+            String k = URLDecoder.decode(eq < 0 ? par : par.substring(0, eq), StandardCharsets.UTF_8);
+            String v = eq < 0 ? "" : URLDecoder.decode(par.substring(eq + 1), StandardCharsets.UTF_8);
+            campos.computeIfAbsent(k, x -> new ArrayList<>()).add(v);
+        }
+        return campos;
+    }
+
+    private static String primero(Map<String, List<String>> f, String clave) {
+        List<String> v = f.get(clave);
+        return v == null || v.isEmpty() ? "" : v.get(0);
+    }
+
+    private void responder(HttpExchange ex, String cuerpo) throws IOException {
+        esperar(latenciaMs);
+        byte[] bytes = cuerpo.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) { os.write(bytes); }
+    }
+
+    // ── Certificados desechables ─────────────────────────────────────────────
+
+    /** Genera {@code keystore.jks} (clave del servidor) y {@code truststore.jks} (su certificado). */
+    private static void generarCertificados(Path dir) throws IOException, InterruptedException {
+        String keytool = Path.of(System.getProperty("java.home"), "bin", "keytool").toString();
+        String ks  = dir.resolve("keystore.jks").toString();
+        String ts  = dir.resolve("truststore.jks").toString();
+        String cer = dir.resolve("servidor.cer").toString();
+        keytool(keytool, "-genkeypair", "-alias", "servidor", "-keyalg", "RSA", "-keysize", "2048",
+                "-dname", "CN=localhost", "-ext", "san=dns:localhost,ip:127.0.0.1", "-validity", "2",
+                "-storetype", "JKS", "-keystore", ks, "-storepass", PASSWORD, "-keypass", PASSWORD);
+        keytool(keytool, "-exportcert", "-alias", "servidor", "-keystore", ks, "-storepass", PASSWORD, "-file", cer);
+        keytool(keytool, "-importcert", "-noprompt", "-alias", "servidor", "-file", cer,
+                "-storetype", "JKS", "-keystore", ts, "-storepass", PASSWORD);
+    }
+
+    private static void keytool(String... comando) throws IOException, InterruptedException {
+        Process p = new ProcessBuilder(comando).redirectErrorStream(true).start();
+        String salida = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (p.waitFor() != 0) throw new IOException("keytool falló: " + salida);
+    }
+
+    private static SSLContext contextoServidor(Path keystore) throws Exception {
+        KeyStore ks = KeyStore.getInstance("JKS");
+        try (InputStream in = Files.newInputStream(keystore)) { ks.load(in, PASSWORD.toCharArray()); }
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(ks, PASSWORD.toCharArray());
+        SSLContext ctx = SSLContext.getInstance("TLS");
+        ctx.init(kmf.getKeyManagers(), null, null);
+        return ctx;
+    }
+
+    /** Arranca el servidor de forma independiente hasta que se pulse Intro. */
+    public static void main(String[] args) throws Exception {
+        try (ServidorPrueba srv = iniciar()) {
+            System.out.println("HTTPS:      " + srv.getBaseUrl());
+            System.out.println("Push TLS:   " + srv.getPuertoTcp());
+            System.out.println("Truststore: " + srv.getRutaTruststore());
+            System.out.println("Intro para terminar.");
+            System.in.read();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package cliente;
+
+import comun.Mensaje;
+import comun.TipoMensaje;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Orden de los lotes de {@link AgrupadorMensajes} cuando se cierran desde hilos distintos,
+ * y lectura de las confirmaciones del servidor.
+ */
+class AgrupadorMensajesTest {
+
+    /**
+     * El temporizador cierra el primer lote y se queda parado justo al entregarlo; entretanto
+     * otro hilo (el EDT) llena y cierra el segundo. El segundo no puede llegar antes.
+     */
+    @Test
+    void loteDelTemporizadorNoEsAdelantadoPorUnoLleno() throws Exception {
+        List<String> entregados = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch enTemporizador = new CountDownLatch(1);
+        AgrupadorMensajes agrupador = new AgrupadorMensajes(10, 3, lote -> {
+            if (lote.get(0).getContenido().equals("0")) {
+                enTemporizador.countDown();
+                dormir(200);   // el hilo del temporizador pierde la CPU aquí
+            }
+            for (Mensaje m : lote) entregados.add(m.getContenido());
+        });
+
+        agrupador.agregar(mensaje("0"));
+        assertTrue(enTemporizador.await(5, TimeUnit.SECONDS), "el temporizador no venció");
+        Thread edt = Thread.ofPlatform().start(() -> {
+            for (int i = 1; i <= 3; i++) agrupador.agregar(mensaje(Integer.toString(i)));
+        });
+        edt.join(5_000);
+
+        assertEquals(List.of("0", "1", "2", "3"), entregados);
+    }
+
+    /**
+     * Mientras un lote espera a entregarse (p.ej. la cola de envío está llena con
+     * {@code bloquear}), el EDT sigue pudiendo agregar mensajes sin quedarse esperando.
+     */
+    @Test
+    void unaEntregaBloqueadaNoBloqueaAgregar() throws Exception {
+        List<String> entregados = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch entregando = new CountDownLatch(1);
+        CountDownLatch seguir     = new CountDownLatch(1);
+        AgrupadorMensajes agrupador = new AgrupadorMensajes(10, 32, lote -> {
+            if (lote.get(0).getContenido().equals("0")) {
+                entregando.countDown();
+                try { seguir.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            }
+            for (Mensaje m : lote) entregados.add(m.getContenido());
+        });
+
+        agrupador.agregar(mensaje("0"));
+        assertTrue(entregando.await(5, TimeUnit.SECONDS), "el temporizador no venció");
+        Thread edt = Thread.ofPlatform().start(() -> agrupador.agregar(mensaje("1")));
+        edt.join(2_000);
+        boolean agrego = !edt.isAlive();
+        seguir.countDown();
+        assertTrue(agrego, "agregar esperó a la entrega en curso");
+
+        agrupador.vaciar();
+        assertEquals(List.of("0", "1"), entregados);
+    }
+
+    @Test
+    void vaciarEntregaAntesQueLoSiguiente() {
+        List<String> entregados = new ArrayList<>();
+        AgrupadorMensajes agrupador = new AgrupadorMensajes(60_000, 32,
+                lote -> lote.forEach(m -> entregados.add(m.getContenido())));
+        agrupador.agregar(mensaje("a"));
+        agrupador.agregar(mensaje("b"));
+        agrupador.vaciar();
+        entregados.add("desconectar");
+
+        assertEquals(List.of("a", "b", "desconectar"), entregados);
+    }
+
+    @Test
+    void unaLineaEsAceptacionSiSuPrimerCampoEsOk() {
+        String[] errores = AgrupadorMensajes.confirmaciones("OK|detalle\nOK\nERROR|lleno\nRARO\n", 5);
+        assertNull(errores[0]);
+        assertNull(errores[1]);
+        assertEquals("lleno", errores[2]);
+        assertEquals("RARO", errores[3]);
+        assertEquals("sin confirmación del servidor", errores[4]);
+
+        assertNull(AgrupadorMensajes.confirmaciones("OK|Mensaje recibido", 1)[0]);
+    }
+
+    private static Mensaje mensaje(String contenido) {
+        return new Mensaje(TipoMensaje.MESSAGE, contenido, "yo");
+    }
+
+    private static void dormir(long ms) {
+        try { Thread.sleep(ms); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+}
@@ -0,0 +1,68 @@
+package cliente;
+
+import comun.Mensaje;
+import comun.TipoMensaje;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Persistencia y compactación de {@link BandejaSalida}. */
+class BandejaSalidaTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void agregarTodasAsignaIdentificadoresYLosRecuerda() throws IOException {
+        Path fichero = dir.resolve("bandeja.log");
+        List<Mensaje> guardados;
+        try (BandejaSalida b = new BandejaSalida(fichero)) {
+            guardados = b.agregarTodas(List.of(mensaje("a"), mensaje("b")));
+        }
+        assertEquals(2, guardados.stream().map(Mensaje::getId).distinct().count());
+        try (BandejaSalida b = new BandejaSalida(fichero)) {
+            assertEquals(List.of("a", "b"), contenidos(b.pendientes()));
+        }
+    }
+
+    @Test
+    void compactarConservaLoPendienteYLoEscritoDespues() throws IOException {
+        Path fichero = dir.resolve("bandeja.log");
+        List<String> esperados = new ArrayList<>();
+        try (BandejaSalida b = new BandejaSalida(fichero)) {
+            String texto = "x".repeat(200);
+            int n = 0;
+            // Confirma casi todo, dejando uno de cada diez, hasta pasar del umbral de compactación
+            while (n < 4 * BandejaSalida.COMPACTAR_BYTES / texto.length()) {
+                Mensaje m = b.agregar(mensaje(texto + n));
+                if (n % 10 == 0) esperados.add(m.getContenido());
+                else             b.confirmar(m.getId());
+                n++;
+            }
+            b.agregar(mensaje("ultimo"));
+            esperados.add("ultimo");
+            assertTrue(b.getBytes() < BandejaSalida.COMPACTAR_BYTES * 2, "no se compactó: " + b.getBytes());
+        }
+        assertFalse(Files.exists(dir.resolve("bandeja.log.tmp")));
+        try (BandejaSalida b = new BandejaSalida(fichero)) {
+            assertEquals(esperados, contenidos(b.pendientes()));
+        }
+    }
+
+    private static Mensaje mensaje(String contenido) {
+        return new Mensaje(TipoMensaje.MESSAGE, contenido, "yo");
+    }
+
+    private static List<String> contenidos(List<Mensaje> mensajes) {
+        return mensajes.stream().map(Mensaje::getContenido).toList();
+    }
+}
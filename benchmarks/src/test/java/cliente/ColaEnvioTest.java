@@ -0,0 +1,49 @@
+package cliente;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Desbordamiento de {@link ColaEnvio}: qué se desaloja y quién se entera. */
+class ColaEnvioTest {
+
+    @Test
+    void descartarAntiguoSoloDesalojaMensajesYAvisaDeCadaUno() throws Exception {
+        List<String> ejecutadas = Collections.synchronizedList(new ArrayList<>());
+        List<String> avisos = new ArrayList<>();
+        CountDownLatch ocupada = new CountDownLatch(1);
+        CountDownLatch seguir  = new CountDownLatch(1);
+        ColaEnvio cola = new ColaEnvio("prueba", 2, ColaEnvio.PoliticaDesbordamiento.DESCARTAR_ANTIGUO, e -> { });
+        try {
+            // El hilo queda ocupado con la primera tarea: las siguientes esperan en la cola
+            cola.encolar(() -> { ocupada.countDown(); seguir.await(); });
+            assertTrue(ocupada.await(5, TimeUnit.SECONDS));
+
+            assertTrue(cola.encolar(() -> ejecutadas.add("login")));
+            assertTrue(cola.encolar(() -> ejecutadas.add("a"), () -> avisos.add("a")));
+            assertTrue(cola.encolar(() -> ejecutadas.add("b"), () -> avisos.add("b")));
+            assertEquals(List.of("a"), avisos);
+
+            // Cualquier tarea nueva desaloja el mensaje más antiguo, nunca el login
+            assertTrue(cola.encolar(() -> ejecutadas.add("desconectar")));
+            assertEquals(List.of("a", "b"), avisos);
+            // Sin mensajes que desalojar, lo nuevo se rechaza
+            assertFalse(cola.encolar(() -> ejecutadas.add("c"), () -> avisos.add("c")));
+            assertEquals(List.of("a", "b"), avisos);
+        } finally {
+            seguir.countDown();
+        }
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (ejecutadas.size() < 2 && System.nanoTime() < limite) Thread.sleep(10);
+        cola.cerrar();
+        assertEquals(List.of("login", "desconectar"), ejecutadas);
+    }
+}
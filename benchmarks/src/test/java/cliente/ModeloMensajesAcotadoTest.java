@@ -0,0 +1,56 @@
+package cliente;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Paginación hacia atrás en {@link ModeloMensajesAcotado} cuando ya está lleno. */
+class ModeloMensajesAcotadoTest {
+
+    @Test
+    void anteponerConElModeloLlenoDesalojaLasMasRecientes() {
+        ModeloMensajesAcotado modelo = new ModeloMensajesAcotado(5);
+        modelo.agregarTodas(burbujas(10, 15));
+        List<String> eventos = new ArrayList<>();
+        modelo.addListDataListener(new ListDataListener() {
+            @Override public void intervalAdded(ListDataEvent e)   { eventos.add("+" + e.getIndex0() + ".." + e.getIndex1()); }
+            @Override public void intervalRemoved(ListDataEvent e) { eventos.add("-" + e.getIndex0() + ".." + e.getIndex1()); }
+            @Override public void contentsChanged(ListDataEvent e) { eventos.add("~"); }
+        });
+
+        assertEquals(3, modelo.anteponer(burbujas(7, 10)));
+
+        assertEquals(List.of("-2..4", "+0..2"), eventos);
+        assertEquals(List.of("7", "8", "9", "10", "11"), textos(modelo));
+        // Sigue siendo circular: lo que se añade al final desaloja por el principio
+        modelo.agregar(new Burbuja(Burbuja.Tipo.AJENA, "ana", "12", "00:00"));
+        assertEquals(List.of("8", "9", "10", "11", "12"), textos(modelo));
+    }
+
+    @Test
+    void unaPaginaMayorQueLaCapacidadSoloConservaSuFinal() {
+        ModeloMensajesAcotado modelo = new ModeloMensajesAcotado(3);
+        modelo.agregarTodas(burbujas(10, 12));
+
+        assertEquals(3, modelo.anteponer(burbujas(0, 10)));
+
+        assertEquals(List.of("7", "8", "9"), textos(modelo));
+    }
+
+    private static List<Burbuja> burbujas(int desde, int hasta) {
+        List<Burbuja> lista = new ArrayList<>();
+        for (int i = desde; i < hasta; i++) lista.add(new Burbuja(Burbuja.Tipo.AJENA, "ana", String.valueOf(i), "00:00"));
+        return lista;
+    }
+
+    private static List<String> textos(ModeloMensajesAcotado modelo) {
+        List<String> textos = new ArrayList<>();
+        for (int i = 0; i < modelo.getSize(); i++) textos.add(modelo.getElementAt(i).getTexto());
+        return textos;
+    }
+}
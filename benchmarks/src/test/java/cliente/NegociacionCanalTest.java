@@ -0,0 +1,100 @@
+package cliente;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Opciones que {@link NegociacionCanal} recuerda por servidor push. */
+class NegociacionCanalTest {
+
+    private static final String DESTINO = "prueba.invalid:1";
+
+    @AfterEach
+    void limpiar() {
+        NegociacionCanal.olvidar(DESTINO);
+    }
+
+    @Test
+    void unServidorDesconocidoNoAdmiteElLoginDirecto() {
+        assertFalse(NegociacionCanal.admitida(DESTINO, "login", "directo"));
+        assertFalse(NegociacionCanal.admitida(null, "login", "directo"));
+    }
+
+    @Test
+    void seRecuerdaLoAceptadoYSeOlvidaLoQueDejaDeAceptar() {
+        NegociacionCanal.recordar(DESTINO, NegociacionCanal.parsear("codec=texto,login=directo"));
+        assertTrue(NegociacionCanal.admitida(DESTINO, "login", "directo"));
+
+        NegociacionCanal.recordar(DESTINO, NegociacionCanal.parsear("codec=texto"));
+        assertFalse(NegociacionCanal.admitida(DESTINO, "login", "directo"));
+    }
+
+    @Test
+    void sinRespuestaSeOlvidaTodo() {
+        NegociacionCanal.recordar(DESTINO, Map.of("login", "directo"));
+        NegociacionCanal.olvidar(DESTINO);
+        assertFalse(NegociacionCanal.admitida(DESTINO, "login", "directo"));
+    }
+
+    @Test
+    void lasConfirmacionesSoloEsperanAUnServidorQueLasAceptaba() throws IOException {
+        try (ServerSocket servidor = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket socket = new Socket(servidor.getInetAddress(), servidor.getLocalPort());
+             Socket mudo = servidor.accept()) {
+            String destino = NegociacionCanal.destino(socket);
+            Map<String, String> propuesta = Map.of("confirmacion", "1");
+            try {
+                // Desconocido: no se espera la respuesta
+                long t0 = System.nanoTime();
+                NegociacionCanal.respuesta(socket, socket.getInputStream(), propuesta);
+                assertTrue(System.nanoTime() - t0 < 1_000_000_000L, "esperó a un servidor desconocido");
+
+                // Lo aceptaba: se espera; al no responder se olvida
+                NegociacionCanal.recordar(destino, Map.of("confirmacion", "1"));
+                t0 = System.nanoTime();
+                assertTrue(NegociacionCanal.respuesta(socket, socket.getInputStream(), propuesta).opciones().isEmpty());
+                assertTrue(System.nanoTime() - t0 >= 2_000_000_000L, "no esperó la respuesta");
+                assertFalse(NegociacionCanal.admitida(destino, "confirmacion", "1"));
+            } finally {
+                NegociacionCanal.olvidar(destino);
+            }
+        }
+    }
+
+    @Test
+    void conBandejaSePideQueSeDescartenLosRepetidos() {
+        String previo = System.getProperty("chat.salida");
+        try {
+            System.clearProperty("chat.salida");
+            assertEquals("descartar", NegociacionCanal.propuesta().get("repetidos"));
+            System.setProperty("chat.salida", "false");
+            assertFalse(NegociacionCanal.propuesta().containsKey("repetidos"));
+        } finally {
+            if (previo == null) System.clearProperty("chat.salida");
+            else System.setProperty("chat.salida", previo);
+        }
+    }
+
+    @Test
+    void laPropuestaPideElLoginDirectoSoloSiSeQuiere() {
+        String previo = System.getProperty("chat.login");
+        try {
+            System.clearProperty("chat.login");
+            assertFalse(NegociacionCanal.propuesta().containsKey("login"));
+            System.setProperty("chat.login", "push");
+            assertEquals("directo", NegociacionCanal.propuesta().get("login"));
+        } finally {
+            if (previo == null) System.clearProperty("chat.login");
+            else System.setProperty("chat.login", previo);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package cliente;
+
+import comun.CodecTexto;
+import comun.Mensaje;
+import comun.TipoMensaje;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Clasificación de los avisos de presencia en {@link ReceptorMensajes}. */
+class ReceptorMensajesTest {
+
+    @Test
+    void sinPresenciaExplicitaElAvisoDeTextoEsUnaUnion() throws IOException {
+        List<String> eventos = recibir(false,
+                new Mensaje(TipoMensaje.MESSAGE, "ana se unió al chat", "Sistema"));
+        assertEquals(List.of("union ana"), eventos);
+    }
+
+    @Test
+    void conPresenciaExplicitaSoloCuentanUserJoinYUserLeave() throws IOException {
+        List<String> eventos = recibir(true,
+                new Mensaje(TipoMensaje.MESSAGE, "ana se unió al chat", "Sistema"),
+                new Mensaje(TipoMensaje.USER_JOIN, "bea", "Sistema"),
+                new Mensaje(TipoMensaje.USER_LEAVE, "bea", "Sistema"));
+        assertEquals(List.of("mensaje ana se unió al chat", "conectado bea", "desconectado bea"), eventos);
+    }
+
+    @Test
+    void laAceptacionTardiaDeDeltaDesactivaLosAvisosDeTexto() throws IOException {
+        List<String> eventos = recibir(false,
+                new Mensaje(TipoMensaje.OPTIONS, "codec=texto,presencia=delta", "Sistema"),
+                new Mensaje(TipoMensaje.MESSAGE, "ana ha salido del chat", "Sistema"));
+        assertEquals(List.of("mensaje ana ha salido del chat"), eventos);
+    }
+
+    @Test
+    void unUsuarioQueEscribeLaFraseNoEsUnAviso() throws IOException {
+        List<String> eventos = recibir(false,
+                new Mensaje(TipoMensaje.MESSAGE, "carlos se unió al equipo", "dani"));
+        assertEquals(List.of("mensaje carlos se unió al equipo"), eventos);
+    }
+
+    /** Pasa {@code mensajes} por un receptor hasta agotarlos y devuelve los eventos del oyente. */
+    private static List<String> recibir(boolean presenciaExplicita, Mensaje... mensajes) throws IOException {
+        ByteArrayOutputStream flujo = new ByteArrayOutputStream();
+        for (Mensaje m : mensajes) CodecTexto.INSTANCIA.escribir(m, flujo);
+        List<String> eventos = new ArrayList<>();
+        ReceptorMensajes receptor = new ReceptorMensajes(new Socket(), new ByteArrayInputStream(flujo.toByteArray()),
+                CodecTexto.INSTANCIA, new Anotador(eventos), "yo", null, 0, motivo -> { });
+        receptor.presenciaExplicita(presenciaExplicita);
+        receptor.run();
+        return eventos;
+    }
+
+    private record Anotador(List<String> eventos) implements OyenteChat {
+        @Override public void mensaje(Mensaje m)                  { eventos.add("mensaje " + m.getContenido()); }
+        @Override public void privado(Mensaje m)                  { eventos.add("privado " + m.getContenido()); }
+        @Override public void union(String usuario, Mensaje m)    { eventos.add("union " + usuario); }
+        @Override public void salida(String usuario, Mensaje m)   { eventos.add("salida " + usuario); }
+        @Override public void listaUsuarios(List<String> usuarios) { }
+        @Override public void usuarioConectado(String usuario)    { eventos.add("conectado " + usuario); }
+        @Override public void usuarioDesconectado(String usuario) { eventos.add("desconectado " + usuario); }
+        @Override public void error(String detalle)               { eventos.add("error " + detalle); }
+        @Override public void conexionPerdida(String motivo)      { }
+        @Override public void reconectando(int intento, long esperaMs, String motivo) { }
+        @Override public void reconectado(long ms)                { }
+    }
+}
@@ -0,0 +1,104 @@
+package comun;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ida y vuelta de {@link CodecTexto} y {@link CodecBinario} con mensajes variados (ASCII,
+ * acentos, emoji, separadores {@code |}, vacíos, secuencia e identificador), por flujo y
+ * por trama delimitada como hace {@link LectorTramas}.
+ */
+class CodecMensajeTest {
+
+    static Stream<CodecMensaje> codecs() {
+        return Stream.of(CodecTexto.INSTANCIA, CodecBinario.INSTANCIA);
+    }
+
+    @ParameterizedTest
+    @MethodSource("codecs")
+    void idaYVueltaPorFlujo(CodecMensaje codec) throws IOException {
+        List<Mensaje> muestra = muestra();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Mensaje m : muestra) codec.escribir(m, out);
+
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        for (Mensaje m : muestra) assertIguales(m, codec.leer(in));
+        assertThrows(EOFException.class, () -> codec.leer(in));
+    }
+
+    @ParameterizedTest
+    @MethodSource("codecs")
+    void idaYVueltaPorTramaDelimitada(CodecMensaje codec) throws IOException {
+        List<Mensaje> muestra = muestra();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Mensaje m : muestra) codec.escribir(m, out);
+        byte[] flujo = out.toByteArray();
+
+        int[] trama = new int[3];
+        int pos = 0;
+        for (Mensaje m : muestra) {
+            assertTrue(codec.delimitar(flujo, pos, flujo.length, trama), "trama incompleta tras " + pos);
+            assertIguales(m, codec.decodificar(flujo, trama[0], trama[1] - trama[0]));
+            pos = trama[2];
+        }
+        assertEquals(flujo.length, pos);
+    }
+
+    @ParameterizedTest
+    @MethodSource("codecs")
+    void tramaCortadaNoSeDelimita(CodecMensaje codec) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.escribir(new Mensaje(TipoMensaje.MESSAGE, "hola, ¿qué tal?", "ana"), out);
+        byte[] completa = out.toByteArray();
+        assertTrue(codec.delimitar(completa, 0, completa.length, new int[3]));
+        assertFalse(codec.delimitar(completa, 0, completa.length - 1, new int[3]));
+    }
+
+    private static List<Mensaje> muestra() {
+        String[] textos = {
+            "hola", "¿Qué tal estáis? Mañana hay reunión a las 10:00", "año, niño, pingüino, acción",
+            "emoji 😀🎉 y más", "separadores | dentro | del texto", "", "a".repeat(500),
+            "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor"
+        };
+        List<Mensaje> lista = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String t = textos[i % textos.length];
+            lista.add(switch (i % 7) {
+                case 0  -> new Mensaje(TipoMensaje.PRIVATE, t, "usuario" + (i % 37), "destino" + (i % 11));
+                case 1  -> new Mensaje(TipoMensaje.USER_LIST, "ana,bea,carlos,dani,eva,íñigo", "Sistema");
+                case 2  -> new Mensaje(TipoMensaje.MESSAGE, t, "ana").conSecuencia(1L << 40 | i);
+                case 3  -> new Mensaje(TipoMensaje.MESSAGE, t, "bea").conId("k3x|" + i);
+                case 4  -> new Mensaje(TipoMensaje.ACK, "id-" + i, "Sistema");
+                default -> new Mensaje(TipoMensaje.MESSAGE, t, "usuário" + (i % 37));
+            });
+        }
+        return lista;
+    }
+
+    private static void assertIguales(Mensaje esperado, Mensaje real) {
+        assertNotNull(real, () -> "no se pudo decodificar " + esperado.toHttpString());
+        String caso = esperado.toHttpString();
+        assertEquals(esperado.getTipo(),         real.getTipo(),         caso);
+        assertEquals(esperado.getRemitente(),    real.getRemitente(),    caso);
+        assertEquals(esperado.getDestinatario(), real.getDestinatario(), caso);
+        assertEquals(esperado.getContenido(),    real.getContenido(),    caso);
+        assertEquals(esperado.getTimestamp(),    real.getTimestamp(),    caso);
+        assertEquals(esperado.getSecuencia(),    real.getSecuencia(),    caso);
+        assertEquals(esperado.getId(),           real.getId(),           caso);
+    }
+}
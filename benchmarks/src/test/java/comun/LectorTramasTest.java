@@ -0,0 +1,82 @@
+package comun;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * {@link LectorTramas} con {@link CodecTexto}: presupuesto de bytes asignados por mensaje
+ * recibido y límite de tamaño de trama.
+ */
+class LectorTramasTest {
+
+    /** El propio {@link Mensaje} y su contenido; nada por línea ni por campo. */
+    static final long PRESUPUESTO_BYTES = 256;
+
+    private static final int MENSAJES = 100_000;
+
+    @Test
+    void asignaMenosDelPresupuestoPorMensaje() throws IOException {
+        com.sun.management.ThreadMXBean mx =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(mx.isThreadAllocatedMemorySupported() && mx.isThreadAllocatedMemoryEnabled(),
+                "la JVM no mide bytes asignados por hilo");
+        byte[] flujo = flujo(MENSAJES);
+        long hilo = Thread.currentThread().threadId();
+
+        // Calentamiento: el presupuesto es para el código ya compilado por el JIT
+        for (int i = 0; i < 5; i++) assertEquals(MENSAJES, leer(flujo));
+
+        long antes = mx.getThreadAllocatedBytes(hilo);
+        int leidos = leer(flujo);
+        long porMensaje = (mx.getThreadAllocatedBytes(hilo) - antes) / leidos;
+
+        assertEquals(MENSAJES, leidos);
+        assertTrue(porMensaje <= PRESUPUESTO_BYTES,
+                "asigna " + porMensaje + " B/msg, presupuesto " + PRESUPUESTO_BYTES);
+    }
+
+    @Test
+    void tramaMayorQueElMaximoCierraConError() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CodecTexto.INSTANCIA.escribir(new Mensaje(TipoMensaje.MESSAGE, "corto", "ana"), out);
+        CodecTexto.INSTANCIA.escribir(new Mensaje(TipoMensaje.MESSAGE, "x".repeat(4096), "ana"), out);
+        LectorTramas lector = new LectorTramas(new ByteArrayInputStream(out.toByteArray()),
+                CodecTexto.INSTANCIA, 1024);
+
+        assertEquals("corto", lector.siguiente().getContenido());
+        IOException e = assertThrows(IOException.class, lector::siguiente);
+        assertTrue(!(e instanceof EOFException), "se esperaba trama demasiado grande, no fin de flujo");
+    }
+
+    private static int leer(byte[] flujo) throws IOException {
+        LectorTramas lector = new LectorTramas(new ByteArrayInputStream(flujo), CodecTexto.INSTANCIA);
+        int n = 0;
+        try {
+            while (true) {
+                if (lector.siguiente() != null) n++;
+            }
+        } catch (EOFException fin) {
+            return n;
+        }
+    }
+
+    /** Tráfico típico: 40 remitentes, contenido corto con espacios y acentos. */
+    private static byte[] flujo(int n) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(n * 80);
+        for (int i = 0; i < n; i++) {
+            Mensaje m = new Mensaje(TipoMensaje.MESSAGE, "Hola, ¿qué tal? mensaje " + (i % 100), "usuario" + (i % 40));
+            CodecTexto.INSTANCIA.escribir(m, out);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,196 @@
+package cliente;
+
+import comun.Mensaje;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Etapa de agrupación de mensajes salientes.
+ *
+ * <p>Los mensajes que llegan dentro de una ventana de {@code ventanaMs} milisegundos
+ * (o hasta juntar {@code maximo}) se entregan juntos al {@link Despachador}, que los
+ * envía en una sola petición {@code /mensajes} o en una sola escritura TCP. Al pegar
+ * texto multilínea o ante clientes automáticos esto convierte N peticiones en una.
+ *
+ * <p>Formato del lote por HTTPS:
+ * <pre>
+ *   POST /mensajes   usuario=u&amp;contenido=a&amp;contenido=b&amp;...
+ *   respuesta:       una línea por mensaje, en el mismo orden: OK | ERROR|detalle
+ * </pre>
+ */
+public class AgrupadorMensajes {
+
+    /**
+     * Recibe cada lote ya cerrado, de uno en uno y en el orden en que se cerraron, para que
+     * ningún lote adelante a otro cerrado antes (p.ej. el del temporizador frente al que
+     * llena el EDT). Se llama sin el cerrojo del agrupador: mientras espera (p.ej. a que
+     * haya sitio en la cola de envío) se pueden seguir agregando mensajes.
+     */
+    @FunctionalInterface
+    public interface Despachador {
+        void despachar(List<Mensaje> lote);
+    }
+
+    private final long        ventanaMs;
+    private final int         maximo;
+    private final Despachador despachador;
+
+    private List<Mensaje> pendientes = new ArrayList<>();
+    /**
+     * Incrementa con cada lote cerrado; evita que un temporizador viejo cierre el siguiente.
+     * Su valor al cerrar un lote es el turno en que se entrega.
+     */
+    private long generacion;
+    /** Cerrojo de las entregas, aparte del del agrupador. */
+    private final Object entregas = new Object();
+    /** Turno del siguiente lote a entregar; se accede con {@link #entregas}. */
+    private long siguienteTurno;
+
+    public AgrupadorMensajes(long ventanaMs, int maximo, Despachador despachador) {
+        this.ventanaMs   = ventanaMs;
+        this.maximo      = maximo;
+        this.despachador = despachador;
+    }
+
+    /**
+     * Crea un agrupador con {@code -Dchat.lote.ventanaMs} (por defecto 0, desactivado)
+     * y {@code -Dchat.lote.max} (por defecto 32).
+     */
+    public static AgrupadorMensajes desdePropiedades(Despachador despachador) {
+        return new AgrupadorMensajes(Long.getLong("chat.lote.ventanaMs", 0),
+                                     Integer.getInteger("chat.lote.max", 32), despachador);
+    }
+
+    public boolean activo() { return ventanaMs > 0 && maximo > 1; }
+
+    public void agregar(Mensaje mensaje) {
+        long gen;
+        List<Mensaje> lleno = null;
+        synchronized (this) {
+            pendientes.add(mensaje);
+            gen = generacion;
+            if (pendientes.size() >= maximo) {
+                lleno = cerrarLote();
+            } else if (pendientes.size() > 1) {
+                return;   // ya hay un temporizador en marcha para este lote
+            }
+        }
+        if (lleno != null) {
+            entregar(lleno, gen);
+            return;
+        }
+        CompletableFuture.delayedExecutor(ventanaMs, TimeUnit.MILLISECONDS).execute(() -> vencer(gen));
+    }
+
+    /**
+     * Cierra y entrega el lote en curso (p.ej. antes de una desconexión). Vuelve cuando
+     * están entregados todos los lotes cerrados hasta ahora, también los de otros hilos.
+     */
+    public void vaciar() {
+        List<Mensaje> lote = null;
+        long turno, hasta;
+        synchronized (this) {
+            turno = generacion;
+            if (!pendientes.isEmpty()) lote = cerrarLote();
+            hasta = generacion;
+        }
+        if (lote != null) entregar(lote, turno);
+        else              esperarTurno(hasta);
+    }
+
+    private void vencer(long gen) {
+        List<Mensaje> lote;
+        synchronized (this) {
+            if (gen != generacion || pendientes.isEmpty()) return;
+            lote = cerrarLote();
+        }
+        entregar(lote, gen);
+    }
+
+    /** Cierra el lote en curso; se entrega en el turno {@code generacion} previo. Con el cerrojo tomado. */
+    private List<Mensaje> cerrarLote() {
+        List<Mensaje> lote = pendientes;
+        pendientes = new ArrayList<>();
+        generacion++;
+        return lote;
+    }
+
+    /** Entrega {@code lote} cuando le toca {@code turno}, tras todos los cerrados antes. */
+    private void entregar(List<Mensaje> lote, long turno) {
+        synchronized (entregas) {
+            esperarTurno(turno);
+            try {
+                despachador.despachar(lote);
+            } finally {
+                siguienteTurno++;
+                entregas.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Espera a que se hayan entregado los lotes de turno anterior a {@code turno}. No se
+     * puede abandonar la espera: el turno se quedaría sin entregar y con él los siguientes.
+     */
+    private void esperarTurno(long turno) {
+        boolean interrumpido = false;
+        synchronized (entregas) {
+            while (siguienteTurno < turno) {
+                try {
+                    entregas.wait();
+                } catch (InterruptedException e) {
+                    interrumpido = true;
+                }
+            }
+        }
+        if (interrumpido) Thread.currentThread().interrupt();
+    }
+
+    // ── Formato del lote ─────────────────────────────────────────────────────
+
+    /** Cuerpo {@code application/x-www-form-urlencoded} de {@code POST /mensajes}. */
+    public static String cuerpoLote(String usuario, List<Mensaje> lote) {
+        StringBuilder sb = new StringBuilder("usuario=").append(enc(usuario));
+        for (Mensaje m : lote) sb.append("&contenido=").append(enc(m.getContenido()));
+        // Un id por mensaje y en el mismo orden, para que el servidor pueda descartar repetidos
+        if (lote.stream().anyMatch(m -> m.getId() != null)) {
+            for (Mensaje m : lote) sb.append("&id=").append(enc(m.getId()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reparte la respuesta de {@code /mensajes} entre los mensajes del lote.
+     *
+     * <p>Una línea es una aceptación si su primer campo es {@code OK}, como en el resto de
+     * respuestas del servidor ({@code OK|detalle} también lo es). Sirve igual para la
+     * respuesta de {@code /mensaje}, con un solo mensaje.
+     *
+     * @return Para cada mensaje, {@code null} si fue aceptado o el detalle del error.
+     *         Si el servidor devuelve menos líneas que mensajes, los que faltan se
+     *         marcan como no confirmados.
+     */
+    public static String[] confirmaciones(String respuesta, int mensajes) {
+        String[] lineas = respuesta == null || respuesta.isEmpty() ? new String[0] : respuesta.split("\n");
+        String[] errores = new String[mensajes];
+        for (int i = 0; i < mensajes; i++) {
+            String linea = i < lineas.length ? lineas[i].trim() : null;
+            if (linea == null) {
+                errores[i] = "sin confirmación del servidor";
+                continue;
+            }
+            String[] partes = linea.split("\\|", 2);
+            if (!"OK".equals(partes[0])) errores[i] = "ERROR".equals(partes[0]) && partes.length > 1 ? partes[1] : linea;
+        }
+        return errores;
+    }
+
+    private static String enc(String s) {
+        return URLEncoder.encode(s != null ? s : "", StandardCharsets.UTF_8);
+    }
+}
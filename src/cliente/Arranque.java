@@ -0,0 +1,71 @@
+package cliente;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hitos del arranque y de la entrada al chat, en milisegundos desde {@link #INICIO}
+ * (primera línea de {@code main}).
+ *
+ * <ul>
+ *   <li>Arranque: contexto TLS cargado, JSSE inicializado, primer fotograma de la
+ *       ventana, conexiones HTTPS y push precalentadas.</li>
+ *   <li>Clic → chat visible: desde que se pulsa «Iniciar sesión» hasta que el panel del
+ *       chat se ha pintado.</li>
+ * </ul>
+ *
+ * <p>Con {@code -Dchat.arranque.traza=true} cada hito se escribe en {@code System.err}.
+ */
+public final class Arranque {
+
+    /** Referencia de tiempo: se fija al cargar la clase, lo primero que hace {@code main}. */
+    private static final long INICIO = System.nanoTime();
+    private static final boolean TRAZA = Boolean.getBoolean("chat.arranque.traza");
+
+    private static final Map<String, Long> hitos = Collections.synchronizedMap(new LinkedHashMap<>());
+    private static volatile long clic;
+    private static volatile long ultimoClicAChatNanos = -1;
+
+    private Arranque() {}
+
+    /**
+     * Fija la referencia de tiempo; llamar al principio de {@code main}.
+     *
+     * <p>Está vacío a propósito: {@link #INICIO} se asigna al inicializar la clase, y la
+     * primera llamada a un método estático es lo que la inicializa. Sin esta llamada la
+     * clase se cargaría con el primer {@link #hito}, ya avanzado el arranque, y todos
+     * los tiempos saldrían recortados.
+     */
+    static void empezar() { }
+
+    /** Registra {@code hito} la primera vez que ocurre; las siguientes se ignoran. */
+    public static void hito(String hito) {
+        long ms = (System.nanoTime() - INICIO) / 1_000_000;
+        if (hitos.putIfAbsent(hito, ms) == null && TRAZA) {
+            System.err.printf("[Arranque] %-22s %6d ms%n", hito, ms);
+        }
+    }
+
+    /** El usuario pulsó «Iniciar sesión». */
+    public static void clic() { clic = System.nanoTime(); }
+
+    /** El chat ya se pintó tras el último {@link #clic()}. */
+    public static void chatVisible() {
+        long desde = clic;
+        if (desde == 0) return;
+        clic = 0;
+        ultimoClicAChatNanos = System.nanoTime() - desde;
+        if (TRAZA) System.err.printf("[Arranque] clic → chat visible   %6.1f ms%n", ultimoClicAChatNanos / 1e6);
+    }
+
+    /** Copia de los hitos registrados, en orden. */
+    public static Map<String, Long> getHitos() {
+        synchronized (hitos) {
+            return new LinkedHashMap<>(hitos);
+        }
+    }
+
+    /** Duración del último clic → chat visible, o -1 si aún no hubo ninguno. */
+    public static long getUltimoClicAChatNanos() { return ultimoClicAChatNanos; }
+}
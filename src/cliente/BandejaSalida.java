@@ -0,0 +1,260 @@
+package cliente;
+
+import comun.CodecBinario;
+import comun.Mensaje;
+import comun.TipoMensaje;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bandeja de salida persistente: los mensajes de chat que el usuario escribe se guardan
+ * aquí con un identificador único antes de enviarse, y solo salen de ella cuando el
+ * servidor los confirma. Si el envío falla, o el cliente se cierra o se cae antes de la
+ * confirmación, siguen en disco y se reenvían con el mismo identificador: el servidor
+ * descarta los que ya tenía, así que nada se pierde ni se duplica.
+ *
+ * <p>Es un registro de solo-añadir, un fichero por servidor y usuario, hecho de tramas
+ * {@link CodecBinario} (longitud varint y carga):
+ * <pre>
+ *   MESSAGE con id   mensaje pendiente
+ *   ACK             confirmación; el contenido es el id del mensaje
+ * </pre>
+ * Al abrir se recorre entero (lo pendiente cabe en memoria) y se recorta una trama final
+ * incompleta. Cuando no queda nada pendiente el fichero se vacía; si crece por encima de
+ * {@value #COMPACTAR_BYTES} bytes con más confirmados que pendientes, se reescribe solo
+ * con los pendientes y se sustituye de forma atómica. La copia se escribe y se fuerza a
+ * disco sin el cerrojo; bajo él solo se añade lo escrito entretanto y se sustituye.
+ *
+ * <p>Cada registro es una escritura en el fichero, sin búfer propio: sobrevive a que el
+ * proceso muera. Con {@code -Dchat.salida.sync=true} se fuerza además a disco, para
+ * sobrevivir a un corte de luz: las confirmaciones al escribirlas, los mensajes nuevos con
+ * {@link #sincronizar()} antes de enviarlos y todo al cerrar.
+ *
+ * <p>Los identificadores son un prefijo aleatorio por apertura seguido de un contador,
+ * únicos sin coordinación con el servidor ni entre ejecuciones.
+ *
+ * <p>Los métodos son {@code synchronized}: añade el EDT al aceptar cada mensaje, fuerza a
+ * disco y reenvía el carril de envío, y confirma el hilo receptor, que es también el que
+ * compacta. Bajo el cerrojo no se fuerza nada a disco salvo al cerrar.
+ */
+public class BandejaSalida implements AutoCloseable {
+
+    static final long COMPACTAR_BYTES = 256 * 1024;
+
+    private static final SecureRandom ALEATORIO = new SecureRandom();
+
+    private final Path    fichero;
+    private final boolean sincronizar = Boolean.getBoolean("chat.salida.sync");
+    private final String  prefijo;
+    private final Map<String, Mensaje> pendientes = new LinkedHashMap<>();
+    private FileChannel canal;
+    private long        contador;
+    private long        confirmados;
+    /** Cambia cada vez que el fichero se vacía o se cierra: invalida una compactación en curso. */
+    private long        generacion;
+    private boolean     compactando;
+
+    public BandejaSalida(Path fichero) throws IOException {
+        this.fichero = fichero;
+        Files.createDirectories(fichero.toAbsolutePath().getParent());
+        byte[] bytes = new byte[9];
+        ALEATORIO.nextBytes(bytes);
+        this.prefijo = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes) + "-";
+        this.canal = FileChannel.open(fichero, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        recuperar();
+    }
+
+    /**
+     * Abre la bandeja de {@code usuario} en {@code servidor} bajo
+     * {@code -Dchat.salida.dir} (por defecto {@code ~/.chatpsp/salida}).
+     */
+    public static BandejaSalida abrir(String servidor, String usuario) throws IOException {
+        Path raiz = Paths.get(System.getProperty("chat.salida.dir",
+                Paths.get(System.getProperty("user.home"), ".chatpsp", "salida").toString()));
+        return new BandejaSalida(raiz.resolve(HistorialLocal.sanear(servidor))
+                                     .resolve(HistorialLocal.sanear(usuario) + ".log"));
+    }
+
+    // ── Operaciones ──────────────────────────────────────────────────────────
+
+    /**
+     * Guarda un mensaje pendiente, asignándole un identificador si no lo tiene. Solo lo
+     * escribe: con {@code -Dchat.salida.sync} lo fuerza a disco {@link #sincronizar()}.
+     *
+     * @return el mensaje con su identificador, que es el que hay que enviar.
+     */
+    public synchronized Mensaje agregar(Mensaje m) throws IOException {
+        return agregarTodas(List.of(m)).get(0);
+    }
+
+    /** Como {@link #agregar} para varios mensajes, en una sola escritura. */
+    public synchronized List<Mensaje> agregarTodas(List<Mensaje> mensajes) throws IOException {
+        if (canal == null) throw new IOException("Bandeja de salida cerrada");
+        List<Mensaje> conId = new ArrayList<>(mensajes.size());
+        for (Mensaje m : mensajes) {
+            conId.add(m.getId() != null ? m : m.conId(prefijo + Long.toString(contador++, 36)));
+        }
+        escribir(canal, conId);
+        for (Mensaje m : conId) pendientes.put(m.getId(), m);
+        return conId;
+    }
+
+    /**
+     * Con {@code -Dchat.salida.sync}, fuerza a disco lo añadido hasta ahora. Es lo lento de
+     * guardar un mensaje, así que se hace fuera del cerrojo y del EDT: en el carril de
+     * envío, antes del primer envío.
+     */
+    public void sincronizar() throws IOException {
+        if (!sincronizar) return;
+        FileChannel actual;
+        synchronized (this) { actual = canal; }
+        if (actual == null) return;
+        try {
+            actual.force(false);
+        } catch (ClosedChannelException e) {
+            // Lo sustituyó una compactación, que fuerza el fichero nuevo, o se cerró, y close() fuerza
+        }
+    }
+
+    /**
+     * Da por entregado el mensaje {@code id}. Los identificadores desconocidos (una
+     * confirmación repetida) se ignoran.
+     */
+    public void confirmar(String id) throws IOException {
+        synchronized (this) {
+            if (canal == null || id == null || pendientes.remove(id) == null) return;
+            if (pendientes.isEmpty()) {
+                // Caso habitual: todo confirmado, el fichero vuelve a cero sin reescribir nada
+                canal.truncate(0);
+                canal.position(0);
+                confirmados = 0;
+                generacion++;
+                return;
+            }
+            escribir(List.of(new Mensaje(TipoMensaje.ACK, id, null)));
+            confirmados++;
+            if (compactando || canal.size() <= COMPACTAR_BYTES || confirmados <= pendientes.size()) return;
+            compactando = true;
+        }
+        try {
+            compactar();
+        } finally {
+            synchronized (this) { compactando = false; }
+        }
+    }
+
+    /** Si el mensaje {@code id} sigue pendiente de confirmar. */
+    public synchronized boolean pendiente(String id) { return pendientes.containsKey(id); }
+
+    /** Copia de los mensajes pendientes, en el orden en que se escribieron. */
+    public synchronized List<Mensaje> pendientes() { return new ArrayList<>(pendientes.values()); }
+
+    public synchronized int getPendientes() { return pendientes.size(); }
+
+    /** Tamaño actual del fichero, en bytes. */
+    public synchronized long getBytes() throws IOException { return canal != null ? canal.size() : 0; }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (canal != null && sincronizar) canal.force(false);
+        } finally {
+            if (canal != null) canal.close();
+            canal = null;
+            generacion++;
+        }
+    }
+
+    // ── Fichero ──────────────────────────────────────────────────────────────
+
+    private void escribir(List<Mensaje> registros) throws IOException {
+        escribir(canal, registros);
+        if (sincronizar) canal.force(false);
+    }
+
+    private static void escribir(FileChannel destino, List<Mensaje> registros) throws IOException {
+        ByteArrayOutputStream tramas = new ByteArrayOutputStream();
+        for (Mensaje r : registros) CodecBinario.INSTANCIA.escribir(r, tramas);
+        ByteBuffer b = ByteBuffer.wrap(tramas.toByteArray());
+        while (b.hasRemaining()) destino.write(b);
+    }
+
+    /** Lee el fichero entero, reconstruye los pendientes y recorta una trama final a medias. */
+    private void recuperar() throws IOException {
+        byte[] datos = Files.readAllBytes(fichero);
+        int[] trama = new int[3];
+        int pos = 0;
+        while (CodecBinario.INSTANCIA.delimitar(datos, pos, datos.length, trama)) {
+            Mensaje r = CodecBinario.INSTANCIA.decodificar(datos, trama[0], trama[1] - trama[0]);
+            if (r == null) break;
+            if (r.getTipo() == TipoMensaje.ACK) {
+                if (pendientes.remove(r.getContenido()) != null) confirmados++;
+            } else if (r.getId() != null) {
+                pendientes.put(r.getId(), r);
+            }
+            pos = trama[2];
+        }
+        canal.truncate(pos);
+        canal.position(pos);
+    }
+
+    /**
+     * Reescribe el fichero solo con los pendientes y lo sustituye de una vez. Se llama sin
+     * el cerrojo: la copia de los pendientes se escribe y se fuerza fuera de él, y bajo él
+     * solo se le añade lo escrito en el fichero desde la copia (registros nuevos y
+     * {@code ACK}) antes de sustituirlo. Si entretanto se vació o se cerró, se abandona.
+     */
+    private void compactar() throws IOException {
+        Path temporal = fichero.resolveSibling(fichero.getFileName() + ".tmp");
+        List<Mensaje> copia;
+        long desde, gen, confirmadosCopia;
+        synchronized (this) {
+            if (canal == null) return;
+            copia            = new ArrayList<>(pendientes.values());
+            desde            = canal.size();
+            gen              = generacion;
+            confirmadosCopia = confirmados;
+        }
+        FileChannel nuevo = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        boolean sustituido = false;
+        try {
+            escribir(nuevo, copia);
+            nuevo.force(false);
+            synchronized (this) {
+                if (canal == null || gen != generacion) return;
+                ByteBuffer cola = ByteBuffer.allocate((int) (canal.size() - desde));
+                while (cola.hasRemaining() && canal.read(cola, desde + cola.position()) >= 0) { }
+                cola.flip();
+                while (cola.hasRemaining()) nuevo.write(cola);
+                nuevo.force(false);
+                nuevo.close();
+                canal.close();
+                try {
+                    Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    sustituido = true;
+                } finally {
+                    // Sustituido o no, el fichero sigue siendo la bandeja
+                    canal = FileChannel.open(fichero, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    canal.position(canal.size());
+                }
+                confirmados -= confirmadosCopia;
+            }
+        } finally {
+            nuevo.close();
+            if (!sustituido) Files.deleteIfExists(temporal);
+        }
+    }
+}
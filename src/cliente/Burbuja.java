@@ -0,0 +1,50 @@
+package cliente;
+
+/**
+ * Entrada ya clasificada del área de mensajes: lo que antes se convertía
+ * directamente en HTML ahora se guarda como dato estructurado, y cada vista
+ * (HTML o lista virtualizada) decide cómo pintarlo.
+ *
+ * <p>Los campos {@code ancho*}/{@code lineas}/{@code alto} son una caché de maquetación
+ * que solo usa {@link RenderizadorBurbuja} desde el EDT: evitan volver a partir el
+ * texto en líneas cada vez que {@link javax.swing.JList} pregunta por el alto de la celda.
+ */
+public class Burbuja {
+
+    public enum Tipo { PROPIA, AJENA, PRIVADO, SISTEMA, UNION, SALIDA }
+
+    private final Tipo   tipo;
+    private final String remitente;
+    private final String texto;
+    private final String hora;
+
+    /** {@link System#nanoTime()} al llegar del receptor; 0 si no viene de la red (historial, avisos). */
+    long recibidaNanos;
+
+    // Caché de maquetación (solo EDT)
+    int      anchoCache = -1;
+    String[] lineas;
+    /** Si {@link #lineas} no llega al final del texto por el alto fijo de celda. */
+    boolean  recortada;
+    int      alto;
+
+    public Burbuja(Tipo tipo, String remitente, String texto, String hora) {
+        this.tipo      = tipo;
+        this.remitente = remitente;
+        this.texto     = texto;
+        this.hora      = hora;
+    }
+
+    public static Burbuja sistema(Tipo tipo, String texto) {
+        return new Burbuja(tipo, null, texto, null);
+    }
+
+    public Tipo   getTipo()      { return tipo; }
+    public String getRemitente() { return remitente; }
+    public String getTexto()     { return texto; }
+    public String getHora()      { return hora; }
+
+    public boolean esCentrada() {
+        return tipo == Tipo.SISTEMA || tipo == Tipo.UNION || tipo == Tipo.SALIDA;
+    }
+}
@@ -0,0 +1,178 @@
+package cliente;
+
+import comun.CodecMensaje;
+import comun.TipoMensaje;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Una conexión push TCP/TLS ya identificada y negociada, con su {@link ReceptorMensajes}
+ * en marcha.
+ *
+ * <p>Cada reconexión abre un canal nuevo; lo único que pasa de uno a otro es el último
+ * número de secuencia recibido, que se propone como {@code reanudar} para que el
+ * servidor reenvíe solo lo posterior.
+ *
+ * <p>Se abre de dos formas: tras un {@code /login} HTTPS, identificándose solo con el
+ * nombre ({@link #abrir}), o autenticándose en el propio canal ({@link #abrirDirecto}),
+ * en cuyo caso el canal lleva el token de la sesión.
+ */
+public final class CanalPush {
+
+    private final Socket           socket;
+    private final OutputStream     salida;
+    private final CodecMensaje     codec;
+    private final ReceptorMensajes receptor;
+    private final LoginDirecto.Respuesta login;
+    /** Opciones que el servidor aceptó al abrir el canal. */
+    private final Map<String, String> opciones;
+    /** Serializa las escrituras de hilos distintos para que no se intercalen tramas. */
+    private final ReentrantLock    cerrojoSalida = new ReentrantLock();
+
+    private CanalPush(Socket socket, OutputStream salida, NegociacionCanal.Acuerdo acuerdo, ReceptorMensajes receptor,
+                      LoginDirecto.Respuesta login) {
+        this.socket   = socket;
+        this.salida   = salida;
+        this.codec    = acuerdo.codec();
+        this.receptor = receptor;
+        this.login    = login;
+        this.opciones = acuerdo.opciones();
+    }
+
+    /**
+     * Conecta, envía el nombre de usuario, negocia las opciones y arranca el receptor.
+     *
+     * @param reanudarDesde Último número de secuencia ya recibido, o {@code -1} en una
+     *                      sesión nueva.
+     * @param alCaer        Aviso de caída no pedida; {@code null} para el comportamiento
+     *                      original ({@link OyenteChat#conexionPerdida}).
+     */
+    public static CanalPush abrir(SesionesTls tls, String host, int puerto, String usuario,
+                                  OyenteChat oyente, HistorialLocal historial,
+                                  long reanudarDesde, Consumer<String> alCaer) throws IOException {
+        // Handshake reanudando la sesión push anterior si la hay; ya sin retardo de Nagle
+        Socket socket = tls.conectar(host, puerto, "push");
+        return abrir(socket, usuario, oyente, historial, reanudarDesde, alCaer);
+    }
+
+    /**
+     * Como {@link #abrir(SesionesTls, String, int, String, OyenteChat, HistorialLocal, long, Consumer)}
+     * sobre un socket TLS ya conectado (p.ej. el preabierto por {@link Precalentamiento}).
+     * Si algo falla el socket se cierra.
+     */
+    public static CanalPush abrir(Socket socket, String usuario, OyenteChat oyente, HistorialLocal historial,
+                                  long reanudarDesde, Consumer<String> alCaer) throws IOException {
+        try {
+            OutputStream salida = socket.getOutputStream();
+            salida.write((usuario + "\n").getBytes(StandardCharsets.UTF_8));
+            salida.flush();
+
+            NegociacionCanal.Acuerdo acuerdo = NegociacionCanal.negociar(
+                    socket, salida, usuario, NegociacionCanal.propuesta(reanudarDesde));
+
+            ReceptorMensajes receptor = new ReceptorMensajes(socket, acuerdo.entrada(), acuerdo.codec(),
+                    oyente, usuario, historial, Math.max(0, reanudarDesde), alCaer);
+            receptor.presenciaExplicita("delta".equals(acuerdo.opciones().get("presencia")));
+            receptor.start();
+            return new CanalPush(socket, salida, acuerdo, receptor, null);
+        } catch (IOException | RuntimeException e) {
+            try { socket.close(); } catch (IOException ignored) {}
+            throw e;
+        }
+    }
+
+    /**
+     * Se autentica en el canal (ver {@link LoginDirecto}) sobre un socket TLS ya
+     * conectado, negocia en la misma ida y vuelta y arranca el receptor. Si algo falla
+     * el socket se cierra.
+     *
+     * @param tipo    {@link TipoMensaje#LOGIN} con la contraseña o {@link TipoMensaje#TOKEN}
+     *                con el token de {@link #token()} de un canal anterior.
+     * @throws IllegalStateException si el servidor rechaza las credenciales.
+     * @throws IOException           si falla la conexión o el servidor no admite el login
+     *                               directo; las credenciales ya se enviaron, así que no
+     *                               se repiten por {@code /login}.
+     */
+    public static CanalPush abrirDirecto(Socket socket, String usuario, TipoMensaje tipo, String secreto,
+                                         OyenteChat oyente, HistorialLocal historial,
+                                         long reanudarDesde, Consumer<String> alCaer) throws IOException {
+        try {
+            OutputStream salida  = socket.getOutputStream();
+            InputStream  entrada = new BufferedInputStream(socket.getInputStream());
+            Map<String, String> propuesta = NegociacionCanal.propuesta(reanudarDesde);
+            LoginDirecto.Respuesta login = LoginDirecto.autenticar(socket, entrada, salida, usuario, tipo, secreto, propuesta);
+            NegociacionCanal.Acuerdo acuerdo = NegociacionCanal.respuesta(socket, entrada, propuesta);
+
+            ReceptorMensajes receptor = new ReceptorMensajes(socket, acuerdo.entrada(), acuerdo.codec(),
+                    oyente, usuario, historial, Math.max(0, reanudarDesde), alCaer);
+            receptor.presenciaExplicita("delta".equals(acuerdo.opciones().get("presencia")));
+            receptor.start();
+            return new CanalPush(socket, salida, acuerdo, receptor, login);
+        } catch (IOException | RuntimeException e) {
+            try { socket.close(); } catch (IOException ignored) {}
+            throw e;
+        }
+    }
+
+    /** Token de la sesión si el canal se abrió con {@link #abrirDirecto}; {@code null} si no. */
+    public String token() { return login != null ? login.token() : null; }
+
+    /** Texto de bienvenida del login directo ({@code ""} si el canal se abrió tras {@code /login}). */
+    public String bienvenida() { return login != null ? login.bienvenida() : ""; }
+
+    /** Formato de trama acordado para este canal. */
+    public CodecMensaje codec() { return codec; }
+
+    /**
+     * {@code true} si el servidor confirma con {@code ACK} los mensajes con identificador
+     * que recibe por este canal, acordado al abrirlo o en una respuesta tardía; si no, hay
+     * que enviarlos sin identificador. El servidor procesa el {@code OPTIONS} antes que lo
+     * que se escriba después, así que el cambio a mitad de canal no pierde confirmaciones.
+     */
+    public boolean confirma() { return acepta("confirmacion", "1"); }
+
+    /**
+     * {@code true} si el servidor aceptó {@code repetidos=descartar}: descarta por
+     * identificador los mensajes que ya recibió, por HTTPS o por el canal, así que se
+     * pueden reenviar sin duplicarlos. Como {@link #confirma()}, puede activarse tarde.
+     */
+    public boolean descartaRepetidos() { return acepta("repetidos", "descartar"); }
+
+    private boolean acepta(String clave, String valor) {
+        return valor.equals(opciones.get(clave)) || receptor.aceptadaTarde(clave, valor);
+    }
+
+    /** Bandeja donde anotar los {@code ACK} que lleguen por el canal. */
+    public void confirmarEn(BandejaSalida bandeja) { receptor.confirmarEn(bandeja); }
+
+    /** Último número de secuencia recibido por este canal (o el de partida si aún no llegó nada). */
+    public long ultimaSecuencia() { return receptor.getUltimaSecuencia(); }
+
+    /**
+     * Escribe bytes en el canal. Una sola llamada a {@code write} por envío para que
+     * viaje en un único registro TLS.
+     */
+    public void escribir(byte[] bytes) throws IOException {
+        cerrojoSalida.lock();
+        try {
+            salida.write(bytes);
+            salida.flush();
+        } finally {
+            cerrojoSalida.unlock();
+        }
+    }
+
+    /** Detiene el receptor y cierra el socket sin avisar de caída. */
+    public void cerrar() {
+        receptor.detener();
+        try { socket.close(); } catch (IOException ignored) {}
+    }
+}
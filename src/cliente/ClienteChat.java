@@ -1,5 +1,6 @@
 package cliente;
 
+import comun.CodecMensaje;
 import comun.Mensaje;
 import comun.TipoMensaje;
 
@@ -7,10 +8,17 @@ import javax.net.ssl.*;
 import javax.swing.*;
 import java.io.*;
 import java.net.Socket;
-import java.net.URL;
 import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.security.KeyStore;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * Punto de entrada del cliente. Arquitectura híbrida HTTPS + TCP/TLS:
@@ -32,6 +40,55 @@ import java.security.KeyStore;
  *   <li>Se envía el nombre de usuario por TCP para identificarse.</li>
  *   <li>{@link ReceptorMensajes} queda bloqueado leyendo mensajes push cifrados del servidor.</li>
  * </ol>
+ *
+ * <p>Con {@code -Dchat.login=push} el login se hace en el propio canal push, en una sola
+ * ida y vuelta y sin {@code /login} (ver {@link LoginDirecto}), al último puerto push
+ * conocido de este servidor o al de {@code -Dchat.push.puerto}. El servidor entrega un
+ * token con el que se reconecta sin repetir la contraseña. Solo se usa con servidores que
+ * ya aceptaron {@code login=directo} en una negociación anterior (ver
+ * {@link NegociacionCanal}); si no, o si no se conoce el puerto, se sigue con el flujo
+ * anterior, que al proponer la opción descubre si el servidor la admite.
+ *
+ * <p>Con {@code -Dchat.envio=tcp} el canal TCP/TLS pasa a ser bidireccional: los mensajes
+ * de chat se escriben en él con el mismo {@link CodecMensaje} que usa el servidor para el
+ * push. Si la escritura falla se reintenta por HTTPS {@code /mensaje}.
+ *
+ * <p>Con {@code -Dchat.codec=binario} el cliente propone, tras identificarse, el codec
+ * binario para el canal TCP/TLS; si el servidor no lo acepta se sigue en texto. Con
+ * {@code -Dchat.compresion=deflate} propone además comprimir el push (ver
+ * {@link NegociacionCanal}); va desactivado por defecto porque comprimir juntos mensajes
+ * ajenos y privados bajo TLS deja que el tamaño de las tramas revele coincidencias.
+ *
+ * <p>Si el canal TCP/TLS se cae sin que lo pida el usuario, el cliente repite el login
+ * HTTPS con las mismas credenciales y abre un canal nuevo, esperando entre intentos según
+ * {@link PoliticaReintento} ({@code -Dchat.reconexion.*}). Con
+ * {@code -Dchat.reanudar=true} (el servidor debe admitir {@code OPTIONS}) al reabrir
+ * propone {@code reanudar=N} con el último número de secuencia recibido para que el
+ * servidor reenvíe solo lo que se perdió durante el corte. La interfaz se mantiene en el chat
+ * mientras tanto y solo vuelve al login si se agotan los intentos.
+ *
+ * <p>Cada mensaje de chat se guarda, al aceptarlo, en una {@link BandejaSalida} en disco
+ * con un identificador único; lo que aún espera en la cola o en el agrupador sigue ahí si
+ * se cierra el programa, y se envía al volver a entrar con el mismo usuario. Sale de ella
+ * cuando el servidor lo confirma: la respuesta {@code OK} de HTTPS o, por el canal, un
+ * {@code ACK} si se negoció {@code confirmacion=1}. Lo que el servidor rechaza se reenvía
+ * en orden esperando según {@code -Dchat.salida.baseMs}/{@code maxMs} y tras cada
+ * reconexión. Lo que pudo llegarle (un corte a mitad de envío) solo se reenvía si aceptó
+ * {@code repetidos=descartar} (ver {@link NegociacionCanal}), porque descarta por
+ * identificador lo que ya tenía; si no consta, se avisa y no se repite, como antes.
+ * Con {@code -Dchat.salida=false} se envía como antes, sin identificador ni bandeja.
+ *
+ * <p>El arranque no es secuencial: el truststore y JSSE se cargan en otro hilo mientras se
+ * pide el servidor y se construye la ventana, y mientras el usuario escribe sus
+ * credenciales {@link Precalentamiento} deja abiertas las conexiones HTTPS y push.
+ *
+ * <p>{@link Metricas} publica por JMX contadores y latencias del cliente
+ * ({@code -Dchat.jmx=false} para no registrarlos).
+ *
+ * <p>El núcleo no depende de Swing: todo lo que ocurre se notifica a un
+ * {@link OyenteSesion}. {@link #main} usa {@link InterfazGrafica}; con el constructor
+ * público se crean clientes sin interfaz, como los usuarios simulados de
+ * {@code bench.GeneradorCarga}.
  */
 public class ClienteChat {
 
@@ -43,14 +100,89 @@ public class ClienteChat {
 
     private String     baseUrl;
     private String     host;
-    /** Contexto SSL/TLS compartido por HTTPS y TCP para verificar el certificado del servidor. */
-    private SSLContext sslContext;
-    private ReceptorMensajes receptor;
-    private InterfazGrafica  gui;
+    /** Caché de sesiones TLS del contexto, con las métricas de handshake. */
+    private SesionesTls tls;
+    private TransporteHttp   transporte;
+    /** Carril FIFO por el que pasan todas las operaciones de {@link #enviarMensaje}. */
+    private ColaEnvio        colaEnvio;
+    /** Agrupa mensajes de chat cercanos en el tiempo en un único envío (desactivado por defecto). */
+    private AgrupadorMensajes agrupador;
+    /** Historial local del usuario en este servidor; {@code null} si no se pudo abrir. */
+    private volatile HistorialLocal historial;
+    /** Mensajes de chat pendientes de confirmar; {@code null} sin sesión, desactivada o si no se pudo abrir. */
+    private volatile BandejaSalida bandeja;
+    /** Destino de los eventos de la sesión: la interfaz gráfica o un usuario simulado. */
+    private OyenteSesion     oyente;
     private volatile String  nombreUsuario;
-    private volatile Socket  socketTCP;
+    /** Contraseña del último login, para repetirlo al reconectar; se olvida al desconectar. */
+    private volatile String  contrasena;
+    /** Canal push TCP/TLS actual; {@code null} sin sesión o mientras se reconecta. */
+    private volatile CanalPush canal;
+    /** Puerto push de la sesión actual. */
+    private volatile int     puertoPush;
+    /** Token de la sesión si se abrió con login directo; {@code null} si se usó {@code /login}. */
+    private volatile String  token;
+    /**
+     * Número de sesión: cambia en cada login, desconexión o cancelación. Una reconexión
+     * en curso para una sesión anterior se abandona.
+     */
+    private final AtomicLong sesion = new AtomicLong();
+    /**
+     * Serializa login, desconexión y reconexión sobre {@link #canal} e {@link #historial}.
+     * Es un {@link ReentrantLock} y no un monitor porque se espera red con él tomado y los
+     * hilos virtuales no deben quedar clavados a su portador.
+     */
+    private final ReentrantLock cerrojoSesion = new ReentrantLock();
+    private final PoliticaReintento politicaReintento = PoliticaReintento.desdePropiedades();
+    /** Conexiones abiertas de antemano mientras se muestra el login; {@code null} si está desactivado. */
+    private Precalentamiento  precalentamiento;
+    /** {@code true} si los mensajes de chat se envían por el canal TCP/TLS ({@code -Dchat.envio=tcp}). */
+    private final boolean    envioPorTcp = "tcp".equalsIgnoreCase(System.getProperty("chat.envio", "https"));
+    /** {@code true} si se intenta primero el login en el canal push ({@code -Dchat.login=push}). */
+    private final boolean    loginDirecto = "push".equalsIgnoreCase(System.getProperty("chat.login", "http"));
+
+    // Reenvío de la bandeja de salida: este estado solo lo toca el carril de envío
+    private static final int  LOTE_REENVIO    = 32;
+    /** Rechazos del servidor tras los que un mensaje se descarta ({@code -Dchat.salida.rechazos}). */
+    private static final int  RECHAZOS_MAX    = Integer.getInteger("chat.salida.rechazos", 8);
+    /** Lo que se espera un {@code ACK} antes de reenviar ({@code -Dchat.salida.confirmacionMs}). */
+    private static final long CONFIRMACION_MS = Long.getLong("chat.salida.confirmacionMs", 5_000);
+    private final PoliticaReintento politicaSalida = new PoliticaReintento(
+            Long.getLong("chat.salida.baseMs", 100), Long.getLong("chat.salida.maxMs", 5_000), Integer.MAX_VALUE);
+    /** Hay un reenvío programado: lo nuevo espera en la bandeja para no adelantar a lo anterior. */
+    private boolean reenvioProgramado;
+    private int     intentoReenvio;
+    /** Hay una comprobación de {@code ACK} programada. */
+    private boolean vigilandoConfirmacion;
+    /**
+     * Hay mensajes que la cola no admitió esperando en la bandeja a un reenvío: lo nuevo
+     * también espera. Lo activan el EDT o el agrupador, por eso es atómico.
+     */
+    private final AtomicBoolean aplazados = new AtomicBoolean();
+    private final Map<String, Integer> rechazos = new HashMap<>();
+
+    /** Para {@link #main}: el resto se configura en {@link #iniciar}. */
+    private ClienteChat() {}
+
+    /**
+     * Cliente sin interfaz contra el servidor HTTPS {@code host:puerto}; los eventos van a
+     * {@code oyente}. Varios clientes pueden compartir {@code tls} y {@code transporte}:
+     * con miles de usuarios en un proceso no hace falta un pool HTTPS por cada uno.
+     */
+    public ClienteChat(String host, int puerto, SesionesTls tls, TransporteHttp transporte, OyenteSesion oyente) {
+        configurar(host, puerto);
+        this.oyente     = oyente;
+        this.tls        = tls;
+        this.transporte = transporte;
+        crearColas();
+    }
 
     public static void main(String[] args) {
+        Arranque.empezar();
+        if (Boolean.parseBoolean(System.getProperty("chat.jmx", "true"))) Metricas.INSTANCIA.registrarJmx();
+        // El truststore y JSSE se cargan mientras se pregunta el servidor y se construye la ventana
+        CompletableFuture<SSLContext> contexto = Precalentamiento.contexto(ClienteChat::crearSSLContext);
+
         String host   = HOST_DEFAULT;
         int    puerto = PUERTO_DEFAULT;
 
@@ -74,15 +206,19 @@ public class ClienteChat {
 
         SwingUtilities.invokeLater(() -> {
             ClienteChat cliente = new ClienteChat();
-            cliente.iniciar(finalHost, finalPuerto);
+            cliente.iniciar(finalHost, finalPuerto, contexto);
         });
     }
 
-    private void iniciar(String host, int puerto) {
-        this.host    = host;
-        this.baseUrl = "https://" + host + ":" + puerto;
+    private void iniciar(String host, int puerto, CompletableFuture<SSLContext> contexto) {
+        configurar(host, puerto);
+        // La ventana se construye mientras el otro hilo termina de cargar el contexto TLS.
+        // Ninguna acción del usuario llega antes de que este método termine (es el EDT)
+        oyente = new InterfazGrafica(this);
         try {
-            this.sslContext = crearSSLContext();
+            this.tls        = new SesionesTls(Precalentamiento.esperar(contexto));
+            this.transporte = crearTransporte(baseUrl, tls);
+            crearColas();
         } catch (FileNotFoundException e) {
             JOptionPane.showMessageDialog(null,
                     "No se encontró el truststore en '" + TRUSTSTORE_PATH + "'.\n"
@@ -95,7 +231,20 @@ public class ClienteChat {
                     "Error SSL", JOptionPane.ERROR_MESSAGE);
             System.exit(1);
         }
-        gui = new InterfazGrafica(this);
+        if (Precalentamiento.activo()) {
+            precalentamiento = new Precalentamiento(tls, transporte, host, puertoPushConocido());
+            precalentamiento.iniciar();
+        }
+    }
+
+    private void configurar(String host, int puerto) {
+        this.host    = host;
+        this.baseUrl = "https://" + host + ":" + puerto;
+    }
+
+    private void crearColas() {
+        this.colaEnvio = ColaEnvio.desdePropiedades("ClienteHttp", this::errorEnvio);
+        this.agrupador = AgrupadorMensajes.desdePropiedades(lote -> encolarMensajes(() -> doLoteMensajes(lote), lote));
     }
 
     // ── SSL/TLS ───────────────────────────────────────────────────────────────
@@ -107,17 +256,23 @@ public class ClienteChat {
      * {@code gen_certs.sh}. Esto permite al cliente verificar la identidad del servidor
      * sin necesidad de aceptar certificados arbitrarios ni deshabilitar la validación TLS.
      *
-     * <p>La contraseña puede sobreescribirse con la propiedad de sistema
-     * {@code ssl.truststore.password} (valor por defecto: {@code changeit}).
+     * <p>La ruta y la contraseña pueden sobreescribirse con las propiedades de sistema
+     * {@code ssl.truststore.path} y {@code ssl.truststore.password} (valor por defecto:
+     * {@code changeit}).
      *
      * @return {@link SSLContext} configurado con el truststore del servidor.
      * @throws FileNotFoundException si el truststore no existe en la ruta esperada.
      * @throws Exception             si el truststore está dañado o la contraseña es incorrecta.
      */
-    private SSLContext crearSSLContext() throws Exception {
+    private static SSLContext crearSSLContext() throws Exception {
+        return crearSSLContext(System.getProperty("ssl.truststore.path", TRUSTSTORE_PATH));
+    }
+
+    /** Igual que {@link #crearSSLContext()} pero con una ruta de truststore explícita. */
+    public static SSLContext crearSSLContext(String rutaTruststore) throws Exception {
         char[] password = System.getProperty("ssl.truststore.password", "changeit").toCharArray();
         KeyStore trustStore = KeyStore.getInstance("JKS");
-        try (FileInputStream fis = new FileInputStream(TRUSTSTORE_PATH)) {
+        try (FileInputStream fis = new FileInputStream(rutaTruststore)) {
             trustStore.load(fis, password);
         }
         TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
@@ -129,32 +284,105 @@ public class ClienteChat {
 
     // ── API pública ──────────────────────────────────────────────────────────
 
-    public void enviarMensaje(Mensaje mensaje) {
-        if (mensaje.getTipo() == TipoMensaje.LOGIN || mensaje.getTipo() == TipoMensaje.REGISTER) {
-            nombreUsuario = mensaje.getRemitente();
+    public void enviarMensaje(Mensaje original) {
+        if (original.getTipo() == TipoMensaje.LOGIN || original.getTipo() == TipoMensaje.REGISTER) {
+            nombreUsuario = original.getRemitente();
+            sesion.incrementAndGet();   // abandona cualquier reconexión pendiente
         }
-        new Thread(() -> {
-            try {
-                switch (mensaje.getTipo()) {
-                    case LOGIN, REGISTER -> doAutenticar(mensaje);
-                    case MESSAGE         -> doMensaje(mensaje);
-                    case DISCONNECT      -> doDesconectar();
-                }
-            } catch (IOException e) {
-                gui.mostrarError("Error de conexión: " + e.getMessage());
-            } catch (Exception e) {
-                System.err.println("[ClienteHttp] Error inesperado: " + e);
-                gui.mostrarError("Error inesperado: " + e.getMessage());
+        // Se guarda ya, para que ni la cola ni el agrupador pierdan nada al cerrar
+        Mensaje mensaje = original.getTipo() == TipoMensaje.MESSAGE ? guardarEnBandeja(original) : original;
+        if (mensaje.getTipo() == TipoMensaje.MESSAGE && agrupador.activo()) {
+            agrupador.agregar(mensaje);
+            return;
+        }
+        // Cualquier otra operación no debe adelantar a los mensajes ya agrupados
+        agrupador.vaciar();
+        ColaEnvio.Tarea tarea = () -> {
+            switch (mensaje.getTipo()) {
+                case LOGIN, REGISTER -> doAutenticar(mensaje);
+                case MESSAGE         -> doMensaje(mensaje);
+                case DISCONNECT      -> doDesconectar();
             }
-        }, "ClienteHttp").start();
+        };
+        if (mensaje.getTipo() == TipoMensaje.MESSAGE) {
+            encolarMensajes(tarea, List.of(mensaje));
+        } else if (!colaEnvio.encolar(tarea)) {
+            oyente.error("Cola de envío llena: mensaje descartado.");
+        }
     }
 
-    public void reconectar() { /* HTTPS es sin estado, no es necesario */ }
+    /**
+     * Guarda un mensaje de chat en la bandeja de salida al aceptarlo, en el EDT. Es una
+     * escritura sin {@code force}: el de {@code -Dchat.salida.sync} lo hace el carril de
+     * envío ({@link #entregarNuevos}). Sin bandeja, o si falla el disco, se devuelve sin
+     * identificador y se envía como antes.
+     */
+    private Mensaje guardarEnBandeja(Mensaje mensaje) {
+        BandejaSalida b = bandeja;
+        if (b == null) return mensaje;
+        try {
+            return b.agregar(mensaje);
+        } catch (IOException e) {
+            System.err.println("[Salida] No se pudo guardar el mensaje: " + e.getMessage());
+            return mensaje;
+        }
+    }
+
+    /**
+     * Encola el envío de mensajes de chat. Si la cola no los admite, o los desaloja después
+     * con {@code descartar_antiguo}, no se pierden: siguen en la bandeja y salen con un
+     * reenvío en cuanto haya sitio, sin que lo posterior los adelante. Solo sin bandeja se
+     * descartan, avisando de cada uno.
+     */
+    private void encolarMensajes(ColaEnvio.Tarea tarea, List<Mensaje> mensajes) {
+        if (!colaEnvio.encolar(tarea, () -> noEncolados(mensajes))) noEncolados(mensajes);
+    }
+
+    private void noEncolados(List<Mensaje> mensajes) {
+        BandejaSalida b = bandeja;
+        if (b != null && mensajes.stream().allMatch(m -> b.pendiente(m.getId()))) {
+            if (aplazados.compareAndSet(false, true)) {
+                programarEnCarril(b, 0, () -> {
+                    if (b == bandeja) aplazados.set(false);
+                    doReenviar(b);
+                });
+            }
+            return;
+        }
+        for (Mensaje m : mensajes) {
+            oyente.error("Cola de envío llena: mensaje descartado (\"" + m.getContenido() + "\").");
+        }
+    }
+
+    private void errorEnvio(Exception e) {
+        if (e instanceof IOException) {
+            oyente.error("Error de conexión: " + e.getMessage());
+        } else {
+            System.err.println("[ClienteHttp] Error inesperado: " + e);
+            oyente.error("Error inesperado: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Cancela la reconexión automática en curso, si la hay (HTTPS es sin estado, no hay
+     * nada más que rehacer antes de un login manual).
+     */
+    public void reconectar() { sesion.incrementAndGet(); }
 
     public void desconectar() { doDesconectar(); }
 
+    /** Desconecta si hay sesión y detiene el carril de envío; el cliente no se puede reutilizar. */
+    public void cerrar() {
+        if (precalentamiento != null) precalentamiento.descartar();
+        doDesconectar();
+        colaEnvio.cerrar();
+    }
+
     public String getNombreUsuario() { return nombreUsuario; }
 
+    /** Historial local de la sesión actual, o {@code null} si no hay sesión o no se pudo abrir. */
+    public HistorialLocal getHistorial() { return historial; }
+
     // ── Operaciones internas ─────────────────────────────────────────────────
 
     /**
@@ -167,6 +395,17 @@ public class ClienteChat {
      * </ul>
      */
     private void doAutenticar(Mensaje mensaje) throws IOException {
+        cerrojoSesion.lock();
+        try {
+            autenticar(mensaje);
+        } finally {
+            cerrojoSesion.unlock();
+        }
+    }
+
+    private void autenticar(Mensaje mensaje) throws IOException {
+        if (mensaje.getTipo() == TipoMensaje.LOGIN && loginDirecto && autenticarDirecto(mensaje)) return;
+
         String path = mensaje.getTipo() == TipoMensaje.LOGIN ? "/login" : "/register";
         String body = "usuario=" + enc(mensaje.getRemitente())
                     + "&password=" + enc(mensaje.getContenido());
@@ -180,70 +419,583 @@ public class ClienteChat {
             if (mensaje.getTipo() == TipoMensaje.LOGIN) {
                 int puertoTcp = Integer.parseInt(partes[1].trim());
 
-                if (receptor != null) receptor.detener();
+                cerrarCanal();
+                long id = sesion.incrementAndGet();
 
-                // Abrir SSLSocket TCP/TLS usando el mismo SSLContext con el truststore
-                socketTCP = sslContext.getSocketFactory().createSocket(host, puertoTcp);
+                // Antes de arrancar el receptor: lo que ya hay guardado es lo anterior a esta sesión
+                cerrarHistorial();
+                historial = abrirHistorial(nombreUsuario);
+                abrirBandeja(nombreUsuario);
 
-                OutputStream salidaTCP = socketTCP.getOutputStream();
-                salidaTCP.write((nombreUsuario + "\n").getBytes(StandardCharsets.UTF_8));
-                salidaTCP.flush();
+                canal = abrirCanal(nombreUsuario, puertoTcp, -1, id);
+                contrasena = mensaje.getContenido();
+                puertoPush = puertoTcp;
+                token      = null;
+                Precalentamiento.recordarPuertoPush(servidor(), puertoTcp);
 
-                receptor = new ReceptorMensajes(socketTCP, gui, nombreUsuario);
-                receptor.setDaemon(true);
-                receptor.start();
-
-                gui.loginExitoso(partes.length > 2 ? partes[2] : "");
+                oyente.loginExitoso(partes.length > 2 ? partes[2] : "");
+                reenviarPendientes();
 
             } else {
                 nombreUsuario = null;
-                gui.loginExitoso(partes.length > 1 ? partes[1] : "Registro completado.");
+                oyente.loginExitoso(partes.length > 1 ? partes[1] : "Registro completado.");
             }
 
         } else {
             nombreUsuario = null;
-            gui.mostrarError(partes.length > 1 ? partes[1] : "Error desconocido");
+            oyente.error(partes.length > 1 ? partes[1] : "Error desconocido");
         }
     }
 
-    /** Envía un mensaje de texto al servidor vía HTTPS POST. */
+    /**
+     * Login en el canal push, solo si este servidor ya confirmó que lo admite (ver
+     * {@link NegociacionCanal#admitida}): la contraseña no viaja a un servidor que podría
+     * tomarla por un nombre de usuario. Devuelve {@code false} sin haber enviado nada si no
+     * se conoce el puerto, no consta el soporte o no se puede conectar, para seguir con
+     * {@code /login}; {@code true} si el login terminó, bien o con credenciales rechazadas.
+     * Una vez enviadas las credenciales no se vuelve a {@code /login}: un fallo se lanza.
+     */
+    private boolean autenticarDirecto(Mensaje mensaje) throws IOException {
+        int puertoTcp = puertoPushConocido();
+        if (puertoTcp <= 0 || !NegociacionCanal.admitida(host + ":" + puertoTcp, "login", "directo")) return false;
+        Socket socket;
+        try {
+            socket = conectarPush(puertoTcp);
+        } catch (IOException e) {
+            System.err.println("[ClienteChat] Canal push no disponible, se usa /login: " + e.getMessage());
+            return false;
+        }
+
+        cerrarCanal();
+        long id = sesion.incrementAndGet();
+        cerrarHistorial();
+        historial = abrirHistorial(nombreUsuario);
+        abrirBandeja(nombreUsuario);
+        try {
+            canal = abrirCanalDirecto(socket, nombreUsuario, TipoMensaje.LOGIN, mensaje.getContenido(), -1, id);
+        } catch (IllegalStateException | IOException e) {
+            cerrarHistorial();
+            cerrarBandeja();
+            nombreUsuario = null;
+            if (e instanceof IOException io) throw io;
+            oyente.error(e.getMessage());
+            return true;
+        }
+        contrasena = mensaje.getContenido();
+        puertoPush = puertoTcp;
+        token      = canal.token();
+        Precalentamiento.recordarPuertoPush(servidor(), puertoTcp);
+        oyente.loginExitoso(canal.bienvenida());
+        reenviarPendientes();
+        return true;
+    }
+
+    /** Puerto push de {@code -Dchat.push.puerto} o, si no se indica, el último que dio este servidor (0 si ninguno). */
+    private int puertoPushConocido() {
+        return Integer.getInteger("chat.push.puerto", Precalentamiento.puertoPushRecordado(servidor()));
+    }
+
+    /** Envía un mensaje de texto al servidor, como un lote de uno ({@link #doLoteMensajes}). */
     private void doMensaje(Mensaje mensaje) throws IOException {
-        post("/mensaje", "usuario=" + enc(nombreUsuario)
-                       + "&contenido=" + enc(mensaje.getContenido()));
+        doLoteMensajes(List.of(mensaje));
+    }
+
+    /**
+     * Envía mensajes de chat: los guardados en la bandeja de salida, a través de ella
+     * ({@link #entregarNuevos}); los que no tienen identificador, una vez
+     * ({@link #enviarUnaVez}). Un mensaje guardado en una bandeja que ya no es la de la
+     * sesión no se envía: sigue en su fichero y sale con la próxima sesión de su usuario.
+     */
+    private void doLoteMensajes(List<Mensaje> lote) throws IOException {
+        if (lote.get(0).getId() == null) {
+            Metricas.INSTANCIA.enviados(lote.size());
+            enviarUnaVez(lote);
+            return;
+        }
+        BandejaSalida b = bandeja;
+        if (b != null) entregarNuevos(b, lote);
+    }
+
+    /**
+     * Envía mensajes sin bandeja ni reintentos. En modo {@code chat.envio=tcp} se escriben
+     * directamente en el canal TCP/TLS, varios en una sola escritura; si no hay canal o la
+     * escritura falla, se usa HTTPS: {@code POST /mensaje} para uno solo o un único
+     * {@code POST /mensajes} cuya respuesta trae una confirmación por mensaje.
+     */
+    private void enviarUnaVez(List<Mensaje> lote) throws IOException {
+        CanalPush c = canal;
+        if (envioPorTcp && c != null) {
+            try {
+                long t0 = System.nanoTime();
+                c.escribir(tramasTCP(c.codec(), lote, false));
+                Metricas.INSTANCIA.envioTcp.registrarDesde(t0);
+                return;
+            } catch (IOException e) {
+                System.err.println("[ClienteChat] Fallo al enviar por TCP, se usa HTTPS: " + e.getMessage());
+            }
+        }
+        if (lote.size() == 1) {
+            post("/mensaje", "usuario=" + enc(nombreUsuario)
+                           + "&contenido=" + enc(lote.get(0).getContenido()));
+            return;
+        }
+        String respuesta = post("/mensajes", AgrupadorMensajes.cuerpoLote(nombreUsuario, lote));
+        String[] errores = AgrupadorMensajes.confirmaciones(respuesta, lote.size());
+        for (int i = 0; i < errores.length; i++) {
+            if (errores[i] != null) {
+                oyente.error("Mensaje no entregado (\"" + lote.get(i).getContenido() + "\"): " + errores[i]);
+            }
+        }
+    }
+
+    /**
+     * Codifica los mensajes de chat como tramas consecutivas del codec del canal, con su
+     * identificador solo si {@code conId} (el servidor lo aceptó al negociar).
+     */
+    private byte[] tramasTCP(CodecMensaje codec, List<Mensaje> mensajes, boolean conId) throws IOException {
+        ByteArrayOutputStream tramas = new ByteArrayOutputStream();
+        for (Mensaje m : mensajes) {
+            Mensaje trama = new Mensaje(TipoMensaje.MESSAGE, m.getContenido(), nombreUsuario);
+            codec.escribir(conId ? trama.conId(m.getId()) : trama, tramas);
+        }
+        return tramas.toByteArray();
+    }
+
+    // ── Bandeja de salida ────────────────────────────────────────────────────
+
+    /**
+     * Primer envío de mensajes ya guardados en {@code b}, tras forzarlos a disco si se pide.
+     * Se saltan los que ya no están pendientes en {@code b}: otra bandeja, o ya enviados por
+     * un reenvío que los alcanzó en la bandeja antes que su propia tarea (si esperan un
+     * {@code ACK} se envían otra vez; eso solo ocurre si el servidor descarta repetidos).
+     * Si hay un reenvío programado, o mensajes aplazados por la cola, no se envían: esperan
+     * en la bandeja y salen con él, detrás de los anteriores.
+     */
+    private void entregarNuevos(BandejaSalida b, List<Mensaje> mensajes) {
+        List<Mensaje> nuevos = mensajes.stream().filter(m -> b.pendiente(m.getId())).toList();
+        if (nuevos.isEmpty()) return;
+        try {
+            b.sincronizar();
+        } catch (IOException e) {
+            System.err.println("[Salida] No se pudo forzar a disco: " + e.getMessage());
+        }
+        Metricas.INSTANCIA.enviados(nuevos.size());
+        if (reenvioProgramado || aplazados.get()) return;
+        try {
+            entregar(b, nuevos);
+        } catch (IOException e) {
+            oyente.error("Error de conexión: " + e.getMessage() + ". Los mensajes pendientes se reenviarán.");
+            programarReenvio(b);
+        }
+    }
+
+    /** Reenvía en orden todo lo pendiente de {@code b}; si algo falla, vuelve a programarse. */
+    private void doReenviar(BandejaSalida b) {
+        reenvioProgramado = false;
+        if (b != bandeja) return;
+        List<Mensaje> pendientes = b.pendientes();
+        // Sin agrupador, HTTPS va de uno en uno: un servidor antiguo puede no tener /mensajes
+        int lote = envioPorTcp || agrupador.activo() ? LOTE_REENVIO : 1;
+        try {
+            for (int i = 0; i < pendientes.size(); i += lote) {
+                List<Mensaje> parte = pendientes.subList(i, Math.min(pendientes.size(), i + lote));
+                entregar(b, parte);
+                Metricas.INSTANCIA.reenviados(parte.size());
+            }
+            intentoReenvio = 0;
+        } catch (IOException e) {
+            programarReenvio(b);
+        }
+    }
+
+    /**
+     * Envía mensajes de la bandeja y saca los que el servidor confirma. Por el canal, si el
+     * servidor confirma con {@code ACK}, siguen pendientes hasta que llegue (lo anota el
+     * receptor); si no confirma, basta con escribirlos, como sin bandeja. Por HTTPS la
+     * respuesta es la confirmación.
+     *
+     * <p>Un rechazo del servidor ({@code ERROR}) se reintenta siempre: no se quedó con el
+     * mensaje. Lo que puede haberle llegado, un {@code ACK} que no llega o una respuesta
+     * HTTPS perdida, solo se reenvía si el servidor descarta repetidos
+     * ({@link #descartaRepetidos}); si no, sale de la bandeja y se avisa, como sin ella.
+     *
+     * @throws IOException si hay que reintentar: falló la red o el servidor rechazó alguno.
+     */
+    private void entregar(BandejaSalida b, List<Mensaje> lote) throws IOException {
+        boolean reenviable = descartaRepetidos();
+        CanalPush c = canal;
+        if (envioPorTcp && c != null) {
+            try {
+                long t0 = System.nanoTime();
+                c.escribir(tramasTCP(c.codec(), lote, c.confirma()));
+                Metricas.INSTANCIA.envioTcp.registrarDesde(t0);
+                if (c.confirma() && reenviable) vigilarConfirmacion(b, lote.get(lote.size() - 1).getId());
+                else                            for (Mensaje m : lote) b.confirmar(m.getId());
+                return;
+            } catch (IOException e) {
+                System.err.println("[ClienteChat] Fallo al enviar por TCP, se usa HTTPS: " + e.getMessage());
+            }
+        }
+        String respuesta;
+        try {
+            respuesta = lote.size() == 1
+                    ? post("/mensaje", "usuario=" + enc(nombreUsuario)
+                                     + "&contenido=" + enc(lote.get(0).getContenido())
+                                     + "&id=" + enc(lote.get(0).getId()))
+                    : post("/mensajes", AgrupadorMensajes.cuerpoLote(nombreUsuario, lote));
+        } catch (IOException e) {
+            if (reenviable) throw e;
+            // Pudo llegar: reenviarlo a un servidor que no descarta repetidos lo duplicaría
+            for (Mensaje m : lote) b.confirmar(m.getId());
+            oyente.error("Error de conexión: " + e.getMessage() + ". Puede que el mensaje no se haya entregado.");
+            return;
+        }
+        String[] errores = AgrupadorMensajes.confirmaciones(respuesta, lote.size());
+        String rechazo = null;
+        for (int i = 0; i < errores.length; i++) {
+            String id = lote.get(i).getId();
+            if (errores[i] == null) {
+                b.confirmar(id);
+                rechazos.remove(id);
+            } else if (rechazos.merge(id, 1, Integer::sum) >= RECHAZOS_MAX) {
+                // Rechazado una y otra vez (no es un corte pasajero): se deja de intentar
+                b.confirmar(id);
+                rechazos.remove(id);
+                oyente.error("Mensaje no entregado (\"" + lote.get(i).getContenido() + "\"): " + errores[i]);
+            } else if (rechazo == null) {
+                rechazo = errores[i];
+            }
+        }
+        if (rechazo != null) throw new IOException("rechazado por el servidor: " + rechazo);
+    }
+
+    /**
+     * Si el servidor aceptó {@code repetidos=descartar}, así que se le puede reenviar lo que
+     * quizá ya recibió: en el canal actual o, mientras se reconecta, en la última
+     * negociación que se le conoce.
+     */
+    private boolean descartaRepetidos() {
+        CanalPush c = canal;
+        return c != null ? c.descartaRepetidos()
+                         : NegociacionCanal.admitida(host + ":" + puertoPush, "repetidos", "descartar");
+    }
+
+    private void programarReenvio(BandejaSalida b) {
+        reenvioProgramado = true;
+        programarEnCarril(b, politicaSalida.espera(++intentoReenvio + 1), () -> doReenviar(b));
+    }
+
+    /**
+     * Si dentro de {@link #CONFIRMACION_MS} el mensaje {@code id} (el último enviado por el
+     * canal) sigue sin {@code ACK}, reenvía lo pendiente. El servidor confirma en orden, así
+     * que basta con vigilar el último.
+     */
+    private void vigilarConfirmacion(BandejaSalida b, String id) {
+        if (vigilandoConfirmacion) return;
+        vigilandoConfirmacion = true;
+        programarEnCarril(b, CONFIRMACION_MS, () -> {
+            vigilandoConfirmacion = false;
+            if (b.pendiente(id) && !reenvioProgramado) doReenviar(b);
+        });
+    }
+
+    /** Reenvía lo pendiente de la sesión, p.ej. lo que quedó de una ejecución anterior. */
+    private void reenviarPendientes() {
+        BandejaSalida b = bandeja;
+        if (b != null && b.getPendientes() > 0) programarEnCarril(b, 0, () -> doReenviar(b));
+    }
+
+    /**
+     * Ejecuta {@code tarea} en el carril de envío dentro de {@code esperaMs}, mientras
+     * {@code b} siga siendo la bandeja de la sesión. Si la cola está llena lo vuelve a
+     * intentar más tarde: lo pendiente no puede quedarse sin reenvío.
+     */
+    private void programarEnCarril(BandejaSalida b, long esperaMs, ColaEnvio.Tarea tarea) {
+        CompletableFuture.delayedExecutor(esperaMs, TimeUnit.MILLISECONDS).execute(() -> {
+            if (b != bandeja) return;
+            if (!colaEnvio.encolar(tarea)) programarEnCarril(b, Math.max(esperaMs, 100), tarea);
+        });
     }
 
     /**
      * Cierra la sesión de forma controlada:
      * <ol>
-     *   <li>Detiene el hilo receptor (cierra el socket TCP/TLS).</li>
+     *   <li>Abandona cualquier reconexión en curso.</li>
+     *   <li>Detiene el hilo receptor y cierra el socket TCP/TLS.</li>
      *   <li>Notifica al servidor vía HTTPS POST /desconectar.</li>
-     *   <li>Cierra el socket TCP/TLS si aún está abierto.</li>
      * </ol>
      */
     private void doDesconectar() {
-        if (nombreUsuario == null) return;
+        cerrojoSesion.lock();
+        try {
+            if (nombreUsuario == null) return;
+
+            sesion.incrementAndGet();
+            cerrarCanal();
 
-        if (receptor != null) { receptor.detener(); receptor = null; }
+            try { post("/desconectar", "usuario=" + enc(nombreUsuario)); }
+            catch (IOException ignored) {}
 
-        try { post("/desconectar", "usuario=" + enc(nombreUsuario)); }
-        catch (IOException ignored) {}
+            cerrarHistorial();
+            cerrarBandeja();
 
-        if (socketTCP != null) {
-            try { socketTCP.close(); } catch (IOException ignored) {}
-            socketTCP = null;
+            nombreUsuario = null;
+            contrasena    = null;
+            token         = null;
+        } finally {
+            cerrojoSesion.unlock();
         }
+    }
+
+    // ── Canal push y reconexión ──────────────────────────────────────────────
 
-        nombreUsuario = null;
+    /**
+     * Abre el canal push de la sesión {@code id}; su caída dispara {@link #canalCaido}. Usa
+     * el socket preabierto si lo hay y sirve; si no, conecta.
+     */
+    private CanalPush abrirCanal(String usuario, int puertoTcp, long reanudarDesde, long id) throws IOException {
+        Consumer<String> alCaer = alCaer(id);
+        Socket preabierto = precalentamiento != null ? precalentamiento.tomarPush(puertoTcp) : null;
+        CanalPush c = null;
+        if (preabierto != null) {
+            try {
+                c = CanalPush.abrir(preabierto, usuario, oyente, historial, reanudarDesde, alCaer);
+            } catch (IOException e) {
+                System.err.println("[Precalentamiento] Socket push preabierto inservible: " + e.getMessage());
+            }
+        }
+        if (c == null) c = CanalPush.abrir(tls, host, puertoTcp, usuario, oyente, historial, reanudarDesde, alCaer);
+        c.confirmarEn(bandeja);
+        return c;
+    }
+
+    /** Socket TLS al puerto push: el preabierto si lo hay y sirve; si no, uno nuevo. */
+    private Socket conectarPush(int puertoTcp) throws IOException {
+        Socket socket = precalentamiento != null ? precalentamiento.tomarPush(puertoTcp) : null;
+        return socket != null ? socket : tls.conectar(host, puertoTcp, "push");
+    }
+
+    /**
+     * Abre el canal de la sesión {@code id} autenticándose en {@code socket}, ya conectado
+     * con {@link #conectarPush}. Lanza {@link IllegalStateException} si el servidor
+     * rechaza las credenciales.
+     */
+    private CanalPush abrirCanalDirecto(Socket socket, String usuario, TipoMensaje tipo, String secreto,
+                                        long reanudarDesde, long id) throws IOException {
+        CanalPush c = CanalPush.abrirDirecto(socket, usuario, tipo, secreto, oyente, historial, reanudarDesde, alCaer(id));
+        c.confirmarEn(bandeja);
+        return c;
+    }
+
+    private Consumer<String> alCaer(long id) {
+        return politicaReintento.activa() ? motivo -> canalCaido(id, motivo) : null;
+    }
+
+    private void cerrarCanal() {
+        CanalPush c = canal;
+        canal = null;
+        if (c != null) c.cerrar();
+    }
+
+    /** Llamado desde el receptor del canal caído; la reconexión sigue en su propio hilo. */
+    private void canalCaido(long id, String motivo) {
+        Thread.ofVirtual().name("Reconexion").start(() -> reconectarCanal(id, motivo));
+    }
+
+    /**
+     * Repite el login y abre un canal nuevo que reanuda desde el último número de
+     * secuencia recibido: en el propio canal con el token si la sesión se abrió con login
+     * directo, o por HTTPS si no (o si el servidor ya no admite el login directo). Se abandona si entretanto cambia la sesión (login manual o
+     * desconexión); si se agotan los intentos o el servidor rechaza las credenciales se
+     * avisa a la interfaz de la pérdida de conexión.
+     */
+    private void reconectarCanal(long id, String motivo) {
+        long inicio = System.nanoTime();
+        String usuario;
+        String clave;
+        long   desde;
+        cerrojoSesion.lock();
+        try {
+            if (id != sesion.get() || canal == null) return;
+            usuario = nombreUsuario;
+            clave   = contrasena;
+            desde   = canal.ultimaSecuencia();
+            cerrarCanal();
+        } finally {
+            cerrojoSesion.unlock();
+        }
+        oyente.reconectando(1, 0, motivo);
+
+        boolean conectado;
+        try {
+            conectado = politicaReintento.ejecutar(() -> {
+                if (reconectarDirecto(id, usuario, clave, desde)) return;
+                String[] partes = post("/login", "usuario=" + enc(usuario) + "&password=" + enc(clave)).split("\\|", 3);
+                if (!"OK".equals(partes[0])) {
+                    throw new IllegalStateException(partes.length > 1 ? partes[1] : "Login rechazado");
+                }
+                int puertoTcp = Integer.parseInt(partes[1].trim());
+                cerrojoSesion.lock();
+                try {
+                    if (id == sesion.get()) canal = abrirCanal(usuario, puertoTcp, desde, id);
+                } finally {
+                    cerrojoSesion.unlock();
+                }
+            }, () -> id != sesion.get(),
+               (intento, esperaMs, causa) -> oyente.reconectando(intento, esperaMs, causa.getMessage()));
+        } catch (InterruptedException e) {
+            return;
+        } catch (RuntimeException e) {
+            // Credenciales rechazadas o respuesta ilegible: reintentar no lo arregla
+            if (id == sesion.get()) {
+                Metricas.INSTANCIA.reconexion(false);
+                oyente.conexionPerdida(e.getMessage());
+            }
+            return;
+        }
+        if (id != sesion.get()) return;
+        Metricas.INSTANCIA.reconexion(conectado);
+        if (conectado) {
+            oyente.reconectado((System.nanoTime() - inicio) / 1_000_000);
+            // Lo enviado por el canal caído puede no haber llegado; el servidor descarta lo repetido
+            reenviarPendientes();
+        } else {
+            oyente.conexionPerdida(motivo);
+        }
+    }
+
+    /**
+     * Un intento de reconexión por login directo. Si el servidor no reconoce el token
+     * (p.ej. se reinició) se repite con la contraseña en otra conexión nueva, que el
+     * servidor cierra tras un {@code ERROR}. Un fallo tras enviar las credenciales se
+     * lanza para que lo reintente la política de reintento, no se pasa a {@code /login}.
+     *
+     * @return {@code false}, sin haber enviado nada, si la sesión no era directa, el
+     *         servidor ya no consta como compatible o no se puede conectar, para
+     *         intentarlo por {@code /login}.
+     */
+    private boolean reconectarDirecto(long id, String usuario, String clave, long desde) throws IOException {
+        String t = token;
+        if (t == null || !NegociacionCanal.admitida(host + ":" + puertoPush, "login", "directo")) return false;
+        Socket socket;
+        try {
+            socket = conectarPush(puertoPush);
+        } catch (IOException e) {
+            System.err.println("[ClienteChat] Canal push no disponible, se usa /login: " + e.getMessage());
+            return false;
+        }
+        cerrojoSesion.lock();
+        try {
+            if (id != sesion.get()) {
+                socket.close();
+                return true;
+            }
+            CanalPush c;
+            try {
+                c = abrirCanalDirecto(socket, usuario, TipoMensaje.TOKEN, t, desde, id);
+            } catch (IllegalStateException e) {
+                c = abrirCanalDirecto(conectarPush(puertoPush), usuario, TipoMensaje.LOGIN, clave, desde, id);
+            }
+            canal = c;
+            token = c.token();
+        } finally {
+            cerrojoSesion.unlock();
+        }
+        return true;
+    }
+
+    // ── Historial local ──────────────────────────────────────────────────────
+
+    /** Historial local del usuario; {@code null} con {@code -Dchat.historial=false} o si no se puede abrir. */
+    private HistorialLocal abrirHistorial(String usuario) {
+        if (!Boolean.parseBoolean(System.getProperty("chat.historial", "true"))) return null;
+        try {
+            HistorialLocal h = HistorialLocal.abrir(servidor(), usuario);
+            h.activarIndice();
+            return h;
+        } catch (IOException e) {
+            // Sin historial el chat funciona igual; solo se pierde la persistencia
+            System.err.println("[Historial] No se pudo abrir: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void cerrarHistorial() {
+        HistorialLocal h = historial;
+        historial = null;
+        if (h != null) {
+            try { h.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    /** Si los mensajes de chat pasan por la bandeja de salida ({@code -Dchat.salida}, por defecto sí). */
+    static boolean bandejaActiva() {
+        return Boolean.parseBoolean(System.getProperty("chat.salida", "true"));
+    }
+
+    /**
+     * Abre la bandeja de salida del usuario (con lo que quedara pendiente de otra
+     * ejecución). Se llama desde el carril de envío, así que reinicia aquí su estado.
+     */
+    private void abrirBandeja(String usuario) {
+        cerrarBandeja();
+        reenvioProgramado     = false;
+        intentoReenvio        = 0;
+        vigilandoConfirmacion = false;
+        aplazados.set(false);
+        rechazos.clear();
+        if (!bandejaActiva()) return;
+        try {
+            bandeja = BandejaSalida.abrir(servidor(), usuario);
+            Metricas.INSTANCIA.vigilarBandeja(bandeja);
+        } catch (IOException e) {
+            // Sin bandeja los mensajes se envían como antes, sin reintentos
+            System.err.println("[Salida] No se pudo abrir la bandeja: " + e.getMessage());
+        }
+    }
+
+    /** Cierra la bandeja; lo pendiente sigue en disco para la próxima sesión del usuario. */
+    private void cerrarBandeja() {
+        BandejaSalida b = bandeja;
+        bandeja = null;
+        Metricas.INSTANCIA.vigilarBandeja(null);
+        if (b != null) {
+            try { b.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    /** {@code host:puerto} del servidor HTTPS, como clave del historial y del puerto push recordado. */
+    private String servidor() {
+        return baseUrl.substring("https://".length());
     }
 
     // ── HTTPS ─────────────────────────────────────────────────────────────────
 
     /**
-     * Realiza un HTTP POST sobre TLS al servidor.
+     * Elige el transporte HTTPS según {@code -Dchat.http=persistente|clasico}.
+     * Ambos comparten el {@link SSLContext} cargado con el truststore.
+     */
+    public static TransporteHttp crearTransporte(String baseUrl, SSLContext sslContext) {
+        return "clasico".equalsIgnoreCase(System.getProperty("chat.http", "persistente"))
+                ? new TransporteHttpClasico(baseUrl, sslContext)
+                : new TransporteHttpPersistente(baseUrl, sslContext);
+    }
+
+    /** Como {@link #crearTransporte(String, SSLContext)}, midiendo los handshakes del transporte clásico. */
+    public static TransporteHttp crearTransporte(String baseUrl, SesionesTls tls) {
+        return "clasico".equalsIgnoreCase(System.getProperty("chat.http", "persistente"))
+                ? new TransporteHttpClasico(baseUrl, tls.fabricaMedida("https"))
+                : new TransporteHttpPersistente(baseUrl, tls.getContexto());
+    }
+
+    /** Caché de sesiones TLS y métricas de handshake del cliente. */
+    public SesionesTls getSesionesTls() { return tls; }
+
+    /**
+     * Realiza un HTTP POST sobre TLS al servidor a través del {@link TransporteHttp}
+     * configurado (por defecto reutilizando conexiones keep-alive).
      *
-     * <p>Usa el {@link SSLSocketFactory} del {@link SSLContext} cargado con el truststore
-     * para que {@link HttpsURLConnection} verifique el certificado del servidor en cada
-     * petición, sin aceptar certificados no reconocidos.
+     * <p>Mide la latencia por endpoint y los bytes de cuerpo enviados y recibidos.
      *
      * @param path Ruta del endpoint (p.ej. {@code /login}).
      * @param body Cuerpo codificado en {@code application/x-www-form-urlencoded}.
@@ -251,35 +1003,12 @@ public class ClienteChat {
      * @throws IOException si la conexión falla o el servidor no es accesible.
      */
     private String post(String path, String body) throws IOException {
-        URL url = new URL(baseUrl + path);
-        HttpsURLConnection conn = (HttpsURLConnection) url.openConnection();
-        conn.setSSLSocketFactory(sslContext.getSocketFactory());
-        conn.setRequestMethod("POST");
-        conn.setDoOutput(true);
-        conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-        conn.setRequestProperty("Connection", "close");
-        conn.setConnectTimeout(5_000);
-        conn.setReadTimeout(10_000);
-        // Sin setFixedLengthStreamingMode: HttpsURLConnection almacena el body en
-        // buffer interno, calcula Content-Length y envía request + body de forma
-        // atómica al llamar a getResponseCode(), evitando problemas de vaciado de
-        // registros TLS con streaming parcial.
-        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
-        try (OutputStream os = conn.getOutputStream()) { os.write(bytes); }
-        int status = conn.getResponseCode();
-        InputStream is = status < 400 ? conn.getInputStream() : conn.getErrorStream();
-        if (is == null) return "";
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        byte[] buf = new byte[4096];
-        try {
-            int n;
-            while ((n = is.read(buf)) != -1) baos.write(buf, 0, n);
-        } catch (java.net.SocketTimeoutException ignored) {
-            // El servidor no cerró la conexión; devolvemos lo ya recibido
-        } finally {
-            conn.disconnect();
-        }
-        return baos.toString(StandardCharsets.UTF_8);
+        long t0 = System.nanoTime();
+        String respuesta = transporte.post(path, body);
+        Metricas.INSTANCIA.envio(path).registrarDesde(t0);
+        // El cuerpo va codificado como URL, todo ASCII: un carácter es un byte
+        Metricas.INSTANCIA.bytesHttps(Metricas.bytesUtf8(respuesta), body.length());
+        return respuesta;
     }
 
     private static String enc(String s) {
@@ -0,0 +1,83 @@
+package cliente;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Cola de entrada hacia el EDT que agrupa las entregas por fotograma.
+ *
+ * <p>Los hilos de red llaman a {@link #encolar} sin tocar Swing. El primer elemento
+ * tras un vaciado programa un único {@link Timer} de {@code periodoMs} (16 ms por
+ * defecto, ~60 fps); al vencer, el EDT aplica todo lo acumulado en un solo lote. Así
+ * una ráfaga de 1000 mensajes/s se traduce en unas 60 tareas de EDT por segundo en
+ * lugar de 2000, con un único repintado y un único scroll por lote.
+ *
+ * <p>Expone la profundidad de la cola y el tiempo del último vaciado para poder
+ * vigilarlos.
+ */
+public class ColaEntradaEdt<T> {
+
+    private final ConcurrentLinkedQueue<T> cola = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger  profundidad = new AtomicInteger();
+    private final AtomicBoolean  programado  = new AtomicBoolean();
+    private final Consumer<List<T>> aplicador;
+    private final Timer temporizador;
+
+    private volatile long ultimoVaciadoNanos;
+    private volatile long maxVaciadoNanos;
+    private volatile int  ultimoLote;
+    private volatile long lotes;
+
+    /**
+     * @param periodoMs Espera máxima entre la llegada de un elemento y su aplicación.
+     * @param aplicador Se ejecuta en el EDT con todos los elementos pendientes, en orden.
+     */
+    public ColaEntradaEdt(int periodoMs, Consumer<List<T>> aplicador) {
+        this.aplicador    = aplicador;
+        this.temporizador = new Timer(periodoMs, e -> vaciar());
+        this.temporizador.setRepeats(false);
+    }
+
+    /** Puede llamarse desde cualquier hilo. */
+    public void encolar(T elemento) {
+        cola.add(elemento);
+        profundidad.incrementAndGet();
+        if (programado.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(temporizador::restart);
+        }
+    }
+
+    /** Aplica en el EDT todo lo pendiente. Lo invoca el temporizador. */
+    private void vaciar() {
+        long t0 = System.nanoTime();
+        // Se permite programar el siguiente lote antes de drenar: lo que llegue a partir
+        // de aquí o entra en este lote o dispara uno nuevo, nunca se queda sin aplicar.
+        programado.set(false);
+        List<T> lote = new ArrayList<>(Math.max(16, profundidad.get()));
+        T e;
+        while ((e = cola.poll()) != null) lote.add(e);
+        profundidad.addAndGet(-lote.size());
+        if (lote.isEmpty()) return;
+
+        aplicador.accept(lote);
+
+        long dt = System.nanoTime() - t0;
+        ultimoVaciadoNanos = dt;
+        if (dt > maxVaciadoNanos) maxVaciadoNanos = dt;
+        ultimoLote = lote.size();
+        lotes++;
+    }
+
+    /** Elementos encolados pendientes de aplicar en el EDT. */
+    public int  getProfundidad()         { return profundidad.get(); }
+    /** Duración del último vaciado en el EDT (drenaje + aplicación), en nanosegundos. */
+    public long getUltimoVaciadoNanos()  { return ultimoVaciadoNanos; }
+    public long getMaxVaciadoNanos()     { return maxVaciadoNanos; }
+    public int  getUltimoLote()          { return ultimoLote; }
+    public long getLotes()               { return lotes; }
+}
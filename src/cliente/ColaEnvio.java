@@ -0,0 +1,159 @@
+package cliente;
+
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carril de envío de un único escritor: las tareas se ejecutan de una en una y en
+ * el mismo orden en que se encolaron, sobre un solo hilo virtual.
+ *
+ * <p>Sustituye al antiguo "un hilo {@code ClienteHttp} por mensaje", que bajo ráfagas
+ * creaba hilos sin límite y, al competir entre ellos, podía entregar los mensajes
+ * desordenados. Aquí el número de hilos es siempre uno y la cola está acotada; qué
+ * ocurre cuando se llena lo decide la {@link PoliticaDesbordamiento}.
+ */
+public class ColaEnvio {
+
+    /** Qué hacer con una tarea nueva cuando la cola está llena. */
+    public enum PoliticaDesbordamiento {
+        /** Se rechaza la tarea nueva y se informa al llamante (por defecto). */
+        RECHAZAR,
+        /**
+         * Se descarta la tarea descartable (un mensaje de chat) más antigua pendiente para
+         * hacer sitio a la nueva, y se avisa con su {@code alDescartar}. Las demás (login,
+         * desconexión...) nunca se descartan: si no queda ninguna descartable, la tarea
+         * nueva se rechaza como con {@link #RECHAZAR}.
+         */
+        DESCARTAR_ANTIGUO,
+        /** El llamante espera hasta que haya sitio (no usar desde el EDT con colas pequeñas). */
+        BLOQUEAR
+    }
+
+    /** Operación de envío; las excepciones se entregan al {@link ManejadorError}. */
+    @FunctionalInterface
+    public interface Tarea {
+        void ejecutar() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface ManejadorError {
+        void error(Exception e);
+    }
+
+    /**
+     * Tarea encolada; solo las que traen {@code alDescartar} puede desalojarlas
+     * {@link PoliticaDesbordamiento#DESCARTAR_ANTIGUO}, que lo ejecuta al hacerlo.
+     */
+    private record Entrada(Tarea tarea, Runnable alDescartar) {}
+
+    private final BlockingQueue<Entrada> cola;
+    private final PoliticaDesbordamiento politica;
+    private final ManejadorError         manejador;
+    private volatile boolean             cerrada;
+
+    public ColaEnvio(String nombre, int capacidad, PoliticaDesbordamiento politica, ManejadorError manejador) {
+        this.cola      = new ArrayBlockingQueue<>(capacidad);
+        this.politica  = politica;
+        this.manejador = manejador;
+        Thread.ofVirtual().name(nombre).start(this::bucle);
+    }
+
+    /**
+     * Crea una cola con la configuración de las propiedades de sistema
+     * {@code chat.envio.cola} (capacidad, por defecto 256) y
+     * {@code chat.envio.desbordamiento} ({@code rechazar}, {@code descartar_antiguo}
+     * o {@code bloquear}).
+     */
+    public static ColaEnvio desdePropiedades(String nombre, ManejadorError manejador) {
+        int capacidad = Integer.getInteger("chat.envio.cola", 256);
+        PoliticaDesbordamiento politica = PoliticaDesbordamiento.valueOf(
+                System.getProperty("chat.envio.desbordamiento", "rechazar").toUpperCase());
+        return new ColaEnvio(nombre, capacidad, politica, manejador);
+    }
+
+    /**
+     * Encola una tarea que no se puede descartar para hacer sitio a otras.
+     *
+     * @return {@code false} si la tarea se descartó por estar la cola llena o cerrada.
+     */
+    public boolean encolar(Tarea tarea) {
+        return encolar(tarea, null);
+    }
+
+    /**
+     * Encola una tarea.
+     *
+     * @param alDescartar aviso si {@link PoliticaDesbordamiento#DESCARTAR_ANTIGUO} la
+     *                    desaloja cuando la cola se llene (mensajes de chat: quien los
+     *                    escribió debe enterarse); {@code null} si no se puede desalojar.
+     *                    Se ejecuta en el hilo que encola la tarea que ocupa su sitio.
+     * @return {@code false} si la tarea se descartó por estar la cola llena o cerrada.
+     */
+    public boolean encolar(Tarea tarea, Runnable alDescartar) {
+        if (cerrada) return false;
+        Entrada entrada = new Entrada(tarea, alDescartar);
+        switch (politica) {
+            case BLOQUEAR -> {
+                try {
+                    cola.put(entrada);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            case DESCARTAR_ANTIGUO -> {
+                while (!cola.offer(entrada)) {
+                    if (!descartarAntigua()) return false;
+                }
+                return true;
+            }
+            default -> {
+                return cola.offer(entrada);
+            }
+        }
+    }
+
+    /** Quita la tarea descartable más antigua y avisa de ello; {@code false} si no queda ninguna. */
+    private boolean descartarAntigua() {
+        for (Iterator<Entrada> it = cola.iterator(); it.hasNext(); ) {
+            Entrada e = it.next();
+            if (e.alDescartar() != null) {
+                it.remove();
+                e.alDescartar().run();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Número de tareas pendientes de ejecutar. */
+    public int pendientes() { return cola.size(); }
+
+    /** Deja de aceptar tareas; las ya encoladas se ejecutan antes de terminar el hilo. */
+    public void cerrar() {
+        cerrada = true;
+    }
+
+    private void bucle() {
+        while (true) {
+            Entrada entrada;
+            try {
+                entrada = cola.poll(250, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (entrada == null) {
+                if (cerrada) return;
+                continue;
+            }
+            try {
+                entrada.tarea().ejecutar();
+            } catch (Exception e) {
+                manejador.error(e);
+            }
+        }
+    }
+}
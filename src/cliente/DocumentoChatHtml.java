@@ -0,0 +1,110 @@
+package cliente;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.html.HTML;
+import javax.swing.text.html.HTMLDocument;
+import java.io.IOException;
+
+/**
+ * Documento HTML del área de mensajes.
+ *
+ * <p>Dos modos de renderizado, seleccionables con la propiedad de sistema
+ * {@code chat.render}:
+ * <ul>
+ *   <li><b>incremental</b> (por defecto): cada burbuja se inserta al final del
+ *       {@code <body>} del {@link HTMLDocument} ya existente. Solo se parsea y
+ *       maqueta el fragmento nuevo, por lo que el coste por mensaje es constante.</li>
+ *   <li><b>completo</b>: comportamiento original. Se acumula todo el HTML en un
+ *       {@link StringBuilder} y se llama a {@code setText} en cada mensaje, lo que
+ *       re-parsea la conversación entera (coste O(n) por mensaje, O(n²) por sesión).</li>
+ * </ul>
+ *
+ * <p>En modo incremental las burbujas se agrupan en bloques {@code <div>} de
+ * {@value #BURBUJAS_POR_BLOQUE} elementos. Al cambiar un hijo, {@code BoxView}
+ * vuelve a recorrer todos los hijos de su vista padre para recalcular el eje
+ * secundario; con bloques ese recorrido es de n/{@value #BURBUJAS_POR_BLOQUE}
+ * vistas ya medidas en lugar de n tablas.
+ *
+ * <p>Todos los métodos deben invocarse desde el EDT.
+ */
+public class DocumentoChatHtml {
+
+    public enum ModoRenderizado { INCREMENTAL, COMPLETO }
+
+    static final int BURBUJAS_POR_BLOQUE = 64;
+
+    private final JTextPane       pane;
+    private final ModoRenderizado modo;
+
+    /** Solo se usa en modo {@link ModoRenderizado#COMPLETO}. */
+    private StringBuilder mensajesHtml = new StringBuilder();
+    /** Elemento {@code <body>} del documento actual (modo incremental). */
+    private Element body;
+    /** Bloque {@code <div>} que recibe las burbujas nuevas y cuántas contiene ya. */
+    private Element bloqueActual;
+    private int     burbujasEnBloque;
+
+    public DocumentoChatHtml(JTextPane pane) {
+        this(pane, modoPorDefecto());
+    }
+
+    public DocumentoChatHtml(JTextPane pane, ModoRenderizado modo) {
+        this.pane = pane;
+        this.modo = modo;
+        reiniciar();
+    }
+
+    /** Lee el modo de {@code -Dchat.render=incremental|completo}. */
+    public static ModoRenderizado modoPorDefecto() {
+        String valor = System.getProperty("chat.render", "incremental");
+        return "completo".equalsIgnoreCase(valor) ? ModoRenderizado.COMPLETO : ModoRenderizado.INCREMENTAL;
+    }
+
+    public ModoRenderizado getModo() { return modo; }
+
+    /** Vacía la conversación y deja el documento con un {@code <body>} vacío. */
+    public void reiniciar() {
+        mensajesHtml = new StringBuilder();
+        pane.setText(htmlBase(""));
+        body = buscarBody();
+        bloqueActual = null;
+        burbujasEnBloque = 0;
+    }
+
+    /** Añade una o varias burbujas ya convertidas a HTML al final de la conversación. */
+    public void agregar(String htmlBurbuja) {
+        if (modo == ModoRenderizado.COMPLETO || body == null) {
+            mensajesHtml.append(htmlBurbuja);
+            pane.setText(htmlBase(mensajesHtml.toString()));
+            body = buscarBody();
+            return;
+        }
+        HTMLDocument doc = (HTMLDocument) pane.getDocument();
+        try {
+            if (bloqueActual == null || burbujasEnBloque >= BURBUJAS_POR_BLOQUE) {
+                doc.insertBeforeEnd(body, "<div>" + htmlBurbuja + "</div>");
+                bloqueActual = body.getElement(body.getElementCount() - 1);
+                burbujasEnBloque = 1;
+            } else {
+                doc.insertBeforeEnd(bloqueActual, htmlBurbuja);
+                burbujasEnBloque++;
+            }
+        } catch (BadLocationException | IOException e) {
+            System.err.println("[DocumentoChatHtml] No se pudo insertar la burbuja: " + e);
+        }
+    }
+
+    private Element buscarBody() {
+        if (!(pane.getDocument() instanceof HTMLDocument doc)) return null;
+        return doc.getElement(doc.getDefaultRootElement(), StyleConstants.NameAttribute, HTML.Tag.BODY);
+    }
+
+    static String htmlBase(String body) {
+        return "<html><body style='background-color:#F8F9FA;"
+             + "font-family:Segoe UI,Arial,sans-serif;margin:6px;padding:0;'>"
+             + body + "</body></html>";
+    }
+}
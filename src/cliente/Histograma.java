@@ -0,0 +1,106 @@
+package cliente;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de duraciones sin bloqueos, pensado para quedarse activo en producción.
+ *
+ * <p>Los cubos son log-lineales: cada potencia de dos se parte en
+ * {@value #SUBCUBOS} tramos iguales, así que cualquier valor cae en un cubo cuyo ancho
+ * es como mucho el 12,5 % de su límite inferior, desde nanosegundos hasta horas, con
+ * 496 contadores fijos. Registrar es calcular el índice con un par de operaciones de
+ * bits y un incremento atómico; los percentiles se calculan solo al leerlos.
+ *
+ * <p>Las lecturas no son una foto atómica: un registro concurrente puede contar en la
+ * cuenta y no todavía en los cubos. Para vigilar tendencias es suficiente.
+ */
+public final class Histograma implements HistogramaMXBean {
+
+    private static final int BITS_SUBCUBO = 3;
+    private static final int SUBCUBOS     = 1 << BITS_SUBCUBO;
+    private static final int CUBOS        = (64 - BITS_SUBCUBO + 1) * SUBCUBOS;
+
+    private final String          nombre;
+    private final AtomicLongArray cubos = new AtomicLongArray(CUBOS);
+    private final LongAdder       cuenta = new LongAdder();
+    private final LongAdder       suma   = new LongAdder();
+    private final AtomicLong      max    = new AtomicLong();
+
+    public Histograma(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public String getNombre() { return nombre; }
+
+    /** Registra una duración en nanosegundos; los valores negativos cuentan como 0. */
+    public void registrar(long nanos) {
+        long v = Math.max(0, nanos);
+        cubos.incrementAndGet(indice(v));
+        cuenta.increment();
+        suma.add(v);
+        long m;
+        while (v > (m = max.get()) && !max.compareAndSet(m, v)) { }
+    }
+
+    /** Registra el tiempo transcurrido desde {@code inicioNanos} ({@link System#nanoTime()}). */
+    public void registrarDesde(long inicioNanos) {
+        registrar(System.nanoTime() - inicioNanos);
+    }
+
+    // ── Cubos ────────────────────────────────────────────────────────────────
+
+    static int indice(long v) {
+        if (v < SUBCUBOS) return (int) v;
+        int exponente = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exponente - BITS_SUBCUBO)) & (SUBCUBOS - 1);
+        return (exponente - BITS_SUBCUBO + 1) * SUBCUBOS + sub;
+    }
+
+    /** Límite superior (exclusivo) de los valores del cubo {@code i}. */
+    static long limiteSuperior(int i) {
+        if (i < SUBCUBOS) return i + 1;
+        int desplazamiento = i / SUBCUBOS - 1;
+        int sub = i % SUBCUBOS;
+        if (desplazamiento > 58) return Long.MAX_VALUE;
+        return (long) (SUBCUBOS + sub + 1) << desplazamiento;
+    }
+
+    /** Valor por debajo del cual queda la fracción {@code q} de los registros, en nanosegundos. */
+    public long percentil(double q) {
+        long total = 0;
+        long[] copia = new long[CUBOS];
+        for (int i = 0; i < CUBOS; i++) total += copia[i] = cubos.get(i);
+        if (total == 0) return 0;
+        long objetivo = (long) Math.ceil(q * total);
+        long acumulado = 0;
+        for (int i = 0; i < CUBOS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= objetivo) return Math.min(limiteSuperior(i), max.get());
+        }
+        return max.get();
+    }
+
+    // ── JMX ──────────────────────────────────────────────────────────────────
+
+    @Override public long   getCuenta() { return cuenta.sum(); }
+    @Override public double getP50Ms()  { return percentil(0.50) / 1e6; }
+    @Override public double getP90Ms()  { return percentil(0.90) / 1e6; }
+    @Override public double getP99Ms()  { return percentil(0.99) / 1e6; }
+    @Override public double getMaxMs()  { return max.get() / 1e6; }
+
+    @Override
+    public double getMediaMs() {
+        long n = cuenta.sum();
+        return n == 0 ? 0 : suma.sum() / 1e6 / n;
+    }
+
+    @Override
+    public void reiniciar() {
+        for (int i = 0; i < CUBOS; i++) cubos.set(i, 0);
+        cuenta.reset();
+        suma.reset();
+        max.set(0);
+    }
+}
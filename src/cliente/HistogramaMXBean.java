@@ -0,0 +1,15 @@
+package cliente;
+
+/** Vista JMX de un {@link Histograma} de latencias. Los tiempos van en milisegundos. */
+public interface HistogramaMXBean {
+
+    long   getCuenta();
+    double getMediaMs();
+    double getP50Ms();
+    double getP90Ms();
+    double getP99Ms();
+    double getMaxMs();
+
+    /** Pone el histograma a cero. */
+    void reiniciar();
+}
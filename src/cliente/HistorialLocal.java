@@ -0,0 +1,276 @@
+package cliente;
+
+import comun.CodecBinario;
+import comun.Mensaje;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Historial local de mensajes por servidor y usuario.
+ *
+ * <p>Es un registro de solo-añadir dividido en segmentos. Cada segmento son dos ficheros:
+ * <pre>
+ *   &lt;base&gt;.log   registros concatenados, cada uno un {@link Mensaje} codificado con
+ *                 {@link CodecBinario#codificar} (sin prefijo de longitud)
+ *   &lt;base&gt;.idx   un {@code long} big-endian por registro: posición de fin del registro
+ *                 en el .log; el inicio es el fin del anterior (o 0)
+ * </pre>
+ * {@code base} es el número global del primer registro del segmento, con 20 dígitos para
+ * que el orden alfabético coincida con el numérico. Al llenarse un segmento
+ * ({@code -Dchat.historial.segmento}, 32 MiB) se abre otro.
+ *
+ * <p>Abrir no recorre los datos: basta con listar los segmentos y mirar el tamaño del
+ * índice del último, así que el coste no depende de cuántos mensajes haya guardados. Las
+ * lecturas van por {@link MappedByteBuffer}: localizar el registro {@code n} es una
+ * búsqueda binaria entre segmentos y dos lecturas del índice.
+ *
+ * <p>Tras un cierre brusco se recorta lo que el índice no llegó a cubrir (y una entrada de
+ * índice incompleta), de modo que el historial siempre termina en un registro entero.
+ *
+ * <p>Opcionalmente mantiene un {@link IndiceBusqueda} en el mismo directorio
+ * ({@link #activarIndice}), al que pasa cada mensaje guardado.
+ *
+ * <p>Los métodos son {@code synchronized}: escribe el hilo receptor y lee el EDT.
+ */
+public class HistorialLocal implements AutoCloseable {
+
+    private static final long TAM_SEGMENTO_DEFAULT = 32L * 1024 * 1024;
+
+    private final Path directorio;
+    private final long tamSegmento;
+    private final List<Segmento> segmentos = new ArrayList<>();
+    /** Registros que había al abrir; lo posterior es de esta sesión. */
+    private final long tamanoInicial;
+
+    private FileChannel logActivo;
+    private FileChannel idxActivo;
+    private final ByteBuffer entradaIdx = ByteBuffer.allocate(Long.BYTES);
+    private byte[] scratch = new byte[256];
+    private IndiceBusqueda indice;
+
+    public HistorialLocal(Path directorio) throws IOException {
+        this(directorio, Long.getLong("chat.historial.segmento", TAM_SEGMENTO_DEFAULT));
+    }
+
+    public HistorialLocal(Path directorio, long tamSegmento) throws IOException {
+        this.directorio  = directorio;
+        this.tamSegmento = tamSegmento;
+        Files.createDirectories(directorio);
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            ficheros.map(p -> p.getFileName().toString())
+                    .filter(n -> n.endsWith(".idx"))
+                    .sorted()
+                    .forEach(n -> segmentos.add(new Segmento(Long.parseLong(n.substring(0, n.length() - 4)))));
+        }
+        if (segmentos.isEmpty()) segmentos.add(new Segmento(0));
+        abrirActivo(true);
+        this.tamanoInicial = tamano();
+    }
+
+    /**
+     * Abre el historial de {@code usuario} en {@code servidor} bajo
+     * {@code -Dchat.historial.dir} (por defecto {@code ~/.chatpsp/historial}).
+     */
+    public static HistorialLocal abrir(String servidor, String usuario) throws IOException {
+        Path raiz = Paths.get(System.getProperty("chat.historial.dir",
+                Paths.get(System.getProperty("user.home"), ".chatpsp", "historial").toString()));
+        return new HistorialLocal(raiz.resolve(sanear(servidor)).resolve(sanear(usuario)));
+    }
+
+    /**
+     * Abre (o crea) el índice de búsqueda de este historial. Lo que el índice no cubra
+     * se indexa en segundo plano.
+     */
+    public synchronized IndiceBusqueda activarIndice() {
+        if (indice == null) indice = new IndiceBusqueda(directorio, this, tamano());
+        return indice;
+    }
+
+    /** Índice de búsqueda, o {@code null} si no se activó. */
+    public synchronized IndiceBusqueda getIndice() { return indice; }
+
+    // ── Escritura ────────────────────────────────────────────────────────────
+
+    /** @return Número global asignado al mensaje. */
+    public synchronized long agregar(Mensaje m) throws IOException {
+        if (logActivo == null) throw new IOException("Historial cerrado");
+        byte[] datos = CodecBinario.INSTANCIA.codificar(m);
+        Segmento activo = segmentos.get(segmentos.size() - 1);
+        if (activo.finLog > 0 && activo.finLog + datos.length > tamSegmento) {
+            cerrarActivo();
+            segmentos.add(new Segmento(activo.base + activo.registros));
+            abrirActivo(false);
+            activo = segmentos.get(segmentos.size() - 1);
+        }
+        // Primero los datos y después el índice: un corte entre ambas escrituras deja
+        // bytes sobrantes en el .log, que se recortan al abrir
+        ByteBuffer b = ByteBuffer.wrap(datos);
+        while (b.hasRemaining()) logActivo.write(b);
+        long fin = activo.finLog + datos.length;
+        entradaIdx.clear();
+        entradaIdx.putLong(fin).flip();
+        while (entradaIdx.hasRemaining()) idxActivo.write(entradaIdx);
+        activo.finLog = fin;
+        activo.registros++;
+        long id = activo.base + activo.registros - 1;
+        if (indice != null) indice.indexar(id, m);
+        return id;
+    }
+
+    // ── Lectura ──────────────────────────────────────────────────────────────
+
+    /** Número total de mensajes guardados. */
+    public synchronized long tamano() {
+        Segmento ultimo = segmentos.get(segmentos.size() - 1);
+        return ultimo.base + ultimo.registros;
+    }
+
+    /** Mensajes que había al abrir el historial (los anteriores a esta sesión). */
+    public long getTamanoInicial() { return tamanoInicial; }
+
+    /**
+     * Lee hasta {@code n} mensajes a partir del número global {@code desde}, en orden.
+     * Los registros que no se puedan decodificar se omiten.
+     */
+    public List<Mensaje> leer(long desde, int n) throws IOException {
+        List<Mensaje> resultado = new ArrayList<>(Math.max(0, n));
+        recorrer(desde, n, (m, id) -> resultado.add(m));
+        return resultado;
+    }
+
+    /** Como {@link #leer}, pero entrega cada mensaje con su número global. */
+    public synchronized void recorrer(long desde, int n, ObjLongConsumer<Mensaje> visitante) throws IOException {
+        long hasta = Math.min(tamano(), desde + n);
+        int s = segmentoDe(desde);
+        for (long i = Math.max(0, desde); i < hasta; i++) {
+            while (i >= segmentos.get(s).base + segmentos.get(s).registros) s++;
+            Mensaje m = leerRegistro(segmentos.get(s), (int) (i - segmentos.get(s).base));
+            if (m != null) visitante.accept(m, i);
+        }
+    }
+
+    /** Lee los {@code n} mensajes anteriores a {@code antesDe} (página hacia arriba). */
+    public List<Mensaje> leerAnteriores(long antesDe, int n) throws IOException {
+        long desde = Math.max(0, antesDe - n);
+        return leer(desde, (int) (antesDe - desde));
+    }
+
+    @Override
+    public void close() throws IOException {
+        // El índice se cierra fuera del cerrojo: su hilo puede estar leyendo el historial
+        IndiceBusqueda i;
+        synchronized (this) {
+            i = indice;
+            indice = null;
+        }
+        if (i != null) i.close();
+        synchronized (this) {
+            cerrarActivo();
+        }
+    }
+
+    // ── Segmentos ────────────────────────────────────────────────────────────
+
+    private final class Segmento {
+        final long base;
+        long registros;
+        long finLog;
+        private MappedByteBuffer proyIdx;
+        private MappedByteBuffer proyLog;
+
+        Segmento(long base) { this.base = base; }
+
+        Path log() { return directorio.resolve(String.format("%020d.log", base)); }
+        Path idx() { return directorio.resolve(String.format("%020d.idx", base)); }
+
+        /** Proyecciones de lectura; se rehacen si el segmento activo creció desde la última. */
+        MappedByteBuffer indice() throws IOException {
+            long necesario = registros * Long.BYTES;
+            if (proyIdx == null || proyIdx.capacity() < necesario) proyIdx = proyectar(idx(), necesario);
+            return proyIdx;
+        }
+
+        MappedByteBuffer datos() throws IOException {
+            if (proyLog == null || proyLog.capacity() < finLog) proyLog = proyectar(log(), finLog);
+            return proyLog;
+        }
+    }
+
+    private static MappedByteBuffer proyectar(Path fichero, long tamano) throws IOException {
+        try (FileChannel ch = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, tamano);
+        }
+    }
+
+    private Mensaje leerRegistro(Segmento seg, int i) throws IOException {
+        MappedByteBuffer idx = seg.indice();
+        long inicio = i == 0 ? 0 : idx.getLong((i - 1) * Long.BYTES);
+        long fin    = idx.getLong(i * Long.BYTES);
+        int  n      = (int) (fin - inicio);
+        if (n <= 0) return null;
+        if (scratch.length < n) scratch = new byte[Math.max(n, scratch.length * 2)];
+        seg.datos().get((int) inicio, scratch, 0, n);
+        return CodecBinario.INSTANCIA.decodificar(scratch, 0, n);
+    }
+
+    private int segmentoDe(long registro) {
+        int lo = 0, hi = segmentos.size() - 1;
+        while (lo < hi) {
+            int m = (lo + hi + 1) >>> 1;
+            if (segmentos.get(m).base <= registro) lo = m;
+            else                                   hi = m - 1;
+        }
+        return lo;
+    }
+
+    /**
+     * Abre para añadir el último segmento. Al arrancar ({@code recuperar}) ajusta su
+     * tamaño a lo que dice el índice; los segmentos anteriores están sellados y solo se
+     * mira el tamaño de su índice.
+     */
+    private void abrirActivo(boolean recuperar) throws IOException {
+        Segmento activo = segmentos.get(segmentos.size() - 1);
+        if (recuperar) {
+            for (int i = 0; i < segmentos.size() - 1; i++) {
+                Segmento s = segmentos.get(i);
+                s.registros = Files.size(s.idx()) / Long.BYTES;
+                s.finLog    = Files.size(s.log());
+            }
+        }
+        idxActivo = FileChannel.open(activo.idx(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                     StandardOpenOption.WRITE);
+        logActivo = FileChannel.open(activo.log(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                     StandardOpenOption.WRITE);
+        long registros = idxActivo.size() / Long.BYTES;
+        idxActivo.truncate(registros * Long.BYTES);
+        long finLog = 0;
+        if (registros > 0) {
+            ByteBuffer b = ByteBuffer.allocate(Long.BYTES);
+            idxActivo.read(b, (registros - 1) * Long.BYTES);
+            finLog = b.flip().getLong();
+        }
+        logActivo.truncate(finLog);
+        idxActivo.position(registros * Long.BYTES);
+        logActivo.position(finLog);
+        activo.registros = registros;
+        activo.finLog    = finLog;
+    }
+
+    private void cerrarActivo() throws IOException {
+        if (logActivo != null) logActivo.close();
+        if (idxActivo != null) idxActivo.close();
+        logActivo = idxActivo = null;
+    }
+
+    static String sanear(String s) {
+        return s.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
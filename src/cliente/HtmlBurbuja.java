@@ -0,0 +1,97 @@
+package cliente;
+
+/**
+ * HTML de cada tipo de {@link Burbuja} para la vista {@link DocumentoChatHtml}. Son
+ * funciones puras, fuera de {@link InterfazGrafica} para poder medirlas sin ventana
+ * (ver {@code bench.jmh}).
+ */
+public final class HtmlBurbuja {
+
+    // Colores de burbujas (como strings hex para HTML)
+    private static final String H_OWN_BG  = "#6366F1"; // fondo burbuja propia (mensajes enviados por el usuario)
+    private static final String H_OWN_FG  = "#FFFFFF"; // texto burbuja propia
+    private static final String H_OTH_BG  = "#E5E7EB"; // fondo burbuja ajena (mensajes de otros usuarios)
+    private static final String H_OTH_FG  = "#1F2937"; // texto burbuja ajena
+    private static final String H_SYS     = "#454547FF"; // mensajes de sistema genéricos (gris)
+    private static final String H_JOIN    = "#8ccc7a"; // notificación de usuario que se une al chat (verde)
+    private static final String H_LEAVE   = "#DC2626"; // notificación de usuario que abandona el chat (rojo)
+    private static final String H_PRIV_BG = "#FEF3C7"; // fondo mensaje privado (amarillo claro)
+    private static final String H_PRIV_FG = "#92400E"; // texto mensaje privado (marrón)
+
+    private HtmlBurbuja() {}
+
+    /** HTML de la burbuja según su tipo. */
+    public static String de(Burbuja b) {
+        return switch (b.getTipo()) {
+            case PROPIA  -> propia(b.getTexto(), b.getHora());
+            case AJENA   -> ajena(b.getRemitente(), b.getTexto(), b.getHora());
+            case PRIVADO -> privado(b.getRemitente(), b.getTexto(), b.getHora());
+            case UNION   -> union(b.getTexto());
+            case SALIDA  -> salida(b.getTexto());
+            case SISTEMA -> sistema(b.getTexto());
+        };
+    }
+
+    /** Burbuja propia (derecha, índigo) */
+    public static String propia(String texto, String hora) {
+        return "<table width='100%' border='0' cellpadding='3' cellspacing='0'>"
+             + "<tr><td width='22%'>&nbsp;</td>"
+             + "<td bgcolor='" + H_OWN_BG + "' style='padding:9px 14px;'>"
+             + "<font color='" + H_OWN_FG + "' face='Segoe UI,Arial' size='4'>"
+             + esc(texto) + "</font>"
+             + "<br><font color='#C7D2FE' size='2'>" + esc(hora) + "</font>"
+             + "</td></tr></table>";
+    }
+
+    /** Burbuja ajena (izquierda, gris) */
+    public static String ajena(String remitente, String texto, String hora) {
+        return "<table width='100%' border='0' cellpadding='3' cellspacing='0'>"
+             + "<tr><td width='78%' bgcolor='" + H_OTH_BG + "' style='padding:9px 14px;'>"
+             + "<font color='" + H_SYS + "' size='3'><b>" + esc(remitente) + "</b></font><br>"
+             + "<font color='" + H_OTH_FG + "' face='Segoe UI,Arial' size='4'>"
+             + esc(texto) + "</font>"
+             + "<br><font color='" + H_SYS + "' size='2'>" + esc(hora) + "</font>"
+             + "</td><td width='22%'>&nbsp;</td></tr></table>";
+    }
+
+    /** Mensaje de sistema (centrado, gris cursiva) */
+    public static String sistema(String texto) {
+        return "<table width='100%' border='0' cellpadding='6' cellspacing='0'>"
+             + "<tr><td align='center'>"
+             + "<font color='" + H_SYS + "' size='3'><i>" + esc(texto) + "</i></font>"
+             + "</td></tr></table>";
+    }
+
+    /** Mensaje de unión al chat (centrado, verde esmeralda cursiva) */
+    public static String union(String texto) {
+        return "<table width='100%' border='0' cellpadding='6' cellspacing='0'>"
+             + "<tr><td align='center'>"
+             + "<font color='" + H_JOIN + "' size='3'><i>" + esc(texto) + "</i></font>"
+             + "</td></tr></table>";
+    }
+
+    /** Mensaje de salida del chat (centrado, rojo cursiva) */
+    public static String salida(String texto) {
+        return "<table width='100%' border='0' cellpadding='6' cellspacing='0'>"
+             + "<tr><td align='center'>"
+             + "<font color='" + H_LEAVE + "' size='3'><i>" + esc(texto) + "</i></font>"
+             + "</td></tr></table>";
+    }
+
+    /** Mensaje privado (izquierda, amarillo) */
+    public static String privado(String remitente, String texto, String hora) {
+        return "<table width='100%' border='0' cellpadding='3' cellspacing='0'>"
+             + "<tr><td width='78%' bgcolor='" + H_PRIV_BG + "' style='padding:9px 14px;'>"
+             + "<font color='" + H_PRIV_FG + "' size='3'><b>[Privado] " + esc(remitente) + "</b></font><br>"
+             + "<font color='" + H_PRIV_FG + "' face='Segoe UI,Arial' size='4'>"
+             + esc(texto) + "</font>"
+             + "<br><font color='" + H_SYS + "' size='2'>" + esc(hora) + "</font>"
+             + "</td><td width='22%'>&nbsp;</td></tr></table>";
+    }
+
+    /** Escapa {@code &}, {@code <} y {@code >}; {@code null} da la cadena vacía. */
+    public static String esc(String t) {
+        if (t == null) return "";
+        return t.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
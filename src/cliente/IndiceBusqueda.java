@@ -0,0 +1,287 @@
+package cliente;
+
+import comun.Mensaje;
+
+import java.io.*;
+import java.nio.file.*;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice invertido sobre el {@link HistorialLocal}: término normalizado → números de
+ * mensaje que lo contienen.
+ *
+ * <p>Los términos se normalizan a minúsculas sin tildes y se parten por todo lo que no
+ * sea letra o dígito. Cada lista de apariciones es un {@code int[]} creciente (el número
+ * global del mensaje en el historial), sin objetos por entrada.
+ *
+ * <p>Se actualiza en un único hilo propio: {@link #indexar} solo encola, así que ni el
+ * receptor ni el EDT pagan el coste. Las búsquedas toman un cerrojo de lectura y se
+ * resuelven intersecando las listas de menor a mayor.
+ *
+ * <p>Se guarda en {@code indice.bin} junto a los segmentos del historial, con el número
+ * de mensajes que cubre. Al abrir se carga y se indexa lo que falte leyendo el propio
+ * historial, así que el fichero puede perderse o quedarse atrás sin consecuencias: solo
+ * cuesta reconstruirlo. Se reescribe al cerrar y cada {@value #GUARDAR_CADA} mensajes.
+ */
+public class IndiceBusqueda implements AutoCloseable {
+
+    private static final int  MAGIC        = 0x43504958;   // "CPIX"
+    private static final int  VERSION      = 1;
+    private static final int  GUARDAR_CADA = 50_000;
+    private static final int  LOTE_PONERSE_AL_DIA = 1_000;
+    private static final int  TERMINO_MAX  = 32;
+
+    private final Path           fichero;
+    private final ExecutorService hilo;
+    private final ReadWriteLock  cerrojo = new ReentrantReadWriteLock();
+    private final Map<String, ListaIds> apariciones = new HashMap<>();
+    /** Mensajes indexados: todos los de número menor que este. */
+    private volatile long indexados;
+    private long sinGuardar;
+    private volatile boolean cerrado;
+
+    /**
+     * Carga el índice de {@code directorio} y programa la indexación de los mensajes de
+     * {@code historial} que aún no cubre ({@code [indexados, hasta)}).
+     */
+    IndiceBusqueda(Path directorio, HistorialLocal historial, long hasta) {
+        this.fichero = directorio.resolve("indice.bin");
+        this.hilo    = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "IndexadorHistorial");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        hilo.execute(() -> {
+            cargar();
+            ponerseAlDia(historial, hasta);
+        });
+    }
+
+    /** Encola un mensaje recién guardado con número {@code id}. No bloquea. */
+    void indexar(long id, Mensaje m) {
+        hilo.execute(() -> {
+            if (id < indexados) return;
+            cerrojo.writeLock().lock();
+            try {
+                agregar(id, m);
+                indexados = id + 1;
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+            if (++sinGuardar >= GUARDAR_CADA) guardar();
+        });
+    }
+
+    /** Mensajes ya incluidos en el índice. */
+    public long getIndexados() { return indexados; }
+
+    /**
+     * Mensajes que contienen todos los términos de {@code consulta}, del más reciente al
+     * más antiguo.
+     *
+     * @param maximo Número máximo de resultados.
+     */
+    public long[] buscar(String consulta, int maximo) {
+        List<String> claves = new ArrayList<>(new LinkedHashSet<>(terminos(consulta)));
+        if (claves.isEmpty() || maximo <= 0) return new long[0];
+
+        cerrojo.readLock().lock();
+        try {
+            List<ListaIds> listas = new ArrayList<>(claves.size());
+            for (String c : claves) {
+                ListaIds l = apariciones.get(c);
+                if (l == null) return new long[0];
+                listas.add(l);
+            }
+            listas.sort(Comparator.comparingInt(l -> l.n));
+
+            // Se recorre la lista más corta de atrás hacia delante y se busca cada id en
+            // las demás por búsqueda binaria: O(k · log n), con k la lista más corta
+            ListaIds base = listas.get(0);
+            long[] resultado = new long[Math.min(maximo, base.n)];
+            int encontrados = 0;
+            for (int i = base.n - 1; i >= 0 && encontrados < resultado.length; i--) {
+                int id = base.ids[i];
+                boolean enTodas = true;
+                for (int j = 1; j < listas.size() && enTodas; j++) {
+                    ListaIds otra = listas.get(j);
+                    enTodas = Arrays.binarySearch(otra.ids, 0, otra.n, id) >= 0;
+                }
+                if (enTodas) resultado[encontrados++] = id;
+            }
+            return Arrays.copyOf(resultado, encontrados);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /** Guarda el índice y detiene el hilo indexador. */
+    @Override
+    public void close() {
+        cerrado = true;   // corta la puesta al día; se guarda lo indexado hasta ahora
+        hilo.execute(this::guardar);
+        hilo.shutdown();
+        try {
+            hilo.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ── Términos ─────────────────────────────────────────────────────────────
+
+    /** Parte {@code texto} en términos normalizados (minúsculas, sin tildes). */
+    static List<String> terminos(String texto) {
+        List<String> resultado = new ArrayList<>();
+        if (texto == null || texto.isEmpty()) return resultado;
+        String plano = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder actual = new StringBuilder();
+        for (int i = 0; i < plano.length(); i++) {
+            char c = plano.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(c)) {
+                if (actual.length() < TERMINO_MAX) actual.append(Character.toLowerCase(c));
+            } else if (actual.length() > 0) {
+                resultado.add(actual.toString());
+                actual.setLength(0);
+            }
+        }
+        if (actual.length() > 0) resultado.add(actual.toString());
+        return resultado;
+    }
+
+    /** Llamar con el cerrojo de escritura. Los ids llegan en orden creciente. */
+    private void agregar(long id, Mensaje m) {
+        int n = (int) id;
+        for (String t : terminos(m.getContenido()))  apariciones.computeIfAbsent(t, k -> new ListaIds()).agregar(n);
+        for (String t : terminos(m.getRemitente()))  apariciones.computeIfAbsent(t, k -> new ListaIds()).agregar(n);
+    }
+
+    private void ponerseAlDia(HistorialLocal historial, long hasta) {
+        try {
+            while (indexados < hasta && !cerrado) {
+                long desde = indexados;
+                int  n     = (int) Math.min(LOTE_PONERSE_AL_DIA, hasta - desde);
+                cerrojo.writeLock().lock();
+                try {
+                    historial.recorrer(desde, n, (m, id) -> agregar(id, m));
+                    indexados = desde + n;
+                } finally {
+                    cerrojo.writeLock().unlock();
+                }
+                sinGuardar += indexados - desde;
+            }
+            if (sinGuardar > 0) guardar();
+        } catch (IOException e) {
+            System.err.println("[Indice] No se pudo leer el historial: " + e.getMessage());
+        }
+    }
+
+    // ── Persistencia ─────────────────────────────────────────────────────────
+
+    /**
+     * Formato: {@code MAGIC, VERSION, indexados (long), nTerminos (int)} y, por término,
+     * {@code UTF, n (int)} y los ids como diferencias en varint.
+     */
+    private void guardar() {
+        Path tmp = fichero.resolveSibling("indice.bin.tmp");
+        cerrojo.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(indexados);
+            out.writeInt(apariciones.size());
+            for (Map.Entry<String, ListaIds> e : apariciones.entrySet()) {
+                out.writeUTF(e.getKey());
+                ListaIds l = e.getValue();
+                out.writeInt(l.n);
+                int previo = 0;
+                for (int i = 0; i < l.n; i++) {
+                    escribirVarint(out, l.ids[i] - previo);
+                    previo = l.ids[i];
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[Indice] No se pudo guardar: " + e.getMessage());
+            return;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+        try {
+            Files.move(tmp, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            sinGuardar = 0;
+        } catch (IOException e) {
+            System.err.println("[Indice] No se pudo guardar: " + e.getMessage());
+        }
+    }
+
+    private void cargar() {
+        if (!Files.exists(fichero)) return;
+        Map<String, ListaIds> leidos = new HashMap<>();
+        long cubre;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(fichero), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            cubre = in.readLong();
+            int nTerminos = in.readInt();
+            for (int t = 0; t < nTerminos; t++) {
+                String termino = in.readUTF();
+                int n = in.readInt();
+                ListaIds l = new ListaIds(n);
+                int id = 0;
+                for (int i = 0; i < n; i++) l.agregar(id += leerVarint(in));
+                leidos.put(termino, l);
+            }
+        } catch (IOException e) {
+            // Índice dañado: se reconstruye desde el historial
+            System.err.println("[Indice] Se reconstruye (" + e.getMessage() + ")");
+            return;
+        }
+        cerrojo.writeLock().lock();
+        try {
+            apariciones.putAll(leidos);
+            indexados = cubre;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    private static void escribirVarint(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static int leerVarint(DataInputStream in) throws IOException {
+        int v = 0;
+        for (int desplaz = 0; desplaz < 32; desplaz += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << desplaz;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("varint demasiado largo");
+    }
+
+    /** Lista creciente de ids sin cajas. */
+    private static final class ListaIds {
+        int[] ids;
+        int   n;
+
+        ListaIds()          { this(4); }
+        ListaIds(int capacidad) { ids = new int[Math.max(1, capacidad)]; }
+
+        void agregar(int id) {
+            if (n > 0 && ids[n - 1] == id) return;   // término repetido en el mismo mensaje
+            if (n == ids.length) ids = Arrays.copyOf(ids, ids.length * 2);
+            ids[n++] = id;
+        }
+    }
+}
@@ -5,10 +5,15 @@ import comun.TipoMensaje;
 
 import javax.swing.*;
 import javax.swing.border.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
-public class InterfazGrafica extends JFrame {
+public class InterfazGrafica extends JFrame implements OyenteSesion {
 
     // ── Paleta de colores ─────────────────────────────────────
     private static final Color C_BG      = new Color(0xF8F9FA);
@@ -22,17 +27,6 @@ public class InterfazGrafica extends JFrame {
     private static final Color C_ERROR   = new Color(0xEF4444);
     private static final Color C_WARN    = new Color(0xF59E0B);
 
-    // Colores de burbujas (como strings hex para HTML)
-    private static final String H_OWN_BG  = "#6366F1"; // fondo burbuja propia (mensajes enviados por el usuario)
-    private static final String H_OWN_FG  = "#FFFFFF"; // texto burbuja propia
-    private static final String H_OTH_BG  = "#E5E7EB"; // fondo burbuja ajena (mensajes de otros usuarios)
-    private static final String H_OTH_FG  = "#1F2937"; // texto burbuja ajena
-    private static final String H_SYS     = "#454547FF"; // mensajes de sistema genéricos (gris)
-    private static final String H_JOIN    = "#8ccc7a"; // notificación de usuario que se une al chat (verde)
-    private static final String H_LEAVE   = "#DC2626"; // notificación de usuario que abandona el chat (rojo)
-    private static final String H_PRIV_BG = "#FEF3C7"; // fondo mensaje privado (amarillo claro)
-    private static final String H_PRIV_FG = "#92400E"; // texto mensaje privado (marrón)
-
     // ── Fuentes ───────────────────────────────────────────────
     private static final Font F_TITLE  = new Font("Segoe UI", Font.BOLD, 26);
     private static final Font F_SUB    = new Font("Segoe UI", Font.PLAIN, 14);
@@ -57,22 +51,58 @@ public class InterfazGrafica extends JFrame {
     private JPanel       panelChat;
     private JTextPane    areaMensajes;
     private JScrollPane  scrollMensajes;
-    private StringBuilder mensajesHtml = new StringBuilder();
+    private DocumentoChatHtml documentoChat;
+    /** Vista virtualizada (por defecto); {@code null} si se usa el panel HTML. */
+    private JList<Burbuja>        listaMensajes;
+    private ModeloMensajesAcotado modeloMensajes;
+    /** Mensajes del historial local que se cargan de golpe al entrar o al subir del todo. */
+    private static final int PAGINA_HISTORIAL = 100;
+    /** Número global en el historial local de la burbuja más antigua cargada. */
+    private long    historialDesde;
+    /**
+     * Número global siguiente a la burbuja más reciente cargada cuando, al subir, el modelo
+     * ha desalojado el final; -1 mientras la vista llega hasta lo último.
+     */
+    private long    historialHasta = -1;
+    /**
+     * Número global del primer mensaje de chat que aún no ha salido de la cola de entrada:
+     * lo anterior puede leerse del historial sin duplicar lo que la cola va a entregar.
+     */
+    private long    historialVisto;
+    /** Avisos llegados con el final recortado; se añaden cuando la vista vuelve a lo último. */
+    private final List<Burbuja> avisosAplazados = new ArrayList<>();
+    private boolean cargandoHistorial;
+    /** Mensajes recibidos pendientes de pintar; el EDT los aplica en lotes de un fotograma. */
+    private final ColaEntradaEdt<Burbuja> colaEntrada =
+            new ColaEntradaEdt<>(Integer.getInteger("chat.edt.periodoMs", 16), this::aplicarEntrada);
     private JTextField   txtMensaje;
     private JButton      btnEnviar;
-    private DefaultListModel<String> modeloUsuarios;
+    private ModeloUsuariosOrdenado   modeloUsuarios;
     private JList<String>            listaUsuarios;
+    private JTextField               txtFiltroUsuarios;
+    private JTextField               txtBuscar;
     private JButton      btnDesconectar;
     private JLabel       lblHeaderNombre;
 
     private CardLayout cardLayout;
     private JPanel     panelPrincipal;
+    private boolean    primerFotograma;
 
     public InterfazGrafica(ClienteChat cliente) {
         this.cliente = cliente;
+        Metricas.INSTANCIA.vigilarColaEdt(colaEntrada);
         inicializarUI();
     }
 
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (!primerFotograma) {
+            primerFotograma = true;
+            Arranque.hito("primer fotograma");
+        }
+    }
+
     // =========================================================
     // INICIALIZACIÓN
     // =========================================================
@@ -188,6 +218,7 @@ public class InterfazGrafica extends JFrame {
             String password = new String(txtPassword.getPassword());
             if (!usuario.isEmpty() && !password.isEmpty()) {
                 estaRegistrando = false;
+                Arranque.clic();
                 lblEstado.setText("Conectando...");
                 lblEstado.setForeground(C_PRIMARY);
                 btnLogin.setEnabled(false);
@@ -240,31 +271,61 @@ public class InterfazGrafica extends JFrame {
         lblHeaderNombre.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         lblHeaderNombre.setForeground(new Color(0xC7D2FE));
         btnDesconectar = crearBotonHeader("Salir");
+        // Búsqueda en el historial local: Intro abre la lista de resultados
+        txtBuscar = new JTextField(14);
+        txtBuscar.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        txtBuscar.setToolTipText("Buscar en el historial (Intro)");
+        txtBuscar.setBorder(new EmptyBorder(5, 8, 5, 8));
+        txtBuscar.addActionListener(e -> buscarEnHistorial(txtBuscar.getText()));
+        headerRight.add(txtBuscar);
         headerRight.add(lblHeaderNombre);
         headerRight.add(btnDesconectar);
         header.add(headerRight, BorderLayout.EAST);
         panelChat.add(header, BorderLayout.NORTH);
 
-        // ── Área de mensajes (HTML) ───────────────────────────
-        areaMensajes = new JTextPane();
-        areaMensajes.setEditable(false);
-        areaMensajes.setContentType("text/html");
-        areaMensajes.setBackground(C_BG);
-        areaMensajes.setBorder(new EmptyBorder(8, 8, 8, 8));
-        areaMensajes.setText(htmlBase(""));
-
-        scrollMensajes = new JScrollPane(areaMensajes);
+        // ── Área de mensajes ──────────────────────────────────
+        // -Dchat.vista=lista (por defecto): JList virtualizada con retención acotada.
+        // -Dchat.vista=html: JTextPane HTML con la conversación completa.
+        if ("html".equalsIgnoreCase(System.getProperty("chat.vista", "lista"))) {
+            areaMensajes = new JTextPane();
+            areaMensajes.setEditable(false);
+            areaMensajes.setContentType("text/html");
+            areaMensajes.setBackground(C_BG);
+            areaMensajes.setBorder(new EmptyBorder(8, 8, 8, 8));
+            documentoChat = new DocumentoChatHtml(areaMensajes);
+            scrollMensajes = new JScrollPane(areaMensajes);
+        } else {
+            modeloMensajes = new ModeloMensajesAcotado();
+            listaMensajes  = crearListaMensajes(modeloMensajes);
+            scrollMensajes = new JScrollPane(listaMensajes);
+        }
         scrollMensajes.setBorder(BorderFactory.createEmptyBorder());
         scrollMensajes.getVerticalScrollBar().setUnitIncrement(16);
+        // Al llegar arriba del todo se trae la página anterior del historial local, y al
+        // llegar abajo la siguiente si al subir se desalojó el final
+        scrollMensajes.getVerticalScrollBar().addAdjustmentListener(e -> {
+            JScrollBar barra = scrollMensajes.getVerticalScrollBar();
+            if (cargandoHistorial || modeloMensajes == null || barra.getMaximum() <= barra.getVisibleAmount()) return;
+            if (e.getValue() == barra.getMinimum() && historialDesde > 0) {
+                cargandoHistorial = true;
+                SwingUtilities.invokeLater(this::cargarPaginaAnterior);
+            } else if (e.getValue() + barra.getVisibleAmount() >= barra.getMaximum() && historialHasta >= 0) {
+                cargandoHistorial = true;
+                SwingUtilities.invokeLater(this::cargarPaginaSiguiente);
+            }
+        });
 
         // ── Panel lateral de usuarios ─────────────────────────
-        modeloUsuarios = new DefaultListModel<>();
+        modeloUsuarios = new ModeloUsuariosOrdenado();
         listaUsuarios  = new JList<>(modeloUsuarios);
         listaUsuarios.setFont(F_SIDE);
         listaUsuarios.setBackground(C_SIDEBAR);
         listaUsuarios.setForeground(C_TEXT);
-        listaUsuarios.setFixedCellHeight(38);
         listaUsuarios.setCellRenderer(new UsuarioCellRenderer());
+        // Alto y ancho fijos a partir de un prototipo: la lista no mide cada fila,
+        // necesario con decenas de miles de usuarios
+        listaUsuarios.setPrototypeCellValue("usuario_con_nombre_largo");
+        listaUsuarios.setFixedCellHeight(38);
 
         JScrollPane scrollUsuarios = new JScrollPane(listaUsuarios);
         scrollUsuarios.setBorder(BorderFactory.createEmptyBorder());
@@ -275,7 +336,27 @@ public class InterfazGrafica extends JFrame {
         JLabel lblSideTitle = new JLabel("USUARIOS");
         lblSideTitle.setFont(F_SIDE_H);
         lblSideTitle.setForeground(C_MUTED);
-        cabSide.add(lblSideTitle);
+        cabSide.add(lblSideTitle, BorderLayout.NORTH);
+
+        // Filtro por prefijo: cada pulsación es una búsqueda binaria en el modelo
+        txtFiltroUsuarios = new JTextField();
+        txtFiltroUsuarios.setFont(F_SIDE);
+        txtFiltroUsuarios.setForeground(C_TEXT);
+        txtFiltroUsuarios.setToolTipText("Filtrar usuarios");
+        txtFiltroUsuarios.setBorder(BorderFactory.createCompoundBorder(
+            new LineBorder(C_BORDER, 1),
+            new EmptyBorder(4, 8, 4, 8)
+        ));
+        txtFiltroUsuarios.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate (DocumentEvent e) { filtrarUsuarios(); }
+            @Override public void removeUpdate (DocumentEvent e) { filtrarUsuarios(); }
+            @Override public void changedUpdate(DocumentEvent e) { filtrarUsuarios(); }
+        });
+        JPanel filtroWrap = new JPanel(new BorderLayout());
+        filtroWrap.setOpaque(false);
+        filtroWrap.setBorder(new EmptyBorder(8, 0, 0, 0));
+        filtroWrap.add(txtFiltroUsuarios);
+        cabSide.add(filtroWrap, BorderLayout.SOUTH);
 
         JPanel sidebar = new JPanel(new BorderLayout());
         sidebar.setBackground(C_SIDEBAR);
@@ -339,159 +420,364 @@ public class InterfazGrafica extends JFrame {
     // RENDERIZADO DE BURBUJAS
     // =========================================================
 
-    private void agregarBurbuja(String htmlBurbuja) {
+    private void agregarBurbuja(Burbuja burbuja) {
+        agregarBurbujas(List.of(burbuja));
+    }
+
+    /**
+     * Lote de la cola de entrada. Con el final recortado no se pinta: los mensajes de chat
+     * ya están en el historial y se leerán al bajar hasta ellos, y los avisos esperan a que
+     * la vista vuelva a lo último.
+     */
+    private void aplicarEntrada(List<Burbuja> lote) {
+        for (Burbuja b : lote) if (!b.esCentrada()) historialVisto++;
+        if (historialHasta < 0) {
+            agregarBurbujas(lote);
+            return;
+        }
+        for (Burbuja b : lote) if (b.esCentrada()) avisosAplazados.add(b);
+        int sobran = avisosAplazados.size() - modeloMensajes.getCapacidad();
+        if (sobran > 0) avisosAplazados.subList(0, sobran).clear();
+    }
+
+    /** Añade un lote de burbujas con un único evento de modelo y un único scroll. */
+    private void agregarBurbujas(List<Burbuja> burbujas) {
         // Llamar siempre desde EDT
-        mensajesHtml.append(htmlBurbuja);
-        areaMensajes.setText(htmlBase(mensajesHtml.toString()));
-        // Doble invokeLater para asegurar scroll después del repintado
-        SwingUtilities.invokeLater(() ->
+        long t0 = System.nanoTime();
+        if (modeloMensajes != null) {
+            agregarAlModelo(burbujas);
+        } else {
+            StringBuilder html = new StringBuilder();
+            for (Burbuja b : burbujas) html.append(HtmlBurbuja.de(b));
+            documentoChat.agregar(html.toString());
+        }
+        Metricas.INSTANCIA.render.registrarDesde(t0);
+        // invokeLater para asegurar scroll después del repintado
+        SwingUtilities.invokeLater(() -> {
             scrollMensajes.getVerticalScrollBar().setValue(
                 scrollMensajes.getVerticalScrollBar().getMaximum()
-            )
-        );
+            );
+            long ahora = System.nanoTime();
+            for (Burbuja b : burbujas) {
+                if (b.recibidaNanos != 0) Metricas.INSTANCIA.recepcionPintado.registrar(ahora - b.recibidaNanos);
+            }
+        });
     }
 
-    private String htmlBase(String body) {
-        return "<html><body style='background-color:#F8F9FA;"
-             + "font-family:Segoe UI,Arial,sans-serif;margin:6px;padding:0;'>"
-             + body + "</body></html>";
+    private void limpiarMensajes() {
+        if (modeloMensajes != null) modeloMensajes.limpiar();
+        else                        documentoChat.reiniciar();
+        historialDesde = 0;
+        historialHasta = -1;
+        avisosAplazados.clear();
     }
 
-    /** Burbuja propia (derecha, índigo) */
-    private String htmlBurbujaPropia(String texto, String hora) {
-        return "<table width='100%' border='0' cellpadding='3' cellspacing='0'>"
-             + "<tr><td width='22%'>&nbsp;</td>"
-             + "<td bgcolor='" + H_OWN_BG + "' style='padding:9px 14px;'>"
-             + "<font color='" + H_OWN_FG + "' face='Segoe UI,Arial' size='4'>"
-             + esc(texto) + "</font>"
-             + "<br><font color='#C7D2FE' size='2'>" + esc(hora) + "</font>"
-             + "</td></tr></table>";
+    // ── Historial local ──────────────────────────────────────────────────────
+
+    /**
+     * Muestra la última página de lo guardado antes de esta sesión. Lo recibido después
+     * ya llega por la cola de entrada, así que no se lee para no duplicarlo.
+     */
+    private void cargarHistorialInicial() {
+        HistorialLocal h = cliente.getHistorial();
+        if (h == null) return;
+        historialDesde = h.getTamanoInicial();
+        historialVisto = historialDesde;
+        List<Mensaje> pagina = leerHistorial(h, historialDesde);
+        if (pagina.isEmpty()) return;
+        historialDesde -= pagina.size();
+        agregarBurbujas(burbujasDe(pagina));
     }
 
-    /** Burbuja ajena (izquierda, gris) */
-    private String htmlBurbujaAjena(String remitente, String texto, String hora) {
-        return "<table width='100%' border='0' cellpadding='3' cellspacing='0'>"
-             + "<tr><td width='78%' bgcolor='" + H_OTH_BG + "' style='padding:9px 14px;'>"
-             + "<font color='" + H_SYS + "' size='3'><b>" + esc(remitente) + "</b></font><br>"
-             + "<font color='" + H_OTH_FG + "' face='Segoe UI,Arial' size='4'>"
-             + esc(texto) + "</font>"
-             + "<br><font color='" + H_SYS + "' size='2'>" + esc(hora) + "</font>"
-             + "</td><td width='22%'>&nbsp;</td></tr></table>";
+    /**
+     * Antepone la página anterior conservando la posición de lectura. Solo en la vista de
+     * lista; si el modelo está lleno desaloja las burbujas más recientes, que
+     * {@link #cargarPaginaSiguiente} vuelve a leer al bajar.
+     */
+    private void cargarPaginaAnterior() {
+        try {
+            HistorialLocal h = cliente.getHistorial();
+            if (h == null || historialDesde <= 0) return;
+            List<Mensaje> pagina = leerHistorial(h, historialDesde);
+            if (pagina.isEmpty()) return;
+            int n = Math.min(pagina.size(), modeloMensajes.getCapacidad());
+            int desalojadas = Math.max(0, n - modeloMensajes.getLibres());
+            if (desalojadas > 0) {
+                int tamano = modeloMensajes.getSize();
+                if (historialHasta < 0) historialHasta = historialVisto;
+                historialHasta -= mensajesDeChat(tamano - desalojadas, tamano);
+            }
+            modeloMensajes.anteponer(burbujasDe(pagina));
+            historialDesde -= n;
+            // Lo que estaba arriba queda debajo de lo insertado: se desplaza lo mismo que ocupa
+            scrollMensajes.validate();
+            Rectangle alto = listaMensajes.getCellBounds(0, n - 1);
+            JScrollBar barra = scrollMensajes.getVerticalScrollBar();
+            if (alto != null) barra.setValue(barra.getValue() + alto.height);
+        } finally {
+            cargandoHistorial = false;
+        }
     }
 
-    /** Mensaje de sistema (centrado, gris cursiva) */
-    private String htmlSistema(String texto) {
-        return "<table width='100%' border='0' cellpadding='6' cellspacing='0'>"
-             + "<tr><td align='center'>"
-             + "<font color='" + H_SYS + "' size='3'><i>" + esc(texto) + "</i></font>"
-             + "</td></tr></table>";
+    /**
+     * Con el final recortado, añade la página siguiente del historial desalojando las más
+     * antiguas y conservando la posición de lectura. Al alcanzar lo ya entregado por la
+     * cola de entrada la vista vuelve a seguir lo último, con los avisos aplazados.
+     */
+    private void cargarPaginaSiguiente() {
+        try {
+            HistorialLocal h = cliente.getHistorial();
+            if (h == null || historialHasta < 0) return;
+            List<Burbuja> burbujas = burbujasDe(h.leer(historialHasta,
+                    (int) Math.min(PAGINA_HISTORIAL, historialVisto - historialHasta)));
+            historialHasta += burbujas.size();
+            if (burbujas.isEmpty() || historialHasta >= historialVisto) {
+                historialHasta = -1;
+                burbujas.addAll(avisosAplazados);
+                avisosAplazados.clear();
+            }
+            int desalojadas = desalojadasAlAgregar(burbujas.size());
+            Rectangle fuera = desalojadas > 0 ? listaMensajes.getCellBounds(0, desalojadas - 1) : null;
+            agregarAlModelo(burbujas);
+            scrollMensajes.validate();
+            JScrollBar barra = scrollMensajes.getVerticalScrollBar();
+            if (fuera != null) barra.setValue(barra.getValue() - fuera.height);
+        } catch (IOException e) {
+            System.err.println("[Historial] No se pudo leer: " + e.getMessage());
+        } finally {
+            cargandoHistorial = false;
+        }
     }
 
-    /** Mensaje de unión al chat (centrado, verde esmeralda cursiva) */
-    private String htmlUnion(String texto) {
-        return "<table width='100%' border='0' cellpadding='6' cellspacing='0'>"
-             + "<tr><td align='center'>"
-             + "<font color='" + H_JOIN + "' size='3'><i>" + esc(texto) + "</i></font>"
-             + "</td></tr></table>";
+    /**
+     * Añade al final del modelo; los mensajes de chat que salen por arriba adelantan
+     * {@link #historialDesde}, para que la página anterior empiece justo antes de lo visible.
+     */
+    private void agregarAlModelo(List<Burbuja> burbujas) {
+        historialDesde += mensajesDeChat(0, desalojadasAlAgregar(burbujas.size()));
+        for (int i = 0; i < burbujas.size() - modeloMensajes.getCapacidad(); i++) {
+            if (!burbujas.get(i).esCentrada()) historialDesde++;
+        }
+        modeloMensajes.agregarTodas(burbujas);
     }
 
-    /** Mensaje de salida del chat (centrado, rojo cursiva) */
-    private String htmlSalida(String texto) {
-        return "<table width='100%' border='0' cellpadding='6' cellspacing='0'>"
-             + "<tr><td align='center'>"
-             + "<font color='" + H_LEAVE + "' size='3'><i>" + esc(texto) + "</i></font>"
-             + "</td></tr></table>";
+    private int desalojadasAlAgregar(int n) {
+        return Math.min(modeloMensajes.getSize(), Math.max(0, n - modeloMensajes.getLibres()));
     }
 
-    /** Mensaje privado (izquierda, amarillo) */
-    private String htmlPrivado(String remitente, String texto, String hora) {
-        return "<table width='100%' border='0' cellpadding='3' cellspacing='0'>"
-             + "<tr><td width='78%' bgcolor='" + H_PRIV_BG + "' style='padding:9px 14px;'>"
-             + "<font color='" + H_PRIV_FG + "' size='3'><b>[Privado] " + esc(remitente) + "</b></font><br>"
-             + "<font color='" + H_PRIV_FG + "' face='Segoe UI,Arial' size='4'>"
-             + esc(texto) + "</font>"
-             + "<br><font color='" + H_SYS + "' size='2'>" + esc(hora) + "</font>"
-             + "</td><td width='22%'>&nbsp;</td></tr></table>";
+    /** Burbujas de chat (las que vienen del historial) en {@code [desde, hasta)} del modelo. */
+    private int mensajesDeChat(int desde, int hasta) {
+        int n = 0;
+        for (int i = desde; i < hasta; i++) if (!modeloMensajes.getElementAt(i).esCentrada()) n++;
+        return n;
     }
 
-    private static boolean esEventoSistema(String content) {
-        String low = content.toLowerCase();
-        return low.contains("se uni") || low.contains("ha salido") || low.contains("se desconect") || low.contains("abandonó");
+    /** Resultados que se listan como máximo por búsqueda. */
+    private static final int RESULTADOS_MAX = 200;
+
+    private void buscarEnHistorial(String consulta) {
+        if (consulta == null || consulta.isBlank()) return;
+        HistorialLocal h = cliente.getHistorial();
+        IndiceBusqueda indice = h != null ? h.getIndice() : null;
+        if (indice == null) {
+            agregarBurbuja(Burbuja.sistema(Burbuja.Tipo.SISTEMA, "Búsqueda no disponible: no hay historial local."));
+            return;
+        }
+        long t0 = System.nanoTime();
+        long[] ids = indice.buscar(consulta, RESULTADOS_MAX);
+        long dt = System.nanoTime() - t0;
+
+        DefaultListModel<String> filas = new DefaultListModel<>();
+        List<Long> destinos = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            try {
+                for (Mensaje m : h.leer(id, 1)) {
+                    filas.addElement("[" + m.getTimestamp() + "] " + m.getRemitente() + ": " + m.getContenido());
+                    destinos.add(id);
+                }
+            } catch (IOException e) {
+                System.err.println("[Historial] No se pudo leer: " + e.getMessage());
+            }
+        }
+
+        JDialog dialog = new JDialog(this, String.format("«%s» — %d resultado(s) en %.1f ms%s",
+                consulta.trim(), filas.size(), dt / 1e6,
+                indice.getIndexados() < h.tamano() ? " (indexando…)" : ""), false);
+        JList<String> lista = new JList<>(filas);
+        lista.setFont(F_SIDE);
+        lista.setFixedCellHeight(26);
+        lista.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        Runnable saltar = () -> {
+            int i = lista.getSelectedIndex();
+            if (i < 0) return;
+            dialog.dispose();
+            saltarAHistorial(destinos.get(i));
+        };
+        lista.addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) { if (e.getClickCount() == 2) saltar.run(); }
+        });
+        lista.addKeyListener(new KeyAdapter() {
+            @Override public void keyPressed(KeyEvent e) { if (e.getKeyCode() == KeyEvent.VK_ENTER) saltar.run(); }
+        });
+        dialog.add(new JScrollPane(lista));
+        dialog.setSize(520, 360);
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
     }
 
-    private String htmlSegunEvento(String content) {
-        String low = content.toLowerCase();
-        if (low.contains("se uni"))                                          return htmlUnion(content);
-        if (low.contains("ha salido") || low.contains("se desconect") || low.contains("abandonó")) return htmlSalida(content);
-        return htmlSistema(content);
+    /**
+     * Muestra el mensaje {@code id} del historial con su contexto. Si desde ahí hasta lo
+     * último cabe en la vista se carga entero; si no, solo la página del resultado, con el
+     * final recortado: lo posterior se lee al bajar, como tras subir por el historial.
+     */
+    private void saltarAHistorial(long id) {
+        HistorialLocal h = cliente.getHistorial();
+        if (h == null) return;
+        if (modeloMensajes == null) {
+            agregarBurbuja(Burbuja.sistema(Burbuja.Tipo.SISTEMA, "Ir a un resultado solo está disponible en la vista de lista."));
+            return;
+        }
+        try {
+            long desde = Math.max(0, id - PAGINA_HISTORIAL / 2);
+            long hasta = historialVisto - desde <= modeloMensajes.getCapacidad()
+                    ? historialVisto : desde + PAGINA_HISTORIAL;
+            List<Burbuja> burbujas = burbujasDe(h.leer(desde, (int) Math.max(0, hasta - desde)));
+            limpiarMensajes();
+            historialDesde = desde;
+            if (hasta < historialVisto) historialHasta = hasta;
+            agregarAlModelo(burbujas);
+            scrollMensajes.validate();
+            int fila = (int) (id - desde);
+            Rectangle r = listaMensajes.getCellBounds(fila, fila);
+            if (r != null) scrollMensajes.getVerticalScrollBar().setValue(r.y);
+        } catch (IOException e) {
+            System.err.println("[Historial] No se pudo leer: " + e.getMessage());
+        }
     }
 
-    private static String esc(String t) {
-        if (t == null) return "";
-        return t.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    private static List<Mensaje> leerHistorial(HistorialLocal h, long antesDe) {
+        try {
+            return h.leerAnteriores(antesDe, PAGINA_HISTORIAL);
+        } catch (IOException e) {
+            System.err.println("[Historial] No se pudo leer: " + e.getMessage());
+            return List.of();
+        }
     }
 
-    // =========================================================
-    // PARSEO DE MENSAJES
-    // =========================================================
+    private List<Burbuja> burbujasDe(List<Mensaje> mensajes) {
+        List<Burbuja> burbujas = new ArrayList<>(mensajes.size());
+        for (Mensaje m : mensajes) burbujas.add(burbujaDe(m));
+        return burbujas;
+    }
 
-    /** Parsea "[HH:mm:ss] remitente: contenido" */
-    private MensajeParseado parsear(String texto) {
-        if (texto == null || !texto.startsWith("[")) return null;
-        int cierre = texto.indexOf(']');
-        if (cierre == -1) return null;
-        String hora  = texto.substring(1, cierre);
-        String resto = texto.substring(cierre + 1).trim();
-        int colon    = resto.indexOf(": ");
-        if (colon == -1) return null;
-        return new MensajeParseado(hora, resto.substring(0, colon).trim(), resto.substring(colon + 2));
-    }
-
-    private static class MensajeParseado {
-        final String hora, remitente, contenido;
-        MensajeParseado(String hora, String remitente, String contenido) {
-            this.hora = hora; this.remitente = remitente; this.contenido = contenido;
-        }
+    /** Burbuja de un mensaje de chat: propia, ajena o privada según remitente y tipo. */
+    private Burbuja burbujaDe(Mensaje m) {
+        if (m.getTipo() == TipoMensaje.PRIVATE)
+            return new Burbuja(Burbuja.Tipo.PRIVADO, m.getRemitente(), m.getContenido(), m.getTimestamp());
+        String yo = cliente.getNombreUsuario();
+        Burbuja.Tipo tipo = yo != null && yo.equals(m.getRemitente()) ? Burbuja.Tipo.PROPIA : Burbuja.Tipo.AJENA;
+        return new Burbuja(tipo, m.getRemitente(), m.getContenido(), m.getTimestamp());
+    }
+
+    /**
+     * Lista virtualizada de burbujas: solo se pintan las celdas visibles, todas del mismo
+     * alto, y el modelo descarta las más antiguas al superar su capacidad.
+     */
+    private JList<Burbuja> crearListaMensajes(ModeloMensajesAcotado modelo) {
+        JList<Burbuja> lista = new JList<>(modelo) {
+            // El ancho de las celdas es siempre el del viewport (las burbujas se ajustan a él)
+            @Override public boolean getScrollableTracksViewportWidth() { return true; }
+        };
+        RenderizadorBurbuja.instalar(lista);
+        lista.setBackground(C_BG);
+        lista.setSelectionModel(new DefaultListSelectionModel() {
+            @Override public void setSelectionInterval(int a, int b) { /* sin selección */ }
+            @Override public void addSelectionInterval(int a, int b) { /* sin selección */ }
+        });
+        lista.setFocusable(false);
+        return lista;
     }
 
     // =========================================================
     // API PÚBLICA (llamada desde ReceptorMensajes)
     // =========================================================
 
-    public void mostrarMensaje(String texto) {
-        SwingUtilities.invokeLater(() -> {
-            if (texto == null || texto.isBlank()) return;
+    // ── Eventos del receptor (OyenteChat) ────────────────────────────────────
+    // Llegan desde el hilo del receptor ya clasificados: la burbuja se construye con los
+    // campos del mensaje y se encola; el EDT la pinta en el siguiente lote.
 
-            if (texto.startsWith("[Sistema]")) {
-                String content = texto.substring("[Sistema]".length()).trim();
-                agregarBurbuja(htmlSegunEvento(content));
-                return;
-            }
+    @Override
+    public void mensaje(Mensaje m) {
+        colaEntrada.encolar(recibida(burbujaDe(m)));
+    }
 
-            if (texto.startsWith("[Privado]")) {
-                MensajeParseado mp = parsear(texto.substring("[Privado]".length()).trim());
-                if (mp != null) agregarBurbuja(htmlPrivado(mp.remitente, mp.contenido, mp.hora));
-                else             agregarBurbuja(htmlSistema(texto));
-                return;
-            }
+    @Override
+    public void privado(Mensaje m) {
+        colaEntrada.encolar(recibida(burbujaDe(m)));
+    }
 
-            MensajeParseado mp = parsear(texto);
-            if (mp != null) {
-                if (esEventoSistema(mp.contenido)) {
-                    agregarBurbuja(htmlSegunEvento(mp.contenido));
-                } else {
-                    String yo = cliente.getNombreUsuario();
-                    if (yo != null && yo.equals(mp.remitente))
-                        agregarBurbuja(htmlBurbujaPropia(mp.contenido, mp.hora));
-                    else
-                        agregarBurbuja(htmlBurbujaAjena(mp.remitente, mp.contenido, mp.hora));
-                }
-            } else {
-                agregarBurbuja(htmlSistema(texto));
-            }
-        });
+    private static Burbuja recibida(Burbuja b) {
+        b.recibidaNanos = System.nanoTime();
+        return b;
+    }
+
+    @Override
+    public void union(String usuario, Mensaje m) {
+        colaEntrada.encolar(Burbuja.sistema(Burbuja.Tipo.UNION, m.getContenido()));
+    }
+
+    @Override
+    public void salida(String usuario, Mensaje m) {
+        colaEntrada.encolar(Burbuja.sistema(Burbuja.Tipo.SALIDA, m.getContenido()));
+    }
+
+    @Override
+    public void listaUsuarios(List<String> usuarios) {
+        // Se aplica como diferencia: solo repintan las filas que cambian
+        SwingUtilities.invokeLater(() -> modeloUsuarios.reemplazar(usuarios));
+    }
+
+    @Override
+    public void usuarioConectado(String usuario) {
+        colaEntrada.encolar(Burbuja.sistema(Burbuja.Tipo.UNION, usuario + " se unió al chat"));
+        SwingUtilities.invokeLater(() -> modeloUsuarios.agregar(usuario));
+    }
+
+    @Override
+    public void usuarioDesconectado(String usuario) {
+        colaEntrada.encolar(Burbuja.sistema(Burbuja.Tipo.SALIDA, usuario + " ha salido del chat"));
+        SwingUtilities.invokeLater(() -> modeloUsuarios.quitar(usuario));
+    }
+
+    @Override
+    public void error(String detalle) {
+        mostrarError(detalle);
+    }
+
+    @Override
+    public void conexionPerdida(String motivo) {
+        colaEntrada.encolar(Burbuja.sistema(Burbuja.Tipo.SISTEMA, "Conexión perdida: " + motivo));
+        volverALogin();
+    }
+
+    @Override
+    public void reconectando(int intento, long esperaMs, String motivo) {
+        String texto = intento == 1
+                ? "Conexión perdida (" + motivo + "). Reconectando..."
+                : String.format("Reintento %d en %.1f s...", intento, esperaMs / 1000.0);
+        colaEntrada.encolar(Burbuja.sistema(Burbuja.Tipo.SISTEMA, texto));
+        SwingUtilities.invokeLater(() -> setTitle("Chat PSP — " + cliente.getNombreUsuario() + " (reconectando)"));
+    }
+
+    @Override
+    public void reconectado(long ms) {
+        colaEntrada.encolar(Burbuja.sistema(Burbuja.Tipo.SISTEMA, "Reconectado (" + ms + " ms)."));
+        SwingUtilities.invokeLater(() -> setTitle("Chat PSP — " + cliente.getNombreUsuario()));
     }
 
+    /** Cola de entrada al EDT, para consultar su profundidad y tiempos de vaciado. */
+    public ColaEntradaEdt<Burbuja> getColaEntrada() { return colaEntrada; }
+
     public void mostrarError(String error) {
         SwingUtilities.invokeLater(() -> {
             // Si estamos en el panel del chat, mostrar el error como burbuja de sistema
@@ -501,7 +787,8 @@ public class InterfazGrafica extends JFrame {
                 if (c.isVisible()) { panelVisible = c; break; }
             }
             if (panelVisible == panelChat) {
-                agregarBurbuja(htmlSistema("Error: " + error));
+                // Por la misma cola que los mensajes, para no adelantarse a los ya recibidos
+                colaEntrada.encolar(Burbuja.sistema(Burbuja.Tipo.SISTEMA, "Error: " + error));
             } else {
                 lblEstado.setText(error);
                 lblEstado.setForeground(C_ERROR);
@@ -511,6 +798,7 @@ public class InterfazGrafica extends JFrame {
         });
     }
 
+    @Override
     public void loginExitoso(String mensaje) {
         SwingUtilities.invokeLater(() -> {
             if (estaRegistrando) {
@@ -520,13 +808,15 @@ public class InterfazGrafica extends JFrame {
                 lblEstado.setText(" ");
                 mostrarPopupRegistro();
             } else {
-                mensajesHtml = new StringBuilder();
-                areaMensajes.setText(htmlBase(""));
-                agregarBurbuja(htmlSistema(mensaje));
+                limpiarMensajes();
+                cargarHistorialInicial();
+                agregarBurbuja(Burbuja.sistema(Burbuja.Tipo.SISTEMA, mensaje));
                 setTitle("Chat PSP — " + cliente.getNombreUsuario());
                 lblHeaderNombre.setText(cliente.getNombreUsuario());
                 cardLayout.show(panelPrincipal, "CHAT");
                 txtMensaje.requestFocus();
+                // Se ejecuta después del repintado que acaba de programar show()
+                SwingUtilities.invokeLater(Arranque::chatVisible);
             }
         });
     }
@@ -573,14 +863,8 @@ public class InterfazGrafica extends JFrame {
         dialog.setVisible(true);
     }
 
-    public void actualizarListaUsuarios(String listaCSV) {
-        SwingUtilities.invokeLater(() -> {
-            modeloUsuarios.clear();
-            if (listaCSV != null && !listaCSV.isEmpty()) {
-                for (String u : listaCSV.split(","))
-                    modeloUsuarios.addElement(u.trim());
-            }
-        });
+    private void filtrarUsuarios() {
+        modeloUsuarios.setFiltro(txtFiltroUsuarios.getText());
     }
 
     public void volverALogin() {
@@ -591,7 +875,9 @@ public class InterfazGrafica extends JFrame {
             btnLogin.setEnabled(true);
             btnRegistro.setEnabled(true);
             txtPassword.setText("");
-            modeloUsuarios.clear();
+            txtFiltroUsuarios.setText("");
+            txtBuscar.setText("");
+            modeloUsuarios.limpiar();
             setTitle("Chat PSP");
         });
     }
@@ -753,16 +1039,20 @@ public class InterfazGrafica extends JFrame {
 
     /** Renderer de celdas de la lista de usuarios */
     private class UsuarioCellRenderer extends DefaultListCellRenderer {
+        // Compartidos entre filas: el renderizador se invoca por cada celda pintada
+        private final Border borde    = new EmptyBorder(6, 16, 6, 16);
+        private final Color  fondoSel = new Color(0xEEF2FF);
+
         @Override
         public Component getListCellRendererComponent(JList<?> list, Object value,
                 int index, boolean isSelected, boolean cellHasFocus) {
             JLabel lbl = (JLabel) super.getListCellRendererComponent(
                 list, value, index, isSelected, cellHasFocus);
             lbl.setFont(F_SIDE);
-            lbl.setBorder(new EmptyBorder(6, 16, 6, 16));
+            lbl.setBorder(borde);
             lbl.setText("\u25CF  " + value);
             lbl.setForeground(isSelected ? C_PRIMARY : C_TEXT);
-            lbl.setBackground(isSelected ? new Color(0xEEF2FF) : C_SIDEBAR);
+            lbl.setBackground(isSelected ? fondoSel : C_SIDEBAR);
             return lbl;
         }
     }
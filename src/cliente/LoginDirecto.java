@@ -0,0 +1,89 @@
+package cliente;
+
+import comun.CodecTexto;
+import comun.Mensaje;
+import comun.TipoMensaje;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Login en una sola ida y vuelta sobre el canal push, sin pasar por {@code /login}.
+ *
+ * <p>En lugar del nombre de usuario a secas, la primera línea del canal es un mensaje de
+ * texto con las credenciales: {@link TipoMensaje#LOGIN} con la contraseña como contenido,
+ * o {@link TipoMensaje#TOKEN} con el token de una sesión anterior. En la misma escritura
+ * va el {@code OPTIONS} de {@link NegociacionCanal}. El servidor contesta, antes que nada,
+ * con un {@code OK} cuyo contenido es {@code token|texto de bienvenida}, o con un
+ * {@code ERROR} y cierra.
+ *
+ * <p>Un servidor que no conozca este login tomaría la línea por un nombre de usuario y
+ * la difundiría con la contraseña dentro. Por eso solo se usa si se pide
+ * ({@code -Dchat.login=push}) y el servidor ya aceptó {@code login=directo} en una
+ * negociación anterior ({@link NegociacionCanal#admitida}). Si aun así responde otra
+ * cosa, se olvida que lo admitía y se lanza una {@link IOException}; quien llama no debe
+ * repetir el login por otra vía con las credenciales ya enviadas.
+ */
+final class LoginDirecto {
+
+    private static final int TIMEOUT_MS = 3_000;
+
+    /** Sesión abierta: token para reconectar y texto de bienvenida. */
+    record Respuesta(String token, String bienvenida) {}
+
+    private LoginDirecto() {}
+
+    /**
+     * Envía credenciales y propuesta y espera la respuesta del servidor.
+     *
+     * @param tipo {@link TipoMensaje#LOGIN} (el secreto es la contraseña) o
+     *             {@link TipoMensaje#TOKEN} (el secreto es el token).
+     * @throws IllegalStateException si el servidor rechaza las credenciales.
+     * @throws IOException           si falla la conexión o el servidor no admite el modo.
+     */
+    static Respuesta autenticar(Socket socket, InputStream entrada, OutputStream salida, String usuario,
+                                TipoMensaje tipo, String secreto, Map<String, String> propuesta) throws IOException {
+        ByteArrayOutputStream peticion = new ByteArrayOutputStream(256);
+        CodecTexto.INSTANCIA.escribir(new Mensaje(tipo, secreto, usuario), peticion);
+        if (!propuesta.isEmpty()) CodecTexto.INSTANCIA.escribir(NegociacionCanal.opciones(usuario, propuesta), peticion);
+        salida.write(peticion.toByteArray());
+        salida.flush();
+
+        Mensaje respuesta;
+        int timeoutPrevio = socket.getSoTimeout();
+        socket.setSoTimeout(TIMEOUT_MS);
+        try {
+            respuesta = Mensaje.fromHttpString(leerLinea(entrada));
+        } catch (SocketTimeoutException e) {
+            throw new IOException("El servidor no respondió al login directo");
+        } finally {
+            socket.setSoTimeout(timeoutPrevio);
+        }
+
+        if (respuesta != null && respuesta.getTipo() == TipoMensaje.ERROR) {
+            throw new IllegalStateException(respuesta.getContenido());
+        }
+        if (respuesta == null || respuesta.getTipo() != TipoMensaje.OK) {
+            NegociacionCanal.olvidar(NegociacionCanal.destino(socket));
+            throw new IOException("El servidor no admite login directo");
+        }
+        String[] partes = respuesta.getContenido().split("\\|", 2);
+        return new Respuesta(partes[0], partes.length > 1 ? partes[1] : "");
+    }
+
+    private static String leerLinea(InputStream in) throws IOException {
+        ByteArrayOutputStream linea = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) throw new IOException("Conexión cerrada durante el login directo");
+            linea.write(b);
+        }
+        return linea.toString(StandardCharsets.UTF_8).trim();
+    }
+}
@@ -0,0 +1,196 @@
+package cliente;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas del cliente, expuestas por JMX ({@code jconsole}, {@code jcmd}, VisualVM...).
+ *
+ * <p>Se recogen siempre, también en producción: en el camino caliente solo hay
+ * incrementos de {@link LongAdder} (sin contención entre hilos) y registros en
+ * {@link Histograma}s sin bloqueos. Todo lo que cuesta algo (percentiles, tasas) se
+ * calcula al leer el atributo.
+ *
+ * <ul>
+ *   <li>{@code cliente:type=Metricas}: contadores, tasas, bytes, cola del EDT,
+ *       bandeja de salida, reconexiones y handshakes.</li>
+ *   <li>{@code cliente:type=Histograma,name=...}: latencias de envío por endpoint
+ *       ({@code envio /mensaje}, {@code envio tcp}...), {@code render} (aplicar un lote
+ *       de burbujas en el EDT), {@code recepcion a pintado} (desde que el receptor
+ *       entrega un mensaje hasta que su lote se ha pintado) y {@code handshake}.</li>
+ * </ul>
+ *
+ * <p>{@link ClienteChat} registra los MBeans al arrancar salvo con {@code -Dchat.jmx=false}.
+ */
+public final class Metricas implements MetricasMXBean {
+
+    public static final Metricas INSTANCIA = new Metricas();
+
+    private static final String DOMINIO = "cliente";
+
+    private final LongAdder enviados             = new LongAdder();
+    private final LongAdder recibidos            = new LongAdder();
+    private final LongAdder bytesPushEntrada     = new LongAdder();
+    private final LongAdder bytesPushSalida      = new LongAdder();
+    private final LongAdder bytesHttpsEntrada    = new LongAdder();
+    private final LongAdder bytesHttpsSalida     = new LongAdder();
+    private final LongAdder reenvios             = new LongAdder();
+    private final LongAdder reconexiones         = new LongAdder();
+    private final LongAdder reconexionesFallidas = new LongAdder();
+    private final LongAdder handshakesCompletos  = new LongAdder();
+    private final LongAdder handshakesReanudados = new LongAdder();
+
+    private final Tasa tasaEnviados  = new Tasa(enviados);
+    private final Tasa tasaRecibidos = new Tasa(recibidos);
+
+    private final ConcurrentHashMap<String, Histograma> histogramas = new ConcurrentHashMap<>();
+    /** Histogramas de envío HTTPS por ruta, para no formar el nombre en cada petición. */
+    private final ConcurrentHashMap<String, Histograma> enviosHttps = new ConcurrentHashMap<>();
+    private volatile MBeanServer       servidor;
+    private volatile ColaEntradaEdt<?> colaEdt;
+    private volatile BandejaSalida     bandeja;
+
+    public final Histograma render          = histograma("render");
+    public final Histograma recepcionPintado = histograma("recepcion a pintado");
+    public final Histograma handshake       = histograma("handshake");
+    public final Histograma envioTcp        = histograma("envio tcp");
+
+    private Metricas() {}
+
+    /** Registra los MBeans en el servidor de la plataforma; los histogramas nuevos se registran al crearse. */
+    public synchronized void registrarJmx() {
+        if (servidor != null) return;
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        try {
+            mbs.registerMBean(this, new ObjectName(DOMINIO + ":type=Metricas"));
+        } catch (JMException e) {
+            System.err.println("[Metricas] No se pudo registrar en JMX: " + e.getMessage());
+            return;
+        }
+        servidor = mbs;
+        histogramas.values().forEach(this::registrar);
+    }
+
+    /** Histograma con ese nombre, creado (y registrado en JMX) la primera vez. */
+    public Histograma histograma(String nombre) {
+        Histograma h = histogramas.get(nombre);
+        return h != null ? h : histogramas.computeIfAbsent(nombre, this::crear);
+    }
+
+    /** Histograma {@code envio <ruta>} de las peticiones HTTPS a {@code ruta}. */
+    public Histograma envio(String ruta) {
+        Histograma h = enviosHttps.get(ruta);
+        return h != null ? h : enviosHttps.computeIfAbsent(ruta, r -> histograma("envio " + r));
+    }
+
+    private Histograma crear(String nombre) {
+        Histograma h = new Histograma(nombre);
+        if (servidor != null) registrar(h);
+        return h;
+    }
+
+    private void registrar(Histograma h) {
+        try {
+            servidor.registerMBean(h, new ObjectName(DOMINIO + ":type=Histograma,name=" + ObjectName.quote(h.getNombre())));
+        } catch (JMException e) {
+            System.err.println("[Metricas] No se pudo registrar " + h.getNombre() + ": " + e.getMessage());
+        }
+    }
+
+    // ── Registro (camino caliente) ───────────────────────────────────────────
+
+    public void enviados(int n)              { enviados.add(n); }
+    public void recibido()                   { recibidos.increment(); }
+    public void bytesPushEntrada(long n)     { bytesPushEntrada.add(n); }
+    public void bytesPushSalida(long n)      { bytesPushSalida.add(n); }
+    public void bytesHttps(long entrada, long salida) {
+        bytesHttpsEntrada.add(entrada);
+        bytesHttpsSalida.add(salida);
+    }
+    public void reenviados(int n)            { reenvios.add(n); }
+
+    /** Bytes de {@code s} codificado en UTF-8, sin codificarlo. */
+    public static long bytesUtf8(String s) {
+        long n = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            // Cada mitad de un par suplente suma 1: el par ocupa 4 bytes
+            if (c >= 0x80) n += c < 0x800 || Character.isSurrogate(c) ? 1 : 2;
+        }
+        return n;
+    }
+    public void reconexion(boolean conseguida) {
+        reconexiones.increment();
+        if (!conseguida) reconexionesFallidas.increment();
+    }
+    public void handshake(boolean reanudado, long nanos) {
+        (reanudado ? handshakesReanudados : handshakesCompletos).increment();
+        handshake.registrar(nanos);
+    }
+
+    /** La cola de entrada del EDT cuya profundidad se publica. */
+    public void vigilarColaEdt(ColaEntradaEdt<?> cola) { colaEdt = cola; }
+
+    /** La bandeja de salida de la sesión actual ({@code null} sin sesión). */
+    public void vigilarBandeja(BandejaSalida b) { bandeja = b; }
+
+    // ── JMX ──────────────────────────────────────────────────────────────────
+
+    @Override public long   getMensajesEnviados()     { return enviados.sum(); }
+    @Override public long   getMensajesRecibidos()    { return recibidos.sum(); }
+    @Override public double getEnviadosPorSegundo()   { return tasaEnviados.porSegundo(); }
+    @Override public double getRecibidosPorSegundo()  { return tasaRecibidos.porSegundo(); }
+    @Override public long   getBytesPushEntrada()     { return bytesPushEntrada.sum(); }
+    @Override public long   getBytesPushSalida()      { return bytesPushSalida.sum(); }
+    @Override public long   getBytesHttpsEntrada()    { return bytesHttpsEntrada.sum(); }
+    @Override public long   getBytesHttpsSalida()     { return bytesHttpsSalida.sum(); }
+    @Override public long   getReenvios()             { return reenvios.sum(); }
+    @Override public long   getReconexiones()         { return reconexiones.sum(); }
+    @Override public long   getReconexionesFallidas() { return reconexionesFallidas.sum(); }
+    @Override public long   getHandshakesCompletos()  { return handshakesCompletos.sum(); }
+    @Override public long   getHandshakesReanudados() { return handshakesReanudados.sum(); }
+
+    @Override
+    public int getProfundidadColaEdt() {
+        ColaEntradaEdt<?> c = colaEdt;
+        return c != null ? c.getProfundidad() : 0;
+    }
+
+    @Override
+    public int getSalidaPendientes() {
+        BandejaSalida b = bandeja;
+        return b != null ? b.getPendientes() : 0;
+    }
+
+    @Override
+    public double getMaxVaciadoEdtMs() {
+        ColaEntradaEdt<?> c = colaEdt;
+        return c != null ? c.getMaxVaciadoNanos() / 1e6 : 0;
+    }
+
+    /** Tasa de un contador entre dos lecturas separadas al menos un segundo. */
+    private static final class Tasa {
+        private final LongAdder contador;
+        private long   ultimaCuenta;
+        private long   ultimaLectura = System.nanoTime();
+        private double valor;
+
+        Tasa(LongAdder contador) { this.contador = contador; }
+
+        synchronized double porSegundo() {
+            long ahora = System.nanoTime();
+            long dt = ahora - ultimaLectura;
+            if (dt >= 1_000_000_000L) {
+                long cuenta = contador.sum();
+                valor = (cuenta - ultimaCuenta) * 1e9 / dt;
+                ultimaCuenta  = cuenta;
+                ultimaLectura = ahora;
+            }
+            return valor;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package cliente;
+
+/**
+ * Vista JMX de {@link Metricas} ({@code cliente:type=Metricas}). Las latencias están en
+ * MBeans {@link HistogramaMXBean} aparte ({@code cliente:type=Histograma,name=...}).
+ */
+public interface MetricasMXBean {
+
+    long   getMensajesEnviados();
+    long   getMensajesRecibidos();
+    /** Media desde la lectura anterior de este atributo (al menos un segundo antes). */
+    double getEnviadosPorSegundo();
+    double getRecibidosPorSegundo();
+
+    /** Bytes TLS leídos y escritos en los sockets push, tal como viajan por la red. */
+    long getBytesPushEntrada();
+    long getBytesPushSalida();
+    /** Bytes de los cuerpos de petición y respuesta HTTPS (sin cabeceras ni TLS). */
+    long getBytesHttpsEntrada();
+    long getBytesHttpsSalida();
+
+    /** Mensajes recibidos pendientes de aplicar en el EDT. */
+    int    getProfundidadColaEdt();
+    double getMaxVaciadoEdtMs();
+
+    /** Mensajes de la bandeja de salida enviados otra vez tras un fallo o una reconexión. */
+    long getReenvios();
+    /** Mensajes en la bandeja de salida pendientes de confirmar por el servidor. */
+    int  getSalidaPendientes();
+
+    long getReconexiones();
+    long getReconexionesFallidas();
+    long getHandshakesCompletos();
+    long getHandshakesReanudados();
+}
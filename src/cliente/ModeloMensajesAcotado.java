@@ -0,0 +1,117 @@
+package cliente;
+
+import javax.swing.*;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link ListModel} de burbujas con retención acotada.
+ *
+ * <p>Internamente es un búfer circular de tamaño fijo: al llegar a la capacidad,
+ * cada burbuja nueva desaloja a la más antigua. La memoria ocupada por el historial
+ * visible queda así limitada a {@code capacidad} entradas, por mucho que dure la sesión.
+ *
+ * <p>La capacidad por defecto se lee de {@code -Dchat.historial.max} (2000).
+ * Debe usarse solo desde el EDT, como cualquier modelo Swing.
+ */
+public class ModeloMensajesAcotado extends AbstractListModel<Burbuja> {
+
+    public static final int CAPACIDAD_DEFAULT = 2_000;
+
+    private final Burbuja[] buffer;
+    /** Posición física de la entrada más antigua. */
+    private int inicio;
+    private int tamano;
+
+    public ModeloMensajesAcotado() {
+        this(Integer.getInteger("chat.historial.max", CAPACIDAD_DEFAULT));
+    }
+
+    public ModeloMensajesAcotado(int capacidad) {
+        if (capacidad <= 0) throw new IllegalArgumentException("capacidad debe ser > 0: " + capacidad);
+        this.buffer = new Burbuja[capacidad];
+    }
+
+    public int getCapacidad() { return buffer.length; }
+
+    @Override
+    public int getSize() { return tamano; }
+
+    @Override
+    public Burbuja getElementAt(int index) {
+        if (index < 0 || index >= tamano) throw new IndexOutOfBoundsException(index);
+        return buffer[(inicio + index) % buffer.length];
+    }
+
+    public void agregar(Burbuja b) {
+        agregarTodas(List.of(b));
+    }
+
+    /**
+     * Añade varias burbujas disparando como mucho un evento de eliminación y uno
+     * de inserción, en lugar de uno por burbuja.
+     */
+    public void agregarTodas(List<Burbuja> nuevas) {
+        if (nuevas.isEmpty()) return;
+        int capacidad = buffer.length;
+        // Si llegan más de las que caben, solo sobreviven las últimas
+        int desde = Math.max(0, nuevas.size() - capacidad);
+        int n     = nuevas.size() - desde;
+
+        int desalojar = Math.max(0, tamano + n - capacidad);
+        if (desalojar > 0) {
+            for (int i = 0; i < desalojar; i++) buffer[(inicio + i) % capacidad] = null;
+            inicio  = (inicio + desalojar) % capacidad;
+            tamano -= desalojar;
+            fireIntervalRemoved(this, 0, desalojar - 1);
+        }
+
+        int primero = tamano;
+        for (int i = desde; i < nuevas.size(); i++) {
+            buffer[(inicio + tamano) % capacidad] = nuevas.get(i);
+            tamano++;
+        }
+        fireIntervalAdded(this, primero, tamano - 1);
+    }
+
+    /** Huecos libres antes de que una burbuja nueva desaloje a la más antigua. */
+    public int getLibres() { return buffer.length - tamano; }
+
+    /**
+     * Inserta burbujas más antiguas delante de las actuales (páginas de historial).
+     * Si no caben en los huecos libres desaloja las más recientes, con un evento de
+     * eliminación al final y uno de inserción al principio: quien sube por el historial
+     * deja de tener cargado lo último, y la vista lo vuelve a pedir al bajar.
+     *
+     * @return Número de burbujas insertadas: las más recientes de {@code anteriores},
+     *         hasta la capacidad.
+     */
+    public int anteponer(List<Burbuja> anteriores) {
+        int capacidad = buffer.length;
+        int n = Math.min(anteriores.size(), capacidad);
+        if (n == 0) return 0;
+
+        int desalojar = Math.max(0, tamano + n - capacidad);
+        if (desalojar > 0) {
+            for (int i = tamano - desalojar; i < tamano; i++) buffer[(inicio + i) % capacidad] = null;
+            tamano -= desalojar;
+            fireIntervalRemoved(this, tamano, tamano + desalojar - 1);
+        }
+
+        inicio = (inicio - n + capacidad) % capacidad;
+        int desde = anteriores.size() - n;
+        for (int i = 0; i < n; i++) buffer[(inicio + i) % capacidad] = anteriores.get(desde + i);
+        tamano += n;
+        fireIntervalAdded(this, 0, n - 1);
+        return n;
+    }
+
+    public void limpiar() {
+        if (tamano == 0) return;
+        int ultimo = tamano - 1;
+        Arrays.fill(buffer, null);
+        inicio = 0;
+        tamano = 0;
+        fireIntervalRemoved(this, 0, ultimo);
+    }
+}
@@ -0,0 +1,211 @@
+package cliente;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * {@link ListModel} de usuarios conectados, siempre ordenado.
+ *
+ * <p>Las altas y bajas localizan su posición por búsqueda binaria y disparan un único
+ * {@code intervalAdded}/{@code intervalRemoved} de una fila, de modo que la barra lateral
+ * solo repinta lo que cambia. Una lista completa ({@code USER_LIST}, tras conectar o
+ * reconectar) se aplica como diferencia contra el contenido actual: los usuarios que
+ * siguen conectados no generan eventos.
+ *
+ * <p>El orden no distingue mayúsculas (con desempate por el orden natural, para que
+ * sea total). Gracias a ello los nombres que empiezan por un prefijo dado forman un
+ * tramo contiguo del array: {@link #setFiltro} lo localiza con dos búsquedas binarias y
+ * el modelo expone solo ese tramo, sin recorrer la lista en cada pulsación.
+ *
+ * <p>Debe usarse solo desde el EDT, como cualquier modelo Swing.
+ */
+public class ModeloUsuariosOrdenado extends AbstractListModel<String> {
+
+    static final Comparator<String> ORDEN =
+            String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    private final List<String> usuarios = new ArrayList<>();
+
+    /** Prefijo activo ({@code ""} = sin filtro) y tramo visible {@code [desde, hasta)}. */
+    private String filtro = "";
+    private int    desde;
+    private int    hasta;
+
+    @Override
+    public int getSize() { return hasta - desde; }
+
+    @Override
+    public String getElementAt(int index) {
+        if (index < 0 || index >= hasta - desde) throw new IndexOutOfBoundsException(index);
+        return usuarios.get(desde + index);
+    }
+
+    /** Número total de usuarios, con independencia del filtro. */
+    public int getTotal() { return usuarios.size(); }
+
+    public String getFiltro() { return filtro; }
+
+    /**
+     * Muestra solo los usuarios cuyo nombre empieza por {@code prefijo} (sin distinguir
+     * mayúsculas). Coste O(log n); dispara un evento de eliminación y uno de inserción.
+     */
+    public void setFiltro(String prefijo) {
+        String nuevo = prefijo == null ? "" : prefijo.trim();
+        if (nuevo.equals(filtro)) return;
+        int antes = hasta - desde;
+        filtro = nuevo;
+        desde  = 0;
+        hasta  = 0;
+        if (antes > 0) fireIntervalRemoved(this, 0, antes - 1);
+        recalcularTramo();
+        if (hasta > desde) fireIntervalAdded(this, 0, hasta - desde - 1);
+    }
+
+    /** @return {@code false} si el usuario ya estaba en la lista. */
+    public boolean agregar(String usuario) {
+        int i = Collections.binarySearch(usuarios, usuario, ORDEN);
+        if (i >= 0) return false;
+        insertarEn(-i - 1, usuario);
+        return true;
+    }
+
+    /** @return {@code false} si el usuario no estaba en la lista. */
+    public boolean quitar(String usuario) {
+        int i = Collections.binarySearch(usuarios, usuario, ORDEN);
+        if (i < 0) return false;
+        quitarEn(i);
+        return true;
+    }
+
+    public boolean contiene(String usuario) {
+        return Collections.binarySearch(usuarios, usuario, ORDEN) >= 0;
+    }
+
+    /**
+     * Sustituye el contenido por una instantánea completa, emitiendo solo los eventos
+     * de las filas que entran o salen. Coste O(n log n) por la ordenación de la
+     * instantánea más O(n) de la mezcla.
+     */
+    public void reemplazar(Collection<String> instantanea) {
+        List<String> nuevos = new ArrayList<>(instantanea);
+        nuevos.sort(ORDEN);
+
+        if (usuarios.isEmpty()) {
+            // Primera instantánea (conexión): una sola inserción en bloque
+            for (int j = 0; j < nuevos.size(); j++) {
+                if (j == 0 || ORDEN.compare(nuevos.get(j), nuevos.get(j - 1)) != 0) usuarios.add(nuevos.get(j));
+            }
+            recalcularTramo();
+            if (hasta > desde) fireIntervalAdded(this, 0, hasta - desde - 1);
+            return;
+        }
+
+        int i = 0, j = 0;
+        while (j < nuevos.size()) {
+            String n = nuevos.get(j);
+            if (j > 0 && ORDEN.compare(n, nuevos.get(j - 1)) == 0) { j++; continue; }   // duplicado
+            int c = i < usuarios.size() ? ORDEN.compare(usuarios.get(i), n) : 1;
+            if (c < 0) {
+                quitarEn(i);
+            } else if (c > 0) {
+                insertarEn(i, n);
+                i++;
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        if (i < usuarios.size()) {
+            // Cola sobrante: la parte visible sale en un solo evento
+            int visiblesDesde = Math.max(i, desde) - desde;
+            int visiblesHasta = hasta - desde;
+            usuarios.subList(i, usuarios.size()).clear();
+            hasta = Math.min(hasta, i);
+            desde = Math.min(desde, i);
+            if (visiblesHasta > visiblesDesde) fireIntervalRemoved(this, visiblesDesde, visiblesHasta - 1);
+        }
+    }
+
+    public void limpiar() {
+        int visibles = hasta - desde;
+        usuarios.clear();
+        desde = hasta = 0;
+        if (visibles > 0) fireIntervalRemoved(this, 0, visibles - 1);
+    }
+
+    // ── Tramo visible ────────────────────────────────────────────────────────
+
+    private void insertarEn(int i, String usuario) {
+        usuarios.add(i, usuario);
+        // En el borde inferior del tramo solo desplaza si queda por debajo del prefijo
+        if (i < desde || (i == desde && compararPrefijo(usuario, filtro) < 0)) {
+            desde++;
+            hasta++;
+        } else if (i <= hasta && coincide(usuario)) {
+            hasta++;
+            fireIntervalAdded(this, i - desde, i - desde);
+        }
+    }
+
+    private void quitarEn(int i) {
+        usuarios.remove(i);
+        if (i < desde) {
+            desde--;
+            hasta--;
+        } else if (i < hasta) {
+            hasta--;
+            fireIntervalRemoved(this, i - desde, i - desde);
+        }
+    }
+
+    private boolean coincide(String usuario) {
+        return usuario.regionMatches(true, 0, filtro, 0, filtro.length());
+    }
+
+    private void recalcularTramo() {
+        if (filtro.isEmpty()) {
+            desde = 0;
+            hasta = usuarios.size();
+            return;
+        }
+        desde = limite(true);
+        hasta = limite(false);
+    }
+
+    /**
+     * Primera posición cuyo nombre no queda por debajo del prefijo ({@code inferior}) o
+     * que queda por encima de él (superior). Búsqueda binaria sobre el orden sin
+     * mayúsculas, en el que los nombres con el prefijo son contiguos.
+     */
+    private int limite(boolean inferior) {
+        int lo = 0, hi = usuarios.size();
+        while (lo < hi) {
+            int m = (lo + hi) >>> 1;
+            int c = compararPrefijo(usuarios.get(m), filtro);
+            if (inferior ? c < 0 : c <= 0) lo = m + 1;
+            else                          hi = m;
+        }
+        return lo;
+    }
+
+    /**
+     * Compara los primeros caracteres de {@code s} con {@code prefijo} igual que
+     * {@link String#CASE_INSENSITIVE_ORDER}: 0 si {@code s} empieza por el prefijo.
+     */
+    private static int compararPrefijo(String s, String prefijo) {
+        int n = Math.min(s.length(), prefijo.length());
+        for (int i = 0; i < n; i++) {
+            char a = s.charAt(i), b = prefijo.charAt(i);
+            if (a == b) continue;
+            a = Character.toLowerCase(Character.toUpperCase(a));
+            b = Character.toLowerCase(Character.toUpperCase(b));
+            if (a != b) return a - b;
+        }
+        return s.length() < prefijo.length() ? -1 : 0;
+    }
+}
@@ -0,0 +1,247 @@
+package cliente;
+
+import comun.CodecMensaje;
+import comun.CodecTexto;
+import comun.Mensaje;
+import comun.TipoMensaje;
+
+import javax.net.ssl.SSLSocket;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.prefs.Preferences;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Negociación de opciones del canal TCP/TLS tras enviar el nombre de usuario.
+ *
+ * <p>El cliente envía, en formato texto, un {@link TipoMensaje#OPTIONS} con las opciones
+ * que desea ({@code clave=valor,...}). Un servidor que las entienda responde con otro
+ * {@code OPTIONS} con las que acepta y, a partir de ahí, ambos lados usan lo acordado.
+ * Los mensajes push que lleguen antes de la respuesta (en texto) se conservan y se
+ * entregan al receptor por delante del resto. Si el servidor no responde a tiempo se
+ * sigue con el formato de texto y todo lo leído se devuelve intacto al flujo.
+ *
+ * <p>Solo se espera la respuesta si se propone un codec o compresión, porque cambian el
+ * formato de las tramas siguientes, o confirmaciones o descarte de repetidos a un
+ * servidor que ya los aceptó antes ({@link #admitida}), porque de ellos depende cómo se
+ * envía. A uno que no se conoce se le proponen sin esperar: si los acepta, la respuesta
+ * tardía los activa en el canal.
+ * Las demás opciones ({@code presencia}, {@code secuencia},
+ * {@code reanudar}) no alteran el formato: se envían y se sigue sin esperar, y la
+ * respuesta, si llega, la descarta el receptor. Así un servidor que no conozca
+ * {@code OPTIONS} no retrasa el login.
+ *
+ * <p>Con {@code compresion=deflate} aceptada, todo lo que el servidor envía tras su
+ * {@code OPTIONS} es un único flujo DEFLATE por conexión: la ventana de 32 KiB se
+ * conserva de un mensaje a otro (nombres, timestamps y separadores repetidos salen casi
+ * gratis) y el servidor vacía el compresor tras cada mensaje ({@code SYNC_FLUSH}), así
+ * que ninguno se queda esperando en él. Solo se comprime el sentido servidor → cliente.
+ *
+ * <p>Con {@code confirmacion=1} aceptada, el servidor responde a cada {@code MESSAGE}
+ * con identificador que reciba por el canal con un {@link TipoMensaje#ACK} (ver
+ * {@link BandejaSalida}); sin ella, los mensajes se envían por el canal sin
+ * identificador, como siempre. Con la bandeja se propone además
+ * {@code repetidos=descartar}: un servidor que lo acepte descarta por identificador los
+ * mensajes que ya recibió, y solo entonces se reenvía lo que pudo llegarle.
+ *
+ * <p>Con {@code -Dchat.login=push} se propone {@code login=directo}: un servidor que lo
+ * acepte admite el login en el propio canal ({@link LoginDirecto}). Las opciones de
+ * {@link #RECORDADAS} que acepta cada servidor push se recuerdan entre ejecuciones
+ * ({@link #admitida}), tanto si la respuesta se esperó como si llegó tarde al receptor, y
+ * se olvidan si deja de responder a {@code OPTIONS}.
+ *
+ * <p>Si no se propone ninguna opción no se envía nada: el canal es idéntico al original.
+ */
+final class NegociacionCanal {
+
+    private static final int TIMEOUT_MS = 3_000;
+    static final String DEFLATE = "deflate";
+
+    /** Resultado de la negociación: codec acordado y flujo de entrada listo para el receptor. */
+    record Acuerdo(CodecMensaje codec, InputStream entrada, Map<String, String> opciones) {}
+
+    private NegociacionCanal() {}
+
+    /**
+     * Opciones que el cliente propone según {@code -Dchat.codec},
+     * {@code -Dchat.presencia} ({@code lista}, por defecto, o {@code delta} para recibir
+     * {@code USER_JOIN}/{@code USER_LEAVE} en lugar de la lista completa en cada cambio) y
+     * {@code -Dchat.compresion} ({@code no}, por defecto, o {@code deflate}).
+     */
+    static Map<String, String> propuesta() {
+        return propuesta(-1);
+    }
+
+    /**
+     * Como {@link #propuesta()}, pidiendo además, con {@code -Dchat.reanudar=true},
+     * números de secuencia en los mensajes ({@code secuencia=1}) y, al reconectar
+     * ({@code reanudarDesde >= 0}), que el servidor reenvíe lo posterior a
+     * {@code reanudarDesde}. En una sesión nueva se pasa {@code -1}. Va desactivado por
+     * defecto para que, sin ninguna otra opción, no se envíe nada a un servidor que no
+     * conozca {@code OPTIONS}. Con bandeja de salida pide {@code repetidos=descartar} y,
+     * con envío por el canal ({@code -Dchat.envio=tcp}), también {@code confirmacion=1}.
+     */
+    static Map<String, String> propuesta(long reanudarDesde) {
+        Map<String, String> opciones = new LinkedHashMap<>();
+        String codec = System.getProperty("chat.codec", CodecTexto.NOMBRE);
+        if (!CodecTexto.NOMBRE.equalsIgnoreCase(codec)) opciones.put("codec", codec.toLowerCase());
+        if (DEFLATE.equalsIgnoreCase(System.getProperty("chat.compresion", "no"))) opciones.put("compresion", DEFLATE);
+        String presencia = System.getProperty("chat.presencia", "lista");
+        if ("delta".equalsIgnoreCase(presencia)) opciones.put("presencia", "delta");
+        if (Boolean.parseBoolean(System.getProperty("chat.reanudar", "false"))) {
+            opciones.put("secuencia", "1");
+            if (reanudarDesde >= 0) opciones.put("reanudar", Long.toString(reanudarDesde));
+        }
+        if (ClienteChat.bandejaActiva()) {
+            opciones.put("repetidos", "descartar");
+            if ("tcp".equalsIgnoreCase(System.getProperty("chat.envio", "https"))) opciones.put("confirmacion", "1");
+        }
+        if ("push".equalsIgnoreCase(System.getProperty("chat.login", "http"))) opciones.put("login", "directo");
+        return opciones;
+    }
+
+    static Acuerdo negociar(Socket socket, OutputStream salida, String usuario,
+                            Map<String, String> propuesta) throws IOException {
+        InputStream entrada = new BufferedInputStream(socket.getInputStream());
+        if (propuesta.isEmpty()) return new Acuerdo(CodecTexto.INSTANCIA, entrada, Map.of());
+
+        CodecTexto.INSTANCIA.escribir(opciones(usuario, propuesta), salida);
+        salida.flush();
+        return respuesta(socket, entrada, propuesta);
+    }
+
+    /** El {@code OPTIONS} que lleva {@code propuesta}, para enviarlo en texto. */
+    static Mensaje opciones(String usuario, Map<String, String> propuesta) {
+        return new Mensaje(TipoMensaje.OPTIONS, formatear(propuesta), usuario);
+    }
+
+    /**
+     * Segunda mitad de {@link #negociar}, con el {@code OPTIONS} ya enviado por quien
+     * llama (p.ej. {@link LoginDirecto}, en la misma escritura que las credenciales).
+     */
+    static Acuerdo respuesta(Socket socket, InputStream entrada, Map<String, String> propuesta) throws IOException {
+        if (!propuesta.containsKey("codec") && !propuesta.containsKey("compresion")
+                && !yaAdmitida(socket, propuesta, "confirmacion") && !yaAdmitida(socket, propuesta, "repetidos")) {
+            return new Acuerdo(CodecTexto.INSTANCIA, entrada, Map.of());
+        }
+
+        // Todo lo leído mientras se espera la respuesta, por si hay que devolverlo al flujo
+        ByteArrayOutputStream leido = new ByteArrayOutputStream();
+        List<Mensaje> previos = new ArrayList<>();
+        ByteArrayOutputStream linea = new ByteArrayOutputStream(128);
+        long limite = System.currentTimeMillis() + TIMEOUT_MS;
+        int timeoutPrevio = socket.getSoTimeout();
+        try {
+            int b;
+            while (true) {
+                socket.setSoTimeout((int) Math.max(1, limite - System.currentTimeMillis()));
+                if ((b = entrada.read()) == -1) break;
+                leido.write(b);
+                if (b != '\n') { linea.write(b); continue; }
+
+                Mensaje m = Mensaje.fromHttpString(linea.toString(StandardCharsets.UTF_8).trim());
+                linea.reset();
+                if (m == null) continue;
+                if (m.getTipo() != TipoMensaje.OPTIONS) { previos.add(m); continue; }
+
+                Map<String, String> aceptadas = parsear(m.getContenido());
+                CodecMensaje codec = CodecMensaje.porNombre(aceptadas.get("codec"));
+                // Los previos llegaron en texto: se recodifican con el codec acordado
+                ByteArrayOutputStream prefijo = new ByteArrayOutputStream();
+                for (Mensaje p : previos) codec.escribir(p, prefijo);
+                // Con su propio Inflater, close() lo libera (end()): lo hace el receptor al acabar
+                InputStream siguiente = DEFLATE.equals(aceptadas.get("compresion"))
+                        ? new InflaterInputStream(entrada)
+                        : entrada;
+                InputStream resto = new SequenceInputStream(new ByteArrayInputStream(prefijo.toByteArray()), siguiente);
+                recordar(destino(socket), aceptadas);
+                return new Acuerdo(codec, resto, aceptadas);
+            }
+        } catch (SocketTimeoutException e) {
+            // Servidor sin soporte de OPTIONS: seguimos en texto
+            olvidar(destino(socket));
+        } finally {
+            socket.setSoTimeout(timeoutPrevio);
+        }
+        InputStream restante = new SequenceInputStream(new ByteArrayInputStream(leido.toByteArray()), entrada);
+        return new Acuerdo(CodecTexto.INSTANCIA, restante, Map.of());
+    }
+
+    /** Si se propone {@code clave} tal como la aceptó antes el servidor de {@code socket}. */
+    private static boolean yaAdmitida(Socket socket, Map<String, String> propuesta, String clave) {
+        String valor = propuesta.get(clave);
+        return valor != null && admitida(destino(socket), clave, valor);
+    }
+
+    // ── Opciones recordadas por servidor ─────────────────────────────────────
+
+    /** Opciones cuya aceptación se recuerda por servidor push. */
+    static final List<String> RECORDADAS = List.of("login", "confirmacion", "repetidos");
+
+    /**
+     * Si el servidor push {@code destino} ({@code host:puerto}) aceptó {@code clave=valor}
+     * en la última respuesta a {@code OPTIONS} que se le conoce.
+     */
+    static boolean admitida(String destino, String clave, String valor) {
+        return destino != null && valor.equals(preferencias().get(clave(destino, clave), null));
+    }
+
+    /** Anota las opciones de {@link #RECORDADAS} que {@code destino} acepta en {@code aceptadas} y olvida las demás. */
+    static void recordar(String destino, Map<String, String> aceptadas) {
+        if (destino == null) return;
+        Preferences p = preferencias();
+        for (String clave : RECORDADAS) {
+            String valor = aceptadas.get(clave);
+            if (valor == null) p.remove(clave(destino, clave));
+            else if (!valor.equals(p.get(clave(destino, clave), null))) p.put(clave(destino, clave), valor);
+        }
+    }
+
+    /** Olvida lo que aceptaba {@code destino}, p.ej. porque ya no responde a {@code OPTIONS}. */
+    static void olvidar(String destino) {
+        recordar(destino, Map.of());
+    }
+
+    /**
+     * {@code host:puerto} del servidor al que está conectado {@code socket}, con el nombre
+     * con que se conectó; {@code null} si no está conectado.
+     */
+    static String destino(Socket socket) {
+        if (socket instanceof SSLSocket ssl && ssl.getSession().getPeerHost() != null) {
+            return ssl.getSession().getPeerHost() + ":" + socket.getPort();
+        }
+        InetAddress direccion = socket.getInetAddress();
+        return direccion != null ? direccion.getHostName() + ":" + socket.getPort() : null;
+    }
+
+    private static Preferences preferencias() {
+        return Preferences.userNodeForPackage(NegociacionCanal.class);
+    }
+
+    private static String clave(String destino, String opcion) {
+        return "opcion." + destino + "." + opcion;
+    }
+
+    static String formatear(Map<String, String> opciones) {
+        StringBuilder sb = new StringBuilder();
+        opciones.forEach((k, v) -> sb.append(sb.length() > 0 ? "," : "").append(k).append('=').append(v));
+        return sb.toString();
+    }
+
+    static Map<String, String> parsear(String texto) {
+        Map<String, String> opciones = new LinkedHashMap<>();
+        if (texto == null) return opciones;
+        for (String par : texto.split(",")) {
+            int eq = par.indexOf('=');
+            if (eq > 0) opciones.put(par.substring(0, eq).trim(), par.substring(eq + 1).trim());
+        }
+        return opciones;
+    }
+}
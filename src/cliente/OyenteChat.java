@@ -0,0 +1,55 @@
+package cliente;
+
+import comun.Mensaje;
+
+import java.util.List;
+
+/**
+ * Eventos del canal de push ya clasificados por {@link ReceptorMensajes}.
+ *
+ * <p>El receptor decide una sola vez, a partir de los campos del {@link Mensaje}, qué
+ * clase de evento es cada trama; quien escucha pinta directamente desde esos campos sin
+ * volver a convertir el mensaje en texto ni analizarlo. Los métodos se invocan desde el
+ * hilo del receptor: la implementación se encarga de pasar al EDT si lo necesita.
+ */
+public interface OyenteChat {
+
+    /** Mensaje público ({@code MESSAGE}, {@code HELP} u otro tipo sin tratamiento propio). */
+    void mensaje(Mensaje mensaje);
+
+    /** Mensaje privado dirigido a este usuario. */
+    void privado(Mensaje mensaje);
+
+    /** Un usuario entró en el chat. {@code usuario} puede ser {@code null} si no se pudo deducir. */
+    void union(String usuario, Mensaje mensaje);
+
+    /** Un usuario salió del chat. {@code usuario} puede ser {@code null} si no se pudo deducir. */
+    void salida(String usuario, Mensaje mensaje);
+
+    /** Lista completa de usuarios conectados (al conectar o si el servidor no envía deltas). */
+    void listaUsuarios(List<String> usuarios);
+
+    /**
+     * Delta de presencia: {@code usuario} entró. No va acompañado de aviso de texto; el
+     * oyente decide si mostrarlo.
+     */
+    void usuarioConectado(String usuario);
+
+    /** Delta de presencia: {@code usuario} salió. */
+    void usuarioDesconectado(String usuario);
+
+    /** Error notificado por el servidor o por el propio cliente. */
+    void error(String detalle);
+
+    /** El canal de push se cortó sin que lo pidiera el usuario y no se pudo recuperar. */
+    void conexionPerdida(String motivo);
+
+    /**
+     * El canal se cortó y se está reconectando. {@code intento} empieza en 1 (justo tras
+     * el corte, sin espera); los siguientes llegan antes de esperar {@code esperaMs}.
+     */
+    void reconectando(int intento, long esperaMs, String motivo);
+
+    /** El canal se recuperó, {@code ms} milisegundos después del corte. */
+    void reconectado(long ms);
+}
@@ -0,0 +1,16 @@
+package cliente;
+
+/**
+ * Lo que el núcleo {@link ClienteChat} comunica a quien lo usa: los eventos del canal
+ * push ({@link OyenteChat}) más el resultado del login o del registro. Los rechazos y
+ * los fallos de envío llegan por {@link #error}.
+ *
+ * <p>{@link InterfazGrafica} es una implementación; {@code bench.GeneradorCarga}, otra
+ * sin Swing por cada usuario simulado. Como el resto de eventos, se invoca desde hilos
+ * del núcleo, nunca desde el EDT.
+ */
+public interface OyenteSesion extends OyenteChat {
+
+    /** Login o registro aceptado; {@code mensaje} es el texto del servidor. */
+    void loginExitoso(String mensaje);
+}
@@ -0,0 +1,90 @@
+package cliente;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Esperas entre intentos de reconexión: exponencial con jitter completo.
+ *
+ * <p>El intento {@code n} (desde 2) espera un valor al azar en {@code [0, min(max, base·2^(n-2))]}.
+ * El azar reparte en el tiempo a los clientes que perdieron la conexión a la vez (una
+ * caída del servidor), en lugar de que todos vuelvan en la misma ráfaga.
+ *
+ * <p>El primer intento se hace sin esperar: la mayoría de los cortes son del propio
+ * socket (cambio de red, NAT que caduca) y el servidor sigue ahí.
+ */
+public final class PoliticaReintento {
+
+    /** Un intento; una {@link IOException} cuenta como fallo reintentable. */
+    @FunctionalInterface
+    public interface Intento {
+        void intentar() throws IOException;
+    }
+
+    /** Aviso antes de cada espera: qué intento viene, cuánto se esperará y por qué falló el anterior. */
+    @FunctionalInterface
+    public interface Progreso {
+        void reintento(int intento, long esperaMs, IOException causa);
+    }
+
+    private final long baseMs;
+    private final long maxMs;
+    private final int  intentos;
+
+    public PoliticaReintento(long baseMs, long maxMs, int intentos) {
+        this.baseMs   = Math.max(1, baseMs);
+        this.maxMs    = Math.max(this.baseMs, maxMs);
+        this.intentos = intentos;
+    }
+
+    /**
+     * Configuración de {@code -Dchat.reconexion.baseMs} (250),
+     * {@code -Dchat.reconexion.maxMs} (30000) y {@code -Dchat.reconexion.intentos} (10;
+     * 0 desactiva la reconexión automática).
+     */
+    public static PoliticaReintento desdePropiedades() {
+        return new PoliticaReintento(Long.getLong("chat.reconexion.baseMs", 250),
+                                     Long.getLong("chat.reconexion.maxMs", 30_000),
+                                     Integer.getInteger("chat.reconexion.intentos", 10));
+    }
+
+    public boolean activa() { return intentos > 0; }
+
+    public int getIntentos() { return intentos; }
+
+    /** Espera antes del intento {@code intento} (1 = el primero, sin espera). */
+    public long espera(int intento) {
+        if (intento <= 1) return 0;
+        int exp = Math.min(intento - 2, 30);
+        long tope = Math.min(maxMs, baseMs << exp);
+        return ThreadLocalRandom.current().nextLong(tope + 1);
+    }
+
+    /**
+     * Repite {@code intento} hasta que salga bien, se agoten los intentos o
+     * {@code cancelado} devuelva {@code true} (se comprueba antes de cada intento).
+     * Cualquier excepción que no sea {@link IOException} se propaga sin reintentar.
+     *
+     * @return {@code true} si algún intento tuvo éxito.
+     */
+    public boolean ejecutar(Intento intento, BooleanSupplier cancelado, Progreso progreso)
+            throws InterruptedException {
+        IOException ultima = null;
+        for (int n = 1; n <= intentos; n++) {
+            long espera = espera(n);
+            if (n > 1) {
+                progreso.reintento(n, espera, ultima);
+                Thread.sleep(espera);
+            }
+            if (cancelado.getAsBoolean()) return false;
+            try {
+                intento.intentar();
+                return true;
+            } catch (IOException e) {
+                ultima = e;
+            }
+        }
+        return false;
+    }
+}
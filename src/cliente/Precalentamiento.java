@@ -0,0 +1,173 @@
+package cliente;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.Preferences;
+
+/**
+ * Trabajo especulativo mientras se muestra el formulario de login.
+ *
+ * <ol>
+ *   <li>{@link #contexto}: carga el truststore e inicializa JSSE fuera del EDT, en
+ *       paralelo con la construcción de la ventana.</li>
+ *   <li>{@link #iniciar}: con el contexto listo, abre la conexión HTTPS (queda en el pool
+ *       keep-alive y deja la sesión TLS en caché) y una conexión push ya negociada al
+ *       último puerto push conocido de este servidor, sin enviar todavía el usuario.</li>
+ * </ol>
+ *
+ * <p>Al pulsar «Iniciar sesión», {@code /login} viaja por la conexión abierta y, si el
+ * puerto que devuelve coincide, el canal push se monta sobre el socket preabierto. Si
+ * algo falla o el servidor cerró el socket, se conecta como siempre: el precalentamiento
+ * nunca es necesario para funcionar. Se desactiva con {@code -Dchat.precalentar=false}.
+ *
+ * <p>El socket preabierto ocupa una conexión sin autenticar en el servidor, así que no se
+ * deja abierto más de {@code -Dchat.precalentar.pushMs} milisegundos (10 s) si nadie lo
+ * toma, y se cierra en cuanto el login lo reclama si aún no estaba listo.
+ */
+public final class Precalentamiento {
+
+    /** Lo que se mantiene abierto el socket push preabierto sin que nadie lo tome. */
+    private static final long MAX_EDAD_PUSH_MS = Long.getLong("chat.precalentar.pushMs", 10_000);
+
+    private final SesionesTls    tls;
+    private final TransporteHttp transporte;
+    private final String         host;
+    private final int            puertoPush;
+
+    private Socket  push;
+    /** El login ya pidió el socket (o se descartó): uno que termine de abrirse después sobra. */
+    private boolean reclamado;
+
+    /**
+     * @param puertoPush Puerto push a preabrir, o 0 si no se conoce (primera conexión a
+     *                   este servidor).
+     */
+    public Precalentamiento(SesionesTls tls, TransporteHttp transporte, String host, int puertoPush) {
+        this.tls        = tls;
+        this.transporte = transporte;
+        this.host       = host;
+        this.puertoPush = puertoPush;
+    }
+
+    public static boolean activo() {
+        return Boolean.parseBoolean(System.getProperty("chat.precalentar", "true"));
+    }
+
+    /**
+     * Crea el contexto TLS en un hilo propio e inicializa JSSE generando un ClientHello
+     * en memoria (proveedores, curvas y suites quedan cargados sin tocar la red).
+     */
+    public static CompletableFuture<SSLContext> contexto(Callable<SSLContext> crear) {
+        CompletableFuture<SSLContext> futuro = new CompletableFuture<>();
+        Thread.ofPlatform().daemon().name("PrecalentamientoTls").start(() -> {
+            try {
+                SSLContext ctx = crear.call();
+                Arranque.hito("contexto TLS");
+                SSLEngine motor = ctx.createSSLEngine();
+                motor.setUseClientMode(true);
+                motor.wrap(ByteBuffer.allocate(0), ByteBuffer.allocate(motor.getSession().getPacketBufferSize()));
+                Arranque.hito("JSSE inicializado");
+                futuro.complete(ctx);
+            } catch (Throwable e) {
+                futuro.completeExceptionally(e);
+            }
+        });
+        return futuro;
+    }
+
+    /** Espera al contexto de {@link #contexto}, devolviendo la excepción original si falló. */
+    public static SSLContext esperar(CompletableFuture<SSLContext> futuro) throws Exception {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception causa) throw causa;
+            throw e;
+        }
+    }
+
+    /** Lanza las conexiones especulativas en segundo plano. */
+    public void iniciar() {
+        Thread.ofVirtual().name("Precalentamiento").start(() -> {
+            try {
+                transporte.precalentar();
+                Arranque.hito("HTTPS precalentado");
+            } catch (IOException e) {
+                System.err.println("[Precalentamiento] HTTPS: " + e.getMessage());
+            }
+            if (puertoPush <= 0) return;
+            try {
+                Socket s = tls.conectar(host, puertoPush, "push (precalentado)");
+                synchronized (this) {
+                    if (reclamado) {
+                        cerrar(s);
+                        return;
+                    }
+                    push = s;
+                }
+                CompletableFuture.delayedExecutor(MAX_EDAD_PUSH_MS, TimeUnit.MILLISECONDS).execute(() -> caducar(s));
+                Arranque.hito("push precalentado");
+            } catch (IOException e) {
+                System.err.println("[Precalentamiento] push: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Entrega el socket push preabierto si es de {@code puerto} y sigue abierto; en otro
+     * caso lo cierra. Solo se reclama una vez: si aún se está abriendo, se cerrará al
+     * terminar.
+     */
+    public synchronized Socket tomarPush(int puerto) {
+        Socket s = push;
+        push = null;
+        reclamado = true;
+        if (s == null) return null;
+        if (puerto == puertoPush && !s.isClosed()) return s;
+        cerrar(s);
+        return null;
+    }
+
+    /** Cierra el socket preabierto si no se ha tomado, y el que se esté abriendo al terminar. */
+    public synchronized void descartar() {
+        reclamado = true;
+        if (push != null) cerrar(push);
+        push = null;
+    }
+
+    /** Cierra {@code s} si pasado {@link #MAX_EDAD_PUSH_MS} sigue sin tomar. */
+    private synchronized void caducar(Socket s) {
+        if (push != s) return;
+        push = null;
+        cerrar(s);
+    }
+
+    private static void cerrar(Socket s) {
+        try { s.close(); } catch (IOException ignored) {}
+    }
+
+    // ── Puerto push recordado ────────────────────────────────────────────────
+
+    /** Último puerto push que devolvió {@code /login} en {@code servidor}, o 0. */
+    public static int puertoPushRecordado(String servidor) {
+        return preferencias().getInt(clave(servidor), 0);
+    }
+
+    public static void recordarPuertoPush(String servidor, int puerto) {
+        if (puertoPushRecordado(servidor) != puerto) preferencias().putInt(clave(servidor), puerto);
+    }
+
+    private static Preferences preferencias() {
+        return Preferences.userNodeForPackage(Precalentamiento.class);
+    }
+
+    private static String clave(String servidor) {
+        return "puertoPush." + servidor;
+    }
+}
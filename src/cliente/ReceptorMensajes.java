@@ -1,77 +1,280 @@
 package cliente;
 
+import comun.CapturaTramas;
+import comun.CodecMensaje;
+import comun.LectorTramas;
 import comun.Mensaje;
 
 import java.io.*;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
- * Hilo daemon que mantiene el socket TCP con el servidor y procesa los mensajes
- * recibidos en tiempo real (push del servidor al cliente).
+ * Lee el socket TCP con el servidor y procesa los mensajes recibidos en tiempo real
+ * (push del servidor al cliente), en un hilo virtual propio.
  *
  * <p>Sustituye al antiguo mecanismo de long polling HTTP: en lugar de hacer
- * peticiones GET repetidas cada 30 segundos, este hilo permanece bloqueado
- * en {@code readLine()} y recibe los mensajes en cuanto el servidor los emite.
+ * peticiones GET repetidas cada 30 segundos, el hilo permanece bloqueado en la lectura
+ * y recibe los mensajes en cuanto el servidor los emite. Al ser virtual, un proceso
+ * puede mantener miles de canales abiertos (ver {@code bench.GeneradorCarga}) sin un
+ * hilo de plataforma por cada uno.
  *
- * <p>El formato de cada mensaje es el producido por {@link comun.Mensaje#toHttpString()},
- * enviado como una línea de texto terminada en {@code '\n'}.
+ * <p>El formato de cada mensaje lo define el {@link CodecMensaje} negociado para la
+ * conexión: por defecto el producido por {@link comun.Mensaje#toHttpString()}, enviado
+ * como una línea de texto terminada en {@code '\n'}.
+ *
+ * <p>Cada mensaje se clasifica aquí una sola vez y se entrega al {@link OyenteChat}
+ * como evento tipado; la interfaz no vuelve a analizar texto. Las entradas y salidas se
+ * reconocen por {@code USER_JOIN}/{@code USER_LEAVE} si se negoció {@code presencia=delta};
+ * si no, por el texto del aviso (ver {@link #procesarPublico}).
+ *
+ * <p>Si los mensajes traen número de secuencia, el receptor recuerda el último visto
+ * (para pedir al reconectar solo lo posterior) y descarta los repetidos que un servidor
+ * pueda reenviar al reanudar.
+ *
+ * <p>Con {@code -Dchat.captura=fichero} todas las tramas recibidas por el proceso se
+ * copian en una {@link CapturaTramas} con su instante de llegada, para reproducirlas
+ * después sin red ({@code bench.ReproductorCaptura}).
  */
-public class ReceptorMensajes extends Thread {
+public class ReceptorMensajes implements Runnable {
+
+    /** Captura compartida por todos los canales del proceso; {@code null} si no se graba. */
+    private static final CapturaTramas.Grabador CAPTURA = CapturaTramas.Grabador.desdePropiedad("chat.captura");
 
     private final Socket          socket;
-    private final InterfazGrafica gui;
+    private final InputStream     entrada;
+    private final CodecMensaje    codec;
+    private final OyenteChat      oyente;
     private final String          usuario;
+    private final HistorialLocal  historial;
+    private final Consumer<String> alCaer;
     private volatile boolean      activo = true;
+    private volatile long         ultimaSecuencia;
+    /** Si el servidor envía la presencia como {@code USER_JOIN}/{@code USER_LEAVE} (sin avisos de texto). */
+    private boolean               presenciaExplicita;
+    /** Opciones aceptadas en una respuesta tardía a la negociación; vacío si no llegó. */
+    private volatile Map<String, String> opcionesTardias = Map.of();
+    /** Donde anotar los {@code ACK} del servidor; {@code null} si no se usan. */
+    private volatile BandejaSalida bandeja;
 
     /**
      * @param socket  Socket TCP ya conectado al servidor (debe estar abierto).
-     * @param gui     Interfaz gráfica donde se mostrarán los mensajes recibidos.
+     * @param entrada Flujo de entrada del socket, ya posicionado tras la negociación.
+     * @param codec   Formato de trama acordado para esta conexión.
+     * @param oyente  Destinatario de los eventos recibidos (normalmente la interfaz gráfica).
      * @param usuario Nombre del usuario autenticado (para comparar remitentes).
+     * @param historial Donde guardar los mensajes de chat recibidos; puede ser {@code null}.
+     */
+    public ReceptorMensajes(Socket socket, InputStream entrada, CodecMensaje codec,
+                            OyenteChat oyente, String usuario, HistorialLocal historial) {
+        this(socket, entrada, codec, oyente, usuario, historial, 0, null);
+    }
+
+    /**
+     * @param ultimaSecuencia Último número de secuencia ya recibido (al reanudar).
+     * @param alCaer Si no es {@code null}, se le avisa de una caída no pedida del canal
+     *               (incluido un cierre ordenado del servidor) en lugar de llamar a
+     *               {@link OyenteChat#conexionPerdida}.
      */
-    public ReceptorMensajes(Socket socket, InterfazGrafica gui, String usuario) {
+    public ReceptorMensajes(Socket socket, InputStream entrada, CodecMensaje codec,
+                            OyenteChat oyente, String usuario, HistorialLocal historial,
+                            long ultimaSecuencia, Consumer<String> alCaer) {
         this.socket  = socket;
-        this.gui     = gui;
+        this.entrada = entrada;
+        this.codec   = codec;
+        this.oyente  = oyente;
         this.usuario = usuario;
-        setDaemon(true);
-        setName("ReceptorTCP-" + usuario);
+        this.historial = historial;
+        this.ultimaSecuencia = ultimaSecuencia;
+        this.alCaer  = alCaer;
+    }
+
+    /** Arranca la lectura en un hilo virtual. */
+    public void start() {
+        Thread.ofVirtual().name("ReceptorTCP-" + usuario).start(this);
     }
 
     @Override
     public void run() {
         try {
-            BufferedReader entrada = new BufferedReader(
-                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-
-            // Leer mensajes del servidor línea a línea hasta que se cierre la conexión
-            String linea;
-            while (activo && (linea = entrada.readLine()) != null) {
-                if (!linea.isEmpty()) {
-                    Mensaje msg = Mensaje.fromHttpString(linea);
-                    if (msg != null) procesarMensaje(msg);
-                }
+            // Leer tramas del servidor hasta que se cierre la conexión. El lector decodifica
+            // desde un búfer reutilizable y corta la conexión si una trama excede el máximo.
+            LectorTramas lector = new LectorTramas(entrada, codec);
+            lector.grabarEn(CAPTURA);
+            while (activo) {
+                Mensaje msg = lector.siguiente();
+                if (msg != null) procesarMensaje(msg);
             }
 
+        } catch (EOFException e) {
+            // El servidor cerró la conexión de forma ordenada (antes: readLine() == null).
+            // Sin reconexión se mantiene el comportamiento original: no se avisa.
+            if (activo && alCaer != null) alCaer.accept("el servidor cerró la conexión");
         } catch (IOException e) {
             // Solo notificar si la desconexión no fue voluntaria (llamada a detener())
             if (activo) {
-                gui.mostrarMensaje("[Sistema] Conexión perdida: " + e.getMessage());
-                gui.volverALogin();
+                if (alCaer != null) alCaer.accept(e.getMessage());
+                else                oyente.conexionPerdida(e.getMessage());
             }
+        } finally {
+            // Libera lo que cuelgue del flujo, p.ej. la memoria nativa del inflador de
+            // compresion=deflate, que no se recupera solo al cerrar el socket
+            try { entrada.close(); } catch (IOException ignored) {}
         }
     }
 
-    /** Delega en la interfaz gráfica la presentación del mensaje según su tipo. */
+    /** Clasifica el mensaje según su tipo y lo entrega al oyente como evento. */
     private void procesarMensaje(Mensaje mensaje) {
+        Metricas.INSTANCIA.recibido();
+        long secuencia = mensaje.getSecuencia();
+        if (secuencia > 0) {
+            if (secuencia <= ultimaSecuencia) return;   // ya entregado antes de reconectar
+            ultimaSecuencia = secuencia;
+        }
         switch (mensaje.getTipo()) {
-            case ERROR         -> gui.mostrarError(mensaje.getContenido());
-            case MESSAGE, HELP -> gui.mostrarMensaje(mensaje.toString());
-            case PRIVATE       -> gui.mostrarMensaje("[Privado] " + mensaje);
-            case USER_LIST     -> gui.actualizarListaUsuarios(mensaje.getContenido());
-            default            -> gui.mostrarMensaje(mensaje.toString());
+            case ERROR      -> oyente.error(mensaje.getContenido());
+            case PRIVATE    -> { guardar(mensaje); oyente.privado(mensaje); }
+            case USER_LIST  -> oyente.listaUsuarios(usuarios(mensaje.getContenido()));
+            case USER_JOIN  -> oyente.usuarioConectado(mensaje.getContenido());
+            case USER_LEAVE -> oyente.usuarioDesconectado(mensaje.getContenido());
+            case MESSAGE    -> procesarPublico(mensaje);
+            case OPTIONS    -> opcionesTardias(mensaje.getContenido());
+            case ACK        -> confirmar(mensaje.getContenido());
+            default         -> oyente.mensaje(mensaje);
+        }
+    }
+
+    // ── Clasificación ────────────────────────────────────────────────────────
+
+    /** Si se reconocen avisos de texto cuando no hay presencia explícita ({@code -Dchat.avisos=no} lo desactiva). */
+    private static final boolean  AVISOS_TEXTO = !"no".equalsIgnoreCase(System.getProperty("chat.avisos", "texto"));
+    /** Remitentes que se tratan como el servidor, además del vacío. */
+    private static final String[] REMITENTES_SISTEMA = lista("chat.avisos.remitentes", "Sistema,Servidor,Server,System", "");
+    /** Frases con las que el servidor anuncia entradas y salidas, tras el nombre. */
+    private static final String[] MARCAS_UNION  = lista("chat.avisos.union", "se unió,se unio", " ");
+    private static final String[] MARCAS_SALIDA = lista("chat.avisos.salida",
+            "ha salido,se desconectó,se desconecto,abandonó,abandono", " ");
+
+    /**
+     * Sin presencia explícita, los avisos de entrada y salida llegan como {@code MESSAGE}
+     * del propio servidor, y solo el texto los distingue. Es una heurística de respaldo
+     * para servidores que no negocian {@code presencia=delta}: se reconoce un aviso si el
+     * remitente es el sistema ({@code -Dchat.avisos.remitentes}, separados por comas) y el
+     * texto contiene una de las frases de {@code -Dchat.avisos.union} o
+     * {@code -Dchat.avisos.salida}. Un usuario que escriba "se unió" en el chat sigue
+     * viéndose como un mensaje normal. Con presencia explícita, o con
+     * {@code -Dchat.avisos=no}, todo {@code MESSAGE} es chat.
+     */
+    private void procesarPublico(Mensaje mensaje) {
+        String contenido = mensaje.getContenido();
+        if (contenido != null && AVISOS_TEXTO && !presenciaExplicita && esRemitenteSistema(mensaje.getRemitente())) {
+            int p = buscar(contenido, MARCAS_UNION);
+            if (p >= 0) { oyente.union(nombreAntesDe(contenido, p), mensaje); return; }
+            p = buscar(contenido, MARCAS_SALIDA);
+            if (p >= 0) { oyente.salida(nombreAntesDe(contenido, p), mensaje); return; }
+        }
+        guardar(mensaje);
+        oyente.mensaje(mensaje);
+    }
+
+    /**
+     * Respuesta tardía a una negociación que no la esperaba: para esta conexión importa la
+     * presencia y lo que consulta {@link #aceptadaTarde}; lo que el servidor admite se
+     * recuerda para las siguientes.
+     */
+    private void opcionesTardias(String texto) {
+        Map<String, String> aceptadas = NegociacionCanal.parsear(texto);
+        if ("delta".equals(aceptadas.get("presencia"))) presenciaExplicita = true;
+        opcionesTardias = aceptadas;
+        NegociacionCanal.recordar(NegociacionCanal.destino(socket), aceptadas);
+    }
+
+    /** Persiste un mensaje de chat; un fallo del historial no interrumpe la recepción. */
+    private void guardar(Mensaje mensaje) {
+        if (historial == null) return;
+        try {
+            historial.agregar(mensaje);
+        } catch (IOException e) {
+            if (activo) System.err.println("[Historial] No se pudo guardar: " + e.getMessage());
         }
     }
 
+    /** Saca de la bandeja de salida un mensaje ya confirmado por el servidor. */
+    private void confirmar(String id) {
+        BandejaSalida b = bandeja;
+        if (b == null) return;
+        try {
+            b.confirmar(id);
+        } catch (IOException e) {
+            if (activo) System.err.println("[Salida] No se pudo anotar la confirmación: " + e.getMessage());
+        }
+    }
+
+    private static boolean esRemitenteSistema(String remitente) {
+        if (remitente == null || remitente.isEmpty()) return true;
+        for (String r : REMITENTES_SISTEMA) {
+            if (remitente.equalsIgnoreCase(r)) return true;
+        }
+        return false;
+    }
+
+    /** Valores de la propiedad {@code clave} separados por comas, cada uno tras {@code prefijo}. */
+    private static String[] lista(String clave, String porDefecto, String prefijo) {
+        List<String> valores = new ArrayList<>();
+        for (String v : System.getProperty(clave, porDefecto).split(",")) {
+            if (!v.isBlank()) valores.add(prefijo + v.trim());
+        }
+        return valores.toArray(new String[0]);
+    }
+
+    /** Posición de la primera marca presente en {@code texto} (sin distinguir mayúsculas), o -1. */
+    private static int buscar(String texto, String[] marcas) {
+        for (String marca : marcas) {
+            for (int i = 0, fin = texto.length() - marca.length(); i <= fin; i++) {
+                if (texto.regionMatches(true, i, marca, 0, marca.length())) return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String nombreAntesDe(String texto, int posicion) {
+        String nombre = texto.substring(0, posicion).trim();
+        return nombre.isEmpty() ? null : nombre;
+    }
+
+    private static List<String> usuarios(String csv) {
+        List<String> lista = new ArrayList<>();
+        if (csv == null || csv.isEmpty()) return lista;
+        for (String u : csv.split(",")) {
+            String t = u.trim();
+            if (!t.isEmpty()) lista.add(t);
+        }
+        return lista;
+    }
+
+    /**
+     * Indica que el servidor negoció {@code presencia=delta}: las entradas y salidas llegan
+     * como {@code USER_JOIN}/{@code USER_LEAVE} y no se buscan avisos en el texto. Llamar
+     * antes de {@link #start()}; si la aceptación llega después (la negociación no la
+     * esperó), el receptor la anota al leer el {@code OPTIONS} del servidor.
+     */
+    public void presenciaExplicita(boolean explicita) { this.presenciaExplicita = explicita; }
+
+    /** Bandeja donde anotar los {@code ACK} que lleguen a partir de ahora. */
+    public void confirmarEn(BandejaSalida bandeja) { this.bandeja = bandeja; }
+
+    /**
+     * {@code true} si el servidor aceptó {@code clave=valor} en una respuesta que llegó
+     * después de abrir el canal; rige para lo que se escriba a partir de ahora.
+     */
+    public boolean aceptadaTarde(String clave, String valor) { return valor.equals(opcionesTardias.get(clave)); }
+
+    /** Último número de secuencia recibido (0 si el servidor no numera los mensajes). */
+    public long getUltimaSecuencia() { return ultimaSecuencia; }
+
     /**
      * Detiene el receptor de forma controlada.
      * Pone {@code activo = false} antes de cerrar el socket para que la excepción
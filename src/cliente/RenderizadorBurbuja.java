@@ -0,0 +1,223 @@
+package cliente;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pinta una {@link Burbuja} como celda de {@link JList}.
+ *
+ * <p>A diferencia del panel HTML, la lista solo pide a este renderer las celdas que
+ * están dentro del viewport; no hay documento ni árbol de vistas por mensaje. El
+ * reparto del texto en líneas se calcula una vez por burbuja y ancho de lista, y se
+ * guarda en la propia burbuja, así que medir una celda ya maquetada es O(1).
+ *
+ * <p>Todas las celdas tienen el mismo alto ({@link #instalar}): con altos variables
+ * {@code BasicListUI} vuelve a medir y sumar todas las filas en cada cambio del modelo,
+ * y añadir una burbuja costaría proporcionalmente al historial visible. Caben
+ * {@code -Dchat.lista.lineas} líneas de texto (1 por defecto); lo que no cabe se corta
+ * con "…" y el texto completo queda en el tooltip de la celda.
+ *
+ * <p>Los colores y la disposición reproducen las burbujas HTML de {@link InterfazGrafica}.
+ */
+public class RenderizadorBurbuja extends JComponent implements ListCellRenderer<Burbuja> {
+
+    private static final Color C_BG      = new Color(0xF8F9FA);
+    private static final Color C_OWN_BG  = new Color(0x6366F1);
+    private static final Color C_OWN_FG  = Color.WHITE;
+    private static final Color C_OWN_HR  = new Color(0xC7D2FE);
+    private static final Color C_OTH_BG  = new Color(0xE5E7EB);
+    private static final Color C_OTH_FG  = new Color(0x1F2937);
+    private static final Color C_SYS     = new Color(0x454547);
+    private static final Color C_JOIN    = new Color(0x8CCC7A);
+    private static final Color C_LEAVE   = new Color(0xDC2626);
+    private static final Color C_PRIV_BG = new Color(0xFEF3C7);
+    private static final Color C_PRIV_FG = new Color(0x92400E);
+
+    private static final Font F_TEXTO   = new Font("Segoe UI", Font.PLAIN, 14);
+    private static final Font F_NOMBRE  = new Font("Segoe UI", Font.BOLD, 12);
+    private static final Font F_HORA    = new Font("Segoe UI", Font.PLAIN, 11);
+    private static final Font F_SISTEMA = new Font("Segoe UI", Font.ITALIC, 13);
+
+    private static final int MARGEN_V   = 4;
+    private static final int MARGEN_H   = 10;
+    private static final int PADDING_V  = 9;
+    private static final int PADDING_H  = 14;
+    private static final double ANCHO_MAX = 0.78;
+    /** Líneas de texto por burbuja con el alto fijo de celda. */
+    private static final int LINEAS = Math.max(1, Integer.getInteger("chat.lista.lineas", 1));
+
+    private Burbuja actual;
+
+    public RenderizadorBurbuja() {
+        setOpaque(true);
+    }
+
+    /**
+     * Pone en {@code lista} este renderer con el alto fijo de {@link #altoFijo}. El ancho
+     * también se fija (a 0, el preferido de la celda: en vertical las celdas ocupan el de la
+     * lista), porque {@code BasicListUI} recorre todo el modelo si falta cualquiera de los dos.
+     */
+    public static void instalar(JList<Burbuja> lista) {
+        RenderizadorBurbuja r = new RenderizadorBurbuja();
+        lista.setCellRenderer(r);
+        lista.setFixedCellWidth(0);
+        lista.setFixedCellHeight(r.altoFijo());
+    }
+
+    /** Alto de una burbuja ajena de {@code -Dchat.lista.lineas} líneas, la más alta posible. */
+    public int altoFijo() {
+        return 2 * MARGEN_V + 2 * PADDING_V + LINEAS * getFontMetrics(F_TEXTO).getHeight()
+                + getFontMetrics(F_HORA).getHeight() + getFontMetrics(F_NOMBRE).getHeight();
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<? extends Burbuja> list, Burbuja value,
+            int index, boolean isSelected, boolean cellHasFocus) {
+        actual = value;
+        maquetar(value, Math.max(list.getWidth(), 200));
+        setToolTipText(value.recortada ? value.getTexto() : null);
+        return this;
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(0, actual != null ? actual.alto : 0);
+    }
+
+    /** Calcula (o reutiliza) el reparto en líneas y el alto de la burbuja para ese ancho. */
+    private void maquetar(Burbuja b, int anchoLista) {
+        if (b.anchoCache == anchoLista && b.lineas != null) return;
+
+        Font fuente = b.esCentrada() ? F_SISTEMA : F_TEXTO;
+        FontMetrics fm = getFontMetrics(fuente);
+        int anchoTexto = b.esCentrada()
+                ? anchoLista - 2 * MARGEN_H
+                : (int) ((anchoLista - 2 * MARGEN_H) * ANCHO_MAX) - 2 * PADDING_H;
+        b.lineas = partirEnLineas(b.getTexto(), fm, Math.max(anchoTexto, 40));
+        b.recortada = b.lineas.length > LINEAS;
+        if (b.recortada) b.lineas = recortar(b.lineas, fm, Math.max(anchoTexto, 40));
+
+        int alto = 2 * MARGEN_V + b.lineas.length * fm.getHeight();
+        if (!b.esCentrada()) {
+            alto += 2 * PADDING_V + getFontMetrics(F_HORA).getHeight();
+            if (b.getTipo() != Burbuja.Tipo.PROPIA) alto += getFontMetrics(F_NOMBRE).getHeight();
+        } else {
+            alto += 2 * MARGEN_V;
+        }
+        b.alto       = alto;
+        b.anchoCache = anchoLista;
+    }
+
+    /** Las primeras {@link #LINEAS} líneas, la última terminada en "…" dentro de {@code ancho}. */
+    private static String[] recortar(String[] lineas, FontMetrics fm, int ancho) {
+        String[] r = Arrays.copyOf(lineas, LINEAS);
+        String ultima = r[LINEAS - 1];
+        while (!ultima.isEmpty() && fm.stringWidth(ultima + "…") > ancho) ultima = ultima.substring(0, ultima.length() - 1);
+        r[LINEAS - 1] = ultima + "…";
+        return r;
+    }
+
+    static String[] partirEnLineas(String texto, FontMetrics fm, int ancho) {
+        List<String> lineas = new ArrayList<>();
+        if (texto == null) texto = "";
+        for (String parrafo : texto.split("\n", -1)) {
+            StringBuilder linea = new StringBuilder();
+            for (String palabra : parrafo.split(" ")) {
+                String candidata = linea.length() == 0 ? palabra : linea + " " + palabra;
+                if (fm.stringWidth(candidata) <= ancho) {
+                    linea.setLength(0);
+                    linea.append(candidata);
+                    continue;
+                }
+                if (linea.length() > 0) {
+                    lineas.add(linea.toString());
+                    linea.setLength(0);
+                }
+                // Palabra más ancha que la línea: se corta por caracteres
+                while (fm.stringWidth(palabra) > ancho && palabra.length() > 1) {
+                    int corte = palabra.length() - 1;
+                    while (corte > 1 && fm.stringWidth(palabra.substring(0, corte)) > ancho) corte--;
+                    lineas.add(palabra.substring(0, corte));
+                    palabra = palabra.substring(corte);
+                }
+                linea.append(palabra);
+            }
+            lineas.add(linea.toString());
+        }
+        return lineas.toArray(new String[0]);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2.setColor(C_BG);
+        g2.fillRect(0, 0, getWidth(), getHeight());
+        if (actual != null) {
+            if (actual.esCentrada()) pintarCentrada(g2, actual);
+            else                     pintarBurbuja(g2, actual);
+        }
+        g2.dispose();
+    }
+
+    private void pintarCentrada(Graphics2D g2, Burbuja b) {
+        g2.setFont(F_SISTEMA);
+        g2.setColor(switch (b.getTipo()) {
+            case UNION  -> C_JOIN;
+            case SALIDA -> C_LEAVE;
+            default     -> C_SYS;
+        });
+        FontMetrics fm = g2.getFontMetrics();
+        // Centrado en vertical dentro de la celda de alto fijo
+        int y = (getHeight() - b.lineas.length * fm.getHeight()) / 2 + fm.getAscent();
+        for (String linea : b.lineas) {
+            g2.drawString(linea, (getWidth() - fm.stringWidth(linea)) / 2, y);
+            y += fm.getHeight();
+        }
+    }
+
+    private void pintarBurbuja(Graphics2D g2, Burbuja b) {
+        boolean propia  = b.getTipo() == Burbuja.Tipo.PROPIA;
+        boolean privado = b.getTipo() == Burbuja.Tipo.PRIVADO;
+        Color fondo = propia ? C_OWN_BG : privado ? C_PRIV_BG : C_OTH_BG;
+        Color texto = propia ? C_OWN_FG : privado ? C_PRIV_FG : C_OTH_FG;
+        Color hora  = propia ? C_OWN_HR : C_SYS;
+
+        int ancho = (int) ((getWidth() - 2 * MARGEN_H) * ANCHO_MAX);
+        int x     = propia ? getWidth() - MARGEN_H - ancho : MARGEN_H;
+        // Las burbujas sin nombre son más bajas que la celda: se centran en ella
+        int arriba = (getHeight() - b.alto) / 2 + MARGEN_V;
+        int alto   = b.alto - 2 * MARGEN_V;
+        g2.setColor(fondo);
+        g2.fillRoundRect(x, arriba, ancho, alto, 12, 12);
+
+        int tx = x + PADDING_H;
+        int y  = arriba + PADDING_V;
+
+        if (!propia) {
+            g2.setFont(F_NOMBRE);
+            g2.setColor(privado ? C_PRIV_FG : C_SYS);
+            FontMetrics fm = g2.getFontMetrics();
+            g2.drawString((privado ? "[Privado] " : "") + nvl(b.getRemitente()), tx, y + fm.getAscent());
+            y += fm.getHeight();
+        }
+
+        g2.setFont(F_TEXTO);
+        g2.setColor(texto);
+        FontMetrics fm = g2.getFontMetrics();
+        for (String linea : b.lineas) {
+            g2.drawString(linea, tx, y + fm.getAscent());
+            y += fm.getHeight();
+        }
+
+        g2.setFont(F_HORA);
+        g2.setColor(hora);
+        g2.drawString(nvl(b.getHora()), tx, y + g2.getFontMetrics().getAscent());
+    }
+
+    private static String nvl(String s) { return s != null ? s : ""; }
+}
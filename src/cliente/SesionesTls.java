@@ -0,0 +1,208 @@
+package cliente;
+
+import javax.net.ssl.*;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché de sesiones TLS del cliente y medida de sus handshakes.
+ *
+ * <p>JSSE guarda en la caché de sesiones del {@link SSLContext} (y en los tickets de
+ * TLS 1.3) cada sesión negociada, con clave {@code host:puerto}. Una conexión nueva al
+ * mismo destino puede reanudarla con un handshake abreviado: sin certificado, sin firma
+ * y sin intercambio de claves completo, tanto en el cliente como en el servidor. Así se
+ * reanudan las reconexiones del canal push (y el socket push preabierto por
+ * {@link Precalentamiento}) y, con el transporte clásico, cada petición HTTPS a partir
+ * de la primera. HTTPS y push van a puertos distintos, de modo que no comparten sesión:
+ * el primer canal push de cada arranque hace un handshake completo.
+ *
+ * <p>Se miden los handshakes de {@link #conectar} (canal push) y los de las conexiones
+ * creadas con {@link #fabricaMedida} (transporte clásico). El transporte por defecto,
+ * {@link TransporteHttpPersistente}, mantiene su conexión abierta y {@link java.net.http.HttpClient}
+ * no expone sus sockets, así que sus handshakes no aparecen aquí. Cada handshake medido
+ * se cuenta como completo o reanudado con su duración; {@code -Dchat.tls.traza=true}
+ * además lo escribe en {@code System.err}.
+ */
+public final class SesionesTls {
+
+    /** Un handshake observado. */
+    public record Handshake(String destino, boolean reanudado, long nanos, String protocolo) {}
+
+    private final SSLContext contexto;
+    private final boolean    traza = Boolean.getBoolean("chat.tls.traza");
+
+    private final AtomicLong completos   = new AtomicLong();
+    private final AtomicLong reanudados  = new AtomicLong();
+    private final AtomicLong nanosTotal  = new AtomicLong();
+    private volatile Handshake ultimo;
+
+    public SesionesTls(SSLContext contexto) {
+        this.contexto = contexto;
+        configurar(contexto);
+    }
+
+    /**
+     * Ajusta la caché de sesiones de cliente: {@code -Dchat.tls.cache} entradas (64) que
+     * caducan a los {@code -Dchat.tls.sesionSeg} segundos (86400).
+     */
+    public static void configurar(SSLContext contexto) {
+        SSLSessionContext cache = contexto.getClientSessionContext();
+        cache.setSessionCacheSize(Integer.getInteger("chat.tls.cache", 64));
+        cache.setSessionTimeout(Integer.getInteger("chat.tls.sesionSeg", 86_400));
+    }
+
+    public SSLContext getContexto() { return contexto; }
+
+    /** Abre una conexión TLS a {@code host:puerto} y completa el handshake, midiéndolo. */
+    public SSLSocket conectar(String host, int puerto, String destino) throws IOException {
+        SocketMedido base = new SocketMedido();
+        try {
+            base.connect(new InetSocketAddress(host, puerto));
+            base.setTcpNoDelay(true);
+            SSLSocket s = (SSLSocket) contexto.getSocketFactory().createSocket(base, host, puerto, true);
+            long inicioMs = System.currentTimeMillis();
+            long inicio   = System.nanoTime();
+            s.startHandshake();
+            registrar(destino + " " + host + ":" + puerto, s.getSession(), inicioMs, System.nanoTime() - inicio);
+            return s;
+        } catch (IOException | RuntimeException e) {
+            try { base.close(); } catch (IOException ignored) {}
+            throw e;
+        }
+    }
+
+    /**
+     * Fábrica para {@link javax.net.ssl.HttpsURLConnection} que mide el handshake de cada
+     * conexión (desde que se crea el socket TLS hasta que termina el handshake).
+     */
+    public SSLSocketFactory fabricaMedida(String destino) {
+        return new FabricaMedida(contexto.getSocketFactory(), destino);
+    }
+
+    // ── Métricas ─────────────────────────────────────────────────────────────
+
+    public long getCompletos()  { return completos.get(); }
+    public long getReanudados() { return reanudados.get(); }
+    /** Suma de la duración de todos los handshakes medidos. */
+    public long getNanosHandshake() { return nanosTotal.get(); }
+    /** Último handshake medido, o {@code null}. */
+    public Handshake getUltimo() { return ultimo; }
+
+    private void registrar(String destino, SSLSession sesion, long inicioMs, long nanos) {
+        // Una sesión reanudada conserva la fecha de creación de la original
+        boolean reanudado = sesion.getCreationTime() < inicioMs;
+        (reanudado ? reanudados : completos).incrementAndGet();
+        nanosTotal.addAndGet(nanos);
+        Metricas.INSTANCIA.handshake(reanudado, nanos);
+        Handshake h = new Handshake(destino, reanudado, nanos, sesion.getProtocol());
+        ultimo = h;
+        if (traza) {
+            System.err.printf("[TLS] %s %s %s %.2f ms%n", h.destino(), h.protocolo(),
+                    reanudado ? "reanudado" : "completo", nanos / 1e6);
+        }
+    }
+
+    /**
+     * Socket TCP bajo las conexiones de {@link #conectar}: cuenta en {@link Metricas} los
+     * bytes que pasan por él (registros TLS completos, lo que realmente viaja).
+     */
+    private static final class SocketMedido extends Socket {
+        private InputStream  entrada;
+        private OutputStream salida;
+
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            if (entrada == null) {
+                entrada = new FilterInputStream(super.getInputStream()) {
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int n = in.read(b, off, len);
+                        if (n > 0) Metricas.INSTANCIA.bytesPushEntrada(n);
+                        return n;
+                    }
+                };
+            }
+            return entrada;
+        }
+
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException {
+            if (salida == null) {
+                salida = new FilterOutputStream(super.getOutputStream()) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                        Metricas.INSTANCIA.bytesPushSalida(len);
+                    }
+                };
+            }
+            return salida;
+        }
+    }
+
+    private final class FabricaMedida extends SSLSocketFactory {
+        private final SSLSocketFactory base;
+        private final String destino;
+
+        FabricaMedida(SSLSocketFactory base, String destino) {
+            this.base    = base;
+            this.destino = destino;
+        }
+
+        private Socket observar(Socket s) {
+            if (s instanceof SSLSocket ssl) {
+                long inicioMs = System.currentTimeMillis();
+                long inicio   = System.nanoTime();
+                ssl.addHandshakeCompletedListener(e -> registrar(
+                        destino + " " + e.getSession().getPeerHost() + ":" + e.getSession().getPeerPort(),
+                        e.getSession(), inicioMs, System.nanoTime() - inicio));
+            }
+            return s;
+        }
+
+        @Override public String[] getDefaultCipherSuites()   { return base.getDefaultCipherSuites(); }
+        @Override public String[] getSupportedCipherSuites() { return base.getSupportedCipherSuites(); }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return observar(base.createSocket());
+        }
+
+        @Override
+        public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+            return observar(base.createSocket(s, host, port, autoClose));
+        }
+
+        @Override
+        public Socket createSocket(Socket s, InputStream consumed, boolean autoClose) throws IOException {
+            return observar(base.createSocket(s, consumed, autoClose));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return observar(base.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return observar(base.createSocket(host, port, localHost, localPort));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return observar(base.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            return observar(base.createSocket(address, port, localAddress, localPort));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package cliente;
+
+import java.io.IOException;
+
+/**
+ * Transporte de las peticiones HTTPS del cliente ({@code /login}, {@code /register},
+ * {@code /mensaje}, {@code /desconectar}).
+ *
+ * <p>Implementaciones:
+ * <ul>
+ *   <li>{@link TransporteHttpPersistente} (por defecto): reutiliza conexiones TLS abiertas.</li>
+ *   <li>{@link TransporteHttpClasico}: una conexión nueva con {@code Connection: close} por petición.</li>
+ * </ul>
+ * Se elige con {@code -Dchat.http=persistente|clasico}.
+ */
+public interface TransporteHttp {
+
+    /**
+     * Realiza un POST {@code application/x-www-form-urlencoded}.
+     *
+     * @param path Ruta del endpoint (p.ej. {@code /login}).
+     * @param body Cuerpo ya codificado.
+     * @return Respuesta del servidor como cadena UTF-8 (también en respuestas de error).
+     * @throws IOException si la conexión falla o el servidor no es accesible.
+     */
+    String post(String path, String body) throws IOException;
+
+    /**
+     * Abre por adelantado la conexión al servidor para que la primera petición real no
+     * pague conexión ni handshake. La respuesta no importa. Por defecto no hace nada.
+     */
+    default void precalentar() throws IOException { }
+}
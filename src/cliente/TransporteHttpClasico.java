@@ -0,0 +1,94 @@
+package cliente;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Transporte original: abre una {@link HttpsURLConnection} nueva por petición con
+ * {@code Connection: close}, por lo que cada llamada paga conexión TCP y handshake TLS.
+ *
+ * <p>Se conserva como alternativa ({@code -Dchat.http=clasico}) para servidores que no
+ * envían {@code Content-Length} y como referencia en las comparativas de latencia.
+ */
+public class TransporteHttpClasico implements TransporteHttp {
+
+    private final String           baseUrl;
+    private final SSLSocketFactory fabrica;
+
+    public TransporteHttpClasico(String baseUrl, SSLContext sslContext) {
+        this(baseUrl, sslContext.getSocketFactory());
+    }
+
+    /**
+     * Con una fábrica concreta, p.ej. {@link SesionesTls#fabricaMedida} para medir el
+     * handshake de cada petición. Todas las conexiones comparten la caché de sesiones
+     * del contexto, así que a partir de la segunda el handshake se reanuda.
+     */
+    public TransporteHttpClasico(String baseUrl, SSLSocketFactory fabrica) {
+        this.baseUrl = baseUrl;
+        this.fabrica = fabrica;
+    }
+
+    /**
+     * {@code HEAD /} con {@code Connection: close}: no queda conexión abierta, pero sí la
+     * sesión TLS en caché, así que el {@code /login} hará un handshake abreviado.
+     */
+    @Override
+    public void precalentar() throws IOException {
+        HttpsURLConnection conn = (HttpsURLConnection) URI.create(baseUrl + "/").toURL().openConnection();
+        conn.setSSLSocketFactory(fabrica);
+        conn.setRequestMethod("HEAD");
+        conn.setRequestProperty("Connection", "close");
+        conn.setConnectTimeout(5_000);
+        conn.setReadTimeout(10_000);
+        try {
+            conn.getResponseCode();
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * Usa el {@link javax.net.ssl.SSLSocketFactory} del {@link SSLContext} cargado con el
+     * truststore para que {@link HttpsURLConnection} verifique el certificado del servidor
+     * en cada petición, sin aceptar certificados no reconocidos.
+     */
+    @Override
+    public String post(String path, String body) throws IOException {
+        HttpsURLConnection conn = (HttpsURLConnection) URI.create(baseUrl + path).toURL().openConnection();
+        conn.setSSLSocketFactory(fabrica);
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+        conn.setRequestProperty("Connection", "close");
+        conn.setConnectTimeout(5_000);
+        conn.setReadTimeout(10_000);
+        // Sin setFixedLengthStreamingMode: HttpsURLConnection almacena el body en
+        // buffer interno, calcula Content-Length y envía request + body de forma
+        // atómica al llamar a getResponseCode(), evitando problemas de vaciado de
+        // registros TLS con streaming parcial.
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try (OutputStream os = conn.getOutputStream()) { os.write(bytes); }
+        int status = conn.getResponseCode();
+        InputStream is = status < 400 ? conn.getInputStream() : conn.getErrorStream();
+        if (is == null) return "";
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        try {
+            int n;
+            while ((n = is.read(buf)) != -1) baos.write(buf, 0, n);
+        } catch (java.net.SocketTimeoutException ignored) {
+            // El servidor no cerró la conexión; devolvemos lo ya recibido
+        } finally {
+            conn.disconnect();
+        }
+        return baos.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+package cliente;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Transporte con reutilización de conexiones basado en {@link HttpClient}.
+ *
+ * <p>El cliente mantiene un pool de conexiones HTTP/1.1 keep-alive sobre el mismo
+ * {@link SSLContext} que usa el canal TCP/TLS, de modo que tras la primera petición
+ * {@code /mensaje}, {@code /desconectar}, etc. viajan por una conexión ya cifrada,
+ * sin nueva conexión TCP ni handshake TLS.
+ *
+ * <p>Requiere que el servidor responda con {@code Content-Length} (o chunked) y no
+ * cierre la conexión; si la cierra, {@link HttpClient} abre otra de forma transparente.
+ */
+public class TransporteHttpPersistente implements TransporteHttp {
+
+    private static final Duration TIMEOUT_CONEXION = Duration.ofSeconds(5);
+    private static final Duration TIMEOUT_PETICION = Duration.ofSeconds(10);
+
+    private final String     baseUrl;
+    private final HttpClient http;
+
+    public TransporteHttpPersistente(String baseUrl, SSLContext sslContext) {
+        this.baseUrl = baseUrl;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .sslContext(sslContext)
+                .connectTimeout(TIMEOUT_CONEXION)
+                .build();
+    }
+
+    /** {@code HEAD /}: la conexión queda en el pool keep-alive para el {@code /login}. */
+    @Override
+    public void precalentar() throws IOException {
+        HttpRequest peticion = HttpRequest.newBuilder(URI.create(baseUrl + "/"))
+                .timeout(TIMEOUT_PETICION)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        try {
+            http.send(peticion, HttpResponse.BodyHandlers.discarding());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Precalentamiento interrumpido");
+        }
+    }
+
+    @Override
+    public String post(String path, String body) throws IOException {
+        HttpRequest peticion = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(TIMEOUT_PETICION)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .build();
+        try {
+            return http.send(peticion, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Petición " + path + " interrumpida");
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package comun;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fichero de captura del flujo push: cada trama tal como llegó del socket (ya
+ * descomprimida, con su delimitador) y el instante en que se leyó.
+ *
+ * <p>Formato:
+ * <pre>
+ *   "CHATCAP" u8 versión  i64 epoch ms del inicio
+ *   registros hasta el final del fichero:
+ *     i64  nanosegundos desde el inicio
+ *     u8   codec ('T' texto, 'B' binario)
+ *     i32  longitud + bytes de la trama
+ * </pre>
+ * Concatenar las tramas de un mismo codec reproduce exactamente lo que leyó
+ * {@link LectorTramas}, así que una captura se puede volver a pasar por el receptor sin
+ * red (ver {@code bench.ReproductorCaptura}).
+ */
+public final class CapturaTramas {
+
+    private static final byte[] MAGIA   = { 'C', 'H', 'A', 'T', 'C', 'A', 'P' };
+    private static final int    VERSION = 1;
+
+    private CapturaTramas() {}
+
+    /** Una trama leída de una captura. */
+    public record Registro(long nanos, CodecMensaje codec, byte[] datos) {}
+
+    // ── Grabación ────────────────────────────────────────────────────────────
+
+    /**
+     * Escribe tramas en una captura. Lo comparten todos los canales del proceso (una
+     * reconexión sigue en el mismo fichero), así que las escrituras se serializan.
+     * El búfer se vuelca como mucho cada segundo y al cerrar.
+     */
+    public static final class Grabador implements Closeable {
+
+        private static final long VOLCADO_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+        private final DataOutputStream out;
+        private final long             inicio = System.nanoTime();
+        private final ReentrantLock    cerrojo = new ReentrantLock();
+        private long    ultimoVolcado = inicio;
+        private boolean cerrado;
+
+        public Grabador(Path fichero) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(fichero), 64 * 1024));
+            out.write(MAGIA);
+            out.writeByte(VERSION);
+            out.writeLong(System.currentTimeMillis());
+        }
+
+        /**
+         * Graba en {@code fichero} si la propiedad {@code propiedad} lo indica; se cierra
+         * al terminar el proceso.
+         *
+         * @return el grabador, o {@code null} si la propiedad no está definida o el
+         *         fichero no se puede crear (se avisa por {@code System.err}).
+         */
+        public static Grabador desdePropiedad(String propiedad) {
+            String ruta = System.getProperty(propiedad);
+            if (ruta == null || ruta.isBlank()) return null;
+            try {
+                Grabador g = new Grabador(Path.of(ruta));
+                Runtime.getRuntime().addShutdownHook(new Thread(g::cerrarSilencioso, "CapturaTramas"));
+                return g;
+            } catch (IOException e) {
+                System.err.println("[Captura] No se pudo crear " + ruta + ": " + e.getMessage());
+                return null;
+            }
+        }
+
+        /** Graba {@code datos[desde, desde + longitud)} como una trama de {@code codec}. */
+        public void grabar(CodecMensaje codec, byte[] datos, int desde, int longitud) throws IOException {
+            long ahora = System.nanoTime();
+            cerrojo.lock();
+            try {
+                if (cerrado) return;
+                out.writeLong(ahora - inicio);
+                out.writeByte(codec == CodecBinario.INSTANCIA ? 'B' : 'T');
+                out.writeInt(longitud);
+                out.write(datos, desde, longitud);
+                if (ahora - ultimoVolcado > VOLCADO_NANOS) {
+                    out.flush();
+                    ultimoVolcado = ahora;
+                }
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            cerrojo.lock();
+            try {
+                if (cerrado) return;
+                cerrado = true;
+                out.close();
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+
+        private void cerrarSilencioso() {
+            try { close(); } catch (IOException ignored) {}
+        }
+    }
+
+    // ── Lectura ──────────────────────────────────────────────────────────────
+
+    /** Lee una captura registro a registro. No es seguro para uso concurrente. */
+    public static final class Lector implements Closeable {
+
+        private final DataInputStream in;
+        private final long            inicioEpochMs;
+
+        public Lector(Path fichero) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(fichero), 64 * 1024));
+            byte[] magia = new byte[MAGIA.length];
+            in.readFully(magia);
+            int version = in.readUnsignedByte();
+            if (!Arrays.equals(magia, MAGIA) || version != VERSION) {
+                in.close();
+                throw new IOException(fichero + " no es una captura de tramas (versión " + VERSION + ")");
+            }
+            inicioEpochMs = in.readLong();
+        }
+
+        /** Hora de reloj ({@link System#currentTimeMillis()}) en que empezó la captura. */
+        public long inicioEpochMs() { return inicioEpochMs; }
+
+        /**
+         * @return el siguiente registro, o {@code null} al final del fichero. Un último
+         *         registro incompleto (proceso terminado a medio volcado) se ignora.
+         */
+        public Registro siguiente() throws IOException {
+            long nanos;
+            try {
+                nanos = in.readLong();
+            } catch (EOFException e) {
+                return null;
+            }
+            try {
+                CodecMensaje codec = in.readUnsignedByte() == 'B' ? CodecBinario.INSTANCIA : CodecTexto.INSTANCIA;
+                int longitud = in.readInt();
+                if (longitud < 0) throw new IOException("Registro con longitud " + longitud);
+                byte[] datos = new byte[longitud];
+                in.readFully(datos);
+                return new Registro(nanos, codec, datos);
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException { in.close(); }
+    }
+}
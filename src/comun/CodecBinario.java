@@ -0,0 +1,218 @@
+package comun;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec binario compacto.
+ *
+ * <p>Trama: {@code varint longitud} seguida de la carga útil:
+ * <pre>
+ *   u8      ordinal de {@link TipoMensaje}
+ *   varint  len + UTF-8   remitente
+ *   varint  len + UTF-8   destinatario (0 = sin destinatario)
+ *   varint  len + UTF-8   contenido
+ *   varint  hora          segundos del día + 1 si el timestamp es HH:mm:ss;
+ *                         0 = timestamp libre, seguido de varint len + UTF-8
+ *   [varlong secuencia]   solo si el mensaje tiene número de secuencia o identificador
+ *   [varint len + UTF-8]  identificador del cliente, solo si lo tiene
+ * </pre>
+ * Los textos viajan en UTF-8 sin escapar: una {@code ñ} ocupa 2 bytes frente a los 6
+ * de {@code %C3%B1} del formato de texto, y decodificar no requiere {@code split} ni
+ * {@code URLDecoder}.
+ */
+public final class CodecBinario implements CodecMensaje {
+
+    public static final String       NOMBRE    = "binario";
+    public static final CodecBinario INSTANCIA = new CodecBinario();
+
+    /** Tamaño máximo de trama aceptado al leer, para no reservar memoria arbitraria. */
+    public static final int TRAMA_MAX = 1 << 20;
+
+    private static final TipoMensaje[] TIPOS = TipoMensaje.values();
+
+    private CodecBinario() {}
+
+    @Override
+    public String nombre() { return NOMBRE; }
+
+    @Override
+    public byte[] codificar(Mensaje m) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(m.getTipo().ordinal());
+        escribirTexto(out, m.getRemitente());
+        escribirTexto(out, m.getDestinatario());
+        escribirTexto(out, m.getContenido());
+        int segundos = segundosDelDia(m.getTimestamp());
+        if (segundos >= 0) {
+            escribirVarint(out, segundos + 1);
+        } else {
+            escribirVarint(out, 0);
+            escribirTexto(out, m.getTimestamp());
+        }
+        if (m.getSecuencia() > 0 || m.getId() != null) escribirVarlong(out, m.getSecuencia());
+        if (m.getId() != null) escribirTexto(out, m.getId());
+        return out.toByteArray();
+    }
+
+    @Override
+    public Mensaje decodificar(byte[] datos, int desde, int longitud) {
+        Lector l = new Lector(datos, desde, desde + longitud);
+        try {
+            int ordinal = l.u8();
+            if (ordinal >= TIPOS.length) return null;
+            String remitente    = l.texto();
+            String destinatario = l.texto();
+            String contenido    = l.texto();
+            int hora = l.varint();
+            String timestamp = hora > 0 ? formatear(hora - 1) : l.texto();
+            long secuencia = l.quedan() ? l.varlong() : 0;
+            String id      = l.quedan() ? l.texto()   : null;
+            return new Mensaje(TIPOS[ordinal], contenido, remitente,
+                               destinatario.isEmpty() ? null : destinatario, timestamp, secuencia, id);
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean delimitar(byte[] buf, int desde, int hasta, int[] trama) {
+        int longitud = 0;
+        int pos = desde;
+        for (int desplazamiento = 0; ; desplazamiento += 7) {
+            if (pos >= hasta || desplazamiento > 28) return false;
+            int b = buf[pos++] & 0xFF;
+            longitud |= (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) break;
+        }
+        // Una longitud absurda nunca se completa: el lector acaba cortando por tamaño máximo
+        if (longitud < 0 || hasta - pos < longitud) return false;
+        trama[0] = pos;
+        trama[1] = pos + longitud;
+        trama[2] = pos + longitud;
+        return true;
+    }
+
+    @Override
+    public void escribir(Mensaje m, OutputStream out) throws IOException {
+        byte[] carga = codificar(m);
+        ByteArrayOutputStream trama = new ByteArrayOutputStream(carga.length + 3);
+        escribirVarint(trama, carga.length);
+        trama.write(carga, 0, carga.length);
+        trama.writeTo(out);
+    }
+
+    @Override
+    public Mensaje leer(InputStream in) throws IOException {
+        int longitud = 0;
+        for (int desplazamiento = 0; ; desplazamiento += 7) {
+            int b = in.read();
+            if (b == -1) throw new EOFException();
+            if (desplazamiento > 28) throw new IOException("Longitud de trama inválida");
+            longitud |= (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) break;
+        }
+        if (longitud > TRAMA_MAX) throw new IOException("Trama de " + longitud + " bytes supera el máximo");
+        byte[] carga = in.readNBytes(longitud);
+        if (carga.length < longitud) throw new EOFException();
+        return decodificar(carga, 0, longitud);
+    }
+
+    // ── Utilidades ───────────────────────────────────────────────────────────
+
+    static void escribirVarint(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static void escribirVarlong(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) (v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static void escribirTexto(ByteArrayOutputStream out, String s) {
+        byte[] b = (s != null ? s : "").getBytes(StandardCharsets.UTF_8);
+        escribirVarint(out, b.length);
+        out.write(b, 0, b.length);
+    }
+
+    /** Segundos del día de un timestamp {@code HH:mm:ss}, o -1 si no tiene ese formato. */
+    static int segundosDelDia(String t) {
+        if (t == null || t.length() != 8 || t.charAt(2) != ':' || t.charAt(5) != ':') return -1;
+        int h = dosDigitos(t, 0), m = dosDigitos(t, 3), s = dosDigitos(t, 6);
+        if (h < 0 || h > 23 || m < 0 || m > 59 || s < 0 || s > 59) return -1;
+        return h * 3600 + m * 60 + s;
+    }
+
+    private static int dosDigitos(String t, int i) {
+        char a = t.charAt(i), b = t.charAt(i + 1);
+        if (a < '0' || a > '9' || b < '0' || b > '9') return -1;
+        return (a - '0') * 10 + (b - '0');
+    }
+
+    static String formatear(int segundos) {
+        int h = segundos / 3600, m = segundos / 60 % 60, s = segundos % 60;
+        return new String(new char[] {
+                (char) ('0' + h / 10), (char) ('0' + h % 10), ':',
+                (char) ('0' + m / 10), (char) ('0' + m % 10), ':',
+                (char) ('0' + s / 10), (char) ('0' + s % 10) });
+    }
+
+    /** Cursor sobre la carga útil; los accesos fuera de rango lanzan IndexOutOfBoundsException. */
+    private static final class Lector {
+        private final byte[] datos;
+        private final int    fin;
+        private int          pos;
+
+        Lector(byte[] datos, int desde, int fin) {
+            this.datos = datos;
+            this.pos   = desde;
+            this.fin   = fin;
+        }
+
+        int u8() {
+            if (pos >= fin) throw new IndexOutOfBoundsException(pos);
+            return datos[pos++] & 0xFF;
+        }
+
+        int varint() {
+            int v = 0;
+            for (int desplazamiento = 0; desplazamiento <= 28; desplazamiento += 7) {
+                int b = u8();
+                v |= (b & 0x7F) << desplazamiento;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IndexOutOfBoundsException("varint demasiado largo");
+        }
+
+        boolean quedan() { return pos < fin; }
+
+        long varlong() {
+            long v = 0;
+            for (int desplazamiento = 0; desplazamiento <= 63; desplazamiento += 7) {
+                int b = u8();
+                v |= (long) (b & 0x7F) << desplazamiento;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IndexOutOfBoundsException("varlong demasiado largo");
+        }
+
+        String texto() {
+            int n = varint();
+            if (n < 0 || n > fin - pos) throw new IndexOutOfBoundsException(n);
+            String s = new String(datos, pos, n, StandardCharsets.UTF_8);
+            pos += n;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package comun;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Formato de representación de {@link Mensaje} en el canal TCP/TLS.
+ *
+ * <p>Cada codec define tanto la codificación de un mensaje como su delimitación
+ * (trama) dentro del flujo:
+ * <ul>
+ *   <li>{@link CodecTexto}: formato original {@link Mensaje#toHttpString()}, una línea por mensaje.</li>
+ *   <li>{@link CodecBinario}: trama con longitud varint y campos UTF-8 sin escapar.</li>
+ * </ul>
+ * El codec se elige por conexión: el cliente lo propone tras identificarse y solo se
+ * usa si el servidor lo acepta (ver {@code cliente.NegociacionCanal}).
+ */
+public interface CodecMensaje {
+
+    /** Nombre con el que se anuncia en la negociación ({@code texto}, {@code binario}). */
+    String nombre();
+
+    /** Codifica el mensaje sin delimitador de trama. */
+    byte[] codificar(Mensaje m);
+
+    /**
+     * Decodifica un mensaje a partir de una trama ya delimitada.
+     *
+     * @return el mensaje, o {@code null} si los datos no son válidos.
+     */
+    Mensaje decodificar(byte[] datos, int desde, int longitud);
+
+    /**
+     * Localiza la siguiente trama completa en {@code buf[desde, hasta)} sin copiar datos.
+     * Lo usa {@link LectorTramas} para decodificar directamente desde su búfer.
+     *
+     * @param trama Salida: {@code trama[0]} inicio de la carga, {@code trama[1]} fin de la
+     *              carga (exclusivo) y {@code trama[2]} inicio de la trama siguiente.
+     * @return {@code true} si hay una trama completa; {@code false} si faltan bytes.
+     */
+    boolean delimitar(byte[] buf, int desde, int hasta, int[] trama);
+
+    /** Escribe el mensaje como una trama completa (sin hacer flush). */
+    void escribir(Mensaje m, OutputStream out) throws IOException;
+
+    /**
+     * Lee la siguiente trama del flujo. Conviene pasar un flujo con búfer.
+     *
+     * @return el mensaje, {@code null} si la trama no es válida.
+     * @throws java.io.EOFException si el flujo termina.
+     */
+    Mensaje leer(InputStream in) throws IOException;
+
+    static CodecMensaje porNombre(String nombre) {
+        return CodecBinario.NOMBRE.equalsIgnoreCase(nombre) ? CodecBinario.INSTANCIA : CodecTexto.INSTANCIA;
+    }
+}
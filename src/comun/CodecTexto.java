@@ -0,0 +1,189 @@
+package comun;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Codec original: {@link Mensaje#toHttpString()} terminado en {@code '\n'}.
+ * Es el que se usa siempre que no se negocia otro.
+ *
+ * <p>La decodificación recorre la trama una sola vez: localiza los separadores
+ * {@code |}, deshace el URL-encoding de cada campo sobre un búfer reutilizable por hilo
+ * y resuelve el tipo comparando bytes, sin {@code split}, {@code URLDecoder} ni
+ * {@code TipoMensaje.valueOf}. Los remitentes y timestamps, muy repetidos, se sirven
+ * desde una pequeña caché para no crear una cadena nueva en cada mensaje.
+ */
+public final class CodecTexto implements CodecMensaje {
+
+    public static final String      NOMBRE    = "texto";
+    public static final CodecTexto  INSTANCIA = new CodecTexto();
+
+    private static final TipoMensaje[] TIPOS = TipoMensaje.values();
+    private static final byte[][]      NOMBRES_TIPO = new byte[TIPOS.length][];
+    static {
+        for (int i = 0; i < TIPOS.length; i++) NOMBRES_TIPO[i] = TIPOS[i].name().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final ThreadLocal<Decodificador> DECODIFICADOR = ThreadLocal.withInitial(Decodificador::new);
+
+    private CodecTexto() {}
+
+    @Override
+    public String nombre() { return NOMBRE; }
+
+    @Override
+    public byte[] codificar(Mensaje m) {
+        return m.toHttpString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Mensaje decodificar(byte[] datos, int desde, int longitud) {
+        int fin = desde + longitud;
+        // Posiciones de los cuatro primeros '|': el quinto campo llega hasta el final
+        int s0 = indice(datos, desde, fin);
+        if (s0 < 0) return null;
+        int s1 = indice(datos, s0 + 1, fin);
+        if (s1 < 0) return null;
+        int s2 = indice(datos, s1 + 1, fin);
+        if (s2 < 0) return null;
+        int s3 = indice(datos, s2 + 1, fin);
+        if (s3 < 0) return null;
+        // Sexto campo opcional: número de secuencia; séptimo: identificador del cliente
+        int s4 = indice(datos, s3 + 1, fin);
+        int s5 = s4 >= 0 ? indice(datos, s4 + 1, fin) : -1;
+        long secuencia = 0;
+        if (s4 >= 0) {
+            secuencia = numero(datos, s4 + 1, s5 >= 0 ? s5 : fin);
+            if (secuencia < 0) return null;
+        }
+        int finTimestamp = s4 >= 0 ? s4 : fin;
+
+        TipoMensaje tipo = tipo(datos, desde, s0);
+        if (tipo == null) return null;
+
+        Decodificador d = DECODIFICADOR.get();
+        String remitente    = d.campo(datos, s0 + 1, s1, true);
+        String destinatario = d.campo(datos, s1 + 1, s2, true);
+        String contenido    = d.campo(datos, s2 + 1, s3, false);
+        String timestamp    = d.campo(datos, s3 + 1, finTimestamp, true);
+        String id           = s5 >= 0 && s5 + 1 < fin ? d.campo(datos, s5 + 1, fin, false) : null;
+        return new Mensaje(tipo, contenido, remitente,
+                           destinatario.isEmpty() ? null : destinatario, timestamp, secuencia, id);
+    }
+
+    @Override
+    public boolean delimitar(byte[] buf, int desde, int hasta, int[] trama) {
+        for (int i = desde; i < hasta; i++) {
+            if (buf[i] == '\n') {
+                int finCarga = i > desde && buf[i - 1] == '\r' ? i - 1 : i;
+                trama[0] = desde;
+                trama[1] = finCarga;
+                trama[2] = i + 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void escribir(Mensaje m, OutputStream out) throws IOException {
+        out.write((m.toHttpString() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Mensaje leer(InputStream in) throws IOException {
+        ByteArrayOutputStream linea = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) throw new EOFException();
+            linea.write(b);
+        }
+        byte[] datos = linea.toByteArray();
+        int n = datos.length;
+        if (n > 0 && datos[n - 1] == '\r') n--;
+        return n == 0 ? null : decodificar(datos, 0, n);
+    }
+
+    // ── Decodificación ───────────────────────────────────────────────────────
+
+    /** Posición del siguiente {@code '|'} en {@code [desde, fin)}, o -1. */
+    private static int indice(byte[] d, int desde, int fin) {
+        for (int i = desde; i < fin; i++) if (d[i] == '|') return i;
+        return -1;
+    }
+
+    /** Entero decimal no negativo en {@code [desde, fin)}, o -1 si no lo es. */
+    private static long numero(byte[] d, int desde, int fin) {
+        if (desde >= fin || fin - desde > 18) return -1;
+        long v = 0;
+        for (int i = desde; i < fin; i++) {
+            int c = d[i] - '0';
+            if (c < 0 || c > 9) return -1;
+            v = v * 10 + c;
+        }
+        return v;
+    }
+
+    private static TipoMensaje tipo(byte[] d, int desde, int fin) {
+        int n = fin - desde;
+        for (int t = 0; t < TIPOS.length; t++) {
+            byte[] nombre = NOMBRES_TIPO[t];
+            if (nombre.length == n && Arrays.equals(nombre, 0, n, d, desde, fin)) return TIPOS[t];
+        }
+        return null;
+    }
+
+    /** Estado por hilo: búfer de bytes decodificados y caché de cadenas repetidas. */
+    private static final class Decodificador {
+        private static final int TAM_CACHE = 256;
+
+        private byte[]         bytes   = new byte[256];
+        private final byte[][] claves  = new byte[TAM_CACHE][];
+        private final String[] valores = new String[TAM_CACHE];
+
+        /** Deshace {@code application/x-www-form-urlencoded} de {@code d[desde, fin)}. */
+        String campo(byte[] d, int desde, int fin, boolean cachear) {
+            if (fin == desde) return "";
+            if (bytes.length < fin - desde) bytes = new byte[Math.max(fin - desde, bytes.length * 2)];
+            int n = 0;
+            for (int i = desde; i < fin; i++) {
+                byte b = d[i];
+                if (b == '+') {
+                    bytes[n++] = ' ';
+                } else if (b == '%' && i + 2 < fin && hex(d[i + 1]) >= 0 && hex(d[i + 2]) >= 0) {
+                    bytes[n++] = (byte) (hex(d[i + 1]) << 4 | hex(d[i + 2]));
+                    i += 2;
+                } else {
+                    bytes[n++] = b;
+                }
+            }
+            if (!cachear) return new String(bytes, 0, n, StandardCharsets.UTF_8);
+
+            int h = hash(bytes, n) & (TAM_CACHE - 1);
+            byte[] clave = claves[h];
+            if (clave != null && Arrays.equals(clave, 0, clave.length, bytes, 0, n)) return valores[h];
+            String s = new String(bytes, 0, n, StandardCharsets.UTF_8);
+            claves[h]  = Arrays.copyOf(bytes, n);
+            valores[h] = s;
+            return s;
+        }
+
+        private static int hash(byte[] b, int n) {
+            int h = 0;
+            for (int i = 0; i < n; i++) h = 31 * h + b[i];
+            return h ^ (h >>> 16);
+        }
+
+        private static int hex(byte c) {
+            if (c >= '0' && c <= '9') return c - '0';
+            if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+            if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+            return -1;
+        }
+    }
+}
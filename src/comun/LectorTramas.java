@@ -0,0 +1,107 @@
+package comun;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Lector de tramas con búfer reutilizable.
+ *
+ * <p>Lee del flujo en bloques sobre un único {@code byte[]}, localiza cada trama con
+ * {@link CodecMensaje#delimitar} y la decodifica directamente desde el búfer, sin
+ * pasar por {@code BufferedReader.readLine} ni por cadenas intermedias.
+ *
+ * <p>El tamaño de trama está acotado: si un extremo envía una línea (o declara una
+ * longitud) mayor que {@code tramaMax}, se lanza {@link IOException} en lugar de seguir
+ * acumulando memoria. El búfer empieza pequeño y solo crece hasta ese límite.
+ *
+ * <p>Con {@link #grabarEn} cada trama se copia además, tal como llegó, en una
+ * {@link CapturaTramas}.
+ *
+ * <p>No es seguro para uso concurrente; cada conexión tiene su propio lector.
+ */
+public final class LectorTramas {
+
+    /** Tamaño máximo de trama por defecto ({@code -Dchat.trama.max}, 64 KiB). */
+    public static final int TRAMA_MAX_DEFAULT = Integer.getInteger("chat.trama.max", 64 * 1024);
+
+    private static final int BUFER_INICIAL = 8 * 1024;
+    /** Margen sobre {@code tramaMax} para el delimitador o la cabecera varint. */
+    private static final int MARGEN = 8;
+
+    private final InputStream  in;
+    private final CodecMensaje codec;
+    private final int          tramaMax;
+    private final int[]        trama = new int[3];
+
+    private byte[] buf;
+    private int    inicio;
+    private int    fin;
+    private CapturaTramas.Grabador grabador;
+
+    public LectorTramas(InputStream in, CodecMensaje codec) {
+        this(in, codec, TRAMA_MAX_DEFAULT);
+    }
+
+    public LectorTramas(InputStream in, CodecMensaje codec, int tramaMax) {
+        this.in       = in;
+        this.codec    = codec;
+        this.tramaMax = tramaMax;
+        this.buf      = new byte[Math.min(BUFER_INICIAL, tramaMax + MARGEN)];
+    }
+
+    /** Copia en {@code grabador} cada trama leída a partir de ahora; {@code null} deja de grabar. */
+    public void grabarEn(CapturaTramas.Grabador grabador) {
+        this.grabador = grabador;
+    }
+
+    /**
+     * Devuelve el siguiente mensaje del flujo.
+     *
+     * @return el mensaje, o {@code null} si la trama no se pudo decodificar.
+     * @throws EOFException si el flujo termina.
+     * @throws IOException  si una trama supera el tamaño máximo o falla la lectura.
+     */
+    public Mensaje siguiente() throws IOException {
+        while (!codec.delimitar(buf, inicio, fin, trama)) {
+            llenar();
+        }
+        if (grabador != null) grabar(inicio, trama[2] - inicio);
+        inicio = trama[2];
+        Mensaje m = codec.decodificar(buf, trama[0], trama[1] - trama[0]);
+        if (inicio == fin) inicio = fin = 0;
+        return m;
+    }
+
+    /** Un fallo de la captura no corta la conexión: se deja de grabar y se avisa. */
+    private void grabar(int desde, int longitud) {
+        try {
+            grabador.grabar(codec, buf, desde, longitud);
+        } catch (IOException e) {
+            System.err.println("[Captura] Se deja de grabar: " + e.getMessage());
+            grabador = null;
+        }
+    }
+
+    /** Lee más bytes, compactando o ampliando el búfer si hace falta. */
+    private void llenar() throws IOException {
+        int pendientes = fin - inicio;
+        if (pendientes >= tramaMax + MARGEN) {
+            throw new IOException("Trama de más de " + tramaMax + " bytes: se cierra la conexión");
+        }
+        if (fin == buf.length) {
+            if (inicio > 0) {
+                System.arraycopy(buf, inicio, buf, 0, pendientes);
+            } else {
+                byte[] mayor = new byte[Math.min(buf.length * 2, tramaMax + MARGEN)];
+                System.arraycopy(buf, 0, mayor, 0, pendientes);
+                buf = mayor;
+            }
+            inicio = 0;
+            fin    = pendientes;
+        }
+        int n = in.read(buf, fin, buf.length - fin);
+        if (n == -1) throw new EOFException();
+        fin += n;
+    }
+}
@@ -15,6 +15,13 @@ public class Mensaje implements Serializable {
     private final String remitente;
     private final String destinatario;
     private final String timestamp;
+    /** Número de secuencia asignado por el servidor; 0 si no tiene. */
+    private final long secuencia;
+    /**
+     * Identificador único que pone el cliente a los mensajes que envía, para que el
+     * servidor descarte los reenvíos; {@code null} si no tiene.
+     */
+    private final String id;
 
     public Mensaje(TipoMensaje tipo, String contenido, String remitente) {
         this(tipo, contenido, remitente, null);
@@ -26,14 +33,38 @@ public class Mensaje implements Serializable {
         this.remitente = remitente;
         this.destinatario = destinatario;
         this.timestamp = LocalDateTime.now().format(FORMATTER);
+        this.secuencia = 0;
+        this.id = null;
     }
 
-    private Mensaje(TipoMensaje tipo, String contenido, String remitente, String destinatario, String timestamp) {
+    Mensaje(TipoMensaje tipo, String contenido, String remitente, String destinatario, String timestamp) {
+        this(tipo, contenido, remitente, destinatario, timestamp, 0);
+    }
+
+    Mensaje(TipoMensaje tipo, String contenido, String remitente, String destinatario, String timestamp,
+            long secuencia) {
+        this(tipo, contenido, remitente, destinatario, timestamp, secuencia, null);
+    }
+
+    Mensaje(TipoMensaje tipo, String contenido, String remitente, String destinatario, String timestamp,
+            long secuencia, String id) {
         this.tipo = tipo;
         this.contenido = contenido;
         this.remitente = remitente;
         this.destinatario = destinatario;
         this.timestamp = timestamp;
+        this.secuencia = secuencia;
+        this.id = id;
+    }
+
+    /** Copia del mensaje con el número de secuencia indicado (lo asigna el servidor). */
+    public Mensaje conSecuencia(long secuencia) {
+        return new Mensaje(tipo, contenido, remitente, destinatario, timestamp, secuencia, id);
+    }
+
+    /** Copia del mensaje con el identificador indicado (lo asigna el cliente al enviarlo). */
+    public Mensaje conId(String id) {
+        return new Mensaje(tipo, contenido, remitente, destinatario, timestamp, secuencia, id);
     }
 
     public TipoMensaje getTipo()        { return tipo; }
@@ -41,6 +72,8 @@ public class Mensaje implements Serializable {
     public String getRemitente()        { return remitente; }
     public String getDestinatario()     { return destinatario; }
     public String getTimestamp()        { return timestamp; }
+    public long   getSecuencia()        { return secuencia; }
+    public String getId()               { return id; }
 
     @Override
     public String toString() {
@@ -49,17 +82,24 @@ public class Mensaje implements Serializable {
 
     // ── Serialización HTTP ──────────────────────────────────────────────────
 
+    /**
+     * {@code TIPO|remitente|destinatario|contenido|timestamp}, más {@code |secuencia}
+     * solo si el mensaje tiene número de secuencia o identificador, y {@code |id} solo si
+     * tiene identificador (entonces la secuencia puede ser 0).
+     */
     public String toHttpString() {
         return tipo.name()
              + "|" + enc(remitente)
              + "|" + enc(destinatario != null ? destinatario : "")
              + "|" + enc(contenido   != null ? contenido   : "")
-             + "|" + enc(timestamp);
+             + "|" + enc(timestamp)
+             + (secuencia > 0 || id != null ? "|" + secuencia : "")
+             + (id != null ? "|" + enc(id) : "");
     }
 
     public static Mensaje fromHttpString(String s) {
         if (s == null || s.isEmpty()) return null;
-        String[] p = s.split("\\|", 5);
+        String[] p = s.split("\\|", 7);
         if (p.length < 5) return null;
         try {
             TipoMensaje tipo     = TipoMensaje.valueOf(p[0]);
@@ -67,9 +107,11 @@ public class Mensaje implements Serializable {
             String destinatario = dec(p[2]);
             String contenido    = dec(p[3]);
             String timestamp    = dec(p[4]);
+            long   secuencia    = p.length > 5 ? Long.parseLong(p[5].trim()) : 0;
+            String id           = p.length > 6 ? dec(p[6]) : null;
             return new Mensaje(tipo, contenido, remitente,
                                destinatario.isEmpty() ? null : destinatario,
-                               timestamp);
+                               timestamp, secuencia, id);
         } catch (Exception e) {
             return null;
         }
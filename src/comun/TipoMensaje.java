@@ -9,5 +9,22 @@ public enum TipoMensaje {
     DISCONNECT,
     ERROR,
     OK,
-    HELP
+    HELP,
+    /** Negociación de opciones del canal TCP/TLS ({@code clave=valor,...}). */
+    OPTIONS,
+    /** Alta de un usuario en la lista de conectados; el contenido es su nombre. */
+    USER_JOIN,
+    /** Baja de un usuario de la lista de conectados; el contenido es su nombre. */
+    USER_LEAVE,
+    /**
+     * Credencial de sesión del login directo en el canal push: el servidor la entrega
+     * dentro del {@code OK} y el cliente la presenta en lugar de la contraseña al reconectar.
+     */
+    TOKEN,
+    /**
+     * Confirmación del servidor, por el canal push, de un mensaje recibido por ese mismo
+     * canal; el contenido es el identificador del mensaje. Solo se envía si se negoció
+     * {@code confirmacion=1}.
+     */
+    ACK
 }